@@ -1352,6 +1352,8 @@ public class ClientCliUtils {
 		factory.setTlsProtocolVersion(TLS_VERSION);
 
 		factory.setEnabledCipherSuites(STRONG_CIPHERS);
+		// chunk data as attachment
+		factory.setMtomEnabled(true);
 
 		MDS client = factory.createClient();
 		return client;
@@ -1386,6 +1388,8 @@ public class ClientCliUtils {
 		factory.setTlsProtocolVersion(TLS_VERSION);
 
 		factory.setEnabledCipherSuites(STRONG_CIPHERS);
+		// chunk data as attachment
+		factory.setMtomEnabled(true);
 
 		MOS client = factory.createClient();
 		return client;
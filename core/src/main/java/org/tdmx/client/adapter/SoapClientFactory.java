@@ -19,6 +19,8 @@
 package org.tdmx.client.adapter;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.TrustManager;
@@ -29,6 +31,7 @@ import org.apache.cxf.frontend.ClientProxy;
 import org.apache.cxf.interceptor.LoggingInInterceptor;
 import org.apache.cxf.interceptor.LoggingOutInterceptor;
 import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.apache.cxf.message.Message;
 import org.apache.cxf.transport.http.HTTPConduit;
 import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.slf4j.Logger;
@@ -55,6 +58,13 @@ public class SoapClientFactory<E> {
 	private String tlsProtocolVersion;
 	private String[] enabledCipherSuites;
 
+	/**
+	 * Whether binary data like chunks is sent as MTOM attachment rather than inline base64. Only binary data larger
+	 * than the mtomThresholdBytes is optimized.
+	 */
+	private boolean mtomEnabled = false;
+	private int mtomThresholdBytes = 4096;
+
 	private ClientKeyManagerFactory keyManagerFactory;
 	private ServerTrustManagerFactory trustManagerFactory;
 
@@ -93,6 +103,12 @@ public class SoapClientFactory<E> {
 		 */
 		factory.setAddress(getUrl());
 		factory.setServiceClass(getClazz());
+		if (isMtomEnabled()) {
+			Map<String, Object> properties = new HashMap<>();
+			properties.put(Message.MTOM_ENABLED, Boolean.TRUE);
+			properties.put(Message.MTOM_THRESHOLD, getMtomThresholdBytes());
+			factory.setProperties(properties);
+		}
 
 		// username password not needed due to client certificate inclusion.
 
@@ -219,6 +235,22 @@ public class SoapClientFactory<E> {
 		this.enabledCipherSuites = enabledCipherSuites;
 	}
 
+	public boolean isMtomEnabled() {
+		return mtomEnabled;
+	}
+
+	public void setMtomEnabled(boolean mtomEnabled) {
+		this.mtomEnabled = mtomEnabled;
+	}
+
+	public int getMtomThresholdBytes() {
+		return mtomThresholdBytes;
+	}
+
+	public void setMtomThresholdBytes(int mtomThresholdBytes) {
+		this.mtomThresholdBytes = mtomThresholdBytes;
+	}
+
 	public ClientKeyManagerFactory getKeyManagerFactory() {
 		return keyManagerFactory;
 	}
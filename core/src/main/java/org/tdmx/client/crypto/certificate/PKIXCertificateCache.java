@@ -0,0 +1,215 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.client.crypto.certificate;
+
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.tdmx.client.crypto.algorithm.DigestAlgorithm;
+import org.tdmx.client.crypto.converters.ByteArray;
+import org.tdmx.client.crypto.scheme.CryptoException;
+
+/**
+ * A bounded cache of the PKIXCertificates of X509Certificates, keyed by the SHA256 hash of the DER encoding.
+ * 
+ * Converting a certificate parses the DER again and computes the fingerprint, which is wasted effort for the same
+ * client certificate presented on each TLS handshake and request. PKIXCertificates are immutable, so they can be shared.
+ * 
+ * When the cache exceeds its maxSize, the least recently used tenth of the certificates is evicted.
+ * 
+ * @author Peter
+ * 
+ */
+public class PKIXCertificateCache {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final int EVICTION_FRACTION = 10;
+
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private final Map<String, CachedCertificate> cache = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Convert X509Certificates to PKIXCertificates, like {@link CertificateIOUtils#convert(X509Certificate[])}.
+	 * 
+	 * @param certs
+	 * @return the PKIXCertificates or null if certs is null.
+	 * @throws CryptoCertificateException
+	 */
+	public PKIXCertificate[] convert(X509Certificate[] certs) throws CryptoCertificateException {
+		if (certs == null) {
+			return null;
+		}
+
+		PKIXCertificate[] result = new PKIXCertificate[certs.length];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = convert(certs[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Convert a X509Certificate to a PKIXCertificate.
+	 * 
+	 * @param cert
+	 * @return the PKIXCertificate.
+	 * @throws CryptoCertificateException
+	 */
+	public PKIXCertificate convert(X509Certificate cert) throws CryptoCertificateException {
+		String key = getKey(cert);
+		CachedCertificate cached = cache.get(key);
+		if (cached != null) {
+			hits.incrementAndGet();
+			return cached.getCertificate();
+		}
+		misses.incrementAndGet();
+
+		PKIXCertificate pkixCert = new PKIXCertificate(cert);
+		cache.put(key, new CachedCertificate(pkixCert));
+		if (cache.size() > maxSize) {
+			evict();
+		}
+		return pkixCert;
+	}
+
+	/**
+	 * Remove all cached certificates.
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private String getKey(X509Certificate cert) throws CryptoCertificateException {
+		try {
+			return ByteArray.asHex(DigestAlgorithm.SHA_256.kdf(cert.getEncoded()));
+		} catch (CertificateEncodingException e) {
+			throw new CryptoCertificateException(CertificateResultCode.ERROR_ENCODING, e);
+		} catch (CryptoException e) {
+			throw new CryptoCertificateException(CertificateResultCode.ERROR_EXCEPTION, e);
+		}
+	}
+
+	private synchronized void evict() {
+		// race condition avoidance
+		if (cache.size() <= maxSize) {
+			return;
+		}
+		// the lastUsed times are snapshot since they change concurrently
+		List<Long> lastUsedTimes = new ArrayList<>();
+		for (CachedCertificate cc : cache.values()) {
+			lastUsedTimes.add(cc.getLastUsed());
+		}
+		Collections.sort(lastUsedTimes);
+		int evictCount = Math.min(lastUsedTimes.size(), lastUsedTimes.size() - maxSize + maxSize / EVICTION_FRACTION);
+		long evictBefore = lastUsedTimes.get(Math.max(evictCount - 1, 0));
+
+		int evicted = 0;
+		Iterator<CachedCertificate> it = cache.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().getLastUsed() <= evictBefore) {
+				it.remove();
+				evicted++;
+			}
+		}
+		evictions.addAndGet(evicted);
+	}
+
+	/**
+	 * A helper value type holding a cached PKIXCertificate and the time it was last used.
+	 */
+	private static class CachedCertificate {
+		private final PKIXCertificate certificate;
+		private volatile long lastUsed = System.nanoTime();
+
+		private CachedCertificate(PKIXCertificate certificate) {
+			this.certificate = certificate;
+		}
+
+		private PKIXCertificate getCertificate() {
+			lastUsed = System.nanoTime();
+			return certificate;
+		}
+
+		private long getLastUsed() {
+			return lastUsed;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public int getSize() {
+		return cache.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+}
@@ -44,6 +44,7 @@ import org.tdmx.client.crypto.scheme.Encrypter;
 import org.tdmx.client.crypto.scheme.IntegratedCryptoScheme;
 import org.tdmx.client.crypto.stream.ChunkMacCalculatingOutputStream;
 import org.tdmx.client.crypto.stream.FileBackedOutputStream;
+import org.tdmx.client.crypto.stream.PipelineStageOutputStream;
 import org.tdmx.client.crypto.stream.SigningOutputStream;
 
 /**
@@ -67,10 +68,17 @@ import org.tdmx.client.crypto.stream.SigningOutputStream;
  * }
  * </pre>
  * 
+ * Signing and compression, encryption and the chunk MAC calculation run as separate pipeline stages on their own
+ * threads, connected by bounded buffers. The output stream must always be closed to terminate the stages, a pipeline
+ * which is abandoned is terminated once it has stalled for {@link PipelineStageOutputStream#DEFAULT_STALL_TIMEOUT_MS}.
+ * 
  * @author Peter
  * 
  */
 public class RSA_ECDHPayloadEncrypter implements Encrypter {
+	private static final int STAGE_BLOCK_SIZE = 64 * 1024;
+	private static final int STAGE_MAX_PENDING_BLOCKS = 4;
+
 	private final IntegratedCryptoScheme scheme;
 	private final TemporaryBufferFactory bufferFactory;
 
@@ -131,12 +139,16 @@ public class RSA_ECDHPayloadEncrypter implements Encrypter {
 		}
 		fbos = bufferFactory.getOutputStream(scheme.getChunkSize());
 		mcos = new ChunkMacCalculatingOutputStream(fbos, scheme.getChunkSize(), scheme.getChunkMACAlgorithm());
+		OutputStream macStage = new PipelineStageOutputStream(mcos, "EncryptChunkMac", STAGE_BLOCK_SIZE,
+				STAGE_MAX_PENDING_BLOCKS);
 
 		Cipher c = payloadCipher.getEncrypter(secretKey, secretIv);
-		CipherOutputStream cos = new CipherOutputStream(mcos, c);
+		CipherOutputStream cos = new CipherOutputStream(macStage, c);
+		OutputStream cipherStage = new PipelineStageOutputStream(cos, "EncryptCipher", STAGE_BLOCK_SIZE,
+				STAGE_MAX_PENDING_BLOCKS);
 
-		DeflaterOutputStream zos = new DeflaterOutputStream(cos, new Deflater(Deflater.DEFAULT_COMPRESSION, false), 512,
-				false);
+		DeflaterOutputStream zos = new DeflaterOutputStream(cipherStage,
+				new Deflater(Deflater.DEFAULT_COMPRESSION, false), 512, false);
 
 		sos = new SigningOutputStream(SignatureAlgorithm.SHA_384_RSA, ownSigningKey.getPrivate(), true, true, zos);
 		return sos;
@@ -0,0 +1,256 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.client.crypto.stream;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A PipelineStageOutputStream decouples the writer from the delegate output stream, which is written to by a separate
+ * stage thread. The bytes written are handed to the stage thread in blocks of blockSize bytes through a bounded queue
+ * of maxPendingBlocks, so a writer which is faster than the delegate is blocked rather than buffering without limit.
+ * 
+ * The stage threads are shared by all pipelines and idle threads terminate after a minute. The delegate output stream
+ * is closed by the stage thread. {@link #close()} waits until the stage thread has written all blocks and closed the
+ * delegate, so the delegate's results are available to the writer after closing.
+ * 
+ * Any failure of the delegate is thrown to the writer on a subsequent write or on {@link #close()}. A writer which
+ * neither writes nor closes for the stall timeout has abandoned the pipeline, the stage then closes the delegate and
+ * terminates, which terminates any following stages in turn.
+ * 
+ * @author Peter
+ * 
+ */
+public class PipelineStageOutputStream extends OutputStream {
+
+	/**
+	 * The time a stage waits for the next block of the writer before it considers the pipeline abandoned.
+	 */
+	public static final long DEFAULT_STALL_TIMEOUT_MS = 5L * 60L * 1000L;
+
+	private static final byte[] END_OF_STREAM = new byte[0];
+
+	// how often a blocked writer checks whether the stage has terminated.
+	private static final long HANDOFF_CHECK_MS = 100;
+
+	private static final ExecutorService STAGE_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		private final AtomicInteger threadNr = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "PipelineStage-" + threadNr.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	private final OutputStream delegate;
+	private final String stageName;
+	private final BlockingQueue<byte[]> queue;
+	private final CountDownLatch terminated = new CountDownLatch(1);
+	private final int blockSize;
+	private final long stallTimeoutMs;
+	private byte[] block;
+	private int cachedSize = 0;
+	private boolean closed = false;
+	private volatile Throwable failure = null;
+
+	public PipelineStageOutputStream(OutputStream delegate, String stageName, int blockSize, int maxPendingBlocks) {
+		this(delegate, stageName, blockSize, maxPendingBlocks, DEFAULT_STALL_TIMEOUT_MS);
+	}
+
+	public PipelineStageOutputStream(OutputStream delegate, final String stageName, int blockSize,
+			int maxPendingBlocks, long stallTimeoutMs) {
+		this.delegate = delegate;
+		this.stageName = stageName;
+		this.blockSize = blockSize;
+		this.stallTimeoutMs = stallTimeoutMs;
+		this.block = new byte[blockSize];
+		this.queue = new ArrayBlockingQueue<>(maxPendingBlocks);
+		STAGE_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				Thread current = Thread.currentThread();
+				String threadName = current.getName();
+				current.setName(stageName);
+				try {
+					writeThrough();
+				} finally {
+					current.setName(threadName);
+					terminated.countDown();
+				}
+			}
+		});
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkFailure();
+		block[cachedSize++] = (byte) b;
+		if (cachedSize == blockSize) {
+			handOff();
+		}
+	}
+
+	@Override
+	public void write(byte b[]) throws IOException {
+		write(b, 0, b.length);
+	}
+
+	@Override
+	public void write(byte b[], int off, int len) throws IOException {
+		checkFailure();
+		while (len > 0) {
+			int copied = Math.min(len, blockSize - cachedSize);
+			System.arraycopy(b, off, block, cachedSize, copied);
+			cachedSize += copied;
+			off += copied;
+			len -= copied;
+			if (cachedSize == blockSize) {
+				handOff();
+			}
+		}
+	}
+
+	/**
+	 * Hands any partial block to the stage thread, without waiting for the delegate to be written.
+	 */
+	@Override
+	public void flush() throws IOException {
+		checkFailure();
+		if (cachedSize > 0) {
+			handOff();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			if (failure == null && cachedSize > 0) {
+				handOff();
+			}
+		} finally {
+			// the stage thread needs the end of stream to terminate, unless it has terminated already
+			put(END_OF_STREAM);
+			try {
+				terminated.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for " + stageName);
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * 
+	 * @return true if the stage thread has terminated.
+	 */
+	public boolean isTerminated() {
+		return terminated.getCount() == 0;
+	}
+
+	private void handOff() throws IOException {
+		if (!put(cachedSize == blockSize ? block : Arrays.copyOf(block, cachedSize))) {
+			checkFailure();
+			throw new IOException(stageName + " terminated.");
+		}
+		block = new byte[blockSize];
+		cachedSize = 0;
+	}
+
+	/**
+	 * Hand a block to the stage thread, waiting while the queue is full.
+	 * 
+	 * @param b
+	 * @return true if handed off, false if the stage thread has terminated and will never take the block.
+	 * @throws InterruptedIOException
+	 */
+	private boolean put(byte[] b) throws InterruptedIOException {
+		try {
+			while (!queue.offer(b, HANDOFF_CHECK_MS, TimeUnit.MILLISECONDS)) {
+				if (isTerminated()) {
+					return false;
+				}
+			}
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted handing off to " + stageName);
+		}
+	}
+
+	private void checkFailure() throws IOException {
+		Throwable t = failure;
+		if (t != null) {
+			throw new IOException(stageName + " failed.", t);
+		}
+	}
+
+	private void writeThrough() {
+		try {
+			byte[] b;
+			while ((b = queue.poll(stallTimeoutMs, TimeUnit.MILLISECONDS)) != END_OF_STREAM) {
+				if (b == null) {
+					// the writer neither writes nor closes
+					if (failure == null) {
+						failure = new IOException(stageName + " abandoned after " + stallTimeoutMs + "ms.");
+					}
+					break;
+				}
+				// after a failure the blocks are discarded so that the writer is never blocked
+				if (failure == null) {
+					try {
+						delegate.write(b);
+					} catch (Throwable t) {
+						failure = t;
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			if (failure == null) {
+				failure = e;
+			}
+		} finally {
+			// closing the delegate also terminates any following stage
+			try {
+				delegate.close();
+			} catch (Throwable t) {
+				if (failure == null) {
+					failure = t;
+				}
+			}
+		}
+	}
+
+}
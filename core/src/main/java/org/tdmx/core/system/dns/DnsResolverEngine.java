@@ -0,0 +1,295 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.core.system.dns;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import org.tdmx.core.system.dns.DnsUtils.DnsResultHolder;
+import org.xbill.DNS.Cache;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.ExtendedResolver;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.NSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.SimpleResolver;
+import org.xbill.DNS.TXTRecord;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+/**
+ * A long lived DNS resolution engine for a fixed set of DNS resolvers.
+ * 
+ * The resolver is created once, and answers are held in a dnsjava {@link Cache} which honors the TTL of the records.
+ * If an {@link Executor} is provided, all levels of a domain's hierarchy are queried concurrently, otherwise one level
+ * after the other as long as nothing is found. Either way the result of the most qualified level wins.
+ * 
+ * @author Peter
+ * 
+ */
+public class DnsResolverEngine {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+	public static final int DEFAULT_PORT = SimpleResolver.DEFAULT_PORT;
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final int RESOLVER_TIMEOUT_SEC = 10;
+
+	private final Resolver resolver;
+	private final Cache cache;
+	private final Executor executor;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Create a resolution engine which queries sequentially and does not cache answers beyond each lookup.
+	 * 
+	 * @param resolverAddresses
+	 * @throws UnknownHostException
+	 */
+	public DnsResolverEngine(List<String> resolverAddresses) throws UnknownHostException {
+		this(resolverAddresses, DEFAULT_PORT, null, null);
+	}
+
+	/**
+	 * Create a resolution engine.
+	 * 
+	 * @param resolverAddresses
+	 *            the addresses of the DNS resolvers.
+	 * @param port
+	 *            the port of the DNS resolvers.
+	 * @param cache
+	 *            the cache of DNS answers, or null for none.
+	 * @param executor
+	 *            the executor for concurrent queries, or null for sequential queries.
+	 * @throws UnknownHostException
+	 */
+	public DnsResolverEngine(List<String> resolverAddresses, int port, Cache cache, Executor executor)
+			throws UnknownHostException {
+		this.resolver = createResolver(resolverAddresses, port);
+		this.cache = cache;
+		this.executor = executor;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Create a cache of DNS answers holding at most maxEntries.
+	 * 
+	 * @param maxEntries
+	 * @return a cache of DNS answers.
+	 */
+	public static Cache createCache(int maxEntries) {
+		Cache cache = new Cache(DClass.IN);
+		cache.setMaxEntries(maxEntries);
+		return cache;
+	}
+
+	/**
+	 * Return the domain names of name servers of the most qualified level of the domain which has NS records.
+	 * 
+	 * @param domainName
+	 * @return null if no NS records are found in the domain chain upwards from the domainName, else the domain which
+	 *         has the NS records and the name servers.
+	 * @throws TextParseException
+	 */
+	public DnsResultHolder getNameServers(String domainName) throws TextParseException {
+		List<Name> searchNames = getSearchNames(domainName);
+		List<FutureTask<Record[]>> lookups = startLookups(searchNames, Type.NS);
+		try {
+			for (int i = 0; i < searchNames.size(); i++) {
+				Record[] records = awaitLookup(lookups.get(i));
+				if (records != null && records.length > 0) {
+					List<String> result = new ArrayList<>();
+					for (Record ns : records) {
+						NSRecord sr = (NSRecord) ns;
+						result.add(sr.getTarget().toString(true));
+					}
+					Collections.sort(result);
+					return new DnsResultHolder(searchNames.get(i).toString(true), result);
+				}
+			}
+		} finally {
+			cancelLookups(lookups);
+		}
+		return null;
+	}
+
+	/**
+	 * Return the TDMX TXT records of the most qualified level of the domain which has them.
+	 * 
+	 * @param domainName
+	 * @return null if no TDMX ZoneRecord is found in the domain chain upwards from the domainName, or the zoneApex and
+	 *         the TXT records.
+	 * @throws TextParseException
+	 */
+	@SuppressWarnings("unchecked")
+	public DnsResultHolder getTdmxZoneRecord(String domainName) throws TextParseException {
+		List<Name> searchNames = getSearchNames(domainName);
+		List<FutureTask<Record[]>> lookups = startLookups(searchNames, Type.TXT);
+		try {
+			for (int i = 0; i < searchNames.size(); i++) {
+				Record[] records = awaitLookup(lookups.get(i));
+				List<String> result = new ArrayList<>();
+				if (records != null) {
+					for (Record txt : records) {
+						TXTRecord tr = (TXTRecord) txt;
+						for (String s : (List<String>) tr.getStrings()) {
+							if (DnsUtils.matchesTdmxZoneRecord(s)) {
+								result.add(s);
+							}
+						}
+					}
+				}
+				if (!result.isEmpty()) {
+					Collections.sort(result);
+					return new DnsResultHolder(searchNames.get(i).toString(true), result);
+				}
+			}
+		} finally {
+			cancelLookups(lookups);
+		}
+		return null;
+	}
+
+	/**
+	 * Remove all cached answers for each level of the domain's hierarchy.
+	 * 
+	 * @param domainName
+	 * @throws TextParseException
+	 */
+	public void flush(String domainName) throws TextParseException {
+		if (cache != null) {
+			for (Name n : getSearchNames(domainName)) {
+				cache.flushName(n);
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	static Resolver createResolver(List<String> resolverAddresses, int port) throws UnknownHostException {
+		List<Resolver> simpleResolvers = new ArrayList<>();
+		for (String address : resolverAddresses) {
+			Resolver r = new SimpleResolver(address);
+			r.setPort(port);
+			r.setTCP(true);
+			r.setTimeout(RESOLVER_TIMEOUT_SEC);
+			simpleResolvers.add(r);
+		}
+
+		ExtendedResolver er = new ExtendedResolver(simpleResolvers.toArray(new Resolver[0]));
+		return er;
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Get the names to lookup, from most qualified to "highest" level domain.
+	 * 
+	 * @param domainName
+	 * @return
+	 * @throws TextParseException
+	 */
+	private List<Name> getSearchNames(String domainName) throws TextParseException {
+		List<Name> result = new ArrayList<>();
+
+		Name dn = Name.fromString(domainName);
+		int numLabels = dn.labels();
+		for (int i = 0; i < numLabels - 1; i++) {
+			StringBuilder b = new StringBuilder();
+			for (int max = i; max < numLabels; max++) {
+				b.append(dn.getLabelString(max));
+				b.append(".");
+			}
+			result.add(Name.fromString(b.toString()));
+		}
+		return result;
+	}
+
+	private List<FutureTask<Record[]>> startLookups(List<Name> searchNames, final int type) {
+		List<FutureTask<Record[]>> lookups = new ArrayList<>();
+		for (final Name searchName : searchNames) {
+			FutureTask<Record[]> lookup = new FutureTask<>(new Callable<Record[]>() {
+				@Override
+				public Record[] call() throws Exception {
+					Lookup l = new Lookup(searchName, type);
+					l.setResolver(resolver);
+					l.setCache(cache);
+					l.setSearchPath((Name[]) null);
+					return l.run();
+				}
+			});
+			if (executor != null) {
+				executor.execute(lookup);
+			}
+			lookups.add(lookup);
+		}
+		return lookups;
+	}
+
+	private Record[] awaitLookup(FutureTask<Record[]> lookup) {
+		if (executor == null) {
+			lookup.run();
+		}
+		try {
+			return lookup.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// a failed lookup is treated like no records found
+		}
+		return null;
+	}
+
+	private void cancelLookups(List<FutureTask<Record[]>> lookups) {
+		for (FutureTask<Record[]> lookup : lookups) {
+			lookup.cancel(false);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public Cache getCache() {
+		return cache;
+	}
+
+}
@@ -31,18 +31,13 @@ import java.util.regex.Pattern;
 
 import org.tdmx.core.system.lang.StringUtils;
 import org.xbill.DNS.DClass;
-import org.xbill.DNS.ExtendedResolver;
-import org.xbill.DNS.Lookup;
 import org.xbill.DNS.Message;
-import org.xbill.DNS.NSRecord;
 import org.xbill.DNS.Name;
 import org.xbill.DNS.Record;
 import org.xbill.DNS.Resolver;
 import org.xbill.DNS.ResolverConfig;
 import org.xbill.DNS.ReverseMap;
 import org.xbill.DNS.Section;
-import org.xbill.DNS.SimpleResolver;
-import org.xbill.DNS.TXTRecord;
 import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.Type;
 
@@ -276,37 +271,7 @@ public class DnsUtils {
 	 */
 	public static DnsResultHolder getNameServers(String domainName, List<String> resolverAddresses)
 			throws TextParseException, UnknownHostException {
-		List<String> result = new ArrayList<>();
-
-		Name n = Name.fromString(domainName);
-
-		int numLabels = n.labels();
-		// bottom to top lookup of NS records.
-		for (int i = 0; i < numLabels - 1; i++) {
-			StringBuffer b = new StringBuffer();
-			for (int max = i; max < numLabels; max++) {
-				String l = n.getLabelString(max);
-				b.append(l);
-				b.append(".");
-			}
-			Name searchName = Name.fromString(b.toString());
-
-			Resolver r = createResolver(resolverAddresses);
-			Lookup l = new Lookup(searchName, Type.NS);
-			l.setResolver(r);
-			l.setCache(null);
-			l.setSearchPath((Name[]) null);
-			Record[] records = l.run();
-			if (records != null && records.length > 0) {
-				for (Record ns : records) {
-					NSRecord sr = (NSRecord) ns;
-					result.add(sr.getTarget().toString(true));
-				}
-				Collections.sort(result);
-				return new DnsResultHolder(searchName.toString(true), result);
-			}
-		}
-		return null;
+		return new DnsResolverEngine(resolverAddresses).getNameServers(domainName);
 	}
 
 	/**
@@ -318,47 +283,10 @@ public class DnsUtils {
 	 *         the TXT records.
 	 * @throws TextParseException
 	 * @throws UnknownHostException
-	 * @throws Exception
 	 */
-	@SuppressWarnings("unchecked")
 	public static DnsResultHolder getTdmxZoneRecord(String domainName, List<String> resolverAddresses)
 			throws TextParseException, UnknownHostException {
-		List<String> result = new ArrayList<>();
-
-		Name dn = Name.fromString(domainName);
-		int numLabels = dn.labels();
-		// bottom to top lookup of TXT records.
-		for (int i = 0; i < numLabels - 1; i++) {
-			StringBuffer b = new StringBuffer();
-			for (int max = i; max < numLabels; max++) {
-				String l = dn.getLabelString(max);
-				b.append(l);
-				b.append(".");
-			}
-			Name searchName = Name.fromString(b.toString());
-
-			Resolver r = createResolver(resolverAddresses);
-			Lookup l = new Lookup(searchName, Type.TXT);
-			l.setResolver(r);
-			l.setCache(null);
-			l.setSearchPath((Name[]) null);
-			Record[] records = l.run();
-			if (records != null && records.length > 0) {
-				for (Record ns : records) {
-					TXTRecord tr = (TXTRecord) ns;
-					for (String s : (List<String>) tr.getStrings()) {
-						if (matchesTdmxZoneRecord(s)) {
-							result.add(s);
-						}
-					}
-				}
-			}
-			if (!result.isEmpty()) {
-				Collections.sort(result);
-				return new DnsResultHolder(searchName.toString(true), result);
-			}
-		}
-		return null;
+		return new DnsResolverEngine(resolverAddresses).getTdmxZoneRecord(domainName);
 	}
 
 	public static String reverseDns(String hostIp, List<String> resolverAddresses) {
@@ -374,7 +302,7 @@ public class DnsUtils {
 		Message query = Message.newQuery(rec);
 		Message response;
 		try {
-			Resolver res = createResolver(resolverAddresses);
+			Resolver res = DnsResolverEngine.createResolver(resolverAddresses, DnsResolverEngine.DEFAULT_PORT);
 
 			response = res.send(query);
 		} catch (IOException e) {
@@ -397,16 +325,4 @@ public class DnsUtils {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
-	private static Resolver createResolver(List<String> resolverAddresses) throws UnknownHostException {
-		List<Resolver> simpleResolvers = new ArrayList<>();
-		for (String address : resolverAddresses) {
-			Resolver r = new SimpleResolver(address);
-			r.setTCP(true);
-			r.setTimeout(10);
-			simpleResolvers.add(r);
-		}
-
-		ExtendedResolver er = new ExtendedResolver(simpleResolvers.toArray(new Resolver[0]));
-		return er;
-	}
 }
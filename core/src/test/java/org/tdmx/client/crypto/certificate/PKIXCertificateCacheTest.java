@@ -0,0 +1,86 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.client.crypto.certificate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.security.cert.X509Certificate;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PKIXCertificateCacheTest {
+
+	private PKIXCertificateCache cache;
+	private PKIXCredential zac;
+	private PKIXCredential dac;
+
+	@Before
+	public void setUp() throws Exception {
+		cache = new PKIXCertificateCache();
+		zac = CertificateFacade.createZAC("zone.apex", 10);
+		dac = CertificateFacade.createDAC(zac, 2);
+	}
+
+	@Test
+	public void testConvert_Cached() throws Exception {
+		X509Certificate[] chain = CertificateIOUtils.cast(dac.getCertificateChain());
+
+		PKIXCertificate[] certs = cache.convert(chain);
+		assertEquals(2, certs.length);
+		assertEquals(dac.getPublicCert().getFingerprint(), certs[0].getFingerprint());
+		assertEquals(zac.getPublicCert().getFingerprint(), certs[1].getFingerprint());
+		assertEquals(0, cache.getHits());
+		assertEquals(2, cache.getMisses());
+
+		PKIXCertificate[] again = cache.convert(chain);
+		assertSame(certs[0], again[0]);
+		assertSame(certs[1], again[1]);
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getSize());
+	}
+
+	@Test
+	public void testConvert_Null() throws Exception {
+		assertNull(cache.convert((X509Certificate[]) null));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		cache.setMaxSize(4);
+		for (int i = 0; i < 8; i++) {
+			cache.convert(CertificateFacade.createZAC("zone" + i + ".apex", 1).getPublicCert().getCertificate());
+			assertTrue(cache.getSize() <= 4);
+		}
+		assertTrue(cache.getEvictions() >= 4);
+
+		// the most recently used certificate remains
+		X509Certificate recent = zac.getPublicCert().getCertificate();
+		PKIXCertificate c = cache.convert(recent);
+		assertSame(c, cache.convert(recent));
+
+		cache.clear();
+		assertNotSame(c, cache.convert(recent));
+	}
+
+}
@@ -0,0 +1,141 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.client.crypto.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.tdmx.client.crypto.entropy.EntropySource;
+
+public class PipelineStageOutputStreamTest {
+
+	@Test
+	public void testWriteThrough() throws IOException {
+		byte[] data = EntropySource.getRandomBytes(100003);
+
+		ByteArrayOutputStream delegate = new ByteArrayOutputStream();
+		PipelineStageOutputStream second = new PipelineStageOutputStream(delegate, "second", 7, 2);
+		PipelineStageOutputStream sut = new PipelineStageOutputStream(second, "first", 5, 2);
+		for (int i = 0; i < 1000; i++) {
+			sut.write(data[i]);
+		}
+		sut.flush();
+		sut.write(data, 1000, data.length - 1000);
+		sut.close();
+
+		assertArrayEquals(data, delegate.toByteArray());
+	}
+
+	@Test
+	public void testFailure() throws IOException {
+		OutputStream delegate = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("delegate failure");
+			}
+		};
+		PipelineStageOutputStream sut = new PipelineStageOutputStream(delegate, "failing", 4, 1);
+		try {
+			sut.write(EntropySource.getRandomBytes(1000));
+			sut.close();
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testFailure_WriterNotBlocked() throws IOException, InterruptedException {
+		final CountDownLatch closed = new CountDownLatch(1);
+		OutputStream delegate = new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException("delegate failure");
+			}
+
+			@Override
+			public void close() {
+				closed.countDown();
+			}
+		};
+		PipelineStageOutputStream sut = new PipelineStageOutputStream(delegate, "failing", 4, 1);
+		try {
+			for (int i = 0; i < 1000; i++) {
+				sut.write(EntropySource.getRandomBytes(100));
+			}
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			sut.close();
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(closed.await(1, TimeUnit.SECONDS));
+		assertTrue(sut.isTerminated());
+	}
+
+	@Test(timeout = 10000)
+	public void testAbandoned() throws IOException, InterruptedException {
+		final CountDownLatch closed = new CountDownLatch(1);
+		OutputStream delegate = new OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+
+			@Override
+			public void close() {
+				closed.countDown();
+			}
+		};
+		PipelineStageOutputStream second = new PipelineStageOutputStream(delegate, "second", 4, 1, 60000);
+		PipelineStageOutputStream sut = new PipelineStageOutputStream(second, "first", 4, 1, 100);
+		sut.write(EntropySource.getRandomBytes(10));
+		assertFalse(sut.isTerminated());
+
+		// the writer stalls, the first stage terminates and closes the following stage
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		try {
+			sut.write(EntropySource.getRandomBytes(10));
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		try {
+			sut.close();
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+		assertTrue(sut.isTerminated());
+		assertTrue(second.isTerminated());
+	}
+
+}
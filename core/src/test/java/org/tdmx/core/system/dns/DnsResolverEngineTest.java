@@ -0,0 +1,226 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.core.system.dns;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.core.system.dns.DnsUtils.DnsResultHolder;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.NSRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.TXTRecord;
+
+public class DnsResolverEngineTest {
+
+	private static final String ZONE_RECORD_A = "tdmx version=1 zac=aaaa scs=https://scs.a.b.com/api/v1.0/scs/";
+	private static final String ZONE_RECORD_B = "tdmx version=1 zac=bbbb scs=https://scs.b.com/api/v1.0/scs/";
+
+	private StubDnsServer server;
+	private ExecutorService executor;
+
+	@Before
+	public void doSetup() throws Exception {
+		server = new StubDnsServer();
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+	@After
+	public void doTeardown() throws Exception {
+		server.close();
+		executor.shutdownNow();
+	}
+
+	private DnsResolverEngine createEngine(boolean cached, boolean concurrent) throws Exception {
+		return new DnsResolverEngine(Arrays.asList(new String[] { "127.0.0.1" }), server.getPort(),
+				cached ? DnsResolverEngine.createCache(100) : null, concurrent ? executor : null);
+	}
+
+	@Test
+	public void testTXT_DeepestMatch() throws Exception {
+		server.addRecord(new TXTRecord(Name.fromString("a.b.com."), DClass.IN, 3600, ZONE_RECORD_A));
+		server.addRecord(new TXTRecord(Name.fromString("b.com."), DClass.IN, 3600, ZONE_RECORD_B));
+
+		DnsResultHolder h = createEngine(true, true).getTdmxZoneRecord("x.a.b.com");
+		assertNotNull(h);
+		assertEquals("a.b.com", h.getApex());
+		assertEquals(Arrays.asList(new String[] { ZONE_RECORD_A }), h.getRecords());
+	}
+
+	@Test
+	public void testTXT_HigherLevel() throws Exception {
+		server.addRecord(new TXTRecord(Name.fromString("a.b.com."), DClass.IN, 3600, "v=spf1 -all"));
+		server.addRecord(new TXTRecord(Name.fromString("b.com."), DClass.IN, 3600, ZONE_RECORD_B));
+
+		for (boolean concurrent : new boolean[] { false, true }) {
+			DnsResultHolder h = createEngine(false, concurrent).getTdmxZoneRecord("x.a.b.com");
+			assertNotNull(h);
+			assertEquals("b.com", h.getApex());
+			assertEquals(Arrays.asList(new String[] { ZONE_RECORD_B }), h.getRecords());
+		}
+	}
+
+	@Test
+	public void testTXT_NotFound() throws Exception {
+		assertNull(createEngine(true, true).getTdmxZoneRecord("x.a.b.com"));
+	}
+
+	@Test
+	public void testTXT_Cached() throws Exception {
+		server.addRecord(new TXTRecord(Name.fromString("b.com."), DClass.IN, 3600, ZONE_RECORD_B));
+
+		DnsResolverEngine engine = createEngine(true, false);
+		assertNotNull(engine.getTdmxZoneRecord("b.com"));
+		assertEquals(1, server.getQueryCount("b.com."));
+		assertNotNull(engine.getTdmxZoneRecord("b.com"));
+		assertEquals(1, server.getQueryCount("b.com."));
+
+		engine.flush("b.com");
+		assertNotNull(engine.getTdmxZoneRecord("b.com"));
+		assertEquals(2, server.getQueryCount("b.com."));
+	}
+
+	@Test
+	public void testNS_DeepestMatch() throws Exception {
+		server.addRecord(new NSRecord(Name.fromString("b.com."), DClass.IN, 3600, Name.fromString("ns2.b.com.")));
+		server.addRecord(new NSRecord(Name.fromString("b.com."), DClass.IN, 3600, Name.fromString("ns1.b.com.")));
+
+		DnsResultHolder h = createEngine(true, true).getNameServers("x.a.b.com");
+		assertNotNull(h);
+		assertEquals("b.com", h.getApex());
+		assertEquals(Arrays.asList(new String[] { "ns1.b.com", "ns2.b.com" }), h.getRecords());
+	}
+
+	/**
+	 * A DNS server over TCP answering from a fixed set of records.
+	 */
+	private static class StubDnsServer implements Runnable {
+		private final ServerSocket serverSocket;
+		private final List<Record> records = new ArrayList<>();
+		private final Map<String, AtomicInteger> queryCounts = new ConcurrentHashMap<>();
+
+		private StubDnsServer() throws IOException {
+			serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			Thread t = new Thread(this, "StubDnsServer");
+			t.setDaemon(true);
+			t.start();
+		}
+
+		private synchronized void addRecord(Record record) {
+			records.add(record);
+		}
+
+		private int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		private int getQueryCount(String name) {
+			AtomicInteger count = queryCounts.get(name);
+			return count != null ? count.get() : 0;
+		}
+
+		private void close() throws IOException {
+			serverSocket.close();
+		}
+
+		@Override
+		public void run() {
+			while (!serverSocket.isClosed()) {
+				try {
+					final Socket s = serverSocket.accept();
+					Thread t = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							serve(s);
+						}
+					}, "StubDnsConnection");
+					t.setDaemon(true);
+					t.start();
+				} catch (IOException e) {
+					// closed
+				}
+			}
+		}
+
+		private void serve(Socket s) {
+			try (Socket socket = s) {
+				DataInputStream in = new DataInputStream(socket.getInputStream());
+				DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+				while (true) {
+					byte[] queryBytes = new byte[in.readUnsignedShort()];
+					in.readFully(queryBytes);
+					byte[] answerBytes = answer(new Message(queryBytes)).toWire();
+					out.writeShort(answerBytes.length);
+					out.write(answerBytes);
+					out.flush();
+				}
+			} catch (EOFException e) {
+				// client finished
+			} catch (IOException e) {
+				// client went away
+			}
+		}
+
+		private synchronized Message answer(Message query) {
+			Record question = query.getQuestion();
+			String name = question.getName().toString().toLowerCase();
+			queryCounts.putIfAbsent(name, new AtomicInteger());
+			queryCounts.get(name).incrementAndGet();
+
+			Message response = new Message(query.getHeader().getID());
+			response.getHeader().setFlag(Flags.QR);
+			response.getHeader().setFlag(Flags.AA);
+			response.addRecord(question, Section.QUESTION);
+			for (Record r : records) {
+				if (r.getName().equals(question.getName()) && r.getType() == question.getType()) {
+					response.addRecord(r, Section.ANSWER);
+				}
+			}
+			if (response.getSectionArray(Section.ANSWER).length == 0) {
+				response.getHeader().setRcode(Rcode.NXDOMAIN);
+			}
+			return response;
+		}
+	}
+}
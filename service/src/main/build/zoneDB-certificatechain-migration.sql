@@ -0,0 +1,42 @@
+-- Migrates an existing ZoneDB partition to ChannelMessages referencing shared CertificateChains.
+--
+-- Run against each ZoneDB partition before starting the new server version. The legacy receiverPem and senderPem
+-- columns are kept, but relaxed to nullable, so that new ChannelMessages can be stored without them. The
+-- CertificateChainMigrator backfills the CertificateChains of the existing ChannelMessages in the background and
+-- clears their legacy columns; until then the legacy columns are read as a fallback.
+--
+-- The statements are in MySQL syntax, the HSQL equivalent of "modify" is "alter column <column> set null".
+
+    create table CertificateChain (
+        id bigint not null auto_increment,
+        fingerprint varchar(64) not null,
+        pem varchar(12000) not null,
+        primary key (id)
+    );
+
+    create index IDX_CERTCHAIN_FINGERPRINT on CertificateChain (fingerprint);
+
+    alter table ChannelMessage modify receiverPem varchar(12000) null;
+
+    alter table ChannelMessage modify senderPem varchar(12000) null;
+
+    alter table ChannelMessage add receiverCertificateChain_id bigint;
+
+    alter table ChannelMessage add senderCertificateChain_id bigint;
+
+    alter table ChannelMessage 
+        add constraint FKCC8BCDA4A1D2E6F1 
+        foreign key (receiverCertificateChain_id) 
+        references CertificateChain (id);
+
+    alter table ChannelMessage 
+        add constraint FKCC8BCDA45B3C9E22 
+        foreign key (senderCertificateChain_id) 
+        references CertificateChain (id);
+
+-- Once the CertificateChainMigrator has finished, i.e.
+--   select count(*) from ChannelMessage where receiverPem is not null or senderPem is not null;
+-- returns 0 in every partition, the legacy columns can be dropped in the release which removes their mapping from
+-- ChannelMessage:
+--   alter table ChannelMessage drop column receiverPem;
+--   alter table ChannelMessage drop column senderPem;
@@ -19,6 +19,7 @@
 package org.tdmx.lib.chunk.dao;
 
 import java.sql.SQLException;
+import java.util.List;
 
 import org.tdmx.lib.chunk.domain.Chunk;
 
@@ -34,6 +35,18 @@ public interface ChunkDao {
 
 	public Chunk loadByMsgIdAndPos(String msgId, int pos) throws SQLException;
 
+	/**
+	 * Load all the chunks of the message with positions between fromPos and toPos (inclusive) with a single
+	 * statement.
+	 * 
+	 * @param msgId
+	 * @param fromPos
+	 * @param toPos
+	 * @return the chunks found, ordered by position. Missing positions are not included.
+	 * @throws SQLException
+	 */
+	public List<Chunk> loadByMsgIdAndPosRange(String msgId, int fromPos, int toPos) throws SQLException;
+
 	public void deleteByMsgId(String msgId) throws SQLException;
 
 }
@@ -18,17 +18,30 @@
  */
 package org.tdmx.lib.chunk.dao;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.core.system.lang.StreamUtils;
 import org.tdmx.lib.chunk.domain.Chunk;
+import org.tdmx.lib.control.datasource.DataSourceConfigurationProvider;
+import org.tdmx.lib.control.datasource.DatabaseConnectionInfo;
+import org.tdmx.lib.control.datasource.PartitionIdProvider;
 
 public class ChunkDaoImpl implements ChunkDao {
 
@@ -39,9 +52,20 @@ public class ChunkDaoImpl implements ChunkDao {
 	// -------------------------------------------------------------------------
 	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
 	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(ChunkDaoImpl.class);
 
 	private DataSource dataSource;
 
+	// the dialect of the partition's driver determines how chunks are stored idempotently
+	private PartitionIdProvider partitionIdProvider;
+	private DataSourceConfigurationProvider configurationProvider;
+
+	private final AtomicLong insertCount = new AtomicLong();
+	private final AtomicLong overwriteCount = new AtomicLong();
+
+	// the insert and overwrite counts are logged every metricsLogInterval stored chunks
+	private int metricsLogInterval = 10000;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
@@ -52,16 +76,31 @@ public class ChunkDaoImpl implements ChunkDao {
 
 	@Override
 	public void store(Chunk chunk) throws SQLException {
-		try {
-			insertChunk(chunk);
-		} catch (SQLException e) {
-			// in the case of constrain violation ( resend ) - delete existing and add our chunk
-			try {
-				deleteChunk(chunk);
-			} catch (SQLException de) {
-				// ignore
+		ChunkSqlDialect dialect = getDialect();
+		boolean overwritten;
+		try (Connection con = dataSource.getConnection()) {
+			if (dialect.isUpsert()) {
+				overwritten = upsertChunk(con, chunk);
+			} else {
+				// a resend of the chunk updates the existing chunk, otherwise we add our chunk
+				overwritten = updateChunk(con, chunk);
+				if (!overwritten) {
+					try {
+						insertChunk(con, chunk);
+					} catch (SQLException e) {
+						// a concurrent first store of the same chunk inserted it after our update, so we overwrite it.
+						if (!isDuplicateKey(e) || !updateChunk(con, chunk)) {
+							throw e;
+						}
+						overwritten = true;
+					}
+				}
 			}
-			insertChunk(chunk);
+		}
+		long inserts = overwritten ? insertCount.get() : insertCount.incrementAndGet();
+		long overwrites = overwritten ? overwriteCount.incrementAndGet() : overwriteCount.get();
+		if (metricsLogInterval > 0 && (inserts + overwrites) % metricsLogInterval == 0) {
+			log.info("Stored chunks inserted=" + inserts + " overwritten=" + overwrites);
 		}
 	}
 
@@ -70,6 +109,11 @@ public class ChunkDaoImpl implements ChunkDao {
 		return selectChunk(msgId, pos);
 	}
 
+	@Override
+	public List<Chunk> loadByMsgIdAndPosRange(String msgId, int fromPos, int toPos) throws SQLException {
+		return selectChunks(msgId, fromPos, toPos);
+	}
+
 	@Override
 	public void deleteByMsgId(String msgId) throws SQLException {
 		deleteMessage(msgId);
@@ -83,26 +127,97 @@ public class ChunkDaoImpl implements ChunkDao {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
-	private void insertChunk(Chunk chunk) throws SQLException {
-		try (Connection con = dataSource.getConnection()) {
-			String msgId = chunk.getMsgId();
-			String sql = getInsertSql(msgId);
-			try (PreparedStatement statement = con.prepareStatement(sql)) {
-				statement.setString(1, msgId);
-				statement.setInt(2, chunk.getPos());
-				statement.setString(3, chunk.getMac());
-				statement.setTimestamp(4, new Timestamp(chunk.getTtlTimestamp().getTime()));
-				Blob dataBlob = con.createBlob();
-				dataBlob.setBytes(1, chunk.getData());
-				statement.setBlob(5, dataBlob);
+	/**
+	 * Get the dialect of the driver of the current chunk partition.
+	 * 
+	 * @return the dialect, GENERIC if the partition's connection info is not known.
+	 */
+	private ChunkSqlDialect getDialect() {
+		if (partitionIdProvider == null || configurationProvider == null) {
+			return ChunkSqlDialect.GENERIC;
+		}
+		String partitionId = partitionIdProvider.getPartitionId();
+		DatabaseConnectionInfo ci = partitionId != null ? configurationProvider.getPartitionInfo(partitionId) : null;
+		return ChunkSqlDialect.forDriver(ci != null ? ci.getDriverClassname() : null);
+	}
 
-				statement.executeUpdate();
-			}
+	private void insertChunk(Connection con, Chunk chunk) throws SQLException {
+		String msgId = chunk.getMsgId();
+		String sql = getInsertSql(msgId);
+		try (PreparedStatement statement = con.prepareStatement(sql)) {
+			setChunkParameters(statement, chunk);
+
+			statement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Insert the chunk or overwrite the existing chunk with the same msgId and pos in one statement.
+	 * 
+	 * @param con
+	 * @param chunk
+	 * @return true if an existing chunk was overwritten.
+	 * @throws SQLException
+	 */
+	private boolean upsertChunk(Connection con, Chunk chunk) throws SQLException {
+		String msgId = chunk.getMsgId();
+		String sql = getUpsertSql(msgId);
+		try (PreparedStatement statement = con.prepareStatement(sql)) {
+			setChunkParameters(statement, chunk);
+
+			// MySQL reports 1 for an inserted row and 2 for an updated row. An identical resend leaves the row
+			// unchanged, which reports 0 and counts as overwrite, except when the connection sets CLIENT_FOUND_ROWS (
+			// Connector/J unless useAffectedRows=true ) where it reports 1 and counts as insert.
+			return statement.executeUpdate() != 1;
+		}
+	}
+
+	/**
+	 * Overwrite the existing chunk with the same msgId and pos.
+	 * 
+	 * @param con
+	 * @param chunk
+	 * @return true if an existing chunk was overwritten, false if there is no existing chunk.
+	 * @throws SQLException
+	 */
+	private boolean updateChunk(Connection con, Chunk chunk) throws SQLException {
+		String msgId = chunk.getMsgId();
+		String sql = getUpdateSql(msgId);
+		try (PreparedStatement statement = con.prepareStatement(sql)) {
+			statement.setString(1, chunk.getMac());
+			statement.setTimestamp(2, new Timestamp(chunk.getTtlTimestamp().getTime()));
+			byte[] data = chunk.getData();
+			statement.setBinaryStream(3, new ByteArrayInputStream(data), data.length);
+			statement.setString(4, msgId);
+			statement.setInt(5, chunk.getPos());
+
+			return statement.executeUpdate() > 0;
 		}
 	}
 
+	/**
+	 * Whether the exception is the violation of the unique key (msgId,pos), SQLState class 23.
+	 * 
+	 * @param e
+	 * @return true if the exception is a duplicate key.
+	 */
+	private boolean isDuplicateKey(SQLException e) {
+		return e instanceof SQLIntegrityConstraintViolationException
+				|| (e.getSQLState() != null && e.getSQLState().startsWith("23"));
+	}
+
+	private void setChunkParameters(PreparedStatement statement, Chunk chunk) throws SQLException {
+		statement.setString(1, chunk.getMsgId());
+		statement.setInt(2, chunk.getPos());
+		statement.setString(3, chunk.getMac());
+		statement.setTimestamp(4, new Timestamp(chunk.getTtlTimestamp().getTime()));
+		// stream the data to the driver rather than copying it into an intermediate Blob
+		byte[] data = chunk.getData();
+		statement.setBinaryStream(5, new ByteArrayInputStream(data), data.length);
+	}
+
 	private Chunk selectChunk(String msgId, int pos) throws SQLException {
-		Chunk result = new Chunk();
+		Chunk result = null;
 		try (Connection con = dataSource.getConnection()) {
 			String sql = getSelectSql(msgId);
 			try (PreparedStatement statement = con.prepareStatement(sql)) {
@@ -111,31 +226,71 @@ public class ChunkDaoImpl implements ChunkDao {
 
 				try (ResultSet rs = statement.executeQuery()) {
 					if (rs.next()) {
-						result.setMsgId(rs.getString(1));
-						result.setPos(rs.getInt(2));
-						result.setMac(rs.getString(3));
-						result.setTtlTimestamp(new Date(rs.getTimestamp(4).getTime()));
-						Blob dataBlob = rs.getBlob(5);
-						result.setData(dataBlob.getBytes(1, (int) dataBlob.length()));
+						result = mapChunk(rs);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	private List<Chunk> selectChunks(String msgId, int fromPos, int toPos) throws SQLException {
+		List<Chunk> result = new ArrayList<>();
+		try (Connection con = dataSource.getConnection()) {
+			String sql = getSelectRangeSql(msgId);
+			try (PreparedStatement statement = con.prepareStatement(sql)) {
+				statement.setString(1, msgId);
+				statement.setInt(2, fromPos);
+				statement.setInt(3, toPos);
+
+				try (ResultSet rs = statement.executeQuery()) {
+					while (rs.next()) {
+						Chunk c = mapChunk(rs);
+						if (c != null) {
+							result.add(c);
+						}
 					}
 				}
 			}
 		}
+		return result;
+	}
+
+	private Chunk mapChunk(ResultSet rs) throws SQLException {
+		Chunk result = new Chunk();
+		result.setMsgId(rs.getString(1));
+		result.setPos(rs.getInt(2));
+		result.setMac(rs.getString(3));
+		result.setTtlTimestamp(new Date(rs.getTimestamp(4).getTime()));
+		result.setData(readData(rs.getBlob(5)));
 		if (result.getMsgId() != null && result.getData() != null) {
 			return result;
 		}
 		return null;
 	}
 
-	private void deleteChunk(Chunk chunk) throws SQLException {
-		try (Connection con = dataSource.getConnection()) {
-			String msgId = chunk.getMsgId();
-			String sql = getDeleteChunkSql(msgId);
-			try (PreparedStatement statement = con.prepareStatement(sql)) {
-				statement.setString(1, msgId);
-				statement.setInt(2, chunk.getPos());
-				statement.executeUpdate();
+	/**
+	 * Read the Blob's data through its stream directly into a single array of the Blob's length, without intermediate
+	 * copies.
+	 * 
+	 * @param dataBlob
+	 * @return the data or null if no Blob.
+	 * @throws SQLException
+	 */
+	private byte[] readData(Blob dataBlob) throws SQLException {
+		if (dataBlob == null) {
+			return null;
+		}
+		try {
+			byte[] data = new byte[(int) dataBlob.length()];
+			try (InputStream is = dataBlob.getBinaryStream()) {
+				StreamUtils.fill(is, data, 0, data.length);
+			} catch (IOException e) {
+				throw new SQLException("Unable to read chunk data.", e);
 			}
+			return data;
+		} finally {
+			dataBlob.free();
 		}
 	}
 
@@ -153,12 +308,22 @@ public class ChunkDaoImpl implements ChunkDao {
 		return "INSERT INTO chunk_" + getTableNr(msgId) + " (msgId,pos,mac,ttl,data) values (?,?,?,?,?)";
 	}
 
+	private String getUpsertSql(String msgId) {
+		return getInsertSql(msgId)
+				+ " ON DUPLICATE KEY UPDATE mac = VALUES(mac), ttl = VALUES(ttl), data = VALUES(data)";
+	}
+
+	private String getUpdateSql(String msgId) {
+		return "UPDATE chunk_" + getTableNr(msgId) + " SET mac = ?, ttl = ?, data = ? WHERE msgId = ? and pos = ?";
+	}
+
 	private String getSelectSql(String msgId) {
 		return "SELECT msgId, pos, mac, ttl, data FROM chunk_" + getTableNr(msgId) + " WHERE msgId = ? and pos = ?";
 	}
 
-	private String getDeleteChunkSql(String msgId) {
-		return "DELETE FROM chunk_" + getTableNr(msgId) + " where msgId = ? and pos = ?";
+	private String getSelectRangeSql(String msgId) {
+		return "SELECT msgId, pos, mac, ttl, data FROM chunk_" + getTableNr(msgId)
+				+ " WHERE msgId = ? and pos >= ? and pos <= ? ORDER BY pos";
 	}
 
 	private String getDeleteMessageSql(String msgId) {
@@ -181,4 +346,42 @@ public class ChunkDaoImpl implements ChunkDao {
 		this.dataSource = dataSource;
 	}
 
+	public PartitionIdProvider getPartitionIdProvider() {
+		return partitionIdProvider;
+	}
+
+	public void setPartitionIdProvider(PartitionIdProvider partitionIdProvider) {
+		this.partitionIdProvider = partitionIdProvider;
+	}
+
+	public DataSourceConfigurationProvider getConfigurationProvider() {
+		return configurationProvider;
+	}
+
+	public void setConfigurationProvider(DataSourceConfigurationProvider configurationProvider) {
+		this.configurationProvider = configurationProvider;
+	}
+
+	/**
+	 * @return the number of chunks stored which did not exist before.
+	 */
+	public long getInsertCount() {
+		return insertCount.get();
+	}
+
+	/**
+	 * @return the number of chunks stored which overwrote an existing chunk ( resends ).
+	 */
+	public long getOverwriteCount() {
+		return overwriteCount.get();
+	}
+
+	public int getMetricsLogInterval() {
+		return metricsLogInterval;
+	}
+
+	public void setMetricsLogInterval(int metricsLogInterval) {
+		this.metricsLogInterval = metricsLogInterval;
+	}
+
 }
@@ -0,0 +1,617 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.chunk.dao;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.lib.chunk.domain.Chunk;
+
+/**
+ * An append-only store of Chunks in segment files within a single directory.
+ * 
+ * Each segment file is a sequence of records, either a chunk record or a delete record (tombstone). An in-memory index
+ * of msgId and pos to the location of the chunk's data in a segment is built when the store is opened by replaying
+ * all segments in order. Chunk data is read with a positional read of the segment's FileChannel.
+ * 
+ * A segment is removed once none of its chunks are referenced anymore, or when the ttl of all its records have
+ * passed. A removed segment is only closed and deleted once the last concurrent read of it has finished.
+ * 
+ * NOTE: the index is held in memory by a single store instance, so a directory must only be used by one store of one
+ * process at a time. This is enforced with an exclusive lock on a lock file in the directory when the store is opened.
+ * 
+ * @author Peter
+ * 
+ */
+public class ChunkSegmentStore {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(ChunkSegmentStore.class);
+
+	private static final String SEGMENT_PREFIX = "chunk-";
+	private static final String SEGMENT_SUFFIX = ".seg";
+	private static final String LOCK_FILE = "chunk.lock";
+
+	private static final byte RECORD_CHUNK = 1;
+	private static final byte RECORD_DELETE = 2;
+
+	private static final int ALL_POSITIONS = -1;
+
+	private final File directory;
+	private final long maxSegmentSize;
+	private final boolean syncOnWrite;
+
+	/**
+	 * msgId -> pos -> location.
+	 */
+	private final Map<String, Map<Integer, ChunkLocation>> index = new ConcurrentHashMap<>();
+	private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+	private Segment activeSegment;
+
+	private FileChannel lockChannel;
+	private FileLock lock;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	public ChunkSegmentStore(File directory, long maxSegmentSize, boolean syncOnWrite) {
+		this.directory = directory;
+		this.maxSegmentSize = maxSegmentSize;
+		this.syncOnWrite = syncOnWrite;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Open the store, replaying all existing segments to build the index.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void open() throws IOException {
+		if (!directory.exists() && !directory.mkdirs()) {
+			throw new IOException("Unable to create chunk directory " + directory);
+		}
+		lockDirectory();
+		File[] files = directory.listFiles();
+		Map<Long, File> segmentFiles = new TreeMap<>();
+		if (files != null) {
+			for (File f : files) {
+				Long segmentId = getSegmentId(f);
+				if (segmentId != null) {
+					segmentFiles.put(segmentId, f);
+				}
+			}
+		}
+		for (Map.Entry<Long, File> e : segmentFiles.entrySet()) {
+			Segment segment = new Segment(e.getKey(), e.getValue());
+			segments.put(segment.id, segment);
+			replay(segment);
+		}
+		// we always start appending to a new segment
+		roll();
+		log.info("Opened chunk store " + directory + " with " + segments.size() + " segments and " + index.size()
+				+ " messages.");
+	}
+
+	/**
+	 * Close the store and all its segments.
+	 */
+	public synchronized void close() {
+		for (Segment s : segments.values()) {
+			s.close();
+		}
+		segments.clear();
+		index.clear();
+		activeSegment = null;
+		unlockDirectory();
+	}
+
+	/**
+	 * Store the chunk, replacing any previously stored chunk with the same msgId and pos.
+	 * 
+	 * @param chunk
+	 * @return true if an existing chunk was overwritten.
+	 * @throws IOException
+	 */
+	public synchronized boolean store(Chunk chunk) throws IOException {
+		byte[] data = chunk.getData();
+		long ttl = chunk.getTtlTimestamp().getTime();
+		byte[] header = createHeader(RECORD_CHUNK, chunk.getMsgId(), chunk.getPos(), chunk.getMac(), ttl, data.length);
+
+		if (activeSegment.size + header.length + data.length > maxSegmentSize && activeSegment.size > 0) {
+			roll();
+		}
+		Segment segment = activeSegment;
+		long dataOffset = append(segment, header, data);
+		segment.liveChunks++;
+		segment.maxTtl = Math.max(segment.maxTtl, ttl);
+
+		ChunkLocation location = new ChunkLocation(segment, chunk.getPos(), chunk.getMac(), ttl, dataOffset,
+				data.length);
+		ChunkLocation previous = getPositions(chunk.getMsgId(), true).put(chunk.getPos(), location);
+		if (previous != null) {
+			release(previous);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Load the chunk.
+	 * 
+	 * @param msgId
+	 * @param pos
+	 * @return the chunk or null if not found.
+	 * @throws IOException
+	 */
+	public Chunk load(String msgId, int pos) throws IOException {
+		return read(msgId, pos);
+	}
+
+	/**
+	 * Load all chunks of the message between fromPos and toPos inclusive.
+	 * 
+	 * @param msgId
+	 * @param fromPos
+	 * @param toPos
+	 * @return the chunks found ordered by position.
+	 * @throws IOException
+	 */
+	public List<Chunk> load(String msgId, int fromPos, int toPos) throws IOException {
+		if (index.get(msgId) == null) {
+			return Collections.emptyList();
+		}
+		List<Chunk> result = new ArrayList<>();
+		for (int pos = fromPos; pos <= toPos; pos++) {
+			Chunk c = read(msgId, pos);
+			if (c != null) {
+				result.add(c);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Delete all chunks of the message.
+	 * 
+	 * @param msgId
+	 * @throws IOException
+	 */
+	public synchronized void delete(String msgId) throws IOException {
+		Map<Integer, ChunkLocation> positions = index.remove(msgId);
+		if (positions == null) {
+			return;
+		}
+		long maxTtl = 0;
+		for (ChunkLocation location : positions.values()) {
+			maxTtl = Math.max(maxTtl, location.ttl);
+		}
+		// the tombstone lives as long as the longest living chunk it deletes
+		byte[] header = createHeader(RECORD_DELETE, msgId, ALL_POSITIONS, "", maxTtl, 0);
+		if (activeSegment.size + header.length > maxSegmentSize && activeSegment.size > 0) {
+			roll();
+		}
+		append(activeSegment, header, null);
+		activeSegment.tombstones++;
+		activeSegment.maxTtl = Math.max(activeSegment.maxTtl, maxTtl);
+
+		for (ChunkLocation location : positions.values()) {
+			release(location);
+		}
+	}
+
+	/**
+	 * Remove all segments whose chunks are all deleted or have exceeded their ttl. An active segment whose records
+	 * have all expired is rolled first so that a store which never fills a segment also reclaims expired chunks.
+	 * 
+	 * @return the number of segments removed.
+	 * @throws IOException
+	 */
+	public synchronized int purgeExpired() throws IOException {
+		long now = System.currentTimeMillis();
+		if (activeSegment != null && activeSegment.size > 0 && activeSegment.maxTtl < now) {
+			newSegment();
+		}
+		int purged = 0;
+		for (Segment segment : new ArrayList<>(segments.values())) {
+			if (segment == activeSegment) {
+				continue;
+			}
+			if (segment.maxTtl < now) {
+				removeIndexEntries(segment);
+				removeSegment(segment);
+				purged++;
+			} else if (segment.liveChunks == 0 && segment.tombstones == 0) {
+				removeSegment(segment);
+				purged++;
+			}
+		}
+		return purged;
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private ChunkLocation getLocation(String msgId, int pos) {
+		Map<Integer, ChunkLocation> positions = index.get(msgId);
+		return positions != null ? positions.get(pos) : null;
+	}
+
+	private Chunk read(String msgId, int pos) throws IOException {
+		ChunkLocation location = getLocation(msgId, pos);
+		while (location != null && !location.segment.acquire()) {
+			// the segment was removed concurrently, the chunk may have been stored again in another segment.
+			ChunkLocation current = getLocation(msgId, pos);
+			if (current == location) {
+				return null;
+			}
+			location = current;
+		}
+		if (location == null) {
+			return null;
+		}
+		byte[] data = new byte[location.length];
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining()) {
+				if (location.segment.channel.read(buffer, location.offset + buffer.position()) < 0) {
+					throw new EOFException("Chunk " + msgId + ":" + pos + " truncated in " + location.segment.file);
+				}
+			}
+		} finally {
+			location.segment.releaseReader();
+		}
+		Chunk result = new Chunk();
+		result.setMsgId(msgId);
+		result.setPos(location.pos);
+		result.setMac(location.mac);
+		result.setTtlTimestamp(new Date(location.ttl));
+		result.setData(data);
+		return result;
+	}
+
+	private Map<Integer, ChunkLocation> getPositions(String msgId, boolean create) {
+		Map<Integer, ChunkLocation> positions = index.get(msgId);
+		if (positions == null && create) {
+			positions = new ConcurrentHashMap<>();
+			index.put(msgId, positions);
+		}
+		return positions;
+	}
+
+	private void release(ChunkLocation location) {
+		Segment segment = location.segment;
+		segment.liveChunks--;
+		if (segment.liveChunks == 0 && segment.tombstones == 0 && segment != activeSegment) {
+			removeSegment(segment);
+		}
+	}
+
+	private void removeIndexEntries(Segment segment) {
+		Iterator<Map.Entry<String, Map<Integer, ChunkLocation>>> it = index.entrySet().iterator();
+		while (it.hasNext()) {
+			Map<Integer, ChunkLocation> positions = it.next().getValue();
+			Iterator<ChunkLocation> pit = positions.values().iterator();
+			while (pit.hasNext()) {
+				if (pit.next().segment == segment) {
+					pit.remove();
+				}
+			}
+			if (positions.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
+
+	private void removeSegment(Segment segment) {
+		segments.remove(segment.id);
+		segment.remove();
+	}
+
+	private void roll() throws IOException {
+		newSegment();
+		purgeExpired();
+	}
+
+	private void newSegment() throws IOException {
+		long nextId = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+		Segment segment = new Segment(nextId, new File(directory, SEGMENT_PREFIX + nextId + SEGMENT_SUFFIX));
+		segments.put(segment.id, segment);
+		Segment previous = activeSegment;
+		activeSegment = segment;
+		if (previous != null && previous.liveChunks == 0 && previous.tombstones == 0) {
+			removeSegment(previous);
+		}
+	}
+
+	private void lockDirectory() throws IOException {
+		lockChannel = FileChannel.open(new File(directory, LOCK_FILE).toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.WRITE);
+		try {
+			lock = lockChannel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			lock = null;
+		}
+		if (lock == null) {
+			lockChannel.close();
+			lockChannel = null;
+			throw new IOException("Chunk directory " + directory + " is in use by another chunk store.");
+		}
+	}
+
+	private void unlockDirectory() {
+		if (lockChannel == null) {
+			return;
+		}
+		try {
+			if (lock != null) {
+				lock.release();
+			}
+			lockChannel.close();
+		} catch (IOException e) {
+			log.warn("Unable to release lock of chunk directory " + directory, e);
+		}
+		lock = null;
+		lockChannel = null;
+	}
+
+	private long append(Segment segment, byte[] header, byte[] data) throws IOException {
+		ByteBuffer[] buffers = data != null ? new ByteBuffer[] { ByteBuffer.wrap(header), ByteBuffer.wrap(data) }
+				: new ByteBuffer[] { ByteBuffer.wrap(header) };
+		long recordLength = header.length + (data != null ? data.length : 0);
+		segment.channel.position(segment.size);
+		long written = 0;
+		while (written < recordLength) {
+			written += segment.channel.write(buffers);
+		}
+		if (syncOnWrite) {
+			segment.channel.force(false);
+		}
+		long dataOffset = segment.size + header.length;
+		segment.size += recordLength;
+		return dataOffset;
+	}
+
+	private byte[] createHeader(byte type, String msgId, int pos, String mac, long ttl, int dataLength)
+			throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+		try (DataOutputStream dos = new DataOutputStream(bos)) {
+			dos.writeByte(type);
+			writeString(dos, msgId);
+			dos.writeInt(pos);
+			writeString(dos, mac);
+			dos.writeLong(ttl);
+			dos.writeInt(dataLength);
+		}
+		return bos.toByteArray();
+	}
+
+	private void writeString(DataOutputStream dos, String text) throws IOException {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		dos.writeShort(bytes.length);
+		dos.write(bytes);
+	}
+
+	private String readString(DataInputStream dis) throws IOException {
+		byte[] bytes = new byte[dis.readUnsignedShort()];
+		dis.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private void replay(Segment segment) throws IOException {
+		long now = System.currentTimeMillis();
+		long offset = 0;
+		try (DataInputStream dis = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(segment.file), 64 * 1024))) {
+			while (true) {
+				byte type;
+				try {
+					type = dis.readByte();
+				} catch (EOFException e) {
+					break;
+				}
+				String msgId = readString(dis);
+				int pos = dis.readInt();
+				String mac = readString(dis);
+				long ttl = dis.readLong();
+				int dataLength = dis.readInt();
+				long headerLength = 1 + 2 + msgId.getBytes(StandardCharsets.UTF_8).length + 4 + 2
+						+ mac.getBytes(StandardCharsets.UTF_8).length + 8 + 4;
+				long skipped = 0;
+				while (skipped < dataLength) {
+					long s = dis.skip(dataLength - skipped);
+					if (s <= 0) {
+						throw new EOFException();
+					}
+					skipped += s;
+				}
+				segment.maxTtl = Math.max(segment.maxTtl, ttl);
+				if (type == RECORD_CHUNK) {
+					// the newest record wins, expired chunks are not indexed but still replace older records.
+					ChunkLocation previous = null;
+					if (ttl >= now) {
+						segment.liveChunks++;
+						ChunkLocation location = new ChunkLocation(segment, pos, mac, ttl, offset + headerLength,
+								dataLength);
+						previous = getPositions(msgId, true).put(pos, location);
+					} else {
+						Map<Integer, ChunkLocation> positions = index.get(msgId);
+						if (positions != null) {
+							previous = positions.remove(pos);
+							if (positions.isEmpty()) {
+								index.remove(msgId);
+							}
+						}
+					}
+					if (previous != null) {
+						previous.segment.liveChunks--;
+					}
+				} else if (type == RECORD_DELETE) {
+					segment.tombstones++;
+					Map<Integer, ChunkLocation> positions = index.remove(msgId);
+					if (positions != null) {
+						for (ChunkLocation location : positions.values()) {
+							location.segment.liveChunks--;
+						}
+					}
+				}
+				offset += headerLength + dataLength;
+			}
+		} catch (EOFException e) {
+			// a partially written record at the end of the segment is discarded.
+			log.warn("Truncating incomplete record in chunk segment " + segment.file + " at " + offset);
+			segment.channel.truncate(offset);
+		}
+		segment.size = offset;
+	}
+
+	private Long getSegmentId(File f) {
+		String name = f.getName();
+		if (!f.isFile() || !name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+			return null;
+		}
+		try {
+			return Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static class Segment {
+		private final long id;
+		private final File file;
+		private final FileChannel channel;
+		private long size;
+		private long maxTtl;
+		private int liveChunks;
+		private int tombstones;
+		private int readers;
+		private boolean removed;
+
+		private Segment(long id, File file) throws IOException {
+			this.id = id;
+			this.file = file;
+			this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+					StandardOpenOption.WRITE);
+		}
+
+		private synchronized boolean acquire() {
+			if (removed) {
+				return false;
+			}
+			readers++;
+			return true;
+		}
+
+		private synchronized void releaseReader() {
+			readers--;
+			if (removed && readers == 0) {
+				delete();
+			}
+		}
+
+		private synchronized void remove() {
+			removed = true;
+			if (readers == 0) {
+				delete();
+			}
+		}
+
+		private void delete() {
+			close();
+			if (!file.delete()) {
+				log.warn("Unable to delete chunk segment " + file);
+			} else if (log.isDebugEnabled()) {
+				log.debug("Deleted chunk segment " + file);
+			}
+		}
+
+		private void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				log.warn("Unable to close chunk segment " + file, e);
+			}
+		}
+	}
+
+	private static class ChunkLocation {
+		private final Segment segment;
+		private final int pos;
+		private final String mac;
+		private final long ttl;
+		private final long offset;
+		private final int length;
+
+		private ChunkLocation(Segment segment, int pos, String mac, long ttl, long offset, int length) {
+			this.segment = segment;
+			this.pos = pos;
+			this.mac = mac;
+			this.ttl = ttl;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public File getDirectory() {
+		return directory;
+	}
+
+}
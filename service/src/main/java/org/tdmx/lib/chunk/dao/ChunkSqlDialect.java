@@ -0,0 +1,98 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.chunk.dao;
+
+/**
+ * The SQL dialect used to store chunks idempotently, determined by the JDBC driver of the chunk partition.
+ * 
+ * @author Peter
+ * 
+ */
+public enum ChunkSqlDialect {
+
+	/**
+	 * A single "INSERT ... ON DUPLICATE KEY UPDATE" against the unique key (msgId,pos).
+	 */
+	MYSQL(true, "com.mysql.jdbc.Driver", "com.mysql.cj.jdbc.Driver"),
+	/**
+	 * A conditional UPDATE followed by an INSERT only if no chunk was updated. If a concurrent store inserted the chunk
+	 * in between, the INSERT violates the unique key (msgId,pos) and the UPDATE is repeated.
+	 */
+	GENERIC(false);
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+
+	private final boolean upsert;
+	private final String[] driverClassnames;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	private ChunkSqlDialect(boolean upsert, String... driverClassnames) {
+		this.upsert = upsert;
+		this.driverClassnames = driverClassnames;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Get the dialect for the JDBC driver.
+	 * 
+	 * @param driverClassname
+	 * @return the dialect of the driver, GENERIC if the driver is unknown or null.
+	 */
+	public static ChunkSqlDialect forDriver(String driverClassname) {
+		if (driverClassname != null) {
+			for (ChunkSqlDialect d : values()) {
+				for (String dc : d.driverClassnames) {
+					if (dc.equals(driverClassname)) {
+						return d;
+					}
+				}
+			}
+		}
+		return GENERIC;
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public boolean isUpsert() {
+		return upsert;
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.chunk.dao;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import org.tdmx.lib.chunk.domain.Chunk;
+import org.tdmx.lib.control.datasource.PartitionIdProvider;
+import org.tdmx.lib.control.domain.DatabasePartition;
+import org.tdmx.lib.control.service.DatabasePartitionCache;
+
+/**
+ * Delegates to the ChunkDao backend of the chunk partition, which is shared via the PartitionIdProvider like for the
+ * DynamicDataSource. Partitions with a "file:" url are stored on the filesystem, all others in the database.
+ * 
+ * @author Peter
+ * 
+ */
+public class DynamicChunkDao implements ChunkDao {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+
+	private PartitionIdProvider partitionIdProvider;
+	private DatabasePartitionCache partitionCache;
+
+	private ChunkDao databaseChunkDao;
+	private ChunkDao fileChunkDao;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	@Override
+	public void store(Chunk chunk) throws SQLException {
+		getDelegate().store(chunk);
+	}
+
+	@Override
+	public Chunk loadByMsgIdAndPos(String msgId, int pos) throws SQLException {
+		return getDelegate().loadByMsgIdAndPos(msgId, pos);
+	}
+
+	@Override
+	public List<Chunk> loadByMsgIdAndPosRange(String msgId, int fromPos, int toPos) throws SQLException {
+		return getDelegate().loadByMsgIdAndPosRange(msgId, fromPos, toPos);
+	}
+
+	@Override
+	public void deleteByMsgId(String msgId) throws SQLException {
+		getDelegate().deleteByMsgId(msgId);
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private ChunkDao getDelegate() {
+		String partitionId = partitionIdProvider.getPartitionId();
+		if (partitionId != null && fileChunkDao != null) {
+			DatabasePartition partition = partitionCache.findByPartitionId(partitionId);
+			if (partition != null && FileChunkDaoImpl.isFileUrl(partition.getUrl())) {
+				return fileChunkDao;
+			}
+		}
+		return databaseChunkDao;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public PartitionIdProvider getPartitionIdProvider() {
+		return partitionIdProvider;
+	}
+
+	public void setPartitionIdProvider(PartitionIdProvider partitionIdProvider) {
+		this.partitionIdProvider = partitionIdProvider;
+	}
+
+	public DatabasePartitionCache getPartitionCache() {
+		return partitionCache;
+	}
+
+	public void setPartitionCache(DatabasePartitionCache partitionCache) {
+		this.partitionCache = partitionCache;
+	}
+
+	public ChunkDao getDatabaseChunkDao() {
+		return databaseChunkDao;
+	}
+
+	public void setDatabaseChunkDao(ChunkDao databaseChunkDao) {
+		this.databaseChunkDao = databaseChunkDao;
+	}
+
+	public ChunkDao getFileChunkDao() {
+		return fileChunkDao;
+	}
+
+	public void setFileChunkDao(ChunkDao fileChunkDao) {
+		this.fileChunkDao = fileChunkDao;
+	}
+
+}
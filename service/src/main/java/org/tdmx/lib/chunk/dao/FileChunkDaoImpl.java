@@ -0,0 +1,259 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.chunk.dao;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.core.system.lang.StringUtils;
+import org.tdmx.lib.chunk.domain.Chunk;
+import org.tdmx.lib.control.datasource.PartitionIdProvider;
+import org.tdmx.lib.control.domain.DatabasePartition;
+import org.tdmx.lib.control.job.NamedThreadFactory;
+import org.tdmx.lib.control.service.DatabasePartitionCache;
+
+/**
+ * A ChunkDao which stores chunks in append-only segment files on the local filesystem instead of in the database.
+ * 
+ * The chunk partition's url determines the directory of the partition's segment files, ie. "file:/var/tdmx/chunk1".
+ * A directory may only be used by a single server, since the store's index is held in memory.
+ * 
+ * Deleted and expired chunks are purged from all open stores every purgeIntervalSec.
+ * 
+ * @author Peter
+ * 
+ */
+public class FileChunkDaoImpl implements ChunkDao {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+	public static final String URL_PREFIX = "file:";
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(FileChunkDaoImpl.class);
+
+	private PartitionIdProvider partitionIdProvider;
+	private DatabasePartitionCache partitionCache;
+
+	private long maxSegmentSize = 1024L * 1024L * 1024L; // 1GB
+	private boolean syncOnWrite = true;
+	private int purgeIntervalSec = 3600;
+
+	private ScheduledExecutorService purgeScheduler;
+
+	private final Map<String, ChunkSegmentStore> storeMap = new ConcurrentHashMap<>();
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Whether the url of a chunk partition denotes a filesystem chunk store.
+	 * 
+	 * @param url
+	 * @return true if the url is a file url.
+	 */
+	public static boolean isFileUrl(String url) {
+		return StringUtils.hasText(url) && url.startsWith(URL_PREFIX);
+	}
+
+	@Override
+	public void store(Chunk chunk) throws SQLException {
+		try {
+			getStore().store(chunk);
+		} catch (IOException e) {
+			throw new SQLException("Unable to store " + chunk, e);
+		}
+	}
+
+	@Override
+	public Chunk loadByMsgIdAndPos(String msgId, int pos) throws SQLException {
+		try {
+			return getStore().load(msgId, pos);
+		} catch (IOException e) {
+			throw new SQLException("Unable to load chunk " + msgId + ":" + pos, e);
+		}
+	}
+
+	@Override
+	public List<Chunk> loadByMsgIdAndPosRange(String msgId, int fromPos, int toPos) throws SQLException {
+		try {
+			return getStore().load(msgId, fromPos, toPos);
+		} catch (IOException e) {
+			throw new SQLException("Unable to load chunks " + msgId + ":" + fromPos + "-" + toPos, e);
+		}
+	}
+
+	@Override
+	public void deleteByMsgId(String msgId) throws SQLException {
+		try {
+			getStore().delete(msgId);
+		} catch (IOException e) {
+			throw new SQLException("Unable to delete chunks of " + msgId, e);
+		}
+	}
+
+	public void init() {
+		purgeScheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("ChunkStorePurge"));
+		purgeScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				purgeExpired();
+			}
+		}, purgeIntervalSec, purgeIntervalSec, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Remove the segments of all open stores whose chunks have been deleted or have expired.
+	 */
+	public void purgeExpired() {
+		for (ChunkSegmentStore store : storeMap.values()) {
+			try {
+				int purged = store.purgeExpired();
+				if (purged > 0) {
+					log.info("Purged " + purged + " segments from " + store.getDirectory());
+				}
+			} catch (IOException | RuntimeException e) {
+				log.warn("Unable to purge chunk store " + store.getDirectory(), e);
+			}
+		}
+	}
+
+	/**
+	 * Stop purging and close all open stores.
+	 */
+	public void shutdown() {
+		if (purgeScheduler != null) {
+			purgeScheduler.shutdown();
+			try {
+				purgeScheduler.awaitTermination(60, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				log.warn("Interrupted whilst waiting for the chunk store purge to finish.", e);
+				Thread.currentThread().interrupt();
+			}
+			purgeScheduler = null;
+		}
+		for (ChunkSegmentStore store : storeMap.values()) {
+			store.close();
+		}
+		storeMap.clear();
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private ChunkSegmentStore getStore() throws SQLException {
+		String partitionId = partitionIdProvider.getPartitionId();
+		if (partitionId == null) {
+			throw new SQLException("No partitionId.");
+		}
+		DatabasePartition partition = partitionCache.findByPartitionId(partitionId);
+		if (partition == null || !isFileUrl(partition.getUrl())) {
+			throw new SQLException("No file chunk partition " + partitionId);
+		}
+		String directory = partition.getUrl().substring(URL_PREFIX.length());
+		ChunkSegmentStore store = storeMap.get(directory);
+		if (store == null) {
+			store = createStore(directory);
+		}
+		return store;
+	}
+
+	private synchronized ChunkSegmentStore createStore(String directory) throws SQLException {
+		// race condition avoidance
+		ChunkSegmentStore store = storeMap.get(directory);
+		if (store != null) {
+			return store;
+		}
+		store = new ChunkSegmentStore(new File(directory), maxSegmentSize, syncOnWrite);
+		try {
+			store.open();
+		} catch (IOException e) {
+			throw new SQLException("Unable to open chunk store " + directory, e);
+		}
+		storeMap.put(directory, store);
+		return store;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public PartitionIdProvider getPartitionIdProvider() {
+		return partitionIdProvider;
+	}
+
+	public void setPartitionIdProvider(PartitionIdProvider partitionIdProvider) {
+		this.partitionIdProvider = partitionIdProvider;
+	}
+
+	public DatabasePartitionCache getPartitionCache() {
+		return partitionCache;
+	}
+
+	public void setPartitionCache(DatabasePartitionCache partitionCache) {
+		this.partitionCache = partitionCache;
+	}
+
+	public long getMaxSegmentSize() {
+		return maxSegmentSize;
+	}
+
+	public void setMaxSegmentSize(long maxSegmentSize) {
+		this.maxSegmentSize = maxSegmentSize;
+	}
+
+	public boolean isSyncOnWrite() {
+		return syncOnWrite;
+	}
+
+	public void setSyncOnWrite(boolean syncOnWrite) {
+		this.syncOnWrite = syncOnWrite;
+	}
+
+	public int getPurgeIntervalSec() {
+		return purgeIntervalSec;
+	}
+
+	public void setPurgeIntervalSec(int purgeIntervalSec) {
+		this.purgeIntervalSec = purgeIntervalSec;
+	}
+
+}
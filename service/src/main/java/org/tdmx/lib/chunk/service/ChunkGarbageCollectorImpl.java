@@ -0,0 +1,185 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.chunk.service;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.lib.chunk.domain.ChunkReference;
+
+/**
+ * Implementation of the ChunkGarbageCollector with a bounded queue drained by a single background thread.
+ * 
+ * When the queue is full, the chunks are deleted on the calling thread, which slows down the producer instead of
+ * leaving orphaned chunks behind. Chunks still queued at shutdown are deleted before the collector stops.
+ * 
+ * @author Peter
+ * 
+ */
+public class ChunkGarbageCollectorImpl implements ChunkGarbageCollector, Runnable {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(ChunkGarbageCollectorImpl.class);
+
+	private ChunkService chunkService;
+
+	/**
+	 * The maximum number of messages whose chunks are waiting to be deleted.
+	 */
+	private int queueCapacity = 100000;
+
+	private BlockingQueue<ChunkReference> queue;
+	private Thread collector;
+	private volatile boolean running = false;
+
+	private final AtomicLong scheduled = new AtomicLong();
+	private final AtomicLong deleted = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	public void init() {
+		queue = new LinkedBlockingQueue<>(queueCapacity);
+		running = true;
+		collector = new Thread(this, "ChunkGC");
+		collector.setDaemon(true);
+		collector.start();
+	}
+
+	public void shutdown() {
+		running = false;
+		if (collector != null) {
+			collector.interrupt();
+			try {
+				collector.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			collector = null;
+		}
+		// delete what is left
+		if (queue != null) {
+			ChunkReference ref = null;
+			while ((ref = queue.poll()) != null) {
+				delete(ref);
+			}
+		}
+	}
+
+	@Override
+	public void schedule(List<ChunkReference> refs) {
+		for (ChunkReference ref : refs) {
+			scheduled.incrementAndGet();
+			if (!running || !queue.offer(ref)) {
+				delete(ref);
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		while (running || !queue.isEmpty()) {
+			try {
+				ChunkReference ref = queue.poll(1, TimeUnit.SECONDS);
+				if (ref != null) {
+					delete(ref);
+				}
+			} catch (InterruptedException e) {
+				if (!running) {
+					// the remaining chunks are deleted by shutdown.
+					return;
+				}
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private void delete(ChunkReference ref) {
+		try {
+			if (chunkService.deleteChunks(ref)) {
+				deleted.incrementAndGet();
+				return;
+			}
+		} catch (RuntimeException e) {
+			log.warn("Unable to delete chunks of " + ref, e);
+		}
+		failed.incrementAndGet();
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public long getScheduled() {
+		return scheduled.get();
+	}
+
+	public long getDeleted() {
+		return deleted.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public int getPending() {
+		return queue != null ? queue.size() : 0;
+	}
+
+	public ChunkService getChunkService() {
+		return chunkService;
+	}
+
+	public void setChunkService(ChunkService chunkService) {
+		this.chunkService = chunkService;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+}
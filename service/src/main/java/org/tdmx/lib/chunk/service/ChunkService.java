@@ -18,7 +18,10 @@
  */
 package org.tdmx.lib.chunk.service;
 
+import java.util.List;
+
 import org.tdmx.lib.chunk.domain.Chunk;
+import org.tdmx.lib.chunk.domain.ChunkReference;
 import org.tdmx.lib.zone.domain.ChannelMessage;
 
 /**
@@ -47,6 +50,18 @@ public interface ChunkService {
 	 */
 	public Chunk fetchChunk(ChannelMessage msg, int pos);
 
+	/**
+	 * Fetch the Chunks for the message with positions from fromPos to toPos (inclusive) in a single round trip to the
+	 * chunk partition.
+	 * 
+	 * @param msg
+	 * @param fromPos
+	 * @param toPos
+	 * @return the chunks found ordered by position, possibly with gaps where chunks are missing, or null if the fetch
+	 *         failed.
+	 */
+	public List<Chunk> fetchChunks(ChannelMessage msg, int fromPos, int toPos);
+
 	/**
 	 * Delete all chunks belonging to the message.
 	 * 
@@ -55,4 +70,12 @@ public interface ChunkService {
 	 */
 	public boolean deleteChunks(ChannelMessage msg);
 
+	/**
+	 * Delete all chunks belonging to a message which may no longer exist.
+	 * 
+	 * @param ref
+	 * @return true if all chunks were deleted.
+	 */
+	public boolean deleteChunks(ChunkReference ref);
+
 }
@@ -27,6 +27,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tdmx.lib.chunk.dao.ChunkDao;
 import org.tdmx.lib.chunk.domain.Chunk;
+import org.tdmx.lib.chunk.domain.ChunkReference;
 import org.tdmx.lib.control.datasource.ThreadLocalPartitionIdProvider;
 import org.tdmx.lib.control.domain.DatabasePartition;
 import org.tdmx.lib.control.domain.DatabaseType;
@@ -91,6 +92,20 @@ public class ChunkServiceRepositoryImpl implements ChunkService {
 		return null;
 	}
 
+	@Override
+	public List<Chunk> fetchChunks(ChannelMessage msg, int fromPos, int toPos) {
+		String partitionId = getPartitionId(msg);
+		partitionIdProvider.setPartitionId(partitionId);
+		try {
+			return chunkDao.loadByMsgIdAndPosRange(msg.getMsgId(), fromPos, toPos);
+		} catch (SQLException e) {
+			log.warn("Cannot fetch chunks " + msg.getMsgId() + ":" + fromPos + "-" + toPos, e);
+		} finally {
+			partitionIdProvider.clearPartitionId();
+		}
+		return null;
+	}
+
 	@Override
 	public boolean deleteChunks(ChannelMessage msg) {
 		String partitionId = getPartitionId(msg);
@@ -106,6 +121,21 @@ public class ChunkServiceRepositoryImpl implements ChunkService {
 		return true;
 	}
 
+	@Override
+	public boolean deleteChunks(ChunkReference ref) {
+		String partitionId = getPartitionId(ref.getSignatureDate(), ref.getMsgId());
+		partitionIdProvider.setPartitionId(partitionId);
+		try {
+			chunkDao.deleteByMsgId(ref.getMsgId());
+		} catch (SQLException e) {
+			log.warn("Cannot delete chunks for message " + ref.getMsgId(), e);
+			return false;
+		} finally {
+			partitionIdProvider.clearPartitionId();
+		}
+		return true;
+	}
+
 	// -------------------------------------------------------------------------
 	// PROTECTED METHODS
 	// -------------------------------------------------------------------------
@@ -115,19 +145,15 @@ public class ChunkServiceRepositoryImpl implements ChunkService {
 	// -------------------------------------------------------------------------
 
 	private String getPartitionId(ChannelMessage msg) {
+		return getPartitionId(msg.getSignature().getSignatureDate(), msg.getMsgId());
+	}
 
-		Date msgTs = msg.getSignature().getSignatureDate();
-
-		List<DatabasePartition> chunkDbs = partitionCache.getActiveAtTimestamp(DatabaseType.CHUNK, msgTs);
-		if (chunkDbs.isEmpty()) {
+	private String getPartitionId(Date msgTs, String msgId) {
+		DatabasePartition consistentHash = partitionCache.getActivePartitionAtTimestamp(DatabaseType.CHUNK, msgTs,
+				msgId);
+		if (consistentHash == null) {
 			throw new IllegalStateException("No available chunk partition found for " + msgTs);
 		}
-
-		String hex16bitMsgId = msg.getMsgId().substring(0, 4);
-		int hex16 = Integer.valueOf(hex16bitMsgId, 16);
-
-		DatabasePartition consistentHash = chunkDbs.get(hex16 % chunkDbs.size());
-
 		return consistentHash.getPartitionId();
 	}
 
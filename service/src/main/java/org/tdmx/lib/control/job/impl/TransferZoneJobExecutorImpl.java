@@ -26,13 +26,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tdmx.core.system.lang.StringUtils;
 import org.tdmx.lib.common.domain.PageSpecifier;
+import org.tdmx.lib.common.domain.ProcessingState;
+import org.tdmx.lib.common.domain.ProcessingStatus;
 import org.tdmx.lib.control.datasource.ThreadLocalPartitionIdProvider;
 import org.tdmx.lib.control.domain.AccountZone;
 import org.tdmx.lib.control.domain.ControlJob;
 import org.tdmx.lib.control.domain.ControlJobType;
+import org.tdmx.lib.control.domain.Segment;
 import org.tdmx.lib.control.job.JobExecutor;
 import org.tdmx.lib.control.job.JobPropertyName;
 import org.tdmx.lib.control.service.AccountZoneService;
+import org.tdmx.lib.control.service.SegmentService;
 import org.tdmx.lib.zone.domain.Address;
 import org.tdmx.lib.zone.domain.AddressSearchCriteria;
 import org.tdmx.lib.zone.domain.AgentCredential;
@@ -59,6 +63,9 @@ import org.tdmx.lib.zone.service.DestinationService;
 import org.tdmx.lib.zone.service.DomainService;
 import org.tdmx.lib.zone.service.ServiceService;
 import org.tdmx.lib.zone.service.ZoneService;
+import org.tdmx.server.cache.CacheInvalidationInstruction;
+import org.tdmx.server.cache.CacheInvalidationNotifier;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
 
 /**
  * Specific JobExecutor for {@link ControlJobType#TRANSFER_ZONE}
@@ -93,6 +100,8 @@ public class TransferZoneJobExecutorImpl implements JobExecutor {
 	private AgentCredentialService agentCredentialService;
 	private ChannelService channelService;
 	private DestinationService destinationService;
+	private SegmentService segmentService;
+	private CacheInvalidationNotifier cacheInvalidater;
 
 	private int batchSize = 1000;
 	// -------------------------------------------------------------------------
@@ -143,6 +152,8 @@ public class TransferZoneJobExecutorImpl implements JobExecutor {
 		az.setZonePartitionId(newPartitionId);
 		// TODO #86: updates the AccountZone status to allow access again
 		getAccountZoneService().createOrUpdate(az);
+		// the cached Zone entities still refer to the old partition, which is about to be emptied.
+		invalidateZoneEntities(az);
 
 		// delete the old data
 		deleteZoneDataInSource(oldZone, oldPartitionId);
@@ -157,6 +168,25 @@ public class TransferZoneJobExecutorImpl implements JobExecutor {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	/**
+	 * Invalidate the cached Zone entities of the AccountZone in the zone's segment.
+	 * 
+	 * @param az
+	 */
+	private void invalidateZoneEntities(AccountZone az) {
+		Segment s = segmentService.findBySegment(az.getSegment());
+		if (s == null) {
+			log.warn("Unable to invalidate zone " + az.getZoneApex() + ", segment " + az.getSegment() + " not found.");
+			return;
+		}
+		CacheInvalidationInstruction inst = CacheInvalidationInstruction
+				.newInstruction(CacheInvalidationInstruction.newID(), CacheName.ZoneEntity, az.getZoneApex());
+		ProcessingState ps = cacheInvalidater.invalidateCache(s, inst);
+		if (ps != null && ps.getStatus() == ProcessingStatus.FAILURE) {
+			log.warn("Unable to invalidate " + inst + " in segment " + s.getSegmentName() + " " + ps);
+		}
+	}
+
 	private void checkNoZoneExistsInTarget(Long accountId, String zoneApex, String newPartitionId) {
 		zonePartitionIdProvider.setPartitionId(newPartitionId);
 		try {
@@ -186,17 +216,14 @@ public class TransferZoneJobExecutorImpl implements JobExecutor {
 				}
 			}
 
-			more = true;
-			while (more) {
-				ChannelMessageSearchCriteria casc = new ChannelMessageSearchCriteria(
-						new PageSpecifier(0, getBatchSize()));
-				List<ChannelMessage> messages = channelService.search(zone, casc);
-				for (ChannelMessage m : messages) {
-					channelService.delete(m);
-				}
-				if (messages.isEmpty()) {
-					more = false;
-				}
+			// the messages were copied to the new partition with the same msgIds, so their chunks are kept.
+			long deletedMessages = 0;
+			int deleted = channelService.deleteMessages(zone, null, getBatchSize()).size();
+			while (deleted > 0) {
+				deletedMessages += deleted;
+				log.info("Deleted " + deletedMessages + " messages of " + zone + " in " + oldPartitionId);
+
+				deleted = channelService.deleteMessages(zone, null, getBatchSize()).size();
 			}
 
 			more = true;
@@ -737,6 +764,22 @@ public class TransferZoneJobExecutorImpl implements JobExecutor {
 		this.destinationService = destinationService;
 	}
 
+	public SegmentService getSegmentService() {
+		return segmentService;
+	}
+
+	public void setSegmentService(SegmentService segmentService) {
+		this.segmentService = segmentService;
+	}
+
+	public CacheInvalidationNotifier getCacheInvalidater() {
+		return cacheInvalidater;
+	}
+
+	public void setCacheInvalidater(CacheInvalidationNotifier cacheInvalidater) {
+		this.cacheInvalidater = cacheInvalidater;
+	}
+
 	public int getBatchSize() {
 		return batchSize;
 	}
@@ -48,4 +48,16 @@ public interface DatabasePartitionCache {
 	 * @return
 	 */
 	public List<DatabasePartition> getActiveAtTimestamp(DatabaseType type, Date timestamp);
+
+	/**
+	 * Get the DatabasePartition which a key is assigned to, out of the DatabasePartitions which are active at a specific
+	 * time. The keys are distributed over the active partitions by consistent hashing, except in time slices which
+	 * started before the consistent hashing cutover, which keep their original modulo mapping.
+	 * 
+	 * @param type
+	 * @param timestamp
+	 * @param key
+	 * @return the DatabasePartition or null if there is no active partition.
+	 */
+	public DatabasePartition getActivePartitionAtTimestamp(DatabaseType type, Date timestamp, String key);
 }
@@ -50,6 +50,15 @@ public class DatabasePartitionCacheImpl implements DatabasePartitionCache, Cache
 
 	private DatabasePartitionService databasePartitionService;
 
+	private int virtualNodes = DatabasePartitionHashRing.DEFAULT_VIRTUAL_NODES;
+
+	/**
+	 * Only time slices which start at or after the cutover distribute keys with the consistent hash ring. Earlier time
+	 * slices may already hold data, so they keep the legacy mapping of the key's first 16 bits modulo the number of
+	 * active partitions.
+	 */
+	private long hashRingCutoverTimestamp = Long.MAX_VALUE;
+
 	// internal
 	private Map<String, DatabasePartition> idMap; // partitionId->PartitionMap
 	private Map<DatabaseType, List<DatabaseSetTimeDimension>> typeMap; // dbType->{TimeDimension}
@@ -66,6 +75,7 @@ public class DatabasePartitionCacheImpl implements DatabasePartitionCache, Cache
 		private final long fromTimestamp;
 		private final long toTimestamp;
 		private List<DatabasePartition> activePartitions = new ArrayList<>();
+		private DatabasePartitionHashRing ring;
 
 		public DatabaseSetTimeDimension(long fromTS, long toTS) {
 			this.fromTimestamp = fromTS;
@@ -73,18 +83,21 @@ public class DatabasePartitionCacheImpl implements DatabasePartitionCache, Cache
 		}
 
 		/**
-		 * fix order and make unmodifiable.
+		 * make unmodifiable, keeping the order in which the partitions were loaded which the legacy mapping depends on,
+		 * and build the hash ring from the partitions ordered by partitionId.
 		 */
 		public void fix() {
-			Collections.sort(activePartitions, new Comparator<DatabasePartition>() {
+			activePartitions = Collections.unmodifiableList(activePartitions);
+
+			List<DatabasePartition> sortedPartitions = new ArrayList<>(activePartitions);
+			Collections.sort(sortedPartitions, new Comparator<DatabasePartition>() {
 
 				@Override
 				public int compare(DatabasePartition o1, DatabasePartition o2) {
 					return o1.getPartitionId().compareTo(o2.getPartitionId());
 				}
 			});
-
-			activePartitions = Collections.unmodifiableList(activePartitions);
+			ring = new DatabasePartitionHashRing(sortedPartitions, virtualNodes);
 		}
 
 		public void addActivePartition(DatabasePartition partition) {
@@ -95,6 +108,10 @@ public class DatabasePartitionCacheImpl implements DatabasePartitionCache, Cache
 			return activePartitions;
 		}
 
+		public DatabasePartitionHashRing getRing() {
+			return ring;
+		}
+
 		public long getFromTimestamp() {
 			return fromTimestamp;
 		}
@@ -127,18 +144,25 @@ public class DatabasePartitionCacheImpl implements DatabasePartitionCache, Cache
 
 	@Override
 	public List<DatabasePartition> getActiveAtTimestamp(DatabaseType type, Date timestamp) {
-		if (typeMap == null) {
-			fetchDatabasePartitions(false);
+		DatabaseSetTimeDimension dimension = getDimension(type, timestamp);
+		if (dimension == null) {
+			log.warn("Did not find active partitions for " + type + " at " + timestamp);
+			return Collections.emptyList();
 		}
-		List<DatabaseSetTimeDimension> dimensions = typeMap.get(type);
-		long ts = timestamp.getTime();
-		for (DatabaseSetTimeDimension dimension : dimensions) {
-			if (dimension.getFromTimestamp() <= ts && dimension.getToTimestamp() >= ts) {
-				return dimension.getActivePartitions();
-			}
+		return dimension.getActivePartitions();
+	}
+
+	@Override
+	public DatabasePartition getActivePartitionAtTimestamp(DatabaseType type, Date timestamp, String key) {
+		DatabaseSetTimeDimension dimension = getDimension(type, timestamp);
+		if (dimension == null) {
+			log.warn("Did not find active partitions for " + type + " at " + timestamp);
+			return null;
+		}
+		if (dimension.getFromTimestamp() >= hashRingCutoverTimestamp) {
+			return dimension.getRing().getPartition(key);
 		}
-		log.warn("Did not find active partitions for " + type + " at " + timestamp);
-		return Collections.emptyList();
+		return getLegacyPartition(dimension.getActivePartitions(), key);
 	}
 
 	// -------------------------------------------------------------------------
@@ -149,6 +173,55 @@ public class DatabasePartitionCacheImpl implements DatabasePartitionCache, Cache
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	/**
+	 * The partition mapping before consistent hashing: the first 16 bits of the hex key modulo the number of active
+	 * partitions, in the order in which the partitions were loaded from the DatabasePartitionService.
+	 * 
+	 * @param partitions
+	 * @param key
+	 * @return the partition or null if there is no active partition.
+	 */
+	private DatabasePartition getLegacyPartition(List<DatabasePartition> partitions, String key) {
+		if (partitions.isEmpty()) {
+			return null;
+		}
+		int hex16 = Integer.valueOf(key.substring(0, 4), 16);
+		return partitions.get(hex16 % partitions.size());
+	}
+
+	/**
+	 * Binary search of the time sorted dimensions for the one containing the timestamp.
+	 * 
+	 * @param type
+	 * @param timestamp
+	 * @return the dimension or null if none found.
+	 */
+	private DatabaseSetTimeDimension getDimension(DatabaseType type, Date timestamp) {
+		if (typeMap == null) {
+			fetchDatabasePartitions(false);
+		}
+		List<DatabaseSetTimeDimension> dimensions = typeMap.get(type);
+		long ts = timestamp.getTime();
+		int low = 0;
+		int high = dimensions.size() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			DatabaseSetTimeDimension dimension = dimensions.get(mid);
+			if (dimension.getToTimestamp() < ts) {
+				low = mid + 1;
+			} else if (dimension.getFromTimestamp() > ts) {
+				high = mid - 1;
+			} else {
+				// the earlier dimension takes precedence where dimensions meet
+				while (mid > 0 && dimensions.get(mid - 1).getToTimestamp() >= ts) {
+					mid--;
+				}
+				return dimensions.get(mid);
+			}
+		}
+		return null;
+	}
+
 	private synchronized void fetchDatabasePartitions(boolean forceFetch) {
 		if (idMap == null || typeMap == null || forceFetch) {
 			List<DatabasePartition> list = getDatabasePartitionService().findAll();
@@ -167,6 +240,9 @@ public class DatabasePartitionCacheImpl implements DatabasePartitionCache, Cache
 
 				List<DatabaseSetTimeDimension> dimensions = convertDatesToDimension(dates);
 				mergePartitionsIntoDimensions(partitions, dimensions);
+				for (DatabaseSetTimeDimension dimension : dimensions) {
+					dimension.fix();
+				}
 				localTypeMap.put(type, dimensions); // time sorted list of dimensions
 			}
 
@@ -267,4 +343,20 @@ public class DatabasePartitionCacheImpl implements DatabasePartitionCache, Cache
 		this.databasePartitionService = databasePartitionService;
 	}
 
+	public int getVirtualNodes() {
+		return virtualNodes;
+	}
+
+	public void setVirtualNodes(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+	}
+
+	public long getHashRingCutoverTimestamp() {
+		return hashRingCutoverTimestamp;
+	}
+
+	public void setHashRingCutoverTimestamp(long hashRingCutoverTimestamp) {
+		this.hashRingCutoverTimestamp = hashRingCutoverTimestamp;
+	}
+
 }
@@ -0,0 +1,135 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.control.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.tdmx.lib.control.domain.DatabasePartition;
+
+/**
+ * An immutable consistent hash ring over a set of DatabasePartitions.
+ * 
+ * Each partition is placed at a number of virtual node positions on the ring, derived from the hash of its
+ * partitionId. A key is assigned to the partition of the first virtual node at or after the key's hash position. Adding
+ * or removing one of N partitions therefore only remaps about 1/N of the keys.
+ * 
+ * @author Peter
+ * 
+ */
+public class DatabasePartitionHashRing {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+	public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final String HASH_ALGORITHM = "MD5";
+
+	private final int[] positions;
+	private final DatabasePartition[] partitions;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	public DatabasePartitionHashRing(List<DatabasePartition> partitionList, int virtualNodes) {
+		Map<Integer, DatabasePartition> ring = new TreeMap<>();
+		for (DatabasePartition partition : partitionList) {
+			for (int i = 0; i < virtualNodes; i++) {
+				int position = hash(partition.getPartitionId() + "#" + i);
+				DatabasePartition existing = ring.get(position);
+				// resolve the very unlikely collision deterministically
+				if (existing == null || existing.getPartitionId().compareTo(partition.getPartitionId()) > 0) {
+					ring.put(position, partition);
+				}
+			}
+		}
+		positions = new int[ring.size()];
+		partitions = new DatabasePartition[ring.size()];
+		int idx = 0;
+		for (Map.Entry<Integer, DatabasePartition> e : ring.entrySet()) {
+			positions[idx] = e.getKey();
+			partitions[idx] = e.getValue();
+			idx++;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Get the partition which the key is assigned to.
+	 * 
+	 * @param key
+	 * @return the partition or null if the ring is empty.
+	 */
+	public DatabasePartition getPartition(String key) {
+		if (positions.length == 0) {
+			return null;
+		}
+		int idx = Arrays.binarySearch(positions, hash(key));
+		if (idx < 0) {
+			// the insertion point is the first virtual node after the key
+			idx = -idx - 1;
+		}
+		if (idx == positions.length) {
+			// wrap around the ring
+			idx = 0;
+		}
+		return partitions[idx];
+	}
+
+	public boolean isEmpty() {
+		return positions.length == 0;
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private static int hash(String key) {
+		try {
+			MessageDigest md = MessageDigest.getInstance(HASH_ALGORITHM);
+			byte[] digest = md.digest(key.getBytes(StandardCharsets.UTF_8));
+			return ((digest[0] & 0xFF) << 24) | ((digest[1] & 0xFF) << 16) | ((digest[2] & 0xFF) << 8)
+					| (digest[3] & 0xFF);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(HASH_ALGORITHM + " not available.", e);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+}
@@ -20,6 +20,8 @@ package org.tdmx.lib.zone.dao;
 
 import java.util.List;
 
+import org.tdmx.lib.chunk.domain.ChunkReference;
+import org.tdmx.lib.zone.domain.Channel;
 import org.tdmx.lib.zone.domain.ChannelDestination;
 import org.tdmx.lib.zone.domain.ChannelMessage;
 import org.tdmx.lib.zone.domain.ChannelMessageSearchCriteria;
@@ -109,4 +111,51 @@ public interface MessageDao {
 	 * @return
 	 */
 	public List<Long> getReferences(Zone zone, MessageStatusSearchCriteria criteria, int maxResults);
+
+	/**
+	 * Return the ids of ChannelMessages of the zone, or only of the channel if provided.
+	 * 
+	 * @param zone
+	 * @param channel
+	 *            optional
+	 * @param maxResults
+	 * @return at most maxResults ChannelMessage ids.
+	 */
+	public List<Long> getMessageIds(Zone zone, Channel channel, int maxResults);
+
+	/**
+	 * Return the references to the chunks of the ChannelMessages.
+	 * 
+	 * @param msgIds
+	 *            ChannelMessage ids
+	 * @return the references to the chunks of the ChannelMessages.
+	 */
+	public List<ChunkReference> getChunkReferences(List<Long> msgIds);
+
+	/**
+	 * Delete the ChannelMessages and their MessageStates with set based statements, bypassing the persistence context.
+	 * 
+	 * @param msgIds
+	 *            ChannelMessage ids
+	 * @return the number of ChannelMessages deleted.
+	 */
+	public long deleteByIds(List<Long> msgIds);
+
+	/**
+	 * Return the total payload of the channel's ChannelMessages which use the channel's FlowQuota, which are all but
+	 * the ChannelMessages whose delivery is prepared.
+	 * 
+	 * @param channel
+	 * @return the payload bytes buffered in the channel.
+	 */
+	public long getBufferedPayloadBytes(Channel channel);
+
+	/**
+	 * Migrate ChannelMessages stored with the legacy PEM certificate chain columns to reference the shared
+	 * CertificateChains.
+	 * 
+	 * @param maxResults
+	 * @return the number of ChannelMessages migrated, 0 when none are left to migrate.
+	 */
+	public int migrateCertificateChains(int maxResults);
 }
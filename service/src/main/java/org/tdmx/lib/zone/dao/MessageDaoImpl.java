@@ -18,18 +18,23 @@
  */
 package org.tdmx.lib.zone.dao;
 
+import static org.tdmx.lib.zone.domain.QCertificateChain.certificateChain;
 import static org.tdmx.lib.zone.domain.QChannel.channel;
 import static org.tdmx.lib.zone.domain.QChannelMessage.channelMessage;
 import static org.tdmx.lib.zone.domain.QDomain.domain;
 import static org.tdmx.lib.zone.domain.QFlowQuota.flowQuota;
 import static org.tdmx.lib.zone.domain.QMessageState.messageState;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import org.tdmx.core.system.lang.StringUtils;
+import org.tdmx.lib.chunk.domain.ChunkReference;
+import org.tdmx.lib.zone.domain.CertificateChain;
+import org.tdmx.lib.zone.domain.Channel;
 import org.tdmx.lib.zone.domain.ChannelDestination;
 import org.tdmx.lib.zone.domain.ChannelMessage;
 import org.tdmx.lib.zone.domain.ChannelMessageSearchCriteria;
@@ -40,6 +45,8 @@ import org.tdmx.lib.zone.domain.MessageStatusSearchCriteria;
 import org.tdmx.lib.zone.domain.Zone;
 
 import com.mysema.query.QueryModifiers;
+import com.mysema.query.Tuple;
+import com.mysema.query.jpa.impl.JPADeleteClause;
 import com.mysema.query.jpa.impl.JPAQuery;
 import com.mysema.query.types.expr.BooleanExpression;
 
@@ -65,6 +72,13 @@ public class MessageDaoImpl implements MessageDao {
 
 	@Override
 	public void persist(ChannelMessage value) {
+		// messages still holding legacy PEM columns are left to migrateCertificateChains
+		if (value.getSenderCertificateChain() == null && value.getLegacySenderPem() == null) {
+			value.setSenderCertificateChain(intern(value.getSenderPem()));
+		}
+		if (value.getReceiverCertificateChain() == null && value.getLegacyReceiverPem() == null) {
+			value.setReceiverCertificateChain(intern(value.getReceiverPem()));
+		}
 		em.persist(value);
 	}
 
@@ -230,6 +244,77 @@ public class MessageDaoImpl implements MessageDao {
 		return query.list(messageState.id);
 	}
 
+	@Override
+	public List<Long> getMessageIds(Zone zone, Channel channel, int maxResults) {
+		if (zone == null) {
+			throw new IllegalArgumentException("missing zone");
+		}
+		JPAQuery query = new JPAQuery(em).from(channelMessage);
+		if (channel != null) {
+			query.where(channelMessage.channel.eq(channel));
+		} else {
+			query.innerJoin(channelMessage.state, messageState).where(messageState.zone.eq(zone));
+		}
+		query.restrict(new QueryModifiers((long) maxResults, 0L));
+		return query.list(channelMessage.id);
+	}
+
+	@Override
+	public List<ChunkReference> getChunkReferences(List<Long> msgIds) {
+		List<ChunkReference> result = new ArrayList<>(msgIds.size());
+		if (msgIds.isEmpty()) {
+			return result;
+		}
+		JPAQuery query = new JPAQuery(em).from(channelMessage).where(channelMessage.id.in(msgIds));
+		for (Tuple t : query.list(channelMessage.msgId, channelMessage.senderSignatureDate)) {
+			result.add(new ChunkReference(t.get(channelMessage.msgId), t.get(channelMessage.senderSignatureDate)));
+		}
+		return result;
+	}
+
+	@Override
+	public long deleteByIds(List<Long> msgIds) {
+		if (msgIds.isEmpty()) {
+			return 0;
+		}
+		// the MessageState is referenced by the ChannelMessage, so is deleted after it.
+		List<Long> stateIds = new JPAQuery(em).from(channelMessage).where(channelMessage.id.in(msgIds))
+				.list(channelMessage.state.id);
+
+		long deleted = new JPADeleteClause(em, channelMessage).where(channelMessage.id.in(msgIds)).execute();
+		if (!stateIds.isEmpty()) {
+			new JPADeleteClause(em, messageState).where(messageState.id.in(stateIds)).execute();
+		}
+		return deleted;
+	}
+
+	@Override
+	public long getBufferedPayloadBytes(Channel channel) {
+		if (channel == null) {
+			throw new IllegalArgumentException("missing channel");
+		}
+		Long bufferedBytes = new JPAQuery(em).from(channelMessage).innerJoin(channelMessage.state, messageState)
+				.where(channelMessage.channel.eq(channel).and(messageState.status.ne(MessageStatus.DOWNLOADED)))
+				.uniqueResult(channelMessage.payloadLength.sum());
+		return bufferedBytes != null ? bufferedBytes : 0;
+	}
+
+	@Override
+	public int migrateCertificateChains(int maxResults) {
+		JPAQuery query = new JPAQuery(em).from(channelMessage)
+				.where(channelMessage.legacySenderPem.isNotNull().or(channelMessage.legacyReceiverPem.isNotNull()));
+		query.restrict(new QueryModifiers((long) maxResults, 0L));
+		List<ChannelMessage> msgs = query.list(channelMessage);
+		for (ChannelMessage msg : msgs) {
+			CertificateChain senderChain = msg.getSenderCertificateChain() != null ? msg.getSenderCertificateChain()
+					: intern(msg.getLegacySenderPem());
+			CertificateChain receiverChain = msg.getReceiverCertificateChain() != null
+					? msg.getReceiverCertificateChain() : intern(msg.getLegacyReceiverPem());
+			msg.migrateCertificateChains(senderChain, receiverChain);
+		}
+		return msgs.size();
+	}
+
 	// -------------------------------------------------------------------------
 	// PROTECTED METHODS
 	// -------------------------------------------------------------------------
@@ -238,6 +323,30 @@ public class MessageDaoImpl implements MessageDao {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	/**
+	 * Find the CertificateChain with the PEM's fingerprint, or create it if it doesn't exist yet.
+	 * 
+	 * @param pem
+	 * @return the shared CertificateChain of the PEM, or null if pem is null.
+	 */
+	private CertificateChain intern(String pem) {
+		if (pem == null) {
+			return null;
+		}
+		String fingerprint = CertificateChain.fingerprint(pem);
+		JPAQuery query = new JPAQuery(em).from(certificateChain)
+				.where(certificateChain.fingerprint.eq(fingerprint));
+		query.restrict(new QueryModifiers((long) 1, null));
+		for (CertificateChain cc : query.list(certificateChain)) {
+			if (pem.equals(cc.getPem())) {
+				return cc;
+			}
+		}
+		CertificateChain cc = new CertificateChain(pem);
+		em.persist(cc);
+		return cc;
+	}
+
 	private BooleanExpression buildCriteria(Zone zone, MessageStatusSearchCriteria criteria) {
 		BooleanExpression where = messageState.zone.eq(zone);
 
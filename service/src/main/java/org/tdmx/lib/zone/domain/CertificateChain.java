@@ -0,0 +1,194 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.domain;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+
+import org.hibernate.annotations.Index;
+import org.tdmx.client.crypto.algorithm.DigestAlgorithm;
+import org.tdmx.client.crypto.certificate.CertificateIOUtils;
+import org.tdmx.client.crypto.certificate.PKIXCertificate;
+import org.tdmx.client.crypto.converters.ByteArray;
+import org.tdmx.client.crypto.converters.StringToUtf8;
+import org.tdmx.client.crypto.scheme.CryptoException;
+
+/**
+ * A CertificateChain is the content addressed storage of a PEM certificate chain which is referenced by many
+ * ChannelMessages, instead of each ChannelMessage holding it's own copy of the sender's and receiver's PEM.
+ * 
+ * The fingerprint is the SHA256 hash of the PEM. The decoded certificate chain is interned so that all messages of the
+ * same chain share one PKIXCertificate[] instance.
+ * 
+ * @author Peter Klauser
+ * 
+ */
+@Entity
+@Table(name = "CertificateChain")
+public class CertificateChain implements Serializable {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+	public static final int MAX_FINGERPRINT_LEN = 64;
+
+	/**
+	 * The maximum number of decoded certificate chains held in the interning cache.
+	 */
+	public static final int MAX_INTERNED_CHAINS = 10000;
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final long serialVersionUID = -7413062713405287719L;
+
+	private static final Map<String, PKIXCertificate[]> internedChains = new ConcurrentHashMap<>();
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Long id;
+
+	/**
+	 * The SHA256 hash of the PEM in hex. Not unique so that concurrent creation of the same chain doesn't fail a
+	 * transaction; any duplicate is just as good as the original.
+	 */
+	@Index(name = "IDX_CERTCHAIN_FINGERPRINT")
+	@Column(length = MAX_FINGERPRINT_LEN, nullable = false)
+	private String fingerprint;
+
+	@Column(length = AgentCredential.MAX_CERTIFICATECHAIN_LEN, nullable = false)
+	private String pem;
+
+	@Transient
+	private PKIXCertificate[] certificateChain;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	public CertificateChain() {
+	}
+
+	public CertificateChain(String pem) {
+		this.pem = pem;
+		this.fingerprint = fingerprint(pem);
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Calculate the fingerprint of a PEM certificate chain.
+	 * 
+	 * @param pem
+	 * @return the SHA256 hash of the PEM as hex, or null if pem is null.
+	 */
+	public static String fingerprint(String pem) {
+		if (pem == null) {
+			return null;
+		}
+		try {
+			return ByteArray.asHex(DigestAlgorithm.SHA_256.kdf(StringToUtf8.toBytes(pem)));
+		} catch (CryptoException e) {
+			throw new IllegalStateException("Unable to fingerprint certificate chain.", e);
+		}
+	}
+
+	/**
+	 * Get the PEM certificate chain in PKIXCertificate form, converting on the first call for any chain with the same
+	 * fingerprint. The returned array is shared and must not be modified.
+	 * 
+	 * @return the interned certificate chain.
+	 */
+	public PKIXCertificate[] getCertificateChain() {
+		if (certificateChain == null && pem != null) {
+			String key = fingerprint != null ? fingerprint : fingerprint(pem);
+			PKIXCertificate[] chain = internedChains.get(key);
+			if (chain == null) {
+				chain = CertificateIOUtils.safePemToX509certs(pem);
+				if (chain != null) {
+					if (internedChains.size() >= MAX_INTERNED_CHAINS) {
+						internedChains.clear();
+					}
+					internedChains.put(key, chain);
+				}
+			}
+			certificateChain = chain;
+		}
+		return certificateChain;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("CertificateChain [id=");
+		builder.append(id);
+		builder.append(", fingerprint=");
+		builder.append(fingerprint);
+		builder.append("]");
+		return builder.toString();
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public Long getId() {
+		return id;
+	}
+
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	public void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	public String getPem() {
+		return pem;
+	}
+
+	public void setPem(String pem) {
+		this.pem = pem;
+	}
+
+}
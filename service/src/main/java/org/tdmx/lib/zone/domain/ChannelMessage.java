@@ -21,12 +21,9 @@ package org.tdmx.lib.zone.domain;
 import java.io.Serializable;
 import java.util.Date;
 
-import javax.persistence.AttributeOverride;
-import javax.persistence.AttributeOverrides;
 import javax.persistence.Basic;
 import javax.persistence.CascadeType;
 import javax.persistence.Column;
-import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.EnumType;
 import javax.persistence.Enumerated;
@@ -42,6 +39,7 @@ import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import javax.persistence.Transient;
 
+import org.tdmx.client.crypto.algorithm.SignatureAlgorithm;
 import org.tdmx.client.crypto.certificate.CertificateIOUtils;
 import org.tdmx.client.crypto.certificate.CryptoCertificateException;
 import org.tdmx.client.crypto.certificate.PKIXCertificate;
@@ -57,6 +55,9 @@ import org.tdmx.core.api.v01.mrs.ws.MRS;
  * FlowControl permits sending on the originating side, and when relayed in with
  * {@link MRS#relay(org.tdmx.core.api.v01.mrs.Relay)} at the destination side.
  * 
+ * The sender's and receiver's certificate chains are not stored with each message but referenced as shared
+ * {@link CertificateChain}s. The sender's signature is stored decomposed and re-assembled in {@link #getSignature()}.
+ * 
  * @author Peter Klauser
  * 
  */
@@ -94,10 +95,18 @@ public class ChannelMessage implements Serializable {
 	private Date ttlTimestamp;
 
 	/**
-	 * The public certificate of the receiving User.
+	 * The public certificate of the receiving User. Null only for messages stored before the certificate chains were
+	 * shared, until they are migrated.
 	 */
-	@Column(length = AgentCredential.MAX_CERTIFICATECHAIN_LEN, nullable = false)
-	private String receiverPem;
+	@ManyToOne(fetch = FetchType.EAGER)
+	private CertificateChain receiverCertificateChain;
+
+	/**
+	 * The receiver's PEM certificate chain of messages stored before the certificate chains were shared, null once
+	 * migrated to the receiverCertificateChain.
+	 */
+	@Column(name = "receiverPem", length = AgentCredential.MAX_CERTIFICATECHAIN_LEN)
+	private String legacyReceiverPem;
 
 	@Column(length = DestinationSession.MAX_IDENTIFIER_LEN, nullable = false)
 	private String encryptionContextId;
@@ -106,13 +115,30 @@ public class ChannelMessage implements Serializable {
 	@Column(length = DestinationSession.MAX_SCHEME_LEN, nullable = false)
 	private IntegratedCryptoScheme scheme;
 
-	@Embedded
-	@AttributeOverrides({
-			@AttributeOverride(name = "signatureDate", column = @Column(name = "senderSignatureDate", nullable = false) ),
-			@AttributeOverride(name = "certificateChainPem", column = @Column(name = "senderPem", length = AgentCredential.MAX_CERTIFICATECHAIN_LEN, nullable = false) ),
-			@AttributeOverride(name = "value", column = @Column(name = "senderSignature", length = AgentSignature.MAX_SIGNATURE_LEN, nullable = false) ),
-			@AttributeOverride(name = "algorithm", column = @Column(name = "senderSignatureAlgorithm", length = AgentSignature.MAX_SIG_ALG_LEN, nullable = false) ) })
-	private AgentSignature signature;
+	/**
+	 * The public certificate of the sending User. Null only for messages stored before the certificate chains were
+	 * shared, until they are migrated.
+	 */
+	@ManyToOne(fetch = FetchType.EAGER)
+	private CertificateChain senderCertificateChain;
+
+	/**
+	 * The sender's PEM certificate chain of messages stored before the certificate chains were shared, null once
+	 * migrated to the senderCertificateChain.
+	 */
+	@Column(name = "senderPem", length = AgentCredential.MAX_CERTIFICATECHAIN_LEN)
+	private String legacySenderPem;
+
+	@Column(nullable = false)
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date senderSignatureDate;
+
+	@Column(length = AgentSignature.MAX_SIGNATURE_LEN, nullable = false)
+	private String senderSignature;
+
+	@Enumerated(EnumType.STRING)
+	@Column(length = AgentSignature.MAX_SIG_ALG_LEN, nullable = false)
+	private SignatureAlgorithm senderSignatureAlgorithm;
 
 	@Column(length = MAX_EXTREF_LEN)
 	private String externalReference;
@@ -157,6 +183,15 @@ public class ChannelMessage implements Serializable {
 	@OneToOne(optional = false, fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
 	private MessageState state;
 
+	@Transient
+	private String receiverPem;
+
+	@Transient
+	private String senderPem;
+
+	@Transient
+	private AgentSignature signature;
+
 	@Transient
 	private PKIXCertificate[] receiverChain;
 
@@ -179,10 +214,11 @@ public class ChannelMessage implements Serializable {
 		// header fields
 		this.msgId = other.getMsgId();
 		this.ttlTimestamp = other.getTtlTimestamp();
+		// the certificate chains are re-referenced in the partition the clone is persisted in
 		this.receiverPem = other.getReceiverPem();
 		this.encryptionContextId = other.getEncryptionContextId();
 		this.scheme = other.getScheme();
-		this.signature = other.getSignature();
+		setSignature(other.getSignature());
 		this.externalReference = other.getExternalReference();
 		// payload fields
 		this.payloadLength = other.getPayloadLength();
@@ -217,8 +253,8 @@ public class ChannelMessage implements Serializable {
 		builder.append(" msgId=").append(msgId);
 		builder.append(" ttlTimestamp=").append(ttlTimestamp);
 		builder.append(" scheme=").append(scheme);
-		if (signature != null) {
-			builder.append(" sentAt=").append(signature.getSignatureDate());
+		if (senderSignatureDate != null) {
+			builder.append(" sentAt=").append(senderSignatureDate);
 		}
 		builder.append(" payloadLength=").append(payloadLength);
 		builder.append("]");
@@ -241,12 +277,53 @@ public class ChannelMessage implements Serializable {
 	 * @throws CryptoCertificateException
 	 */
 	public PKIXCertificate[] getReceiverChain() {
+		if (receiverChain == null && receiverCertificateChain != null) {
+			receiverChain = receiverCertificateChain.getCertificateChain();
+		}
 		if (receiverChain == null && getReceiverPem() != null) {
 			receiverChain = CertificateIOUtils.safePemToX509certs(getReceiverPem());
 		}
 		return receiverChain;
 	}
 
+	/**
+	 * Get the PEM certificate chain of the sender, either set with the signature, from the referenced
+	 * CertificateChain or from the legacy column if not yet migrated.
+	 * 
+	 * @return the sender's PEM certificate chain.
+	 */
+	public String getSenderPem() {
+		if (senderPem == null && senderCertificateChain != null) {
+			senderPem = senderCertificateChain.getPem();
+		}
+		if (senderPem == null) {
+			senderPem = legacySenderPem;
+		}
+		return senderPem;
+	}
+
+	/**
+	 * Whether the message was stored with the legacy PEM columns and not yet migrated to shared CertificateChains.
+	 * 
+	 * @return true if the legacy PEM certificate chains still need migrating.
+	 */
+	public boolean hasLegacyCertificateChains() {
+		return legacySenderPem != null || legacyReceiverPem != null;
+	}
+
+	/**
+	 * Replace the legacy PEM columns with references to the shared CertificateChains.
+	 * 
+	 * @param senderChain
+	 * @param receiverChain
+	 */
+	public void migrateCertificateChains(CertificateChain senderChain, CertificateChain receiverChain) {
+		this.senderCertificateChain = senderChain;
+		this.receiverCertificateChain = receiverChain;
+		this.legacySenderPem = null;
+		this.legacyReceiverPem = null;
+	}
+
 	// -------------------------------------------------------------------------
 	// PROTECTED METHODS
 	// -------------------------------------------------------------------------
@@ -332,19 +409,76 @@ public class ChannelMessage implements Serializable {
 	}
 
 	public AgentSignature getSignature() {
+		if (signature == null && senderSignatureDate != null) {
+			AgentSignature s = new AgentSignature();
+			s.setSignatureDate(senderSignatureDate);
+			s.setValue(senderSignature);
+			s.setAlgorithm(senderSignatureAlgorithm);
+			s.setCertificateChainPem(getSenderPem());
+			signature = s;
+		}
 		return signature;
 	}
 
 	public void setSignature(AgentSignature signature) {
 		this.signature = signature;
+		this.senderSignatureDate = signature != null ? signature.getSignatureDate() : null;
+		this.senderSignature = signature != null ? signature.getValue() : null;
+		this.senderSignatureAlgorithm = signature != null ? signature.getAlgorithm() : null;
+		this.senderPem = signature != null ? signature.getCertificateChainPem() : null;
+		this.senderCertificateChain = null;
 	}
 
 	public String getReceiverPem() {
+		if (receiverPem == null && receiverCertificateChain != null) {
+			receiverPem = receiverCertificateChain.getPem();
+		}
+		if (receiverPem == null) {
+			receiverPem = legacyReceiverPem;
+		}
 		return receiverPem;
 	}
 
 	public void setReceiverPem(String receiverPem) {
 		this.receiverPem = receiverPem;
+		this.receiverChain = null;
+		this.receiverCertificateChain = null;
+	}
+
+	public CertificateChain getReceiverCertificateChain() {
+		return receiverCertificateChain;
+	}
+
+	public void setReceiverCertificateChain(CertificateChain receiverCertificateChain) {
+		this.receiverCertificateChain = receiverCertificateChain;
+	}
+
+	public CertificateChain getSenderCertificateChain() {
+		return senderCertificateChain;
+	}
+
+	public void setSenderCertificateChain(CertificateChain senderCertificateChain) {
+		this.senderCertificateChain = senderCertificateChain;
+	}
+
+	public String getLegacyReceiverPem() {
+		return legacyReceiverPem;
+	}
+
+	public void setLegacyReceiverPem(String legacyReceiverPem) {
+		this.legacyReceiverPem = legacyReceiverPem;
+	}
+
+	public String getLegacySenderPem() {
+		return legacySenderPem;
+	}
+
+	public void setLegacySenderPem(String legacySenderPem) {
+		this.legacySenderPem = legacySenderPem;
+	}
+
+	public Date getSenderSignatureDate() {
+		return senderSignatureDate;
 	}
 
 	public String getMacOfMacs() {
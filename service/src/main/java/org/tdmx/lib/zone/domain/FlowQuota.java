@@ -20,6 +20,7 @@ package org.tdmx.lib.zone.domain;
 
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.Date;
 
 import javax.persistence.AttributeOverride;
 import javax.persistence.AttributeOverrides;
@@ -34,6 +35,8 @@ import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
 
 import org.tdmx.lib.common.domain.ProcessingState;
 import org.tdmx.lib.common.domain.ProcessingStatus;
@@ -52,6 +55,7 @@ public class FlowQuota implements Serializable {
 	// -------------------------------------------------------------------------
 	// PUBLIC CONSTANTS
 	// -------------------------------------------------------------------------
+	public static final int MAX_ACCUMULATOR_ID_LEN = 64;
 
 	// -------------------------------------------------------------------------
 	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
@@ -105,6 +109,13 @@ public class FlowQuota implements Serializable {
 	@Column
 	private Integer redeliveryDelaySec;
 
+	// the node which accumulates the buffer changes in memory, writing them behind, until the lease expires.
+	@Column(length = MAX_ACCUMULATOR_ID_LEN)
+	private String accumulatorId;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	private Date accumulatorLeaseUntil;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
@@ -233,6 +244,8 @@ public class FlowQuota implements Serializable {
 		builder.append(", maxPlaintextSizeBytes=").append(maxPlaintextSizeBytes);
 		builder.append(", maxRedeliveryCount=").append(maxRedeliveryCount);
 		builder.append(", redeliveryDelaySec=").append(redeliveryDelaySec);
+		builder.append(", accumulatorId=").append(accumulatorId);
+		builder.append(", accumulatorLeaseUntil=").append(accumulatorLeaseUntil);
 		builder.append(", ps=").append(processingState);
 		builder.append("]");
 		return builder.toString();
@@ -334,4 +347,20 @@ public class FlowQuota implements Serializable {
 		this.redeliveryDelaySec = redeliveryDelaySec;
 	}
 
+	public String getAccumulatorId() {
+		return accumulatorId;
+	}
+
+	public void setAccumulatorId(String accumulatorId) {
+		this.accumulatorId = accumulatorId;
+	}
+
+	public Date getAccumulatorLeaseUntil() {
+		return accumulatorLeaseUntil;
+	}
+
+	public void setAccumulatorLeaseUntil(Date accumulatorLeaseUntil) {
+		this.accumulatorLeaseUntil = accumulatorLeaseUntil;
+	}
+
 }
@@ -0,0 +1,44 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import org.tdmx.client.crypto.certificate.PKIXCertificate;
+
+/**
+ * A cache of validated AgentCredentials which needs to forget credentials whose certificates are revoked.
+ * 
+ * @author Peter
+ * 
+ */
+public interface AgentCredentialCache {
+
+	/**
+	 * Remove all cached credentials whose certificate chain contains the certificate.
+	 * 
+	 * @param cert
+	 *            the revoked certificate.
+	 */
+	public void removeCertificate(PKIXCertificate cert);
+
+	/**
+	 * Remove all cached credentials.
+	 */
+	public void clear();
+
+}
@@ -0,0 +1,355 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.client.crypto.algorithm.DigestAlgorithm;
+import org.tdmx.client.crypto.certificate.PKIXCertificate;
+import org.tdmx.client.crypto.converters.ByteArray;
+import org.tdmx.client.crypto.scheme.CryptoException;
+import org.tdmx.lib.zone.domain.AgentCredentialDescriptor;
+
+/**
+ * An AgentCredentialFactory which caches the validated AgentCredentialDescriptors of the delegate factory.
+ * 
+ * The same credential chains are presented on every MOS submit and MRS relay, and decoding and PKIX validating them each
+ * time dominates the cost of these calls. The cache is keyed by the SHA256 hashes of the DER encoding of each
+ * certificate of the chain, so a hit needs no decoding. Only valid credentials are cached, and a cached credential
+ * expires when the first certificate of it's chain expires. The cached descriptors are shared and must not be
+ * modified.
+ * 
+ * Revoked certificates are removed with {@link #removeCertificate(PKIXCertificate)}. When the cache exceeds its
+ * maxSize, expired credentials and the least recently used tenth of the credentials are evicted.
+ * 
+ * @author Peter
+ * 
+ */
+public class CachingAgentCredentialFactoryImpl implements AgentCredentialFactory, AgentCredentialCache {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(CachingAgentCredentialFactoryImpl.class);
+
+	private static final int EVICTION_FRACTION = 10;
+
+	private AgentCredentialFactory delegate;
+	private int maxSize = DEFAULT_MAX_SIZE;
+
+	private final Map<String, CachedCredential> cache = new ConcurrentHashMap<>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong revocations = new AtomicLong();
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	@Override
+	public AgentCredentialDescriptor createAgentCredential(X509Certificate... certChain) {
+		if (certChain == null) {
+			return delegate.createAgentCredential(certChain);
+		}
+		byte[][] encodedChain = new byte[certChain.length][];
+		for (int i = 0; i < certChain.length; i++) {
+			if (certChain[i] == null) {
+				return delegate.createAgentCredential(certChain);
+			}
+			try {
+				encodedChain[i] = certChain[i].getEncoded();
+			} catch (CertificateEncodingException e) {
+				return delegate.createAgentCredential(certChain);
+			}
+		}
+		String key = getKey(encodedChain);
+		AgentCredentialDescriptor acd = lookup(key);
+		if (acd == null) {
+			acd = store(key, delegate.createAgentCredential(certChain));
+		}
+		return acd;
+	}
+
+	@Override
+	public AgentCredentialDescriptor createAgentCredential(PKIXCertificate... certChain) {
+		if (certChain == null) {
+			return delegate.createAgentCredential(certChain);
+		}
+		byte[][] encodedChain = new byte[certChain.length][];
+		for (int i = 0; i < certChain.length; i++) {
+			if (certChain[i] == null) {
+				return delegate.createAgentCredential(certChain);
+			}
+			encodedChain[i] = certChain[i].getX509Encoded();
+		}
+		String key = getKey(encodedChain);
+		AgentCredentialDescriptor acd = lookup(key);
+		if (acd == null) {
+			acd = store(key, delegate.createAgentCredential(certChain));
+		}
+		return acd;
+	}
+
+	@Override
+	public AgentCredentialDescriptor createAgentCredential(byte[]... certChain) {
+		String key = getKey(certChain);
+		AgentCredentialDescriptor acd = lookup(key);
+		if (acd == null) {
+			acd = store(key, delegate.createAgentCredential(certChain));
+		}
+		return acd;
+	}
+
+	@Override
+	public void removeCertificate(PKIXCertificate cert) {
+		if (cert == null) {
+			return;
+		}
+		String fingerprint = cert.getFingerprint();
+		int removed = 0;
+		Iterator<CachedCredential> it = cache.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().containsFingerprint(fingerprint)) {
+				it.remove();
+				removed++;
+			}
+		}
+		if (removed > 0) {
+			revocations.addAndGet(removed);
+			log.info("Removed " + removed + " cached credentials of revoked certificate " + fingerprint);
+		}
+	}
+
+	@Override
+	public void clear() {
+		cache.clear();
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * The key of a certificate chain, or null if the chain cannot be cached.
+	 * 
+	 * @param encodedChain
+	 * @return the joined hashes of the DER encoded certificates.
+	 */
+	private String getKey(byte[][] encodedChain) {
+		if (encodedChain == null || encodedChain.length == 0) {
+			return null;
+		}
+		StringBuilder key = new StringBuilder();
+		for (byte[] encoded : encodedChain) {
+			if (encoded == null) {
+				return null;
+			}
+			try {
+				if (key.length() > 0) {
+					key.append(":");
+				}
+				key.append(ByteArray.asHex(DigestAlgorithm.SHA_256.kdf(encoded)));
+			} catch (CryptoException e) {
+				log.warn("Unable to hash certificate.", e);
+				return null;
+			}
+		}
+		return key.toString();
+	}
+
+	private AgentCredentialDescriptor lookup(String key) {
+		if (key == null) {
+			return null;
+		}
+		CachedCredential cached = cache.get(key);
+		if (cached != null) {
+			if (!cached.isExpired(System.currentTimeMillis())) {
+				hits.incrementAndGet();
+				return cached.getCredential();
+			}
+			cache.remove(key);
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	private AgentCredentialDescriptor store(String key, AgentCredentialDescriptor acd) {
+		if (key == null || acd == null || acd.getCertificateChain() == null) {
+			// invalid credentials are not cached so that the delegate logs why they are invalid.
+			return acd;
+		}
+		PKIXCertificate[] chain = acd.getCertificateChain();
+		String[] fingerprints = new String[chain.length];
+		long notAfter = Long.MAX_VALUE;
+		for (int i = 0; i < chain.length; i++) {
+			fingerprints[i] = chain[i].getFingerprint();
+			Calendar certNotAfter = chain[i].getNotAfter();
+			if (certNotAfter == null) {
+				return acd;
+			}
+			notAfter = Math.min(notAfter, certNotAfter.getTimeInMillis());
+		}
+		cache.put(key, new CachedCredential(acd, fingerprints, notAfter));
+		if (cache.size() > maxSize) {
+			evict();
+		}
+		return acd;
+	}
+
+	private synchronized void evict() {
+		// race condition avoidance
+		if (cache.size() <= maxSize) {
+			return;
+		}
+		int evicted = 0;
+		long now = System.currentTimeMillis();
+		Iterator<CachedCredential> it = cache.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().isExpired(now)) {
+				it.remove();
+				evicted++;
+			}
+		}
+		if (cache.size() > maxSize) {
+			// the lastUsed times are snapshot since they change concurrently
+			List<Long> lastUsedTimes = new ArrayList<>();
+			for (CachedCredential cc : cache.values()) {
+				lastUsedTimes.add(cc.getLastUsed());
+			}
+			Collections.sort(lastUsedTimes);
+			int evictCount = Math.min(lastUsedTimes.size(),
+					lastUsedTimes.size() - maxSize + maxSize / EVICTION_FRACTION);
+			long evictBefore = lastUsedTimes.get(Math.max(evictCount - 1, 0));
+
+			it = cache.values().iterator();
+			while (it.hasNext()) {
+				if (it.next().getLastUsed() <= evictBefore) {
+					it.remove();
+					evicted++;
+				}
+			}
+		}
+		evictions.addAndGet(evicted);
+	}
+
+	/**
+	 * A helper value type holding a validated credential, the fingerprints of it's chain, the time it expires and the
+	 * time it was last used.
+	 */
+	private static class CachedCredential {
+		private final AgentCredentialDescriptor credential;
+		private final String[] fingerprints;
+		private final long notAfter;
+		private volatile long lastUsed = System.nanoTime();
+
+		private CachedCredential(AgentCredentialDescriptor credential, String[] fingerprints, long notAfter) {
+			this.credential = credential;
+			this.fingerprints = fingerprints;
+			this.notAfter = notAfter;
+		}
+
+		private AgentCredentialDescriptor getCredential() {
+			lastUsed = System.nanoTime();
+			return credential;
+		}
+
+		private boolean containsFingerprint(String fingerprint) {
+			for (String fp : fingerprints) {
+				if (fp.equals(fingerprint)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean isExpired(long now) {
+			return now > notAfter;
+		}
+
+		private long getLastUsed() {
+			return lastUsed;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public long getRevocations() {
+		return revocations.get();
+	}
+
+	public int getSize() {
+		return cache.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public AgentCredentialFactory getDelegate() {
+		return delegate;
+	}
+
+	public void setDelegate(AgentCredentialFactory delegate) {
+		this.delegate = delegate;
+	}
+
+}
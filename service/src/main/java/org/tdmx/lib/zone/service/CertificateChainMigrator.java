@@ -0,0 +1,181 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.lib.control.datasource.ThreadLocalPartitionIdProvider;
+import org.tdmx.lib.control.domain.DatabasePartition;
+import org.tdmx.lib.control.domain.DatabaseType;
+import org.tdmx.lib.control.service.DatabasePartitionService;
+
+import com.googlecode.protobuf.pro.duplex.util.RenamingThreadFactoryProxy;
+
+/**
+ * Migrates the ChannelMessages of all ZoneDB partitions which were stored with the legacy PEM certificate chain
+ * columns to reference the shared CertificateChains, once after startup and in batches through the
+ * {@link ChannelService}. Until migrated, the ChannelMessages read their certificate chains from the legacy columns.
+ * 
+ * @author Peter
+ * 
+ */
+public class CertificateChainMigrator {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(CertificateChainMigrator.class);
+
+	private ChannelService channelService;
+	private DatabasePartitionService databasePartitionService;
+	private ThreadLocalPartitionIdProvider partitionIdProvider;
+
+	private int startDelaySec = 60;
+	private int batchSize = 100;
+
+	private ScheduledExecutorService migrationScheduler;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	public void init() {
+		migrationScheduler = Executors.newSingleThreadScheduledExecutor(
+				new RenamingThreadFactoryProxy("CertificateChainMigration", Executors.defaultThreadFactory()));
+		migrationScheduler.schedule(new Runnable() {
+			@Override
+			public void run() {
+				migrate();
+			}
+		}, startDelaySec, TimeUnit.SECONDS);
+	}
+
+	public void shutdown() {
+		if (migrationScheduler != null) {
+			migrationScheduler.shutdownNow();
+			migrationScheduler = null;
+		}
+	}
+
+	/**
+	 * Migrate the ChannelMessages of every ZoneDB partition until none are left with legacy certificate chains.
+	 * 
+	 * @return the total number of ChannelMessages migrated.
+	 */
+	public long migrate() {
+		long total = 0;
+		for (DatabasePartition partition : databasePartitionService.findAll()) {
+			if (DatabaseType.ZONE != partition.getDbType()) {
+				continue;
+			}
+			try {
+				total += migrate(partition.getPartitionId());
+			} catch (RuntimeException e) {
+				log.warn("Unable to migrate certificate chains of partition " + partition.getPartitionId(), e);
+			}
+		}
+		return total;
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private long migrate(String partitionId) {
+		long migrated = 0;
+		partitionIdProvider.setPartitionId(partitionId);
+		try {
+			int batch;
+			do {
+				if (Thread.currentThread().isInterrupted()) {
+					break;
+				}
+				batch = channelService.migrateCertificateChains(batchSize);
+				migrated += batch;
+			} while (batch > 0);
+		} finally {
+			partitionIdProvider.clearPartitionId();
+		}
+		if (migrated > 0) {
+			log.info("Migrated certificate chains of " + migrated + " messages in partition " + partitionId);
+		}
+		return migrated;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public ChannelService getChannelService() {
+		return channelService;
+	}
+
+	public void setChannelService(ChannelService channelService) {
+		this.channelService = channelService;
+	}
+
+	public DatabasePartitionService getDatabasePartitionService() {
+		return databasePartitionService;
+	}
+
+	public void setDatabasePartitionService(DatabasePartitionService databasePartitionService) {
+		this.databasePartitionService = databasePartitionService;
+	}
+
+	public ThreadLocalPartitionIdProvider getPartitionIdProvider() {
+		return partitionIdProvider;
+	}
+
+	public void setPartitionIdProvider(ThreadLocalPartitionIdProvider partitionIdProvider) {
+		this.partitionIdProvider = partitionIdProvider;
+	}
+
+	public int getStartDelaySec() {
+		return startDelaySec;
+	}
+
+	public void setStartDelaySec(int startDelaySec) {
+		this.startDelaySec = startDelaySec;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+}
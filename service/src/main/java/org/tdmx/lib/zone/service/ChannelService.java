@@ -23,6 +23,7 @@ import java.util.List;
 import org.tdmx.core.api.v01.mds.ws.MDS;
 import org.tdmx.core.api.v01.mrs.ws.MRS;
 import org.tdmx.core.api.v01.scs.ws.SCS;
+import org.tdmx.lib.chunk.domain.ChunkReference;
 import org.tdmx.lib.common.domain.ProcessingState;
 import org.tdmx.lib.zone.domain.Channel;
 import org.tdmx.lib.zone.domain.ChannelAuthorization;
@@ -315,6 +316,22 @@ public interface ChannelService {
 	 */
 	public void delete(ChannelMessage message);
 
+	/**
+	 * Delete a batch of ChannelMessages of the zone, or only of the channel if provided, with set based statements in a
+	 * single transaction. Callers delete all messages by calling this repeatedly until nothing is returned.
+	 * 
+	 * NOTE: the chunks of the deleted messages are not deleted, the caller must schedule their deletion with the
+	 * {@link org.tdmx.lib.chunk.service.ChunkGarbageCollector} once the transaction has committed.
+	 * 
+	 * @param zone
+	 * @param channel
+	 *            optional
+	 * @param batchSize
+	 *            the maximum number of messages to delete.
+	 * @return the references to the chunks of the deleted messages, empty if there were no messages left.
+	 */
+	public List<ChunkReference> deleteMessages(Zone zone, Channel channel, int batchSize);
+
 	public enum SubmitMessageOperationStatus {
 		MESSAGE_TOO_LARGE,
 		NOT_ENOUGH_QUOTA_AVAILABLE,
@@ -551,6 +568,32 @@ public interface ChannelService {
 	 */
 	public FlowQuota updateStatusFlowQuota(Long quotaId, ProcessingState newState);
 
+	/**
+	 * Write the FlowQuota buffer changes accumulated in memory to the locked FlowQuota.
+	 * 
+	 * @param quotaId
+	 *            id of the channel's FlowQuota.
+	 */
+	public void flushFlowQuota(Long quotaId);
+
+	/**
+	 * Reconcile the locked FlowQuota's buffer with the payload of the channel's messages held, correcting the changes
+	 * accumulated in memory which were lost.
+	 * 
+	 * @param quotaId
+	 *            id of the channel's FlowQuota.
+	 */
+	public void reconcileFlowQuota(Long quotaId);
+
+	/**
+	 * Migrate a batch of ChannelMessages stored with the legacy PEM certificate chain columns to reference the shared
+	 * CertificateChains.
+	 * 
+	 * @param batchSize
+	 * @return the number of ChannelMessages migrated, 0 when none are left to migrate.
+	 */
+	public int migrateCertificateChains(int batchSize);
+
 	/**
 	 * Update the ProcessingState of a MessageState.
 	 * 
@@ -29,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.transaction.annotation.Transactional;
 import org.tdmx.core.system.lang.StringUtils;
+import org.tdmx.lib.chunk.domain.ChunkReference;
 import org.tdmx.lib.common.domain.PageSpecifier;
 import org.tdmx.lib.common.domain.ProcessingState;
 import org.tdmx.lib.common.domain.ProcessingStatus;
@@ -83,6 +84,11 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 	private ServiceDao serviceDao;
 	private AgentCredentialDao agentCredentialDao;
 
+	/**
+	 * Optionally accumulates the FlowQuota buffer changes in memory, instead of locking the FlowQuota for each message.
+	 */
+	private FlowQuotaAccumulator flowQuotaAccumulator;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
@@ -364,6 +370,18 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 		}
 	}
 
+	@Override
+	@Transactional(value = "ZoneDB")
+	public List<ChunkReference> deleteMessages(Zone zone, Channel channel, int batchSize) {
+		List<Long> msgIds = messageDao.getMessageIds(zone, channel, batchSize);
+		if (msgIds.isEmpty()) {
+			return new ArrayList<>();
+		}
+		List<ChunkReference> chunks = messageDao.getChunkReferences(msgIds);
+		messageDao.deleteByIds(msgIds);
+		return chunks;
+	}
+
 	@Override
 	@Transactional(value = "ZoneDB", readOnly = true)
 	public List<Channel> search(Zone zone, ChannelAuthorizationSearchCriteria criteria) {
@@ -410,7 +428,7 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 			existingMsg.getState().setStatus(MessageStatus.DELETED);
 			messageDao.delete(existingMsg);
 
-			result.flowQuota = channelDao.lock(existingMsg.getChannel().getQuota().getId());
+			result.flowQuota = lockQuota(existingMsg.getChannel().getQuota().getId());
 			result.flowControlOpened = result.flowQuota.reduceBufferOnReceive(existingMsg.getPayloadLength());
 			// we can fall below the low mark but and if we do then the flow control is opened.
 		} else {
@@ -460,7 +478,7 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 			// limit max size of message to authorized max
 			// checked by MOS on submit of message and MRS on relay of message.
 			result.status = SubmitMessageOperationStatus.MESSAGE_TOO_LARGE;
-		} else if (!quota.hasAvailableQuotaFor(requiredQuota)) {
+		} else if (!quota.hasAvailableQuotaFor(requiredQuota + getPendingQuota(quota.getId()))) {
 			// we can exceed the high mark but if we do then we set flow control to closed.
 			result.status = SubmitMessageOperationStatus.NOT_ENOUGH_QUOTA_AVAILABLE;
 		}
@@ -492,8 +510,10 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 			totalPayloadSize += msg.getPayloadLength();
 		}
 		// reduce the available quota for all the messages sent in the tx together.
-		FlowQuota quota = channelDao.lock(channel.getQuota().getId());
-		quota.incrementBufferOnSend(totalPayloadSize);
+		if (accumulateQuota(channel.getQuota().getId(), FlowQuotaChange.SEND, totalPayloadSize, null) == null) {
+			FlowQuota quota = lockQuota(channel.getQuota().getId());
+			quota.incrementBufferOnSend(totalPayloadSize);
+		}
 	}
 
 	@Override
@@ -514,8 +534,10 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 			totalPayloadSize += msg.getPayloadLength();
 		}
 		// reduce the available quota for all the messages sent in the tx together.
-		FlowQuota quota = channelDao.lock(channel.getQuota().getId());
-		quota.incrementBufferOnSend(totalPayloadSize);
+		if (accumulateQuota(channel.getQuota().getId(), FlowQuotaChange.SEND, totalPayloadSize, null) == null) {
+			FlowQuota quota = lockQuota(channel.getQuota().getId());
+			quota.incrementBufferOnSend(totalPayloadSize);
+		}
 	}
 
 	@Override
@@ -612,7 +634,7 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 
 		// reduce the available quota for all the messages sent in the tx together.
 		for (Map.Entry<Channel, Long> channelQuota : quotaMap.entrySet()) {
-			FlowQuota quota = channelDao.lock(channelQuota.getKey().getQuota().getId());
+			FlowQuota quota = lockQuota(channelQuota.getKey().getQuota().getId());
 			quota.reduceBuffer(channelQuota.getValue());
 		}
 		return result;
@@ -645,8 +667,14 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 		// persist the message, READY state, no ProcessingState
 		create(msg);
 
+		FlowQuota knownQuota = accumulateQuota(msg.getChannel().getQuota().getId(), FlowQuotaChange.RELAY_IN,
+				msg.getPayloadLength(), null);
+		if (knownQuota != null) {
+			// within the flow control limits, the relay status doesn't change
+			return knownQuota;
+		}
 		// get and lock quota and check we can recv
-		FlowQuota quota = channelDao.lock(msg.getChannel().getQuota().getId());
+		FlowQuota quota = lockQuota(msg.getChannel().getQuota().getId());
 		// we can exceed the high mark but if we do then we set flow control to closed.
 		quota.incrementBufferOnRelay(msg.getPayloadLength());
 
@@ -659,8 +687,12 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 		// we delete the channel message and it's state.
 		delete(msg);
 
+		if (accumulateQuota(msg.getChannel().getQuota().getId(), FlowQuotaChange.RELAY_OUT, msg.getPayloadLength(),
+				relayStatus) != null) {
+			return;
+		}
 		// get and lock quota, reduce unsent buffer on origin side
-		FlowQuota quota = channelDao.lock(msg.getChannel().getQuota().getId());
+		FlowQuota quota = lockQuota(msg.getChannel().getQuota().getId());
 		quota.reduceBuffer(msg.getPayloadLength());
 		// update other side's relay status too
 		quota.setRelayStatus(relayStatus);
@@ -677,15 +709,23 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 		existingMsg.getState().setStatus(MessageStatus.DELETED);
 		messageDao.delete(existingMsg);
 
-		FlowQuota quota = channelDao.lock(msg.getChannel().getQuota().getId());
+		ReceiveMessageResultHolder result = new ReceiveMessageResultHolder();
+		result.msg = existingMsg;
+		if (accumulateQuota(msg.getChannel().getQuota().getId(), FlowQuotaChange.RECEIVE, msg.getPayloadLength(),
+				null) != null) {
+			// within the flow control limits, the flow control doesn't open
+			result.flowQuota = null;
+			result.flowControlOpened = false;
+			return result;
+		}
+
+		FlowQuota quota = lockQuota(msg.getChannel().getQuota().getId());
 
 		// lock quota, increase available quota, set flow control status opened if crossing low limit
 		boolean openedRelayFC = quota.reduceBufferOnReceive(msg.getPayloadLength());
 
-		ReceiveMessageResultHolder result = new ReceiveMessageResultHolder();
 		result.flowQuota = quota;
 		result.flowControlOpened = openedRelayFC;
-		result.msg = existingMsg;
 		return result;
 	}
 
@@ -700,7 +740,7 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 		}
 
 		ReceiveMessageResultHolder result = new ReceiveMessageResultHolder();
-		result.flowQuota = channelDao.lock(msg.getChannel().getQuota().getId());
+		result.flowQuota = lockQuota(msg.getChannel().getQuota().getId());
 		result.flowControlOpened = false;
 		result.msg = existingMsg;
 
@@ -730,7 +770,7 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 			throw new IllegalStateException("Message " + msg.getMsgId() + " not found.");
 		}
 		ReceiveMessageResultHolder result = new ReceiveMessageResultHolder();
-		result.flowQuota = channelDao.lock(msg.getChannel().getQuota().getId());
+		result.flowQuota = lockQuota(msg.getChannel().getQuota().getId());
 		result.flowControlOpened = false;
 		result.msg = existingMsg;
 
@@ -814,7 +854,7 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 					state.setRedeliverAfter(redeliverTime.getTime());
 
 					// put back the used quota
-					FlowQuota quota = channelDao.lock(state.getMsg().getChannel().getQuota().getId());
+					FlowQuota quota = lockQuota(state.getMsg().getChannel().getQuota().getId());
 					// we can exceed the high mark but if we do then we set flow control to closed.
 					quota.incrementBufferOnRelay(state.getMsg().getPayloadLength());
 				}
@@ -944,7 +984,7 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 	@Override
 	@Transactional(value = "ZoneDB")
 	public FlowQuota updateStatusFlowQuota(Long quotaId, ProcessingState newState) {
-		FlowQuota fc = channelDao.lock(quotaId);
+		FlowQuota fc = lockQuota(quotaId);
 		fc.setProcessingState(newState);
 		return fc;
 	}
@@ -952,12 +992,49 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 	@Override
 	@Transactional(value = "ZoneDB")
 	public FlowQuota relayFlowControlOpen(Zone zone, Long quotaId) {
-		FlowQuota fc = channelDao.lock(quotaId);
+		FlowQuota fc = lockQuota(quotaId);
 		fc.setRelayStatus(FlowControlStatus.OPEN);
 		fc.setProcessingState(ProcessingState.pending());
 		return fc;
 	}
 
+	@Override
+	@Transactional(value = "ZoneDB")
+	public void flushFlowQuota(Long quotaId) {
+		lockQuota(quotaId);
+	}
+
+	@Override
+	@Transactional(value = "ZoneDB")
+	public void reconcileFlowQuota(Long quotaId) {
+		FlowQuota quota = channelDao.lock(quotaId);
+		if (flowQuotaAccumulator == null || !flowQuotaAccumulator.reconcileTo(quotaId, quota)) {
+			return;
+		}
+		// the buffer holds the messages not yet relayed on the sending side, or not yet received on the receiving side.
+		Channel channel = quota.getChannel();
+		long bufferedBytes = messageDao.getBufferedPayloadBytes(channel);
+		long deltaBytes = bufferedBytes - quota.getUsedBytes().longValue();
+		if (deltaBytes == 0) {
+			return;
+		}
+		log.warn("Reconciling FlowQuota " + quotaId + " used " + quota.getUsedBytes() + " with buffered messages "
+				+ bufferedBytes);
+		FlowQuotaChange change;
+		if (channel.isRecv()) {
+			change = deltaBytes > 0 ? FlowQuotaChange.RELAY_IN : FlowQuotaChange.RECEIVE;
+		} else {
+			change = deltaBytes > 0 ? FlowQuotaChange.SEND : FlowQuotaChange.RELAY_OUT;
+		}
+		change.applyWriteBehind(quota, Math.abs(deltaBytes));
+	}
+
+	@Override
+	@Transactional(value = "ZoneDB")
+	public int migrateCertificateChains(int batchSize) {
+		return messageDao.migrateCertificateChains(batchSize);
+	}
+
 	// -------------------------------------------------------------------------
 	// PROTECTED METHODS
 	// -------------------------------------------------------------------------
@@ -966,6 +1043,31 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	/**
+	 * Lock the FlowQuota, applying any buffer changes accumulated in memory so that the flow control decision is taken on
+	 * the whole buffer.
+	 * 
+	 * @param quotaId
+	 * @return the locked FlowQuota.
+	 */
+	private FlowQuota lockQuota(Long quotaId) {
+		FlowQuota quota = channelDao.lock(quotaId);
+		if (flowQuotaAccumulator != null) {
+			flowQuotaAccumulator.applyTo(quotaId, quota);
+		}
+		return quota;
+	}
+
+	private FlowQuota accumulateQuota(Long quotaId, FlowQuotaChange change, long bytes,
+			FlowControlStatus relayStatus) {
+		return flowQuotaAccumulator != null ? flowQuotaAccumulator.accumulate(quotaId, change, bytes, relayStatus)
+				: null;
+	}
+
+	private long getPendingQuota(Long quotaId) {
+		return flowQuotaAccumulator != null ? flowQuotaAccumulator.getPendingBytes(quotaId) : 0;
+	}
+
 	private void setChannelDestinationSession(Zone zone, Channel channel, DestinationSession destinationSession) {
 		channel.setSession(destinationSession);
 		// on the receiving side, we need to relay new Channel DestinationSessions to the sending side, except if we are
@@ -990,6 +1092,14 @@ public class ChannelServiceRepositoryImpl implements ChannelService {
 		this.channelDao = channelDao;
 	}
 
+	public FlowQuotaAccumulator getFlowQuotaAccumulator() {
+		return flowQuotaAccumulator;
+	}
+
+	public void setFlowQuotaAccumulator(FlowQuotaAccumulator flowQuotaAccumulator) {
+		this.flowQuotaAccumulator = flowQuotaAccumulator;
+	}
+
 	public MessageDao getMessageDao() {
 		return messageDao;
 	}
@@ -0,0 +1,98 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import org.tdmx.lib.zone.domain.FlowControlStatus;
+import org.tdmx.lib.zone.domain.FlowQuota;
+
+/**
+ * Accumulates the changes of the FlowQuota buffers in memory, so that sending, relaying and receiving messages doesn't
+ * need to lock the channel's FlowQuota in the ZoneDB for each message. The accumulated changes are written behind to
+ * the ZoneDB in batches. Changes which cross the flow control limits, flipping the FlowControlStatus, are always applied
+ * to the locked FlowQuota.
+ * 
+ * Only the node which holds the lease of a FlowQuota accumulates its changes, all other nodes change the locked
+ * FlowQuota. The lease is taken by the first node locking the FlowQuota once the lease of the previous node expires,
+ * and is renewed with each write.
+ * 
+ * The accumulated changes are held for the FlowQuota of the ZoneDB partition associated with the current thread.
+ * 
+ * @author Peter
+ * 
+ */
+public interface FlowQuotaAccumulator {
+
+	/**
+	 * Reserve a change of the quota's buffer, if this node holds the lease of the quota and the last known state of the
+	 * quota together with all reserved changes shows that the change doesn't cross the flow control limits. The change
+	 * is accumulated once the current transaction commits, and the reservation released if it rolls back.
+	 * 
+	 * @param quotaId
+	 * @param change
+	 *            the kind of change.
+	 * @param bytes
+	 *            the size of the change.
+	 * @param relayStatus
+	 *            the relay status which the change sets, or null if the change doesn't set the relay status.
+	 * @return the last known state of the quota, which must not be modified, or null if the change must be applied to
+	 *         the locked quota.
+	 */
+	public FlowQuota accumulate(Long quotaId, FlowQuotaChange change, long bytes, FlowControlStatus relayStatus);
+
+	/**
+	 * Apply the accumulated changes to the quota locked in the current transaction, recalculating its flow control
+	 * status, and take or renew the lease of the quota unless another node holds it. The state of the quota is known once
+	 * the transaction commits. The changes are accumulated again if the transaction rolls back.
+	 * 
+	 * @param quotaId
+	 * @param lockedQuota
+	 *            the locked quota, or null if the quota no longer exists and the accumulated changes are discarded.
+	 */
+	public void applyTo(Long quotaId, FlowQuota lockedQuota);
+
+	/**
+	 * Prepare the reconciliation of the locked quota's buffer with the messages held in the ZoneDB, which contain all
+	 * committed changes. The accumulated changes are discarded and the lease is taken or renewed like
+	 * {@link #applyTo(Long, FlowQuota)}. The quota can't be reconciled whilst changes are reserved in transactions which
+	 * have not completed, then the accumulated changes are applied instead.
+	 * 
+	 * @param quotaId
+	 * @param lockedQuota
+	 * @return true if the caller reconciles the quota, false if the accumulated changes were applied.
+	 */
+	public boolean reconcileTo(Long quotaId, FlowQuota lockedQuota);
+
+	/**
+	 * Get the accumulated and reserved changes of the quota's buffer which are not yet written to the ZoneDB.
+	 * 
+	 * @param quotaId
+	 * @return the accumulated bytes.
+	 */
+	public long getPendingBytes(Long quotaId);
+
+	/**
+	 * Write the accumulated changes of all quotas to the ZoneDB, renewing their leases, or reconcile the quotas which
+	 * are due for reconciliation.
+	 * 
+	 * @param channelService
+	 *            which writes each quota in its own transaction.
+	 */
+	public void flush(ChannelService channelService);
+
+}
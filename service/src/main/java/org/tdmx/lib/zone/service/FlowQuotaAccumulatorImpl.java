@@ -0,0 +1,484 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import java.math.BigInteger;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.tdmx.lib.control.datasource.ThreadLocalPartitionIdProvider;
+import org.tdmx.lib.zone.domain.FlowControlStatus;
+import org.tdmx.lib.zone.domain.FlowQuota;
+
+/**
+ * Accumulates the FlowQuota buffer changes of the quotas which this node holds the lease of, and writes them to the
+ * ZoneDB on each flush in one transaction per quota.
+ * 
+ * A change is reserved against the last known state of the quota, so that concurrent changes can't together cross the
+ * flow control limits. The last known state is taken from the locked quota when the accumulated changes are applied.
+ * Quotas without accumulated or reserved changes are forgotten on each flush, so that the next change locks the quota
+ * and picks up any flow control change made by another node.
+ * 
+ * When a node fails, the changes it accumulated are lost. The node which takes over the expired lease reconciles the
+ * quota's buffer with the messages held, as does the holder of the lease every reconcileIntervalSec.
+ * 
+ * @author Peter
+ * 
+ */
+public class FlowQuotaAccumulatorImpl implements FlowQuotaAccumulator {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(FlowQuotaAccumulatorImpl.class);
+
+	private static final FlowQuotaChange[] CHANGES = FlowQuotaChange.values();
+
+	private ThreadLocalPartitionIdProvider partitionIdProvider;
+
+	/**
+	 * Identifies this node as the holder of the lease of a FlowQuota, new for each start since accumulated changes don't
+	 * survive a restart.
+	 */
+	private String accumulatorId = UUID.randomUUID().toString();
+
+	/**
+	 * The lease is renewed on each flush, so must be longer than the flush interval. Changes are only accumulated during
+	 * the first half of the lease.
+	 */
+	private int leaseDurationSec = 60;
+
+	private int reconcileIntervalSec = 3600;
+
+	private final Map<QuotaKey, QuotaBuffer> bufferMap = new ConcurrentHashMap<>();
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	@Override
+	public FlowQuota accumulate(Long quotaId, final FlowQuotaChange change, final long bytes,
+			FlowControlStatus relayStatus) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return null;
+		}
+		final QuotaBuffer buffer = bufferMap.get(getKey(quotaId));
+		if (buffer == null) {
+			return null;
+		}
+		FlowQuota knownState = buffer.reserve(change, bytes, relayStatus, System.currentTimeMillis());
+		if (knownState == null) {
+			return null;
+		}
+		// a buffer with reservations is never retired
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				buffer.complete(change, bytes, status == TransactionSynchronization.STATUS_COMMITTED);
+			}
+		});
+		return knownState;
+	}
+
+	@Override
+	public void applyTo(Long quotaId, FlowQuota lockedQuota) {
+		apply(quotaId, lockedQuota, false);
+	}
+
+	@Override
+	public boolean reconcileTo(Long quotaId, FlowQuota lockedQuota) {
+		return apply(quotaId, lockedQuota, true);
+	}
+
+	@Override
+	public long getPendingBytes(Long quotaId) {
+		QuotaBuffer buffer = bufferMap.get(getKey(quotaId));
+		return buffer != null ? buffer.getPendingBytes() : 0;
+	}
+
+	@Override
+	public void flush(ChannelService channelService) {
+		long now = System.currentTimeMillis();
+		for (Map.Entry<QuotaKey, QuotaBuffer> entry : bufferMap.entrySet()) {
+			QuotaKey key = entry.getKey();
+			QuotaBuffer buffer = entry.getValue();
+			if (buffer.retireIfIdle()) {
+				bufferMap.remove(key, buffer);
+				continue;
+			}
+			partitionIdProvider.setPartitionId(key.getPartitionId());
+			try {
+				if (buffer.isReconcileDue(now, reconcileIntervalSec * 1000L)) {
+					channelService.reconcileFlowQuota(key.getQuotaId());
+				} else {
+					channelService.flushFlowQuota(key.getQuotaId());
+				}
+			} catch (RuntimeException e) {
+				log.warn("Unable to flush FlowQuota " + key.getQuotaId() + " of " + key.getPartitionId(), e);
+			} finally {
+				partitionIdProvider.clearPartitionId();
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private boolean apply(Long quotaId, final FlowQuota lockedQuota, boolean reconcile) {
+		final QuotaKey key = getKey(quotaId);
+		final long now = System.currentTimeMillis();
+		QuotaBuffer existing = bufferMap.get(key);
+		if (lockedQuota == null || isLeasedByOther(lockedQuota, now)) {
+			// only discard what we accumulated, the node which took over our expired lease reconciles the quota
+			if (existing != null) {
+				long discarded = existing.forget();
+				if (discarded != 0) {
+					log.warn("Discarding " + discarded + " bytes of FlowQuota " + quotaId + " not leased.");
+				}
+			}
+			return false;
+		}
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			if (existing != null) {
+				applyChanges(lockedQuota, existing.takePending());
+			}
+			return false;
+		}
+		// the changes of the previous holder of the lease may be lost
+		final boolean takenOver = lockedQuota.getAccumulatorId() != null
+				&& !accumulatorId.equals(lockedQuota.getAccumulatorId());
+
+		final QuotaBuffer buffer = getBuffer(key);
+		final boolean reconciling = reconcile && buffer.startReconcile();
+		final long[] taken = buffer.takePending();
+		if (!reconciling) {
+			applyChanges(lockedQuota, taken);
+		}
+		final long leaseUntil = now + leaseDurationSec * 1000L;
+		lockedQuota.setAccumulatorId(accumulatorId);
+		lockedQuota.setAccumulatorLeaseUntil(new Date(leaseUntil));
+
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				if (status == TransactionSynchronization.STATUS_COMMITTED) {
+					// accumulate only during the first half of the lease
+					buffer.setKnownState(getKnownState(lockedQuota), leaseUntil - leaseDurationSec * 500L);
+					if (reconciling) {
+						buffer.reconciled(now);
+					} else if (takenOver) {
+						buffer.requireReconcile();
+					}
+				} else {
+					buffer.restorePending(taken);
+					if (reconciling) {
+						buffer.endReconcile();
+					}
+				}
+			}
+		});
+		return reconciling;
+	}
+
+	private boolean isLeasedByOther(FlowQuota quota, long now) {
+		return quota.getAccumulatorId() != null && !accumulatorId.equals(quota.getAccumulatorId())
+				&& quota.getAccumulatorLeaseUntil() != null && quota.getAccumulatorLeaseUntil().getTime() > now;
+	}
+
+	private void applyChanges(FlowQuota lockedQuota, long[] taken) {
+		// reductions first, so that a buffer ending above the high mark is always closed
+		for (FlowQuotaChange change : CHANGES) {
+			if (!change.isIncrease() && taken[change.ordinal()] != 0) {
+				change.applyWriteBehind(lockedQuota, taken[change.ordinal()]);
+			}
+		}
+		for (FlowQuotaChange change : CHANGES) {
+			if (change.isIncrease() && taken[change.ordinal()] != 0) {
+				change.applyWriteBehind(lockedQuota, taken[change.ordinal()]);
+			}
+		}
+	}
+
+	private FlowQuota getKnownState(FlowQuota quota) {
+		FlowQuota knownState = new FlowQuota(null, quota);
+		knownState.setId(quota.getId());
+		knownState.setLimit(quota.getLimit());
+		return knownState;
+	}
+
+	private QuotaKey getKey(Long quotaId) {
+		return new QuotaKey(partitionIdProvider.getPartitionId(), quotaId);
+	}
+
+	private QuotaBuffer getBuffer(QuotaKey key) {
+		QuotaBuffer buffer = bufferMap.get(key);
+		while (buffer == null || buffer.isRetired()) {
+			if (buffer != null) {
+				bufferMap.remove(key, buffer);
+			}
+			QuotaBuffer newBuffer = new QuotaBuffer(System.currentTimeMillis());
+			buffer = bufferMap.putIfAbsent(key, newBuffer);
+			if (buffer == null) {
+				buffer = newBuffer;
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * A helper value type holding the ZoneDB partition and id of a FlowQuota.
+	 */
+	private static class QuotaKey {
+		private final String partitionId;
+		private final Long quotaId;
+
+		private QuotaKey(String partitionId, Long quotaId) {
+			this.partitionId = partitionId;
+			this.quotaId = quotaId;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (partitionId != null ? partitionId.hashCode() : 0) + quotaId.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof QuotaKey)) {
+				return false;
+			}
+			QuotaKey other = (QuotaKey) obj;
+			return quotaId.equals(other.quotaId) && (partitionId != null ? partitionId.equals(other.partitionId)
+					: other.partitionId == null);
+		}
+
+		private String getPartitionId() {
+			return partitionId;
+		}
+
+		private Long getQuotaId() {
+			return quotaId;
+		}
+	}
+
+	/**
+	 * A helper value type holding the last known state of a FlowQuota leased by this node, the changes reserved by
+	 * transactions in progress and the changes accumulated since.
+	 */
+	private static class QuotaBuffer {
+		private FlowQuota knownState;
+		private long accumulateUntil;
+		private final long[] pending = new long[CHANGES.length];
+		private long reservedIncrease = 0;
+		private long reservedReduction = 0;
+		private boolean reconciling = false;
+		private boolean reconcileRequired = false;
+		private long lastReconciled;
+		private boolean retired = false;
+
+		private QuotaBuffer(long now) {
+			this.lastReconciled = now;
+		}
+
+		private synchronized FlowQuota reserve(FlowQuotaChange change, long bytes, FlowControlStatus newRelayStatus,
+				long now) {
+			if (knownState == null || knownState.getLimit() == null || retired || reconciling
+					|| now >= accumulateUntil) {
+				return null;
+			}
+			if (newRelayStatus != null && newRelayStatus != knownState.getRelayStatus()) {
+				return null;
+			}
+			BigInteger used = knownState.getUsedBytes().add(BigInteger.valueOf(getPendingNet()));
+			if (change.isIncrease()) {
+				// exceeding the high mark closes the flow control
+				BigInteger projected = used.add(BigInteger.valueOf(reservedIncrease + bytes));
+				if (projected.compareTo(knownState.getLimit().getHighMarkBytes()) > 0) {
+					return null;
+				}
+				reservedIncrease += bytes;
+			} else {
+				// falling below the low mark opens the flow control and relay if closed
+				BigInteger projected = used.subtract(BigInteger.valueOf(reservedReduction + bytes));
+				if (projected.compareTo(knownState.getLimit().getLowMarkBytes()) < 0
+						&& (FlowControlStatus.OPEN != knownState.getFlowStatus()
+								|| FlowControlStatus.OPEN != knownState.getRelayStatus())) {
+					return null;
+				}
+				reservedReduction += bytes;
+			}
+			return knownState;
+		}
+
+		private synchronized void complete(FlowQuotaChange change, long bytes, boolean committed) {
+			if (change.isIncrease()) {
+				reservedIncrease -= bytes;
+			} else {
+				reservedReduction -= bytes;
+			}
+			if (committed) {
+				pending[change.ordinal()] += bytes;
+			}
+		}
+
+		private synchronized long[] takePending() {
+			long[] taken = pending.clone();
+			for (int i = 0; i < pending.length; i++) {
+				pending[i] = 0;
+			}
+			return taken;
+		}
+
+		private synchronized void restorePending(long[] taken) {
+			for (int i = 0; i < pending.length; i++) {
+				pending[i] += taken[i];
+			}
+		}
+
+		private long getPendingNet() {
+			long net = 0;
+			for (FlowQuotaChange change : CHANGES) {
+				net += change.isIncrease() ? pending[change.ordinal()] : -pending[change.ordinal()];
+			}
+			return net;
+		}
+
+		private synchronized long getPendingBytes() {
+			return getPendingNet() + reservedIncrease;
+		}
+
+		private synchronized void setKnownState(FlowQuota knownState, long accumulateUntil) {
+			this.knownState = knownState;
+			this.accumulateUntil = accumulateUntil;
+		}
+
+		/**
+		 * Forget the quota which is no longer leased.
+		 * 
+		 * @return the net bytes discarded.
+		 */
+		private synchronized long forget() {
+			knownState = null;
+			long discarded = getPendingNet();
+			takePending();
+			return discarded;
+		}
+
+		private synchronized boolean startReconcile() {
+			if (reservedIncrease != 0 || reservedReduction != 0) {
+				// the changes reserved would be lost if they commit after the messages are counted
+				return false;
+			}
+			reconciling = true;
+			return true;
+		}
+
+		private synchronized void reconciled(long now) {
+			reconciling = false;
+			reconcileRequired = false;
+			lastReconciled = now;
+		}
+
+		private synchronized void endReconcile() {
+			reconciling = false;
+		}
+
+		private synchronized void requireReconcile() {
+			reconcileRequired = true;
+		}
+
+		private synchronized boolean isReconcileDue(long now, long reconcileIntervalMs) {
+			return reconcileRequired || now - lastReconciled >= reconcileIntervalMs;
+		}
+
+		private synchronized boolean retireIfIdle() {
+			if (reservedIncrease != 0 || reservedReduction != 0 || reconcileRequired) {
+				return false;
+			}
+			for (long bytes : pending) {
+				if (bytes != 0) {
+					return false;
+				}
+			}
+			retired = true;
+			return true;
+		}
+
+		private synchronized boolean isRetired() {
+			return retired;
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public ThreadLocalPartitionIdProvider getPartitionIdProvider() {
+		return partitionIdProvider;
+	}
+
+	public void setPartitionIdProvider(ThreadLocalPartitionIdProvider partitionIdProvider) {
+		this.partitionIdProvider = partitionIdProvider;
+	}
+
+	public String getAccumulatorId() {
+		return accumulatorId;
+	}
+
+	public void setAccumulatorId(String accumulatorId) {
+		this.accumulatorId = accumulatorId;
+	}
+
+	public int getLeaseDurationSec() {
+		return leaseDurationSec;
+	}
+
+	public void setLeaseDurationSec(int leaseDurationSec) {
+		this.leaseDurationSec = leaseDurationSec;
+	}
+
+	public int getReconcileIntervalSec() {
+		return reconcileIntervalSec;
+	}
+
+	public void setReconcileIntervalSec(int reconcileIntervalSec) {
+		this.reconcileIntervalSec = reconcileIntervalSec;
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import org.tdmx.lib.common.domain.ProcessingState;
+import org.tdmx.lib.zone.domain.FlowQuota;
+
+/**
+ * The kinds of change to the buffer of a FlowQuota, which differ in the flow control status they change when crossing
+ * the limits.
+ * 
+ * @author Peter
+ * 
+ */
+public enum FlowQuotaChange {
+
+	/**
+	 * Sending on the origin side increases the buffer, closing the flow control above the high mark.
+	 */
+	SEND(true),
+	/**
+	 * Relaying in on the destination side increases the buffer, closing the flow control and relay above the high mark.
+	 */
+	RELAY_IN(true),
+	/**
+	 * Relaying out on the origin side reduces the buffer, opening the flow control below the low mark.
+	 */
+	RELAY_OUT(false),
+	/**
+	 * Receiving on the destination side reduces the buffer, opening the flow control and relay below the low mark.
+	 */
+	RECEIVE(false);
+
+	private final boolean increase;
+
+	private FlowQuotaChange(boolean increase) {
+		this.increase = increase;
+	}
+
+	/**
+	 * Apply a change to the locked quota which was made without holding the lock, ie. accumulated in memory or
+	 * reconciled. The FC-open of the relay is left pending on the quota, since there is no caller to relay it.
+	 * 
+	 * @param quota
+	 *            the locked quota.
+	 * @param bytes
+	 *            the size of the change.
+	 */
+	public void applyWriteBehind(FlowQuota quota, long bytes) {
+		switch (this) {
+		case SEND:
+			quota.incrementBufferOnSend(bytes);
+			break;
+		case RELAY_IN:
+			quota.incrementBufferOnRelay(bytes);
+			break;
+		case RELAY_OUT:
+			quota.reduceBuffer(bytes);
+			break;
+		case RECEIVE:
+			if (quota.reduceBufferOnReceive(bytes)) {
+				quota.setProcessingState(ProcessingState.pending());
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * 
+	 * @return true if the change increases the buffer.
+	 */
+	public boolean isIncrease() {
+		return increase;
+	}
+
+}
@@ -0,0 +1,120 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.googlecode.protobuf.pro.duplex.util.RenamingThreadFactoryProxy;
+
+/**
+ * Writes the FlowQuota buffer changes accumulated by the {@link FlowQuotaAccumulator} to the ZoneDB every
+ * flushIntervalSec, through the {@link ChannelService}.
+ * 
+ * @author Peter
+ * 
+ */
+public class FlowQuotaFlusher {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+
+	private ChannelService channelService;
+	private FlowQuotaAccumulator flowQuotaAccumulator;
+
+	private int flushIntervalSec = 5;
+
+	private ScheduledExecutorService flushScheduler;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	public void init() {
+		flushScheduler = Executors.newScheduledThreadPool(1,
+				new RenamingThreadFactoryProxy("FlowQuotaFlush", Executors.defaultThreadFactory()));
+		flushScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flowQuotaAccumulator.flush(channelService);
+			}
+		}, flushIntervalSec, flushIntervalSec, TimeUnit.SECONDS);
+	}
+
+	public void shutdown() {
+		if (flushScheduler != null) {
+			flushScheduler.shutdown();
+			try {
+				flushScheduler.awaitTermination(flushIntervalSec, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			flushScheduler = null;
+		}
+		// write the last accumulated changes
+		flowQuotaAccumulator.flush(channelService);
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public ChannelService getChannelService() {
+		return channelService;
+	}
+
+	public void setChannelService(ChannelService channelService) {
+		this.channelService = channelService;
+	}
+
+	public FlowQuotaAccumulator getFlowQuotaAccumulator() {
+		return flowQuotaAccumulator;
+	}
+
+	public void setFlowQuotaAccumulator(FlowQuotaAccumulator flowQuotaAccumulator) {
+		this.flowQuotaAccumulator = flowQuotaAccumulator;
+	}
+
+	public int getFlushIntervalSec() {
+		return flushIntervalSec;
+	}
+
+	public void setFlushIntervalSec(int flushIntervalSec) {
+		this.flushIntervalSec = flushIntervalSec;
+	}
+
+}
@@ -18,6 +18,8 @@
  */
 package org.tdmx.server.cache;
 
+import java.util.List;
+
 import org.tdmx.lib.common.domain.ProcessingState;
 import org.tdmx.lib.control.domain.Segment;
 
@@ -38,4 +40,15 @@ public interface CacheInvalidationNotifier {
 	 */
 	public ProcessingState invalidateCache(Segment segment, CacheInvalidationInstruction instruction);
 
+	/**
+	 * Notify a PCS server of the segment of a batch of invalidations of the same cache, which are sent together. An
+	 * instruction without a key invalidates the whole cache, so the other instructions are then redundant.
+	 * 
+	 * @param segment
+	 * @param instructions
+	 *            non empty list of instructions of the same cache.
+	 * @return the processing result
+	 */
+	public ProcessingState invalidateCache(Segment segment, List<CacheInvalidationInstruction> instructions);
+
 }
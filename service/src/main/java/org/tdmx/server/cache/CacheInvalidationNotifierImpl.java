@@ -18,19 +18,42 @@
  */
 package org.tdmx.server.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.tdmx.core.system.lang.StringUtils;
 import org.tdmx.lib.common.domain.ProcessingState;
+import org.tdmx.lib.common.domain.ProcessingStatus;
 import org.tdmx.lib.control.domain.Segment;
-import org.tdmx.server.runtime.Manageable;
+import org.tdmx.server.pcs.client.LocalControlServiceImpl;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
 import org.tdmx.server.ws.ErrorCode;
 
+import com.googlecode.protobuf.pro.duplex.util.RenamingThreadFactoryProxy;
+
 /**
  * Notifies each segment's PCS of a cache invalidation.
  * 
+ * Each segment has a PCS client which stays connected between invalidations, and is stopped after being idle for
+ * clientIdleTimeoutSec or when an invalidation fails. The invalidations of a segment issued within coalesceWindowMillis
+ * are coalesced, duplicates of the same cache and key are dropped, and the rest are sent as one request per cache.
+ * 
  * @author Peter
  *
  */
@@ -45,9 +68,19 @@ public class CacheInvalidationNotifierImpl implements CacheInvalidationNotifier
 	// -------------------------------------------------------------------------
 	private static final Logger log = LoggerFactory.getLogger(CacheInvalidationNotifierImpl.class);
 
-	private Manageable pcsClient;
+	/**
+	 * Creates a new PCS client for each segment.
+	 */
+	private ObjectFactory<LocalControlServiceImpl> pcsClientFactory;
+
+	private long coalesceWindowMillis = 50;
+	private int clientIdleTimeoutSec = 300;
+	private int notifierThreads = 2;
 
-	private CacheInvalidationNotifier pcsInformer;
+	// internal
+	private ScheduledExecutorService scheduler;
+	private final Map<String, PooledPcsClient> clientPool = new HashMap<>();
+	private final Map<String, PendingBatch> pendingBatches = new HashMap<>();
 
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
@@ -59,21 +92,74 @@ public class CacheInvalidationNotifierImpl implements CacheInvalidationNotifier
 	// PUBLIC METHODS
 	// -------------------------------------------------------------------------
 
+	public void init() {
+		scheduler = Executors.newScheduledThreadPool(notifierThreads,
+				new RenamingThreadFactoryProxy("CacheInvalidationNotifier", Executors.defaultThreadFactory()));
+		scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				stopIdleClients();
+			}
+		}, clientIdleTimeoutSec, clientIdleTimeoutSec, TimeUnit.SECONDS);
+	}
+
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+			try {
+				scheduler.awaitTermination(clientIdleTimeoutSec, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			scheduler = null;
+		}
+		synchronized (clientPool) {
+			for (PooledPcsClient pooledClient : clientPool.values()) {
+				pooledClient.getClient().stop();
+			}
+			clientPool.clear();
+		}
+	}
+
 	@Override
 	public ProcessingState invalidateCache(Segment segment, CacheInvalidationInstruction event) {
 
 		try {
-			return informPCS(segment, event);
-		} catch (Exception e) {
-			log.warn("Unable to invalidate cache " + event + " on segment " + segment.getSegmentName(), e);
-			String errorInfo = StringUtils.getExceptionSummary(e);
-			ProcessingState error = ProcessingState.error(ErrorCode.CacheInvalidationFailed.getErrorCode(),
-					ErrorCode.CacheInvalidationFailed.getErrorDescription(event.getId(), event.getName(),
-							event.getKey(), errorInfo));
-			return error;
+			return enqueue(segment, event).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return error(segment, event, e);
+		} catch (ExecutionException e) {
+			Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+			return error(segment, event, cause);
 		}
 	}
 
+	@Override
+	public ProcessingState invalidateCache(Segment segment, List<CacheInvalidationInstruction> instructions) {
+		List<FutureTask<ProcessingState>> results = new ArrayList<>();
+		for (CacheInvalidationInstruction event : instructions) {
+			results.add(enqueue(segment, event));
+		}
+		ProcessingState result = ProcessingState.none();
+		for (int i = 0; i < instructions.size(); i++) {
+			ProcessingState ps;
+			try {
+				ps = results.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				ps = error(segment, instructions.get(i), e);
+			} catch (ExecutionException e) {
+				Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				ps = error(segment, instructions.get(i), cause);
+			}
+			if (ProcessingStatus.NONE != ps.getStatus()) {
+				result = ps;
+			}
+		}
+		return result;
+	}
+
 	// -------------------------------------------------------------------------
 	// PROTECTED METHODS
 	// -------------------------------------------------------------------------
@@ -82,16 +168,195 @@ public class CacheInvalidationNotifierImpl implements CacheInvalidationNotifier
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
-	private synchronized ProcessingState informPCS(Segment s, CacheInvalidationInstruction event) {
-		log.info("Notifying segment " + s.getSegmentName() + " of " + event);
+	/**
+	 * Add the event to the segment's pending batch, starting a new batch which is sent after the coalescing window if
+	 * there is none.
+	 * 
+	 * @param segment
+	 * @param event
+	 * @return the future result of sending the batch containing the event.
+	 */
+	private FutureTask<ProcessingState> enqueue(final Segment segment, CacheInvalidationInstruction event) {
+		synchronized (pendingBatches) {
+			PendingBatch batch = pendingBatches.get(segment.getSegmentName());
+			if (batch == null) {
+				final PendingBatch newBatch = new PendingBatch();
+				pendingBatches.put(segment.getSegmentName(), newBatch);
+				scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						send(segment, newBatch);
+					}
+				}, coalesceWindowMillis, TimeUnit.MILLISECONDS);
+				batch = newBatch;
+			}
+			final CacheName cacheName = event.getName();
+			FutureTask<ProcessingState> result = batch.getResult(cacheName);
+			if (result == null) {
+				final PendingBatch cacheBatch = batch;
+				result = new FutureTask<>(new Callable<ProcessingState>() {
+					@Override
+					public ProcessingState call() throws Exception {
+						return informPCS(segment, cacheBatch.getInstructions(cacheName));
+					}
+				});
+				batch.addCache(cacheName, result);
+			}
+			batch.add(event);
+			return result;
+		}
+	}
 
-		try {
-			// connect the PCC to the segment
-			pcsClient.start(s, Collections.emptyList());
+	private void send(Segment segment, PendingBatch batch) {
+		synchronized (pendingBatches) {
+			// no more events can join the batch
+			pendingBatches.remove(segment.getSegmentName());
+		}
+		for (FutureTask<ProcessingState> result : batch.getResults()) {
+			result.run();
+		}
+	}
 
-			return pcsInformer.invalidateCache(s, event);
+	private ProcessingState informPCS(Segment s, List<CacheInvalidationInstruction> instructions) {
+		log.info("Notifying segment " + s.getSegmentName() + " of " + instructions);
+
+		PooledPcsClient pooledClient = acquireClient(s);
+		boolean success = false;
+		try {
+			ProcessingState result = pooledClient.getClient().invalidateCache(s, instructions);
+			success = ProcessingStatus.NONE == result.getStatus();
+			return result;
 		} finally {
-			pcsClient.stop();
+			releaseClient(s, pooledClient, success);
+		}
+	}
+
+	private PooledPcsClient acquireClient(Segment s) {
+		synchronized (clientPool) {
+			PooledPcsClient pooledClient = clientPool.get(s.getSegmentName());
+			if (pooledClient == null) {
+				log.info("Connecting PCS client to segment " + s.getSegmentName());
+				LocalControlServiceImpl client = pcsClientFactory.getObject();
+				try {
+					// connect the PCC to the segment
+					client.start(s, Collections.emptyList());
+				} catch (RuntimeException e) {
+					client.stop();
+					throw e;
+				}
+				pooledClient = new PooledPcsClient(client);
+				clientPool.put(s.getSegmentName(), pooledClient);
+			}
+			pooledClient.acquire();
+			return pooledClient;
+		}
+	}
+
+	private void releaseClient(Segment s, PooledPcsClient pooledClient, boolean success) {
+		synchronized (clientPool) {
+			pooledClient.release();
+			boolean pooled = clientPool.get(s.getSegmentName()) == pooledClient;
+			if (!success && pooled) {
+				// reconnect next time, the segment's PCS servers may have changed.
+				clientPool.remove(s.getSegmentName());
+				pooled = false;
+			}
+			if (!pooled && !pooledClient.isInUse()) {
+				pooledClient.getClient().stop();
+			}
+		}
+	}
+
+	private void stopIdleClients() {
+		long idleSince = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(clientIdleTimeoutSec);
+		synchronized (clientPool) {
+			Iterator<PooledPcsClient> it = clientPool.values().iterator();
+			while (it.hasNext()) {
+				PooledPcsClient pooledClient = it.next();
+				if (!pooledClient.isInUse() && pooledClient.getLastUsed() < idleSince) {
+					log.info("Stopping idle PCS client.");
+					pooledClient.getClient().stop();
+					it.remove();
+				}
+			}
+		}
+	}
+
+	private ProcessingState error(Segment segment, CacheInvalidationInstruction event, Exception e) {
+		log.warn("Unable to invalidate cache " + event + " on segment " + segment.getSegmentName(), e);
+		String errorInfo = StringUtils.getExceptionSummary(e);
+		ProcessingState error = ProcessingState.error(ErrorCode.CacheInvalidationFailed.getErrorCode(),
+				ErrorCode.CacheInvalidationFailed.getErrorDescription(event.getId(), event.getName(), event.getKey(),
+						errorInfo));
+		return error;
+	}
+
+	/**
+	 * A helper value type holding the invalidations of a segment waiting to be sent, and the result of sending those of
+	 * each cache.
+	 */
+	private static class PendingBatch {
+		private final Map<CacheName, Map<String, CacheInvalidationInstruction>> instructions = new EnumMap<>(
+				CacheName.class);
+		private final Map<CacheName, FutureTask<ProcessingState>> results = new EnumMap<>(CacheName.class);
+
+		private void addCache(CacheName cacheName, FutureTask<ProcessingState> result) {
+			instructions.put(cacheName, new LinkedHashMap<String, CacheInvalidationInstruction>());
+			results.put(cacheName, result);
+		}
+
+		private void add(CacheInvalidationInstruction event) {
+			Map<String, CacheInvalidationInstruction> cacheInstructions = instructions.get(event.getName());
+			if (!cacheInstructions.containsKey(event.getKey())) {
+				cacheInstructions.put(event.getKey(), event);
+			}
+		}
+
+		private FutureTask<ProcessingState> getResult(CacheName cacheName) {
+			return results.get(cacheName);
+		}
+
+		private Collection<FutureTask<ProcessingState>> getResults() {
+			return results.values();
+		}
+
+		private List<CacheInvalidationInstruction> getInstructions(CacheName cacheName) {
+			return new ArrayList<>(instructions.get(cacheName).values());
+		}
+	}
+
+	/**
+	 * A helper value type holding a segment's connected PCS client, how many invalidations are using it and when it was
+	 * last used.
+	 */
+	private static class PooledPcsClient {
+		private final LocalControlServiceImpl client;
+		private int inUse = 0;
+		private long lastUsed = System.currentTimeMillis();
+
+		private PooledPcsClient(LocalControlServiceImpl client) {
+			this.client = client;
+		}
+
+		private void acquire() {
+			inUse++;
+		}
+
+		private void release() {
+			inUse--;
+			lastUsed = System.currentTimeMillis();
+		}
+
+		private boolean isInUse() {
+			return inUse > 0;
+		}
+
+		private long getLastUsed() {
+			return lastUsed;
+		}
+
+		private LocalControlServiceImpl getClient() {
+			return client;
 		}
 	}
 
@@ -99,20 +364,36 @@ public class CacheInvalidationNotifierImpl implements CacheInvalidationNotifier
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
 
-	public Manageable getPcsClient() {
-		return pcsClient;
+	public ObjectFactory<LocalControlServiceImpl> getPcsClientFactory() {
+		return pcsClientFactory;
+	}
+
+	public void setPcsClientFactory(ObjectFactory<LocalControlServiceImpl> pcsClientFactory) {
+		this.pcsClientFactory = pcsClientFactory;
+	}
+
+	public long getCoalesceWindowMillis() {
+		return coalesceWindowMillis;
+	}
+
+	public void setCoalesceWindowMillis(long coalesceWindowMillis) {
+		this.coalesceWindowMillis = coalesceWindowMillis;
+	}
+
+	public int getClientIdleTimeoutSec() {
+		return clientIdleTimeoutSec;
 	}
 
-	public void setPcsClient(Manageable pcsClient) {
-		this.pcsClient = pcsClient;
+	public void setClientIdleTimeoutSec(int clientIdleTimeoutSec) {
+		this.clientIdleTimeoutSec = clientIdleTimeoutSec;
 	}
 
-	public CacheInvalidationNotifier getPcsInformer() {
-		return pcsInformer;
+	public int getNotifierThreads() {
+		return notifierThreads;
 	}
 
-	public void setPcsInformer(CacheInvalidationNotifier pcsInformer) {
-		this.pcsInformer = pcsInformer;
+	public void setNotifierThreads(int notifierThreads) {
+		this.notifierThreads = notifierThreads;
 	}
 
 }
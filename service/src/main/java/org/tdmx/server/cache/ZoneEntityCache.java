@@ -0,0 +1,118 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.cache;
+
+import org.tdmx.lib.control.domain.AccountZone;
+import org.tdmx.lib.zone.domain.Domain;
+import org.tdmx.lib.zone.domain.Service;
+import org.tdmx.lib.zone.domain.Zone;
+
+/**
+ * A read-through cache of the rarely changing control and zone entities which are looked up for every session and
+ * relay.
+ * 
+ * The entities returned are shared between callers and must be treated as read-only. Zone DB entities are loaded in the
+ * caller's transaction context, so the caller must have associated the AccountZone's zone DB partition beforehand.
+ * 
+ * @author Peter
+ * 
+ */
+public interface ZoneEntityCache {
+
+	/**
+	 * Get the AccountZone by id.
+	 * 
+	 * @param accountZoneId
+	 * @return the AccountZone or null if not found.
+	 */
+	public AccountZone getAccountZone(Long accountZoneId);
+
+	/**
+	 * Get the AccountZone by zone apex.
+	 * 
+	 * @param zoneApex
+	 * @return the AccountZone or null if not found.
+	 */
+	public AccountZone getAccountZone(String zoneApex);
+
+	/**
+	 * Get the Zone by id from the AccountZone's zone DB partition.
+	 * 
+	 * @param az
+	 * @param zoneId
+	 * @return the Zone or null if not found.
+	 */
+	public Zone getZone(AccountZone az, Long zoneId);
+
+	/**
+	 * Get the AccountZone's Zone from it's zone DB partition.
+	 * 
+	 * @param az
+	 * @return the Zone or null if not found.
+	 */
+	public Zone getZone(AccountZone az);
+
+	/**
+	 * Get the Domain by id from the AccountZone's zone DB partition.
+	 * 
+	 * @param az
+	 * @param zone
+	 *            the zone which the Domain is associated with.
+	 * @param domainId
+	 * @return the Domain or null if not found.
+	 */
+	public Domain getDomain(AccountZone az, Zone zone, Long domainId);
+
+	/**
+	 * Get the Domain by name from the AccountZone's zone DB partition.
+	 * 
+	 * @param az
+	 * @param zone
+	 * @param domainName
+	 * @return the Domain or null if not found.
+	 */
+	public Domain getDomain(AccountZone az, Zone zone, String domainName);
+
+	/**
+	 * Get the Service by id from the AccountZone's zone DB partition.
+	 * 
+	 * @param az
+	 * @param serviceId
+	 * @return the Service or null if not found.
+	 */
+	public Service getService(AccountZone az, Long serviceId);
+
+	/**
+	 * Get the Service by name from the AccountZone's zone DB partition.
+	 * 
+	 * @param az
+	 * @param domain
+	 * @param serviceName
+	 * @return the Service or null if not found.
+	 */
+	public Service getService(AccountZone az, Domain domain, String serviceName);
+
+	/**
+	 * Remove all cached entities of the zone locally.
+	 * 
+	 * @param zoneApex
+	 */
+	public void invalidateZone(String zoneApex);
+
+}
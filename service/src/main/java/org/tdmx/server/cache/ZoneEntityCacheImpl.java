@@ -0,0 +1,434 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.cache;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.lib.control.domain.AccountZone;
+import org.tdmx.lib.control.service.AccountZoneService;
+import org.tdmx.lib.zone.domain.Domain;
+import org.tdmx.lib.zone.domain.Service;
+import org.tdmx.lib.zone.domain.Zone;
+import org.tdmx.lib.zone.service.DomainService;
+import org.tdmx.lib.zone.service.ServiceService;
+import org.tdmx.lib.zone.service.ZoneService;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
+
+/**
+ * The concrete implementation of {@link ZoneEntityCache}.
+ * 
+ * Entities are kept for at most entryValiditySeconds, which bounds their staleness if an invalidation is missed, and
+ * the cache holds at most maxEntries. Zone DB entities are keyed by the zone DB partition, so a zone transferred to
+ * another partition is fetched afresh as soon as the AccountZone is.
+ * 
+ * The ZoneEntity cache invalidation with a zone apex key removes all entities of the zone, without a key the whole
+ * cache is cleared. Every invalidation increments the cache's version, and an entity loaded whilst the version changed
+ * is not cached, so that a load which races with an invalidation cannot re-instate stale data.
+ * 
+ * @author Peter
+ * 
+ */
+public class ZoneEntityCacheImpl implements ZoneEntityCache, CacheInvalidationListener {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(ZoneEntityCacheImpl.class);
+
+	private AccountZoneService accountZoneService;
+	private ZoneService zoneService;
+	private DomainService domainService;
+	private ServiceService serviceService;
+
+	private int entryValiditySeconds = 5 * 60; // 5min
+	private int maxEntries = 10000;
+
+	// internal
+	private final Map<String, CachedEntity> cache = new ConcurrentHashMap<>();
+	private final AtomicLong version = new AtomicLong();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong invalidations = new AtomicLong();
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	@Override
+	public void invalidateCache(CacheInvalidationInstruction message) {
+		if (CacheName.ZoneEntity == message.getName()) {
+			if (message.getKey() != null) {
+				invalidateZone(message.getKey());
+			} else {
+				log.debug("Invalidating cache.");
+				version.incrementAndGet();
+				invalidations.incrementAndGet();
+				cache.clear();
+			}
+		}
+	}
+
+	@Override
+	public void invalidateZone(String zoneApex) {
+		log.debug("Invalidating zone " + zoneApex);
+		version.incrementAndGet();
+		invalidations.incrementAndGet();
+		Iterator<CachedEntity> it = cache.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().getZoneApex().equals(zoneApex)) {
+				it.remove();
+			}
+		}
+	}
+
+	@Override
+	public AccountZone getAccountZone(final Long accountZoneId) {
+		if (accountZoneId == null) {
+			return null;
+		}
+		return readThrough("AZ:" + accountZoneId, new EntityLoader<AccountZone>() {
+			@Override
+			public AccountZone load() {
+				return accountZoneService.findById(accountZoneId);
+			}
+
+			@Override
+			public String getZoneApex(AccountZone entity) {
+				return entity.getZoneApex();
+			}
+		});
+	}
+
+	@Override
+	public AccountZone getAccountZone(final String zoneApex) {
+		if (zoneApex == null) {
+			return null;
+		}
+		return readThrough("AZA:" + zoneApex, new EntityLoader<AccountZone>() {
+			@Override
+			public AccountZone load() {
+				return accountZoneService.findByZoneApex(zoneApex);
+			}
+
+			@Override
+			public String getZoneApex(AccountZone entity) {
+				return entity.getZoneApex();
+			}
+		});
+	}
+
+	@Override
+	public Zone getZone(final AccountZone az, final Long zoneId) {
+		if (az == null || zoneId == null) {
+			return null;
+		}
+		return readThrough("Z:" + az.getZonePartitionId() + ":" + zoneId, new ZoneEntityLoader<Zone>(az) {
+			@Override
+			public Zone load() {
+				return zoneService.findById(zoneId);
+			}
+		});
+	}
+
+	@Override
+	public Zone getZone(final AccountZone az) {
+		if (az == null) {
+			return null;
+		}
+		return readThrough("ZA:" + az.getZonePartitionId() + ":" + az.getZoneApex(), new ZoneEntityLoader<Zone>(az) {
+			@Override
+			public Zone load() {
+				return zoneService.findByZoneApex(az.getZoneApex());
+			}
+		});
+	}
+
+	@Override
+	public Domain getDomain(final AccountZone az, final Zone zone, final Long domainId) {
+		if (az == null || zone == null || domainId == null) {
+			return null;
+		}
+		return readThrough("D:" + az.getZonePartitionId() + ":" + domainId, new ZoneEntityLoader<Domain>(az) {
+			@Override
+			public Domain load() {
+				Domain d = domainService.findById(domainId);
+				if (d != null) {
+					// the domain's zone is not fetched by findById
+					d.setZone(zone);
+				}
+				return d;
+			}
+		});
+	}
+
+	@Override
+	public Domain getDomain(final AccountZone az, final Zone zone, final String domainName) {
+		if (az == null || zone == null || domainName == null) {
+			return null;
+		}
+		return readThrough("DN:" + az.getZonePartitionId() + ":" + zone.getId() + ":" + domainName,
+				new ZoneEntityLoader<Domain>(az) {
+					@Override
+					public Domain load() {
+						return domainService.findByName(zone, domainName);
+					}
+				});
+	}
+
+	@Override
+	public Service getService(final AccountZone az, final Long serviceId) {
+		if (az == null || serviceId == null) {
+			return null;
+		}
+		return readThrough("S:" + az.getZonePartitionId() + ":" + serviceId, new ZoneEntityLoader<Service>(az) {
+			@Override
+			public Service load() {
+				return serviceService.findById(serviceId);
+			}
+		});
+	}
+
+	@Override
+	public Service getService(final AccountZone az, final Domain domain, final String serviceName) {
+		if (az == null || domain == null || serviceName == null) {
+			return null;
+		}
+		return readThrough("SN:" + az.getZonePartitionId() + ":" + domain.getId() + ":" + serviceName,
+				new ZoneEntityLoader<Service>(az) {
+					@Override
+					public Service load() {
+						return serviceService.findByName(domain, serviceName);
+					}
+				});
+	}
+
+	/**
+	 * @return the fraction of lookups served from the cache, or 0 if there were none.
+	 */
+	public double getHitRatio() {
+		long h = hits.get();
+		long total = h + misses.get();
+		return total > 0 ? (double) h / total : 0.0;
+	}
+
+	/**
+	 * @return the age of the oldest cached entity in milliseconds, or 0 if the cache is empty.
+	 */
+	public long getMaxStalenessMillis() {
+		long now = System.currentTimeMillis();
+		long oldest = now;
+		for (CachedEntity entry : cache.values()) {
+			oldest = Math.min(oldest, entry.getLoadTime());
+		}
+		return now - oldest;
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	@SuppressWarnings("unchecked")
+	private <E> E readThrough(String key, EntityLoader<E> loader) {
+		CachedEntity cached = cache.get(key);
+		if (cached != null && !cached.isExpired()) {
+			hits.incrementAndGet();
+			return (E) cached.getEntity();
+		}
+		misses.incrementAndGet();
+
+		long loadVersion = version.get();
+		E entity = loader.load();
+		if (entity != null) {
+			cacheEntity(key, new CachedEntity(entity, loader.getZoneApex(entity), System.currentTimeMillis()),
+					loadVersion);
+		}
+		return entity;
+	}
+
+	private void cacheEntity(String key, CachedEntity entry, long loadVersion) {
+		if (version.get() != loadVersion) {
+			// invalidated whilst loading, so the entity may already be stale
+			return;
+		}
+		if (cache.size() >= maxEntries) {
+			purgeCache();
+		}
+		cache.put(key, entry);
+		if (version.get() != loadVersion) {
+			// an invalidation slipped in before the put and may have missed it
+			cache.remove(key, entry);
+		}
+	}
+
+	private void purgeCache() {
+		Iterator<CachedEntity> it = cache.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().isExpired()) {
+				it.remove();
+			}
+		}
+		if (cache.size() >= maxEntries) {
+			// no expired entries to make room, so start afresh
+			cache.clear();
+		}
+	}
+
+	/**
+	 * A helper type which loads an entity on a cache miss.
+	 */
+	private interface EntityLoader<E> {
+		E load();
+
+		String getZoneApex(E entity);
+	}
+
+	/**
+	 * A helper type which loads an entity of the AccountZone's zone DB partition.
+	 */
+	private abstract static class ZoneEntityLoader<E> implements EntityLoader<E> {
+		private final String zoneApex;
+
+		private ZoneEntityLoader(AccountZone az) {
+			this.zoneApex = az.getZoneApex();
+		}
+
+		@Override
+		public String getZoneApex(E entity) {
+			return zoneApex;
+		}
+	}
+
+	/**
+	 * A helper value type holding a cached entity, the apex of the zone it belongs to and when it was loaded.
+	 */
+	private class CachedEntity {
+		private final Object entity;
+		private final String zoneApex;
+		private final long loadTime;
+
+		private CachedEntity(Object entity, String zoneApex, long loadTime) {
+			this.entity = entity;
+			this.zoneApex = zoneApex;
+			this.loadTime = loadTime;
+		}
+
+		private Object getEntity() {
+			return entity;
+		}
+
+		private String getZoneApex() {
+			return zoneApex;
+		}
+
+		private long getLoadTime() {
+			return loadTime;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() > loadTime + TimeUnit.SECONDS.toMillis(entryValiditySeconds);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getInvalidations() {
+		return invalidations.get();
+	}
+
+	public int getSize() {
+		return cache.size();
+	}
+
+	public AccountZoneService getAccountZoneService() {
+		return accountZoneService;
+	}
+
+	public void setAccountZoneService(AccountZoneService accountZoneService) {
+		this.accountZoneService = accountZoneService;
+	}
+
+	public ZoneService getZoneService() {
+		return zoneService;
+	}
+
+	public void setZoneService(ZoneService zoneService) {
+		this.zoneService = zoneService;
+	}
+
+	public DomainService getDomainService() {
+		return domainService;
+	}
+
+	public void setDomainService(DomainService domainService) {
+		this.domainService = domainService;
+	}
+
+	public ServiceService getServiceService() {
+		return serviceService;
+	}
+
+	public void setServiceService(ServiceService serviceService) {
+		this.serviceService = serviceService;
+	}
+
+	public int getEntryValiditySeconds() {
+		return entryValiditySeconds;
+	}
+
+	public void setEntryValiditySeconds(int entryValiditySeconds) {
+		this.entryValiditySeconds = entryValiditySeconds;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+}
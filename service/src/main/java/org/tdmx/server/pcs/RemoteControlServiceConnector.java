@@ -59,6 +59,7 @@ import org.tdmx.server.pcs.protobuf.PCSServer.RegisterRelayServerRequest;
 import org.tdmx.server.pcs.protobuf.PCSServer.RegisterRelayServerResponse;
 import org.tdmx.server.pcs.protobuf.PCSServer.RegisterServerRequest;
 import org.tdmx.server.pcs.protobuf.PCSServer.RegisterServerResponse;
+import org.tdmx.server.runtime.ExecutorStrategy;
 import org.tdmx.server.runtime.Manageable;
 import org.tdmx.server.session.WebServiceSessionEndpoint;
 import org.tdmx.server.ws.session.WebServiceApiName;
@@ -135,6 +136,12 @@ public class RemoteControlServiceConnector
 	private int acceptorThreads = 2;
 	private int ioThreads = 16;
 	private int ioBufferSize = 1048576;
+
+	/**
+	 * The strategy which creates the RPC call executor. If not set, a pool of coreRpcExecutorThreads to
+	 * maxRpcExecutorThreads is used.
+	 */
+	private ExecutorStrategy rpcExecutorStrategy;
 	private boolean tcpNoDelay = true;
 
 	/**
@@ -175,7 +182,13 @@ public class RemoteControlServiceConnector
 
 		PeerInfo serverInfo = new PeerInfo(serverHostname, localPort);
 
-		RpcServerCallExecutor executor = new ThreadPoolCallExecutor(coreRpcExecutorThreads, maxRpcExecutorThreads);
+		RpcServerCallExecutor executor = null;
+		if (rpcExecutorStrategy != null) {
+			log.info("RPC calls run with " + rpcExecutorStrategy);
+			executor = rpcExecutorStrategy.createRpcCallExecutor("PCS-rpc");
+		} else {
+			executor = new ThreadPoolCallExecutor(coreRpcExecutorThreads, maxRpcExecutorThreads);
+		}
 
 		serverFactory = new DuplexTcpServerPipelineFactory(serverInfo);
 		serverFactory.setRpcServerCallExecutor(executor);
@@ -399,7 +412,8 @@ public class RemoteControlServiceConnector
 	@Override
 	public InvalidateCacheResponse invalidateCache(RpcController controller, InvalidateCacheRequest request)
 			throws ServiceException {
-		log.info("Received cache invalidation[" + request.getId() + ":" + request.getCacheName() + "]");
+		log.info("Received cache invalidation[" + request.getId() + ":" + request.getCacheName() + "] with "
+				+ (request.getBatchKeyValueCount() + (request.hasKeyValue() ? 1 : 0)) + " keys");
 
 		InvalidateCacheResponse.Builder resp = InvalidateCacheResponse.newBuilder();
 
@@ -419,13 +433,8 @@ public class RemoteControlServiceConnector
 					final ClientRpcController revController = revChannel.newRpcController();
 					revController.setTimeoutMs(0);
 
-					org.tdmx.server.pcs.protobuf.Cache.InvalidateCacheRequest.Builder req = org.tdmx.server.pcs.protobuf.Cache.InvalidateCacheRequest
-							.newBuilder();
-					req.setId(request.getId());
-					req.setCacheName(request.getCacheName());
-					if (request.getKeyValue() != null) {
-						req.setKeyValue(request.getKeyValue());
-					}
+					// the request is forwarded as is, with all keys of a batch.
+					org.tdmx.server.pcs.protobuf.Cache.InvalidateCacheRequest.Builder req = request.toBuilder();
 					try {
 						blockingService.invalidateCache(revController, req.build());
 						log.info("Cache invalidated " + req + " for " + revChannel.getPeerInfo());
@@ -617,6 +626,14 @@ public class RemoteControlServiceConnector
 		this.ioBufferSize = ioBufferSize;
 	}
 
+	public ExecutorStrategy getRpcExecutorStrategy() {
+		return rpcExecutorStrategy;
+	}
+
+	public void setRpcExecutorStrategy(ExecutorStrategy rpcExecutorStrategy) {
+		this.rpcExecutorStrategy = rpcExecutorStrategy;
+	}
+
 	public boolean isTcpNoDelay() {
 		return tcpNoDelay;
 	}
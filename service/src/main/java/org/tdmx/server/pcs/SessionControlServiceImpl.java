@@ -31,6 +31,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -83,10 +84,10 @@ public class SessionControlServiceImpl
 	private int sessionIdLength = 24;
 
 	/**
-	 * The maximum number of servers to consider for roundrobin load allocation. Having a small value here means that
-	 * less servers are load balanced which have capacity and we can find these servers faster.
+	 * The number of randomly picked servers of which the least loaded gets a new session. Two already avoids most
+	 * imbalance, more choices balance better but herd more on the least loaded servers.
 	 */
-	private int maximumRoundRobinSize = 4;
+	private int loadBalancingChoices = 2;
 
 	/**
 	 * Map keyed by WebServiceApiName to Map keyed by sessionKey to SessionHolder.
@@ -237,7 +238,8 @@ public class SessionControlServiceImpl
 		private final ServerSessionController ssm;
 		private final String tosAddress;
 
-		private int loadValue;
+		private volatile int loadValue;
+		private final AtomicInteger allocationsInFlight = new AtomicInteger();
 
 		public ServerHolder(ServiceHandle handle, ServerSessionController ssm, String tosAddress) {
 			if (handle == null) {
@@ -267,6 +269,21 @@ public class SessionControlServiceImpl
 			this.loadValue = loadValue;
 		}
 
+		/**
+		 * @return the last reported load plus the session allocations in flight.
+		 */
+		public int getEffectiveLoad() {
+			return loadValue + allocationsInFlight.get();
+		}
+
+		public void beginAllocation() {
+			allocationsInFlight.incrementAndGet();
+		}
+
+		public void completeAllocation() {
+			allocationsInFlight.decrementAndGet();
+		}
+
 		public ServerSessionController getSsm() {
 			return ssm;
 		}
@@ -285,11 +302,15 @@ public class SessionControlServiceImpl
 	public static class ServerApiHolder {
 		private final Map<String, ServerHolder> serverMap = new ConcurrentHashMap<>();
 		private final AtomicInteger totalLoad = new AtomicInteger(0);
-		private final int roundRobinLen;
-		private int roundRobinIndex = 0;
+		private final int choices;
+
+		/**
+		 * Snapshot of the servers to choose from, replaced whenever a server is added or removed.
+		 */
+		private volatile ServerHolder[] servers = new ServerHolder[0];
 
-		public ServerApiHolder(int roundRobinLen) {
-			this.roundRobinLen = roundRobinLen;
+		public ServerApiHolder(int choices) {
+			this.choices = Math.max(choices, 1);
 		}
 
 		/**
@@ -310,58 +331,67 @@ public class SessionControlServiceImpl
 		}
 
 		public Map<String, ServerHolder> getServerMap() {
-			return serverMap;
+			return Collections.unmodifiableMap(serverMap);
+		}
+
+		public synchronized void addServer(ServerHolder server) {
+			serverMap.put(server.getHandle().getHttpsUrl(), server);
+			servers = serverMap.values().toArray(new ServerHolder[0]);
+		}
+
+		public synchronized ServerHolder removeServer(String httpsUrl) {
+			ServerHolder server = serverMap.remove(httpsUrl);
+			if (server != null) {
+				totalLoad.addAndGet(-server.getLoadValue());
+				servers = serverMap.values().toArray(new ServerHolder[0]);
+			}
+			return server;
 		}
 
 		/**
 		 * Determine the Server to use for the next new Session assignment.
 		 * 
-		 * Algorithm:
-		 * 
-		 * 1) if any server exists which has less than half the average load, then this is used immediately ( fast ramp
-		 * up )
+		 * Algorithm ( power of d choices ):
 		 * 
-		 * 2) round robin select from up to roundRobinLen servers which have less than the average load
+		 * 1) if there are no more servers than choices, take the one with the least effective load
 		 * 
-		 * 3) (unlikely) first one if every server has exactly the same load :)
+		 * 2) otherwise take the one with the least effective load of choices randomly picked servers
 		 * 
+		 * The effective load is the last reported load plus the allocations in flight, so a burst of allocations spreads
+		 * out before the servers report their new load. The caller must call {@link ServerHolder#completeAllocation()}
+		 * when the allocation is done.
 		 * 
-		 * @return
+		 * @return null if there are no servers.
 		 */
 		public ServerHolder getLoadBalancedServer() {
-			// find the average
-			int numServers = Math.max(serverMap.size(), 1);
-			int aveLoad = totalLoad.get() / numServers;
-			int halfAverage = aveLoad / 2;
-
-			List<ServerHolder> potentials = new ArrayList<>();
-			for (Entry<String, ServerHolder> entry : serverMap.entrySet()) {
-				int serverLoadValue = entry.getValue().getLoadValue();
-				if (serverLoadValue < halfAverage) {
-					return entry.getValue();
-				} else if (serverLoadValue < aveLoad) {
-					potentials.add(entry.getValue());
-					if (potentials.size() >= roundRobinLen) {
-						break;
+			ServerHolder[] candidates = servers;
+			if (candidates.length == 0) {
+				return null;
+			}
+			ServerHolder best = null;
+			if (candidates.length <= choices) {
+				for (ServerHolder candidate : candidates) {
+					if (best == null || candidate.getEffectiveLoad() < best.getEffectiveLoad()) {
+						best = candidate;
 					}
 				}
-			}
-			// case 3 - very exceptional
-			if (potentials.isEmpty() && serverMap.size() > 0) {
-				for (Entry<String, ServerHolder> entry : serverMap.entrySet()) {
-					return entry.getValue();
+			} else {
+				ThreadLocalRandom rnd = ThreadLocalRandom.current();
+				for (int i = 0; i < choices; i++) {
+					ServerHolder candidate = candidates[rnd.nextInt(candidates.length)];
+					if (best == null || candidate.getEffectiveLoad() < best.getEffectiveLoad()) {
+						best = candidate;
+					}
 				}
 			}
-			// case 2 - next round robin
-			roundRobinIndex += 1;
-			roundRobinIndex %= roundRobinLen;
-			return potentials.get(roundRobinIndex % potentials.size());
+			best.beginAllocation();
+			return best;
 		}
 
-		public void clear() {
+		public synchronized void clear() {
 			serverMap.clear();
+			servers = new ServerHolder[0];
 			totalLoad.set(0);
-			roundRobinIndex = 0;
 		}
 	}
 
@@ -395,10 +425,17 @@ public class SessionControlServiceImpl
 					associateCert(existingSession, clientCertificate);
 
 					// we need to allocate the new session for the client on a backend server with the least load
-					ServiceStatistic stat = api.getSsm().createSession(sessionData.getApi(), sessionId,
-							clientCertificate, sessionData.getSeedAttributes());
+					ServiceStatistic stat = null;
+					try {
+						stat = api.getSsm().createSession(sessionData.getApi(), sessionId, clientCertificate,
+								sessionData.getSeedAttributes());
+						if (stat != null) {
+							updateServerStat(stat);
+						}
+					} finally {
+						api.completeAllocation();
+					}
 					if (stat != null) {
-						updateServerStat(stat);
 						existingSession.setServer(api);
 						return existingSession.getSessionEndpoint();
 					} else {
@@ -515,10 +552,10 @@ public class SessionControlServiceImpl
 		sessionMap.put(WebServiceApiName.MRS, new ConcurrentHashMap<>());
 		sessionMap.put(WebServiceApiName.ZAS, new ConcurrentHashMap<>());
 		// initialize serverMap
-		serverMap.put(WebServiceApiName.MOS, new ServerApiHolder(getMaximumRoundRobinSize()));
-		serverMap.put(WebServiceApiName.MDS, new ServerApiHolder(getMaximumRoundRobinSize()));
-		serverMap.put(WebServiceApiName.MRS, new ServerApiHolder(getMaximumRoundRobinSize()));
-		serverMap.put(WebServiceApiName.ZAS, new ServerApiHolder(getMaximumRoundRobinSize()));
+		serverMap.put(WebServiceApiName.MOS, new ServerApiHolder(getLoadBalancingChoices()));
+		serverMap.put(WebServiceApiName.MDS, new ServerApiHolder(getLoadBalancingChoices()));
+		serverMap.put(WebServiceApiName.MRS, new ServerApiHolder(getLoadBalancingChoices()));
+		serverMap.put(WebServiceApiName.ZAS, new ServerApiHolder(getLoadBalancingChoices()));
 
 		clear();
 
@@ -615,21 +652,20 @@ public class SessionControlServiceImpl
 	}
 
 	private void registerService(ServiceHandle service, ServerSessionController ssm, String tosAddress) {
-		Map<String, ServerHolder> serviceMap = serverMap.get(service.getApi()).getServerMap();
-		if (serviceMap.get(service.getHttpsUrl()) != null) {
+		ServerApiHolder servers = serverMap.get(service.getApi());
+		if (servers.getServerMap().get(service.getHttpsUrl()) != null) {
 			log.warn("Server exists. " + service.getHttpsUrl());
 		} else {
 			ServerHolder holder = new ServerHolder(service, ssm, tosAddress);
-			serviceMap.put(service.getHttpsUrl(), holder);
+			servers.addServer(holder);
 		}
 	}
 
 	private void unregisterService(ServiceHandle service) {
-		Map<String, ServerHolder> serviceMap = serverMap.get(service.getApi()).getServerMap();
-		if (serviceMap.get(service.getHttpsUrl()) == null) {
+		ServerApiHolder servers = serverMap.get(service.getApi());
+		if (servers.removeServer(service.getHttpsUrl()) == null) {
 			log.warn("Server doesn't exist. " + service.getHttpsUrl());
 		} else {
-			serviceMap.remove(service.getHttpsUrl());
 			removeServiceSessions(service.getApi(), service.getHttpsUrl());
 		}
 	}
@@ -748,12 +784,12 @@ public class SessionControlServiceImpl
 		return serverMap.get(api).totalLoad.get();
 	}
 
-	public int getMaximumRoundRobinSize() {
-		return maximumRoundRobinSize;
+	public int getLoadBalancingChoices() {
+		return loadBalancingChoices;
 	}
 
-	public void setMaximumRoundRobinSize(int maximumRoundRobinSize) {
-		this.maximumRoundRobinSize = maximumRoundRobinSize;
+	public void setLoadBalancingChoices(int loadBalancingChoices) {
+		this.loadBalancingChoices = loadBalancingChoices;
 	}
 
 	public int getSessionStatisticsCheckIntervalSec() {
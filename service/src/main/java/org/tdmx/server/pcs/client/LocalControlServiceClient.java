@@ -18,6 +18,9 @@
  */
 package org.tdmx.server.pcs.client;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -83,6 +86,22 @@ public class LocalControlServiceClient
 
 	@Override
 	public ProcessingState invalidateCache(Segment segment, CacheInvalidationInstruction instruction) {
+		return invalidateCache(segment, Collections.singletonList(instruction));
+	}
+
+	@Override
+	public ProcessingState invalidateCache(Segment segment, List<CacheInvalidationInstruction> instructions) {
+		CacheInvalidationInstruction instruction = instructions.get(0);
+		// a single request carries all keys, unless one instruction invalidates the whole cache.
+		List<String> keys = new ArrayList<>();
+		for (CacheInvalidationInstruction i : instructions) {
+			if (i.getKey() == null) {
+				keys.clear();
+				break;
+			}
+			keys.add(i.getKey());
+		}
+
 		String errorInfo = "PCS communication channel closed.";
 		if (!rpcClient.isClosed()) {
 
@@ -94,13 +113,14 @@ public class LocalControlServiceClient
 					.newBuilder();
 			req.setId(instruction.getId());
 			req.setCacheName(instruction.getName());
-			if (instruction.getKey() != null) {
-				req.setKeyValue(instruction.getKey());
+			if (!keys.isEmpty()) {
+				req.setKeyValue(keys.get(0));
+				req.addAllBatchKeyValue(keys.subList(1, keys.size()));
 			}
 			try {
 				InvalidateCacheResponse resp = blockingService.invalidateCache(controller, req.build());
 				if (resp != null && resp.getSuccess()) {
-					log.info("Cache invalidated " + instruction);
+					log.info("Cache invalidated " + instructions);
 					return ProcessingState.none();
 				}
 				errorInfo = "PCS indicated failure of cache invalidation at one or more attached PCC.";
@@ -110,7 +130,7 @@ public class LocalControlServiceClient
 		}
 		ProcessingState error = ProcessingState.error(ErrorCode.CacheInvalidationFailed.getErrorCode(),
 				ErrorCode.CacheInvalidationFailed.getErrorDescription(instruction.getId(), instruction.getName(),
-						instruction.getKey(), errorInfo));
+						keys.isEmpty() ? null : StringUtils.convertStringListToCsv(keys), errorInfo));
 		return error;
 	}
 
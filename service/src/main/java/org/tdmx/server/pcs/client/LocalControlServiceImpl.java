@@ -19,6 +19,8 @@
 package org.tdmx.server.pcs.client;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -127,11 +129,17 @@ public class LocalControlServiceImpl
 
 	@Override
 	public ProcessingState invalidateCache(Segment segment, CacheInvalidationInstruction instruction) {
+		return invalidateCache(segment, Collections.singletonList(instruction));
+	}
+
+	@Override
+	public ProcessingState invalidateCache(Segment segment, List<CacheInvalidationInstruction> instructions) {
+		CacheInvalidationInstruction instruction = instructions.get(0);
 		// if we are connected to any PCS at all, then taking one is enough.
 		// we use a hash distribution of the unique ID but we could do round-robin instead.
 		LocalControlServiceClient clientProxy = consistentHashToServer(instruction.getId());
 		if (clientProxy != null) {
-			return clientProxy.invalidateCache(segment, instruction);
+			return clientProxy.invalidateCache(segment, instructions);
 		} else {
 			String errorInfo = "No PCS client proxy found for " + consistentHashCode(instruction.getId());
 			ProcessingState error = ProcessingState.error(ErrorCode.CacheInvalidationFailed.getErrorCode(),
@@ -250,10 +258,10 @@ public class LocalControlServiceImpl
 								InvalidateCacheRequest request) throws ServiceException {
 							CacheInvalidationListener cil = cacheInvalidationListener;
 							if (cil != null) {
-								CacheInvalidationInstruction cii = CacheInvalidationInstruction
-										.newInstruction(request.getId(), request.getCacheName(), request.getKeyValue());
-								log.info("Handling inbound cache invalidation request " + cii);
-								cil.invalidateCache(cii);
+								for (CacheInvalidationInstruction cii : mapFrom(request)) {
+									log.info("Handling inbound cache invalidation request " + cii);
+									cil.invalidateCache(cii);
+								}
 							}
 							InvalidateCacheResponse.Builder response = InvalidateCacheResponse.newBuilder();
 							return response.build();
@@ -348,6 +356,24 @@ public class LocalControlServiceImpl
 		}
 	}
 
+	/**
+	 * Map an inbound request to one instruction per key it carries. The instructions of a batch get distinct IDs so
+	 * that the CacheInvalidationEventDelegater does not filter them as duplicates of each other.
+	 * 
+	 * @param request
+	 * @return the instructions of the request.
+	 */
+	private List<CacheInvalidationInstruction> mapFrom(InvalidateCacheRequest request) {
+		List<CacheInvalidationInstruction> result = new ArrayList<>();
+		String key = request.hasKeyValue() ? request.getKeyValue() : null;
+		result.add(CacheInvalidationInstruction.newInstruction(request.getId(), request.getCacheName(), key));
+		for (int i = 0; i < request.getBatchKeyValueCount(); i++) {
+			result.add(CacheInvalidationInstruction.newInstruction(request.getId() + "#" + (i + 1),
+					request.getCacheName(), request.getBatchKeyValue(i)));
+		}
+		return result;
+	}
+
 	private int consistentHashCode(String key) {
 		if (serverList == null || serverList.isEmpty()) {
 			return -1;
@@ -25,6 +25,10 @@ public final class Cache {
      * <code>DatabasePartition = 2;</code>
      */
     DatabasePartition(2, 2),
+    /**
+     * <code>ZoneEntity = 3;</code>
+     */
+    ZoneEntity(3, 3),
     ;
 
     /**
@@ -39,6 +43,10 @@ public final class Cache {
      * <code>DatabasePartition = 2;</code>
      */
     public static final int DatabasePartition_VALUE = 2;
+    /**
+     * <code>ZoneEntity = 3;</code>
+     */
+    public static final int ZoneEntity_VALUE = 3;
 
 
     public final int getNumber() { return value; }
@@ -48,6 +56,7 @@ public final class Cache {
         case 0: return DnsResolverGroup;
         case 1: return TrustStore;
         case 2: return DatabasePartition;
+        case 3: return ZoneEntity;
         default: return null;
       }
     }
@@ -139,6 +148,25 @@ public final class Cache {
      */
     com.google.protobuf.ByteString
         getKeyValueBytes();
+
+    /**
+     * <code>repeated string batchKeyValue = 4;</code>
+     */
+    com.google.protobuf.ProtocolStringList
+        getBatchKeyValueList();
+    /**
+     * <code>repeated string batchKeyValue = 4;</code>
+     */
+    int getBatchKeyValueCount();
+    /**
+     * <code>repeated string batchKeyValue = 4;</code>
+     */
+    java.lang.String getBatchKeyValue(int index);
+    /**
+     * <code>repeated string batchKeyValue = 4;</code>
+     */
+    com.google.protobuf.ByteString
+        getBatchKeyValueBytes(int index);
   }
   /**
    * Protobuf type {@code InvalidateCacheRequest}
@@ -219,6 +247,15 @@ public final class Cache {
               keyValue_ = bs;
               break;
             }
+            case 34: {
+              com.google.protobuf.ByteString bs = input.readBytes();
+              if (!((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+                batchKeyValue_ = new com.google.protobuf.LazyStringArrayList();
+                mutable_bitField0_ |= 0x00000008;
+              }
+              batchKeyValue_.add(bs);
+              break;
+            }
           }
         }
       } catch (com.google.protobuf.InvalidProtocolBufferException e) {
@@ -227,6 +264,9 @@ public final class Cache {
         throw new com.google.protobuf.InvalidProtocolBufferException(
             e.getMessage()).setUnfinishedMessage(this);
       } finally {
+        if (((mutable_bitField0_ & 0x00000008) == 0x00000008)) {
+          batchKeyValue_ = batchKeyValue_.getUnmodifiableView();
+        }
         this.unknownFields = unknownFields.build();
         makeExtensionsImmutable();
       }
@@ -358,10 +398,40 @@ public final class Cache {
       }
     }
 
+    public static final int BATCHKEYVALUE_FIELD_NUMBER = 4;
+    private com.google.protobuf.LazyStringList batchKeyValue_;
+    /**
+     * <code>repeated string batchKeyValue = 4;</code>
+     */
+    public com.google.protobuf.ProtocolStringList
+        getBatchKeyValueList() {
+      return batchKeyValue_;
+    }
+    /**
+     * <code>repeated string batchKeyValue = 4;</code>
+     */
+    public int getBatchKeyValueCount() {
+      return batchKeyValue_.size();
+    }
+    /**
+     * <code>repeated string batchKeyValue = 4;</code>
+     */
+    public java.lang.String getBatchKeyValue(int index) {
+      return batchKeyValue_.get(index);
+    }
+    /**
+     * <code>repeated string batchKeyValue = 4;</code>
+     */
+    public com.google.protobuf.ByteString
+        getBatchKeyValueBytes(int index) {
+      return batchKeyValue_.getByteString(index);
+    }
+
     private void initFields() {
       id_ = "";
       cacheName_ = org.tdmx.server.pcs.protobuf.Cache.CacheName.DnsResolverGroup;
       keyValue_ = "";
+      batchKeyValue_ = com.google.protobuf.LazyStringArrayList.EMPTY;
     }
     private byte memoizedIsInitialized = -1;
     public final boolean isInitialized() {
@@ -393,6 +463,9 @@ public final class Cache {
       if (((bitField0_ & 0x00000004) == 0x00000004)) {
         output.writeBytes(3, getKeyValueBytes());
       }
+      for (int i = 0; i < batchKeyValue_.size(); i++) {
+        output.writeBytes(4, batchKeyValue_.getByteString(i));
+      }
       getUnknownFields().writeTo(output);
     }
 
@@ -414,6 +487,15 @@ public final class Cache {
         size += com.google.protobuf.CodedOutputStream
           .computeBytesSize(3, getKeyValueBytes());
       }
+      {
+        int dataSize = 0;
+        for (int i = 0; i < batchKeyValue_.size(); i++) {
+          dataSize += com.google.protobuf.CodedOutputStream
+            .computeBytesSizeNoTag(batchKeyValue_.getByteString(i));
+        }
+        size += dataSize;
+        size += 1 * getBatchKeyValueList().size();
+      }
       size += getUnknownFields().getSerializedSize();
       memoizedSerializedSize = size;
       return size;
@@ -541,6 +623,8 @@ public final class Cache {
         bitField0_ = (bitField0_ & ~0x00000002);
         keyValue_ = "";
         bitField0_ = (bitField0_ & ~0x00000004);
+        batchKeyValue_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000008);
         return this;
       }
 
@@ -581,6 +665,11 @@ public final class Cache {
           to_bitField0_ |= 0x00000004;
         }
         result.keyValue_ = keyValue_;
+        if (((bitField0_ & 0x00000008) == 0x00000008)) {
+          batchKeyValue_ = batchKeyValue_.getUnmodifiableView();
+          bitField0_ = (bitField0_ & ~0x00000008);
+        }
+        result.batchKeyValue_ = batchKeyValue_;
         result.bitField0_ = to_bitField0_;
         onBuilt();
         return result;
@@ -610,6 +699,16 @@ public final class Cache {
           keyValue_ = other.keyValue_;
           onChanged();
         }
+        if (!other.batchKeyValue_.isEmpty()) {
+          if (batchKeyValue_.isEmpty()) {
+            batchKeyValue_ = other.batchKeyValue_;
+            bitField0_ = (bitField0_ & ~0x00000008);
+          } else {
+            ensureBatchKeyValueIsMutable();
+            batchKeyValue_.addAll(other.batchKeyValue_);
+          }
+          onChanged();
+        }
         this.mergeUnknownFields(other.getUnknownFields());
         return this;
       }
@@ -832,6 +931,99 @@ public final class Cache {
         return this;
       }
 
+      private com.google.protobuf.LazyStringList batchKeyValue_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+      private void ensureBatchKeyValueIsMutable() {
+        if (!((bitField0_ & 0x00000008) == 0x00000008)) {
+          batchKeyValue_ = new com.google.protobuf.LazyStringArrayList(batchKeyValue_);
+          bitField0_ |= 0x00000008;
+         }
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public com.google.protobuf.ProtocolStringList
+          getBatchKeyValueList() {
+        return batchKeyValue_.getUnmodifiableView();
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public int getBatchKeyValueCount() {
+        return batchKeyValue_.size();
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public java.lang.String getBatchKeyValue(int index) {
+        return batchKeyValue_.get(index);
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public com.google.protobuf.ByteString
+          getBatchKeyValueBytes(int index) {
+        return batchKeyValue_.getByteString(index);
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public Builder setBatchKeyValue(
+          int index, java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureBatchKeyValueIsMutable();
+        batchKeyValue_.set(index, value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public Builder addBatchKeyValue(
+          java.lang.String value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureBatchKeyValueIsMutable();
+        batchKeyValue_.add(value);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public Builder addAllBatchKeyValue(
+          java.lang.Iterable<java.lang.String> values) {
+        ensureBatchKeyValueIsMutable();
+        com.google.protobuf.AbstractMessageLite.Builder.addAll(
+            values, batchKeyValue_);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public Builder clearBatchKeyValue() {
+        batchKeyValue_ = com.google.protobuf.LazyStringArrayList.EMPTY;
+        bitField0_ = (bitField0_ & ~0x00000008);
+        onChanged();
+        return this;
+      }
+      /**
+       * <code>repeated string batchKeyValue = 4;</code>
+       */
+      public Builder addBatchKeyValueBytes(
+          com.google.protobuf.ByteString value) {
+        if (value == null) {
+    throw new NullPointerException();
+  }
+  ensureBatchKeyValueIsMutable();
+        batchKeyValue_.add(value);
+        onChanged();
+        return this;
+      }
+
       // @@protoc_insertion_point(builder_scope:InvalidateCacheRequest)
     }
 
@@ -1499,12 +1691,14 @@ public final class Cache {
       descriptor;
   static {
     java.lang.String[] descriptorData = {
-      "\n\013cache.proto\"U\n\026InvalidateCacheRequest\022" +
+      "\n\013cache.proto\"l\n\026InvalidateCacheRequest\022" +
       "\n\n\002id\030\001 \002(\t\022\035\n\tcacheName\030\002 \002(\0162\n.CacheNa" +
-      "me\022\020\n\010keyValue\030\003 \001(\t\"*\n\027InvalidateCacheR" +
-      "esponse\022\017\n\007success\030\001 \001(\010*H\n\tCacheName\022\024\n" +
+      "me\022\020\n\010keyValue\030\003 \001(\t\022\025\n\rbatchKeyV" +
+      "alue\030\004 \003(\t\"*\n\027InvalidateCacheR" +
+      "esponse\022\017\n\007success\030\001 \001(\010*X\n\tCacheName\022\024\n" +
       "\020DnsResolverGroup\020\000\022\016\n\nTrustStore\020\001\022\025\n\021D" +
-      "atabasePartition\020\0022Y\n\021CacheServiceProxy\022" +
+      "atabasePartition\020\002\022\016\n\nZoneEntity\020\0032Y\n" +
+      "\021CacheServiceProxy\022" +
       "D\n\017invalidateCache\022\027.InvalidateCacheRequ" +
       "est\032\030.InvalidateCacheResponseB(\n\034org.tdm" +
       "x.server.pcs.protobufB\005Cache\210\001\001"
@@ -1526,7 +1720,7 @@ public final class Cache {
     internal_static_InvalidateCacheRequest_fieldAccessorTable = new
       com.google.protobuf.GeneratedMessage.FieldAccessorTable(
         internal_static_InvalidateCacheRequest_descriptor,
-        new java.lang.String[] { "Id", "CacheName", "KeyValue", });
+        new java.lang.String[] { "Id", "CacheName", "KeyValue", "BatchKeyValue", });
     internal_static_InvalidateCacheResponse_descriptor =
       getDescriptor().getMessageTypes().get(1);
     internal_static_InvalidateCacheResponse_fieldAccessorTable = new
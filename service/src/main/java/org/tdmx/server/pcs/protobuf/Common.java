@@ -282,6 +282,10 @@ public final class Common {
        * <code>MessageId = 9;</code>
        */
       MessageId(9, 9),
+      /**
+       * <code>DestinationSerialNr = 10;</code>
+       */
+      DestinationSerialNr(10, 10),
       ;
 
       /**
@@ -324,6 +328,10 @@ public final class Common {
        * <code>MessageId = 9;</code>
        */
       public static final int MessageId_VALUE = 9;
+      /**
+       * <code>DestinationSerialNr = 10;</code>
+       */
+      public static final int DestinationSerialNr_VALUE = 10;
 
 
       public final int getNumber() { return value; }
@@ -340,6 +348,7 @@ public final class Common {
           case 7: return AuthorizationId;
           case 8: return FlowQuotaId;
           case 9: return MessageId;
+          case 10: return DestinationSerialNr;
           default: return null;
         }
       }
@@ -768,14 +777,14 @@ public final class Common {
       descriptor;
   static {
     java.lang.String[] descriptorData = {
-      "\n\014common.proto\"\201\002\n\016AttributeValue\022)\n\004nam" +
+      "\n\014common.proto\"\232\002\n\016AttributeValue\022)\n\004nam" +
       "e\030\001 \002(\0162\033.AttributeValue.AttributeId\022\r\n\005" +
-      "value\030\002 \001(\003\"\264\001\n\013AttributeId\022\021\n\rAccountZo" +
+      "value\030\002 \001(\003\"\315\001\n\013AttributeId\022\021\n\rAccountZo" +
       "neId\020\000\022\n\n\006ZoneId\020\001\022\014\n\010DomainId\020\002\022\r\n\tChan" +
       "nelId\020\003\022\026\n\022TemporaryChannelId\020\004\022\r\n\tServi" +
       "ceId\020\005\022\r\n\tAddressId\020\006\022\023\n\017AuthorizationId" +
-      "\020\007\022\017\n\013FlowQuotaId\020\010\022\r\n\tMessageId\020\t*U\n\nOb" +
-      "jectType\022\013\n\007Message\020\000\022\021\n\rAuthorization\020\001" +
+      "\020\007\022\017\n\013FlowQuotaId\020\010\022\r\n\tMessageId\020\t\022\027\n\023Destinati" +
+      "onSerialNr\020\n*U\n\nObjectType\022\013\n\007Message\020\000\022\021\n\rAuthorization\020\001" +
       "\022\026\n\022DestinationSession\020\002\022\017\n\013FlowControl\020" +
       "\003B&\n\034org.tdmx.server.pcs.protobufB\006Commo",
       "n"
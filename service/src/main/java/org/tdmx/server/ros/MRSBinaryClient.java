@@ -0,0 +1,163 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ros;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import javax.xml.ws.WebServiceException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.core.api.v01.mrs.Relay;
+import org.tdmx.core.api.v01.mrs.RelayResponse;
+import org.tdmx.core.api.v01.mrs.ws.MRS;
+import org.tdmx.server.ws.mrs.MRSBinaryCodec;
+
+/**
+ * A MRS client which relays Msgs and Chunks over the binary transport of the MRS, and all other relays over SOAP.
+ * 
+ * If the MRS turns out not to provide the binary transport, the client falls back to SOAP for good.
+ * 
+ * @author Peter
+ * 
+ */
+public class MRSBinaryClient implements MRS {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(MRSBinaryClient.class);
+
+	private static final int STREAMING_CHUNK_SIZE = 64 * 1024;
+
+	private final MRS soapClient;
+	private final URL binaryUrl;
+	private final SSLSocketFactory socketFactory;
+	private final int connectionTimeoutMillis;
+	private final int readTimeoutMillis;
+
+	private final MRSBinaryCodec codec = new MRSBinaryCodec();
+
+	private volatile boolean binaryAvailable = true;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	public MRSBinaryClient(MRS soapClient, URL binaryUrl, SSLSocketFactory socketFactory, int connectionTimeoutMillis,
+			int readTimeoutMillis) {
+		this.soapClient = soapClient;
+		this.binaryUrl = binaryUrl;
+		this.socketFactory = socketFactory;
+		this.connectionTimeoutMillis = connectionTimeoutMillis;
+		this.readTimeoutMillis = readTimeoutMillis;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	@Override
+	public RelayResponse relay(Relay parameters) {
+		if (!binaryAvailable || !MRSBinaryCodec.isBinaryRelay(parameters)) {
+			return soapClient.relay(parameters);
+		}
+		try {
+			RelayResponse response = relayBinary(parameters);
+			if (response != null) {
+				return response;
+			}
+		} catch (IOException e) {
+			throw new WebServiceException("Binary relay to " + binaryUrl + " failed.", e);
+		}
+		log.warn("MRS binary transport not available at " + binaryUrl + ", falling back to SOAP.");
+		binaryAvailable = false;
+		return soapClient.relay(parameters);
+	}
+
+	public boolean isBinaryAvailable() {
+		return binaryAvailable;
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Relay over the binary transport.
+	 * 
+	 * @param parameters
+	 * @return the response or null if the MRS does not provide the binary transport.
+	 * @throws IOException
+	 */
+	private RelayResponse relayBinary(Relay parameters) throws IOException {
+		HttpsURLConnection con = (HttpsURLConnection) binaryUrl.openConnection();
+		// the connection is kept alive by the JDK per host and socketFactory
+		con.setSSLSocketFactory(socketFactory);
+		con.setConnectTimeout(connectionTimeoutMillis);
+		con.setReadTimeout(readTimeoutMillis);
+		con.setRequestMethod("POST");
+		con.setRequestProperty("Content-Type", MRSBinaryCodec.CONTENT_TYPE);
+		con.setDoOutput(true);
+		con.setChunkedStreamingMode(STREAMING_CHUNK_SIZE);
+
+		try (OutputStream out = con.getOutputStream()) {
+			codec.writeRelay(parameters, out);
+		}
+
+		int status = con.getResponseCode();
+		if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+			closeErrorStream(con);
+			return null;
+		}
+		if (status != HttpURLConnection.HTTP_OK) {
+			closeErrorStream(con);
+			throw new IOException("HTTP status " + status);
+		}
+		try (InputStream in = con.getInputStream()) {
+			return codec.readRelayResponse(in);
+		}
+	}
+
+	private void closeErrorStream(HttpURLConnection con) throws IOException {
+		InputStream es = con.getErrorStream();
+		if (es != null) {
+			es.close();
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+}
@@ -19,7 +19,24 @@
 package org.tdmx.server.ros;
 
 import java.io.IOException;
-
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.KeyManager;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 import javax.xml.ws.WebServiceException;
 
@@ -46,6 +63,7 @@ import org.tdmx.core.api.v01.mrs.ws.MRS;
 import org.tdmx.core.api.v01.scs.Endpoint;
 import org.tdmx.core.api.v01.scs.GetMRSSession;
 import org.tdmx.core.api.v01.scs.GetMRSSessionResponse;
+import org.tdmx.core.api.v01.scs.RelayTransport;
 import org.tdmx.core.api.v01.scs.ws.SCS;
 import org.tdmx.core.system.lang.FileUtils;
 import org.tdmx.core.system.lang.StringUtils;
@@ -64,6 +82,8 @@ import org.tdmx.server.ws.ErrorCode;
 import org.tdmx.server.ws.mrs.MRSServerSession;
 import org.tdmx.server.ws.security.service.AuthorizedSessionService;
 
+import com.googlecode.protobuf.pro.duplex.util.RenamingThreadFactoryProxy;
+
 /**
  * Relay Connection Provider
  * 
@@ -94,6 +114,7 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 	private static final String TLS_VERSION = "TLSv1.2";
 	private static final int CONNECTION_TIMEOUT_MS = 10000;
 	private static final int READ_TIMEOUT_MS = 60000;
+	private static final int MRS_CLIENT_EVICTION_INTERVAL_SEC = 60;
 
 	private String keyStoreFile;
 	private String keyStoreType;
@@ -107,6 +128,16 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 	private MRS shortcutMrs;
 	private ThreadLocalPartitionIdProvider partitionIdProvider;
 
+	/**
+	 * MRS clients which are not used for longer are evicted from the cache.
+	 */
+	private int maxIdleMrsClientSec = 600;
+
+	/**
+	 * Whether to negotiate the binary transport for relaying Msgs and Chunks with the MRS.
+	 */
+	private boolean binaryRelayEnabled = false;
+
 	private final DomainToApiMapper d2a = new DomainToApiMapper();
 
 	// internal
@@ -114,6 +145,14 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 	private SCS scsClient;
 	private String segmentScsUrl;
 
+	// MRS clients by MRS url and MRS server certificate fingerprint, shared by all relay sessions to the MRS so that
+	// the keep-alive connections and TLS sessions of the client's conduit are reused.
+	private final Map<String, CachedMrsClient> mrsClientCache = new ConcurrentHashMap<>();
+	private final AtomicLong mrsClientCacheHits = new AtomicLong();
+	private final AtomicLong mrsClientCacheMisses = new AtomicLong();
+	private final AtomicLong mrsClientCacheEvictions = new AtomicLong();
+	private ScheduledExecutorService mrsClientEvictionScheduler;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
@@ -182,6 +221,28 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 		factory.setEnabledCipherSuites(STRONG_CIPHERS);
 
 		scsClient = factory.createClient();
+
+		mrsClientEvictionScheduler = Executors.newScheduledThreadPool(1,
+				new RenamingThreadFactoryProxy("MRSClientEviction", Executors.defaultThreadFactory()));
+		mrsClientEvictionScheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				evictIdleMrsClients();
+			}
+		}, MRS_CLIENT_EVICTION_INTERVAL_SEC, MRS_CLIENT_EVICTION_INTERVAL_SEC, TimeUnit.SECONDS);
+	}
+
+	public void shutdown() {
+		if (mrsClientEvictionScheduler != null) {
+			mrsClientEvictionScheduler.shutdownNow();
+			mrsClientEvictionScheduler = null;
+		}
+		Iterator<CachedMrsClient> it = mrsClientCache.values().iterator();
+		while (it.hasNext()) {
+			CachedMrsClient cachedClient = it.next();
+			it.remove();
+			cachedClient.evict();
+		}
 	}
 
 	@Override
@@ -286,6 +347,9 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 
 		GetMRSSession sessionRequest = new GetMRSSession();
 		sessionRequest.setChannel(d2a.mapChannel(channel));
+		if (binaryRelayEnabled) {
+			sessionRequest.getRelayTransport().add(RelayTransport.BINARY);
+		}
 		GetMRSSessionResponse sessionResponse = null;
 		try {
 			sessionResponse = scsClient.getMRSSession(sessionRequest);
@@ -307,6 +371,18 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 		Endpoint endpoint = sessionResponse.getEndpoint();
 		PKIXCertificate mrsServerCert = CertificateIOUtils.safeDecodeX509(endpoint.getTlsCertificate());
 
+		String binaryUrl = RelayTransport.BINARY == sessionResponse.getRelayTransport()
+				? sessionResponse.getBinaryUrl() : null;
+
+		String cacheKey = endpoint.getUrl() + "#" + (mrsServerCert != null ? mrsServerCert.getFingerprint() : "")
+				+ (StringUtils.hasText(binaryUrl) ? "#" + binaryUrl : "");
+		CachedMrsClient cachedClient = mrsClientCache.get(cacheKey);
+		if (cachedClient != null) {
+			mrsClientCacheHits.incrementAndGet();
+			return MRSSessionHolder.success(cachedClient, sessionResponse.getSession().getSessionId(), false);
+		}
+		mrsClientCacheMisses.incrementAndGet();
+
 		// we only trust the one certificate which the MRS gave to us!
 		SingleTrustedCertificateProvider stcp = new SingleTrustedCertificateProvider(mrsServerCert);
 		ServerTrustManagerFactoryImpl rtfm = new ServerTrustManagerFactoryImpl();
@@ -324,12 +400,29 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 		mrsFactory.setTlsProtocolVersion(TLS_VERSION);
 
 		mrsFactory.setEnabledCipherSuites(STRONG_CIPHERS);
+		// chunk data as attachment when not relayed over the binary transport
+		mrsFactory.setMtomEnabled(true);
 
 		MRS mrsClient = null;
 		try {
-			mrsClient = mrsFactory.createClient();
+			MRS soapClient = mrsFactory.createClient();
+			// the client is shared by the relay sessions of all threads
+			ClientProxy.getClient(soapClient).setThreadLocalRequestContext(true);
+			mrsClient = soapClient;
+
+			if (StringUtils.hasText(binaryUrl)) {
+				mrsClient = new MRSBinaryClient(mrsClient, new URL(binaryUrl),
+						createSocketFactory(rtfm.getTrustManager()), CONNECTION_TIMEOUT_MS, READ_TIMEOUT_MS);
+			}
 
-			return MRSSessionHolder.success(mrsClient, sessionResponse.getSession().getSessionId(), false);
+			cachedClient = new CachedMrsClient(mrsClient, soapClient);
+			CachedMrsClient existingClient = mrsClientCache.putIfAbsent(cacheKey, cachedClient);
+			if (existingClient != null) {
+				// another thread created the client concurrently
+				cachedClient.evict();
+				cachedClient = existingClient;
+			}
+			return MRSSessionHolder.success(cachedClient, sessionResponse.getSession().getSessionId(), false);
 		} catch (WebServiceException wse) {
 			// runtime error handling
 			if (log.isDebugEnabled()) {
@@ -339,6 +432,164 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 			log.info("MRS relay SCS call to remote failed " + errorInfo);
 			return MRSSessionHolder.error(ErrorCode.RelayClientConstructionFailed.getErrorCode(),
 					ErrorCode.RelayClientConstructionFailed.getErrorDescription(errorInfo));
+		} catch (MalformedURLException | GeneralSecurityException e) {
+			log.info("MRS binary relay client construction failed.", e);
+			return MRSSessionHolder.error(ErrorCode.RelayClientConstructionFailed.getErrorCode(),
+					ErrorCode.RelayClientConstructionFailed.getErrorDescription(e.getMessage()));
+		}
+	}
+
+	private SSLSocketFactory createSocketFactory(X509TrustManager mrsTrustManager) throws GeneralSecurityException {
+		SSLContext sc = SSLContext.getInstance(TLS_VERSION);
+		sc.init(new KeyManager[] { kmf.getKeyManager() }, new TrustManager[] { mrsTrustManager }, null);
+		return new RestrictedSSLSocketFactory(sc.getSocketFactory(), STRONG_CIPHERS, TLS_VERSION);
+	}
+
+	private void evictIdleMrsClients() {
+		long idleBefore = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(maxIdleMrsClientSec);
+		int evicted = 0;
+		Iterator<CachedMrsClient> it = mrsClientCache.values().iterator();
+		while (it.hasNext()) {
+			CachedMrsClient cachedClient = it.next();
+			if (cachedClient.getLastUsed() < idleBefore) {
+				it.remove();
+				cachedClient.evict();
+				evicted++;
+			}
+		}
+		mrsClientCacheEvictions.addAndGet(evicted);
+		if (evicted > 0) {
+			log.info("MRS client cache size=" + mrsClientCache.size() + " hits=" + mrsClientCacheHits.get()
+					+ " misses=" + mrsClientCacheMisses.get() + " evictions=" + mrsClientCacheEvictions.get());
+		}
+	}
+
+	/**
+	 * A helper value type holding a cached MRS client and the time it was last used. The CXF client is destroyed once
+	 * evicted and no longer in use, relays of sessions still holding the evicted client then fail and are retried with
+	 * a new session.
+	 */
+	private static class CachedMrsClient implements MRS {
+		private final MRS client;
+		private final MRS soapClient;
+		private volatile long lastUsed = System.currentTimeMillis();
+		private int inUse = 0;
+		private boolean evicted = false;
+
+		private CachedMrsClient(MRS client, MRS soapClient) {
+			this.client = client;
+			this.soapClient = soapClient;
+		}
+
+		@Override
+		public RelayResponse relay(Relay parameters) {
+			if (!acquire()) {
+				throw new WebServiceException("MRS client evicted.");
+			}
+			try {
+				lastUsed = System.currentTimeMillis();
+				return client.relay(parameters);
+			} finally {
+				release();
+			}
+		}
+
+		private synchronized boolean acquire() {
+			if (evicted) {
+				return false;
+			}
+			inUse++;
+			return true;
+		}
+
+		private synchronized void release() {
+			inUse--;
+			if (evicted && inUse == 0) {
+				destroy();
+			}
+		}
+
+		private synchronized void evict() {
+			evicted = true;
+			if (inUse == 0) {
+				destroy();
+			}
+		}
+
+		private void destroy() {
+			try {
+				ClientProxy.getClient(soapClient).destroy();
+			} catch (RuntimeException e) {
+				log.warn("Unable to destroy MRS client.", e);
+			}
+		}
+
+		private long getLastUsed() {
+			return lastUsed;
+		}
+	}
+
+	/**
+	 * A helper SSLSocketFactory holding the cipher suites and protocol which the sockets of a delegate are restricted
+	 * to, like the SoapClientFactory does for the SOAP clients.
+	 */
+	private static class RestrictedSSLSocketFactory extends SSLSocketFactory {
+		private final SSLSocketFactory delegate;
+		private final String[] cipherSuites;
+		private final String[] protocols;
+
+		private RestrictedSSLSocketFactory(SSLSocketFactory delegate, String[] cipherSuites, String protocol) {
+			this.delegate = delegate;
+			this.cipherSuites = cipherSuites;
+			this.protocols = new String[] { protocol };
+		}
+
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return cipherSuites;
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return cipherSuites;
+		}
+
+		@Override
+		public Socket createSocket() throws IOException {
+			return restrict(delegate.createSocket());
+		}
+
+		@Override
+		public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+			return restrict(delegate.createSocket(s, host, port, autoClose));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			return restrict(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			return restrict(delegate.createSocket(host, port, localHost, localPort));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			return restrict(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+				throws IOException {
+			return restrict(delegate.createSocket(address, port, localAddress, localPort));
+		}
+
+		private Socket restrict(Socket socket) {
+			SSLSocket sslSocket = (SSLSocket) socket;
+			sslSocket.setEnabledCipherSuites(cipherSuites);
+			sslSocket.setEnabledProtocols(protocols);
+			return sslSocket;
 		}
 	}
 
@@ -346,6 +597,38 @@ public class RelayConnectionProviderImpl implements RelayConnectionProvider {
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
 
+	public long getMrsClientCacheHits() {
+		return mrsClientCacheHits.get();
+	}
+
+	public long getMrsClientCacheMisses() {
+		return mrsClientCacheMisses.get();
+	}
+
+	public long getMrsClientCacheEvictions() {
+		return mrsClientCacheEvictions.get();
+	}
+
+	public int getMrsClientCacheSize() {
+		return mrsClientCache.size();
+	}
+
+	public boolean isBinaryRelayEnabled() {
+		return binaryRelayEnabled;
+	}
+
+	public void setBinaryRelayEnabled(boolean binaryRelayEnabled) {
+		this.binaryRelayEnabled = binaryRelayEnabled;
+	}
+
+	public int getMaxIdleMrsClientSec() {
+		return maxIdleMrsClientSec;
+	}
+
+	public void setMaxIdleMrsClientSec(int maxIdleMrsClientSec) {
+		this.maxIdleMrsClientSec = maxIdleMrsClientSec;
+	}
+
 	public DomainZoneResolutionService getDomainZoneResolver() {
 		return domainZoneResolver;
 	}
@@ -39,6 +39,7 @@ import org.tdmx.lib.zone.domain.Zone;
 import org.tdmx.lib.zone.service.ChannelService;
 import org.tdmx.lib.zone.service.DomainService;
 import org.tdmx.lib.zone.service.ZoneService;
+import org.tdmx.server.cache.ZoneEntityCache;
 
 /**
  * Handles relay data.
@@ -64,6 +65,11 @@ public class RelayDataServiceImpl implements RelayDataService {
 	private DomainService domainService;
 	private ChannelService channelService;
 
+	/**
+	 * Optional cache of the AccountZone, Zone and Domain, which otherwise are read for every relay.
+	 */
+	private ZoneEntityCache zoneEntityCache;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
@@ -74,6 +80,9 @@ public class RelayDataServiceImpl implements RelayDataService {
 
 	@Override
 	public AccountZone getAccountZone(Long accountZoneId) {
+		if (zoneEntityCache != null) {
+			return zoneEntityCache.getAccountZone(accountZoneId);
+		}
 		return accountZoneId != null ? accountZoneService.findById(accountZoneId) : null;
 	}
 
@@ -84,7 +93,10 @@ public class RelayDataServiceImpl implements RelayDataService {
 		}
 		associateZoneDB(az.getZonePartitionId());
 		try {
-			return zoneId != null ? zoneService.findById(zoneId) : null;
+			if (zoneEntityCache != null) {
+				return zoneEntityCache.getZone(az, zoneId);
+			}
+			return zoneService.findById(zoneId);
 		} finally {
 			disassociateZoneDB();
 		}
@@ -97,7 +109,9 @@ public class RelayDataServiceImpl implements RelayDataService {
 		}
 		associateZoneDB(az.getZonePartitionId());
 		try {
-
+			if (zoneEntityCache != null) {
+				return zoneEntityCache.getDomain(az, z, domainId);
+			}
 			Domain d = domainService.findById(domainId);
 			d.setZone(z);
 			return d;
@@ -293,4 +307,12 @@ public class RelayDataServiceImpl implements RelayDataService {
 		this.channelService = channelService;
 	}
 
+	public ZoneEntityCache getZoneEntityCache() {
+		return zoneEntityCache;
+	}
+
+	public void setZoneEntityCache(ZoneEntityCache zoneEntityCache) {
+		this.zoneEntityCache = zoneEntityCache;
+	}
+
 }
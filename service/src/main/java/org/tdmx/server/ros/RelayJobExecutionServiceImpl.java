@@ -18,7 +18,18 @@
  */
 package org.tdmx.server.ros;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import javax.xml.ws.WebServiceException;
 
@@ -26,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tdmx.core.api.v01.mrs.Relay;
 import org.tdmx.core.api.v01.mrs.RelayResponse;
+import org.tdmx.core.api.v01.msg.Msg;
 import org.tdmx.core.system.lang.StringUtils;
 import org.tdmx.lib.chunk.domain.Chunk;
 import org.tdmx.lib.chunk.service.ChunkService;
@@ -36,6 +48,8 @@ import org.tdmx.lib.zone.domain.ChannelMessage;
 import org.tdmx.lib.zone.domain.EndpointPermission;
 import org.tdmx.lib.zone.domain.FlowControlStatus;
 import org.tdmx.lib.zone.domain.MessageStatus;
+import org.tdmx.server.runtime.ExecutionMode;
+import org.tdmx.server.runtime.ExecutorStrategy;
 import org.tdmx.server.ws.ApiToDomainMapper;
 import org.tdmx.server.ws.DomainToApiMapper;
 import org.tdmx.server.ws.ErrorCode;
@@ -72,6 +86,30 @@ public class RelayJobExecutionServiceImpl implements RelayJobExecutionService {
 	 */
 	private RelayConnectionProvider relayConnectionProvider;
 
+	/**
+	 * The maximum number of chunks fetched from the chunk DB in one round trip when relaying a message's chunks. Each
+	 * chunk is held in memory until relayed, so this is bounded by the chunk size of the message's scheme.
+	 */
+	private int chunkFetchBatchSize = 4;
+
+	/**
+	 * The maximum number of chunks of a message relayed concurrently to the MRS. The MRS grants the continuationIds of
+	 * the chunks within its own relay window, so the effective window is the smaller of the two.
+	 */
+	private int relayWindowSize = 1;
+
+	/**
+	 * Creates the executor which fetches the next batch of chunks and relays the chunks of the window concurrently.
+	 * Without a strategy at most maxChunkRelayThreads chunk relays and fetches run at once over all relay jobs.
+	 */
+	private ExecutorStrategy chunkRelayExecutorStrategy;
+	private int maxChunkRelayThreads = 10;
+
+	/**
+	 * Null when the relay window is a single chunk, then the chunks are fetched and relayed inline by the relay job.
+	 */
+	private ExecutorService chunkRelayExecutor;
+
 	private final DomainToApiMapper d2a = new DomainToApiMapper();
 	private final ApiToDomainMapper a2d = new ApiToDomainMapper();
 
@@ -83,6 +121,31 @@ public class RelayJobExecutionServiceImpl implements RelayJobExecutionService {
 	// PUBLIC METHODS
 	// -------------------------------------------------------------------------
 
+	public void init() {
+		if (relayWindowSize <= 1) {
+			log.info("Chunks are relayed inline.");
+			return;
+		}
+		ExecutorStrategy strategy = chunkRelayExecutorStrategy;
+		if (strategy == null) {
+			strategy = new ExecutorStrategy(ExecutionMode.BOUNDED, 0, maxChunkRelayThreads);
+		}
+		log.info("Chunks are relayed with a window of " + relayWindowSize + " and " + strategy);
+		chunkRelayExecutor = strategy.createExecutorService("ChunkRelay");
+	}
+
+	public void shutdown() {
+		if (chunkRelayExecutor != null) {
+			chunkRelayExecutor.shutdown();
+			try {
+				chunkRelayExecutor.awaitTermination(60, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				log.warn("Interrupted whilst waiting for termination of chunkRelayExecutor.", e);
+			}
+		}
+		chunkRelayExecutor = null;
+	}
+
 	@Override
 	public void executeJob(RelayJobContext job) {
 		switch (job.getType()) {
@@ -108,6 +171,83 @@ public class RelayJobExecutionServiceImpl implements RelayJobExecutionService {
 		relayConnectionProvider.setSegmentScsUrl(segmentScsUrl);
 	}
 
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Relay the chunks following the first chunk of the message, keeping up to relayWindowSize chunk relays in flight
+	 * whilst the MRS grants their continuationIds.
+	 * 
+	 * @param sh
+	 * @param msg
+	 * @param msgResponse
+	 *            the MRS response to the relay of the msg, with the continuationIds of the first chunks.
+	 * @return the error relaying the chunks or null if all chunks are relayed.
+	 */
+	ProcessingState relayChunks(final MRSSessionHolder sh, final ChannelMessage msg, RelayResponse msgResponse) {
+		final int numChunks = msg.getNumberOfChunks();
+		if (numChunks <= 1) {
+			return null;
+		}
+		// the continuationIds granted by the MRS for the chunks not yet relayed, by chunk pos
+		Map<Integer, String> continuations = new HashMap<>();
+		addContinuations(continuations, 1, 1, msgResponse);
+
+		Deque<ChunkRelay> inFlight = new ArrayDeque<>();
+		Deque<Chunk> fetched = new ArrayDeque<>();
+		int fetchPos = 1;
+		Future<List<Chunk>> nextFetch = fetchChunksAsync(msg, fetchPos, numChunks);
+		fetchPos += chunkFetchBatchSize;
+
+		ProcessingState error = null;
+		int pos = 1;
+		while (error == null && (pos < numChunks || !inFlight.isEmpty())) {
+			// fill the relay window with the chunks whose continuationIds we have been granted
+			while (pos < numChunks && inFlight.size() < relayWindowSize && continuations.containsKey(pos)) {
+				if (fetched.isEmpty() && nextFetch != null) {
+					List<Chunk> chunks = awaitFetch(nextFetch);
+					if (chunks != null) {
+						fetched.addAll(chunks);
+					}
+					// fetch the following batch while this one is relayed
+					nextFetch = fetchPos < numChunks ? fetchChunksAsync(msg, fetchPos, numChunks) : null;
+					fetchPos += chunkFetchBatchSize;
+				}
+				Chunk chunk = fetched.poll();
+				if (chunk == null || chunk.getPos() != pos) {
+					error = ProcessingState.error(ErrorCode.ChunkDataLost.getErrorCode(),
+							ErrorCode.ChunkDataLost.getErrorDescription(msg.getMsgId(), pos));
+					break;
+				}
+				inFlight.add(relayChunkAsync(sh, msg, chunk, continuations.remove(pos)));
+				pos++;
+			}
+			if (error != null) {
+				break;
+			}
+			// the MRS only widens its window as the oldest chunk is acknowledged
+			ChunkRelay oldest = inFlight.poll();
+			if (oldest == null) {
+				error = ProcessingState.error(ErrorCode.MissingChunkContinuationId.getErrorCode(),
+						ErrorCode.MissingChunkContinuationId.getErrorDescription());
+				break;
+			}
+			error = oldest.await();
+			if (error == null) {
+				addContinuations(continuations, pos, oldest.getPos() + 1, oldest.getResponse());
+			}
+		}
+		// don't leave relays running beyond the message's error
+		for (ChunkRelay relay : inFlight) {
+			relay.await();
+		}
+		if (nextFetch != null) {
+			nextFetch.cancel(false);
+		}
+		return error;
+	}
+
 	// -------------------------------------------------------------------------
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
@@ -147,7 +287,20 @@ public class RelayJobExecutionServiceImpl implements RelayJobExecutionService {
 
 			Relay relayMsg = new Relay();
 			relayMsg.setSessionId(sh.getMrsSessionId());
-			relayMsg.setMsg(d2a.mapChannelMessage(msg));
+			Msg m = d2a.mapChannelMessage(msg);
+			if (!sh.isSameSegment()) {
+				// the first chunk is relayed within the msg, the MRS responds with the continuationIds of the next chunks
+				Chunk chunk = chunkService.fetchChunk(msg, 0);
+				if (chunk == null) {
+					ProcessingState error = ProcessingState.error(ErrorCode.ChunkDataLost.getErrorCode(),
+							ErrorCode.ChunkDataLost.getErrorDescription(msg.getMsgId(), 0));
+					relayDataService.updateMessageProcessingState(ctx.getAccountZone(), ctx.getZone(), ctx.getDomain(),
+							ctx.getChannel(), msg.getState().getId(), error);
+					return;
+				}
+				m.setChunk(d2a.mapChunk(chunk));
+			}
+			relayMsg.setMsg(m);
 
 			ProcessingState error = null;
 			try {
@@ -156,7 +309,7 @@ public class RelayJobExecutionServiceImpl implements RelayJobExecutionService {
 					error = ProcessingState.error(rr.getError().getCode(), rr.getError().getDescription());
 				}
 				if (rr.isSuccess() && !sh.isSameSegment()) {
-					error = relayChunks(sh, msg);
+					error = relayChunks(sh, msg, rr);
 				}
 
 				if (error != null) {
@@ -207,55 +360,107 @@ public class RelayJobExecutionServiceImpl implements RelayJobExecutionService {
 		}
 	}
 
-	private ProcessingState relayChunks(MRSSessionHolder sh, ChannelMessage msg) {
-		for (int pos = 0; pos < msg.getNumberOfChunks(); pos++) {
-			// relay chunks sequentially with max 1 retry each
-			if (log.isDebugEnabled()) {
-				log.debug("Relay Chunk " + msg.getMsgId() + " pos " + pos);
+	private void addContinuations(Map<Integer, String> continuations, int nextPos, int fromPos, RelayResponse rr) {
+		int pos = fromPos;
+		if (rr.getContinuation() != null) {
+			if (pos >= nextPos) {
+				continuations.put(pos, rr.getContinuation());
+			}
+			pos++;
+			for (String continuationId : rr.getWindowContinuation()) {
+				if (pos >= nextPos) {
+					continuations.put(pos, continuationId);
+				}
+				pos++;
 			}
+		}
+	}
 
-			Chunk chunk = chunkService.fetchChunk(msg, pos);
-			if (chunk == null) {
-				ProcessingState error = ProcessingState.error(ErrorCode.ChunkDataLost.getErrorCode(),
-						ErrorCode.ChunkDataLost.getErrorDescription(msg.getMsgId(), pos));
-				return error;
+	private Future<List<Chunk>> fetchChunksAsync(final ChannelMessage msg, final int fromPos, int numChunks) {
+		final int toPos = Math.min(fromPos + chunkFetchBatchSize, numChunks) - 1;
+		return submit(new Callable<List<Chunk>>() {
+			@Override
+			public List<Chunk> call() throws Exception {
+				// fetch the next batch of chunks in one round trip to the chunk DB
+				return chunkService.fetchChunks(msg, fromPos, toPos);
 			}
+		});
+	}
 
-			Relay relayMsg = new Relay();
-			relayMsg.setSessionId(sh.getMrsSessionId());
+	private List<Chunk> awaitFetch(Future<List<Chunk>> fetch) {
+		try {
+			return fetch.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			log.warn("Interrupted fetching chunks.");
+		} catch (ExecutionException e) {
+			log.warn("Unable to fetch chunks.", e.getCause());
+		}
+		return null;
+	}
 
-			relayMsg.setChunk(d2a.mapChunk(chunk));
+	private ChunkRelay relayChunkAsync(final MRSSessionHolder sh, final ChannelMessage msg, final Chunk chunk,
+			final String continuationId) {
+		final ChunkRelay relay = new ChunkRelay(chunk.getPos());
+		relay.setFuture(submit(Executors.callable(new Runnable() {
+			@Override
+			public void run() {
+				relayChunk(sh, msg, chunk, continuationId, relay);
+			}
+		})));
+		return relay;
+	}
 
-			ProcessingState error = null;
-			int retries = 0;
-			do {
-				error = null;
-				try {
-					RelayResponse rr = sh.getMrs().relay(relayMsg);
-					if (!rr.isSuccess()) {
-						error = ProcessingState.error(rr.getError().getCode(), rr.getError().getDescription());
+	private <T> Future<T> submit(Callable<T> task) {
+		ExecutorService executor = chunkRelayExecutor;
+		if (executor == null) {
+			// with a window of one chunk there is nothing to overlap, so run in the relay job's thread.
+			FutureTask<T> inline = new FutureTask<>(task);
+			inline.run();
+			return inline;
+		}
+		return executor.submit(task);
+	}
 
-					}
-				} catch (WebServiceException wse) {
-					// runtime error handling
-					if (log.isDebugEnabled()) {
-						log.debug("MRS call to relay Chunk failed.", wse);
-					}
-					String errorInfo = StringUtils.getExceptionSummary(wse);
-					log.info("MRS relay MSG call to remote failed " + errorInfo);
-					error = ProcessingState.error(ErrorCode.RelayMessageChunkFault.getErrorCode(),
-							ErrorCode.RelayMessageChunkFault.getErrorDescription(errorInfo));
-				}
+	private void relayChunk(MRSSessionHolder sh, ChannelMessage msg, Chunk chunk, String continuationId,
+			ChunkRelay relay) {
+		// relay the chunk with max 1 retry
+		if (log.isDebugEnabled()) {
+			log.debug("Relay Chunk " + msg.getMsgId() + " pos " + chunk.getPos());
+		}
 
-				retries++;
-			} while (error != null && retries < 2);
+		Relay relayMsg = new Relay();
+		relayMsg.setSessionId(sh.getMrsSessionId());
 
-			// error after 1 retry - leave
-			if (error != null) {
-				return error;
+		relayMsg.setContinuation(continuationId);
+		relayMsg.setChunk(d2a.mapChunk(chunk));
+
+		ProcessingState error = null;
+		int retries = 0;
+		do {
+			error = null;
+			try {
+				RelayResponse rr = sh.getMrs().relay(relayMsg);
+				if (!rr.isSuccess()) {
+					error = ProcessingState.error(rr.getError().getCode(), rr.getError().getDescription());
+				} else {
+					relay.setResponse(rr);
+				}
+			} catch (WebServiceException wse) {
+				// runtime error handling
+				if (log.isDebugEnabled()) {
+					log.debug("MRS call to relay Chunk failed.", wse);
+				}
+				String errorInfo = StringUtils.getExceptionSummary(wse);
+				log.info("MRS relay MSG call to remote failed " + errorInfo);
+				error = ProcessingState.error(ErrorCode.RelayMessageChunkFault.getErrorCode(),
+						ErrorCode.RelayMessageChunkFault.getErrorDescription(errorInfo));
 			}
-		}
-		return null;
+
+			retries++;
+		} while (error != null && retries < 2);
+
+		relay.setError(error);
 	}
 
 	private void relayMetaData(RelayChannelContext ctx, RelayJobContext job) {
@@ -463,6 +668,59 @@ public class RelayJobExecutionServiceImpl implements RelayJobExecutionService {
 		return sh;
 	}
 
+	/**
+	 * A helper value type holding the outcome of the concurrent relay of one chunk.
+	 */
+	private static class ChunkRelay {
+		private final int pos;
+		private Future<?> future;
+		private ProcessingState error;
+		private RelayResponse response;
+
+		private ChunkRelay(int pos) {
+			this.pos = pos;
+		}
+
+		/**
+		 * Wait for the relay to complete.
+		 * 
+		 * @return the error relaying the chunk or null if relayed successfully.
+		 */
+		private ProcessingState await() {
+			try {
+				future.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return ProcessingState.error(ErrorCode.RelayMessageChunkFault.getErrorCode(),
+						ErrorCode.RelayMessageChunkFault.getErrorDescription("interrupted"));
+			} catch (ExecutionException e) {
+				return ProcessingState.error(ErrorCode.RelayMessageChunkFault.getErrorCode(),
+						ErrorCode.RelayMessageChunkFault.getErrorDescription(String.valueOf(e.getCause())));
+			}
+			return error;
+		}
+
+		private int getPos() {
+			return pos;
+		}
+
+		private void setFuture(Future<?> future) {
+			this.future = future;
+		}
+
+		private void setError(ProcessingState error) {
+			this.error = error;
+		}
+
+		private RelayResponse getResponse() {
+			return response;
+		}
+
+		private void setResponse(RelayResponse response) {
+			this.response = response;
+		}
+	}
+
 	// -------------------------------------------------------------------------
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
@@ -491,4 +749,36 @@ public class RelayJobExecutionServiceImpl implements RelayJobExecutionService {
 		this.chunkService = chunkService;
 	}
 
+	public int getChunkFetchBatchSize() {
+		return chunkFetchBatchSize;
+	}
+
+	public void setChunkFetchBatchSize(int chunkFetchBatchSize) {
+		this.chunkFetchBatchSize = chunkFetchBatchSize;
+	}
+
+	public int getRelayWindowSize() {
+		return relayWindowSize;
+	}
+
+	public void setRelayWindowSize(int relayWindowSize) {
+		this.relayWindowSize = relayWindowSize;
+	}
+
+	public ExecutorStrategy getChunkRelayExecutorStrategy() {
+		return chunkRelayExecutorStrategy;
+	}
+
+	public void setChunkRelayExecutorStrategy(ExecutorStrategy chunkRelayExecutorStrategy) {
+		this.chunkRelayExecutorStrategy = chunkRelayExecutorStrategy;
+	}
+
+	public int getMaxChunkRelayThreads() {
+		return maxChunkRelayThreads;
+	}
+
+	public void setMaxChunkRelayThreads(int maxChunkRelayThreads) {
+		this.maxChunkRelayThreads = maxChunkRelayThreads;
+	}
+
 }
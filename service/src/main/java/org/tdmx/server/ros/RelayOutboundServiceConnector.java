@@ -35,6 +35,7 @@ import org.tdmx.server.pcs.protobuf.Common.AttributeValue.AttributeId;
 import org.tdmx.server.pcs.protobuf.ROSServer.RelayOutboundServiceProxy;
 import org.tdmx.server.pcs.protobuf.ROSServer.RelayRequest;
 import org.tdmx.server.pcs.protobuf.ROSServer.RelayResponse;
+import org.tdmx.server.runtime.ExecutorStrategy;
 import org.tdmx.server.runtime.Manageable;
 import org.tdmx.server.ws.session.WebServiceApiName;
 
@@ -91,6 +92,12 @@ public class RelayOutboundServiceConnector implements Manageable, RelayOutboundS
 	private int acceptorThreads = 2;
 	private int ioThreads = 16;
 	private int ioBufferSize = 1048576;
+
+	/**
+	 * The strategy which creates the RPC call executor. If not set, a pool of coreRpcExecutorThreads to
+	 * maxRpcExecutorThreads is used.
+	 */
+	private ExecutorStrategy rpcExecutorStrategy;
 	private boolean tcpNoDelay = true;
 
 	/**
@@ -124,7 +131,13 @@ public class RelayOutboundServiceConnector implements Manageable, RelayOutboundS
 
 		PeerInfo serverInfo = new PeerInfo(serverHostname, localPort);
 
-		RpcServerCallExecutor executor = new ThreadPoolCallExecutor(coreRpcExecutorThreads, maxRpcExecutorThreads);
+		RpcServerCallExecutor executor = null;
+		if (rpcExecutorStrategy != null) {
+			log.info("RPC calls run with " + rpcExecutorStrategy);
+			executor = rpcExecutorStrategy.createRpcCallExecutor("ROS-rpc");
+		} else {
+			executor = new ThreadPoolCallExecutor(coreRpcExecutorThreads, maxRpcExecutorThreads);
+		}
 
 		serverFactory = new DuplexTcpServerPipelineFactory(serverInfo);
 		serverFactory.setRpcServerCallExecutor(executor);
@@ -330,6 +343,14 @@ public class RelayOutboundServiceConnector implements Manageable, RelayOutboundS
 		this.ioBufferSize = ioBufferSize;
 	}
 
+	public ExecutorStrategy getRpcExecutorStrategy() {
+		return rpcExecutorStrategy;
+	}
+
+	public void setRpcExecutorStrategy(ExecutorStrategy rpcExecutorStrategy) {
+		this.rpcExecutorStrategy = rpcExecutorStrategy;
+	}
+
 	public boolean isTcpNoDelay() {
 		return tcpNoDelay;
 	}
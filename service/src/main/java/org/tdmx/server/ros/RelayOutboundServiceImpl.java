@@ -37,6 +37,7 @@ import org.tdmx.lib.zone.domain.Channel;
 import org.tdmx.lib.zone.domain.Domain;
 import org.tdmx.lib.zone.domain.Zone;
 import org.tdmx.server.pcs.protobuf.Common.AttributeValue.AttributeId;
+import org.tdmx.server.runtime.ExecutorStrategy;
 
 /**
  * Handles the outbound relay.
@@ -81,10 +82,14 @@ public class RelayOutboundServiceImpl implements RelayOutboundService {
 
 	private int maxRelayThreads = 200;
 
+	/**
+	 * The strategy which creates the jobRunner. If not set, a pool of coreRelayThreads to maxRelayThreads is used.
+	 */
+	private ExecutorStrategy relayExecutorStrategy;
+
 	// internal
 	/**
-	 * The executor service which provides the threads to run the relay jobs, bounded by coreRelayThreads and
-	 * maxRelayThreads.
+	 * The executor service which provides the threads to run the relay jobs.
 	 */
 	private ExecutorService jobRunner = null;
 
@@ -143,9 +148,14 @@ public class RelayOutboundServiceImpl implements RelayOutboundService {
 		// propagate our own SCS URL to the relay connection provider so it can identify same segment relaying
 		jobExecutionService.setSegmentScsUrl(segmentScsUrl);
 
-		// like cachedThreadPoolRunner but with bounded max.
-		jobRunner = new ThreadPoolExecutor(coreRelayThreads, maxRelayThreads, 60L, TimeUnit.SECONDS,
-				new SynchronousQueue<Runnable>(), new NamedThreadFactory("RelayJobRunner"));
+		if (relayExecutorStrategy != null) {
+			log.info("Relay jobs run with " + relayExecutorStrategy);
+			jobRunner = relayExecutorStrategy.createExecutorService("RelayJobRunner");
+		} else {
+			// like cachedThreadPoolRunner but with bounded max.
+			jobRunner = new ThreadPoolExecutor(coreRelayThreads, maxRelayThreads, 60L, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), new NamedThreadFactory("RelayJobRunner"));
+		}
 
 	}
 
@@ -360,4 +370,12 @@ public class RelayOutboundServiceImpl implements RelayOutboundService {
 		this.maxRelayThreads = maxRelayThreads;
 	}
 
+	public ExecutorStrategy getRelayExecutorStrategy() {
+		return relayExecutorStrategy;
+	}
+
+	public void setRelayExecutorStrategy(ExecutorStrategy relayExecutorStrategy) {
+		this.relayExecutorStrategy = relayExecutorStrategy;
+	}
+
 }
@@ -32,6 +32,7 @@ import org.tdmx.core.system.lang.EnumUtils;
 import org.tdmx.core.system.lang.StringUtils;
 import org.tdmx.lib.common.domain.PageSpecifier;
 import org.tdmx.lib.common.domain.ProcessingState;
+import org.tdmx.lib.common.domain.ProcessingStatus;
 import org.tdmx.lib.control.datasource.ThreadLocalPartitionIdProvider;
 import org.tdmx.lib.control.domain.Account;
 import org.tdmx.lib.control.domain.AccountSearchCriteria;
@@ -880,6 +881,7 @@ public class SASImpl implements SAS {
 
 		az.setStatus(AccountZoneStatus.DELETED);
 		accountZoneService.createOrUpdate(az);
+		invalidateZoneEntities(az);
 
 		// TODO #89: create a job to delete the accountZone and all it's dependent data
 
@@ -1067,6 +1069,22 @@ public class SASImpl implements SAS {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	/**
+	 * Evict the AccountZone and the entities of it's zone from the ZoneEntity caches of all segments.
+	 * 
+	 * @param az
+	 */
+	private void invalidateZoneEntities(AccountZone az) {
+		CacheInvalidationInstruction inst = CacheInvalidationInstruction
+				.newInstruction(CacheInvalidationInstruction.newID(), CacheName.ZoneEntity, az.getZoneApex());
+		for (Segment s : segmentService.findAll()) {
+			ProcessingState ps = cacheInvalidater.invalidateCache(s, inst);
+			if (ps != null && ps.getStatus() == ProcessingStatus.FAILURE) {
+				log.warn("Unable to invalidate " + inst + " in segment " + s.getSegmentName() + " " + ps);
+			}
+		}
+	}
+
 	private PageSpecifier getPageSpecifier(Integer pageNo, Integer pageSize) {
 		int pageNumber = pageNo != null ? pageNo : 0;
 		int pageSz = pageSize != null ? pageSize : 10;
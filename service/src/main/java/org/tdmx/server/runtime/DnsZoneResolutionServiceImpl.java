@@ -22,23 +22,38 @@ package org.tdmx.server.runtime;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tdmx.core.system.dns.DnsResolverEngine;
 import org.tdmx.core.system.dns.DnsUtils;
 import org.tdmx.core.system.dns.DnsUtils.DnsResultHolder;
 import org.tdmx.core.system.dns.DnsUtils.TdmxZoneRecord;
 import org.tdmx.lib.control.domain.DnsDomainZone;
 import org.tdmx.lib.control.domain.DnsResolverGroup;
+import org.tdmx.server.cache.CacheInvalidationInstruction;
+import org.tdmx.server.cache.CacheInvalidationListener;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
 import org.xbill.DNS.TextParseException;
 
+import com.googlecode.protobuf.pro.duplex.util.RenamingThreadFactoryProxy;
+
 /**
  * The concrete implementation of {@link DnsZoneResolutionService}
  * 
+ * Each DnsResolverGroup has a long lived {@link DnsResolverEngine} which caches DNS answers according to their TTL, and
+ * looks up all levels of a domain's hierarchy concurrently. The engines are discarded with the DnsResolverGroup cache,
+ * an invalidation with a domain key just flushes the domain's cached answers.
+ * 
  * @author Peter Klauser
  * 
  */
-public class DnsZoneResolutionServiceImpl implements DnsZoneResolutionService {
+public class DnsZoneResolutionServiceImpl implements DnsZoneResolutionService, CacheInvalidationListener {
 
 	// -------------------------------------------------------------------------
 	// PUBLIC CONSTANTS
@@ -50,6 +65,13 @@ public class DnsZoneResolutionServiceImpl implements DnsZoneResolutionService {
 	private static final Logger log = LoggerFactory.getLogger(DnsZoneResolutionServiceImpl.class);
 
 	private DnsResolverGroupFactory dnsResolverGroupFactory;
+	private int dnsCacheMaxEntries = 10000;
+	private int lookupThreads = 16;
+	private int resolverPort = DnsResolverEngine.DEFAULT_PORT;
+
+	// internal
+	private ExecutorService lookupExecutor;
+	private final Map<String, ResolverEngineHolder> engines = new ConcurrentHashMap<>();
 
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
@@ -59,6 +81,43 @@ public class DnsZoneResolutionServiceImpl implements DnsZoneResolutionService {
 	// PUBLIC METHODS
 	// -------------------------------------------------------------------------
 
+	public void init() {
+		lookupExecutor = Executors.newFixedThreadPool(lookupThreads,
+				new RenamingThreadFactoryProxy("DnsLookup", Executors.defaultThreadFactory()));
+	}
+
+	public void shutdown() {
+		engines.clear();
+		if (lookupExecutor != null) {
+			lookupExecutor.shutdownNow();
+			try {
+				lookupExecutor.awaitTermination(60, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			lookupExecutor = null;
+		}
+	}
+
+	@Override
+	public void invalidateCache(CacheInvalidationInstruction message) {
+		if (CacheName.DnsResolverGroup == message.getName()) {
+			if (message.getKey() != null) {
+				log.debug("Flushing DNS answers for " + message.getKey());
+				for (ResolverEngineHolder holder : engines.values()) {
+					try {
+						holder.getEngine().flush(message.getKey());
+					} catch (TextParseException e) {
+						log.warn("Unable to flush DNS answers for " + message.getKey(), e);
+					}
+				}
+			} else {
+				log.debug("Discarding DNS resolver engines.");
+				engines.clear();
+			}
+		}
+	}
+
 	@Override
 	public DnsDomainZone resolveDomain(String domainName) {
 
@@ -149,9 +208,20 @@ public class DnsZoneResolutionServiceImpl implements DnsZoneResolutionService {
 		return null;
 	}
 
+	private DnsResolverEngine getEngine(DnsResolverGroup resolver) throws UnknownHostException {
+		ResolverEngineHolder holder = engines.get(resolver.getGroupName());
+		if (holder == null || !holder.getIpAddresses().equals(resolver.getIpAddresses())) {
+			DnsResolverEngine engine = new DnsResolverEngine(resolver.getIpAddresses(), resolverPort,
+					DnsResolverEngine.createCache(dnsCacheMaxEntries), lookupExecutor);
+			holder = new ResolverEngineHolder(new ArrayList<>(resolver.getIpAddresses()), engine);
+			engines.put(resolver.getGroupName(), holder);
+		}
+		return holder.getEngine();
+	}
+
 	private DnsResultHolder getTdmxZoneRecord(String domainName, DnsResolverGroup resolver) {
 		try {
-			DnsResultHolder result = DnsUtils.getTdmxZoneRecord(domainName, resolver.getIpAddresses());
+			DnsResultHolder result = getEngine(resolver).getTdmxZoneRecord(domainName);
 			if (result == null) {
 				log.info("No TXT records found for " + domainName);
 				return null;
@@ -168,8 +238,8 @@ public class DnsZoneResolutionServiceImpl implements DnsZoneResolutionService {
 
 	private DnsResultHolder getNameServerRecords(String domainName, DnsResolverGroup resolver) {
 		try {
-			DnsResultHolder result = DnsUtils.getNameServers(domainName, resolver.getIpAddresses());
-			if (result.getRecords() == null || result.getRecords().isEmpty()) {
+			DnsResultHolder result = getEngine(resolver).getNameServers(domainName);
+			if (result == null || result.getRecords() == null || result.getRecords().isEmpty()) {
 				log.warn("No NS records found for " + domainName);
 				return null;
 			}
@@ -179,6 +249,28 @@ public class DnsZoneResolutionServiceImpl implements DnsZoneResolutionService {
 		}
 		return null;
 	}
+
+	/**
+	 * A helper value type holding the resolution engine of a DnsResolverGroup and the addresses it was created for.
+	 */
+	private static class ResolverEngineHolder {
+		private final List<String> ipAddresses;
+		private final DnsResolverEngine engine;
+
+		private ResolverEngineHolder(List<String> ipAddresses, DnsResolverEngine engine) {
+			this.ipAddresses = ipAddresses;
+			this.engine = engine;
+		}
+
+		private List<String> getIpAddresses() {
+			return ipAddresses;
+		}
+
+		private DnsResolverEngine getEngine() {
+			return engine;
+		}
+	}
+
 	// -------------------------------------------------------------------------
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
@@ -191,4 +283,28 @@ public class DnsZoneResolutionServiceImpl implements DnsZoneResolutionService {
 		this.dnsResolverGroupFactory = dnsResolverGroupFactory;
 	}
 
+	public int getDnsCacheMaxEntries() {
+		return dnsCacheMaxEntries;
+	}
+
+	public void setDnsCacheMaxEntries(int dnsCacheMaxEntries) {
+		this.dnsCacheMaxEntries = dnsCacheMaxEntries;
+	}
+
+	public int getLookupThreads() {
+		return lookupThreads;
+	}
+
+	public void setLookupThreads(int lookupThreads) {
+		this.lookupThreads = lookupThreads;
+	}
+
+	public int getResolverPort() {
+		return resolverPort;
+	}
+
+	public void setResolverPort(int resolverPort) {
+		this.resolverPort = resolverPort;
+	}
+
 }
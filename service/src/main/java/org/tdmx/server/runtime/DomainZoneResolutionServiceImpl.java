@@ -21,22 +21,39 @@ package org.tdmx.server.runtime;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tdmx.lib.control.domain.DnsDomainZone;
 import org.tdmx.lib.control.domain.DomainZoneApexInfo;
 import org.tdmx.lib.control.service.DnsDomainZoneService;
+import org.tdmx.server.cache.CacheInvalidationInstruction;
+import org.tdmx.server.cache.CacheInvalidationListener;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
 
 /**
  * The concrete implementation of {@link DomainZoneResolutionService}. This implementation uses a DB backed cache of
  * zone information for each domain successfully resolved.
  * 
+ * In front of the DB backed cache, the resolved zone information of each domain is held in memory for
+ * memoryCacheValiditySeconds, and unresolvable domains for negativeCacheValiditySeconds. Concurrent resolutions of the
+ * same domain are coalesced into one. The memory cache is cleared with the DnsResolverGroup cache, or just the domain
+ * if the invalidation has a key.
+ * 
  * @author Peter Klauser
  * 
  */
-public class DomainZoneResolutionServiceImpl implements DomainZoneResolutionService {
+public class DomainZoneResolutionServiceImpl implements DomainZoneResolutionService, CacheInvalidationListener {
 
 	// -------------------------------------------------------------------------
 	// PUBLIC CONSTANTS
@@ -50,6 +67,15 @@ public class DomainZoneResolutionServiceImpl implements DomainZoneResolutionServ
 	private DnsZoneResolutionService dnsZoneResolutionService;
 	private DnsDomainZoneService dnsDomainZoneService;
 	private int dnsCacheValiditySeconds = 24 * 60 * 60; // 24hrs
+	private int memoryCacheValiditySeconds = 5 * 60; // 5min
+	private int negativeCacheValiditySeconds = 60;
+	private int maxMemoryCacheSize = 10000;
+
+	// internal
+	private final Map<String, CachedZoneInfo> memoryCache = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, FutureTask<DomainZoneApexInfo>> pendingResolutions = new ConcurrentHashMap<>();
+	private final AtomicLong memoryCacheHits = new AtomicLong();
+	private final AtomicLong memoryCacheMisses = new AtomicLong();
 
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
@@ -60,8 +86,68 @@ public class DomainZoneResolutionServiceImpl implements DomainZoneResolutionServ
 	// -------------------------------------------------------------------------
 
 	@Override
-	public DomainZoneApexInfo resolveDomain(String domainName) {
+	public void invalidateCache(CacheInvalidationInstruction message) {
+		if (CacheName.DnsResolverGroup == message.getName()) {
+			if (message.getKey() != null) {
+				log.debug("Invalidating domain " + message.getKey());
+				memoryCache.remove(message.getKey());
+			} else {
+				log.debug("Invalidating cache.");
+				memoryCache.clear();
+			}
+		}
+	}
+
+	@Override
+	public DomainZoneApexInfo resolveDomain(final String domainName) {
+		CachedZoneInfo cached = memoryCache.get(domainName);
+		if (cached != null && !cached.isExpired()) {
+			memoryCacheHits.incrementAndGet();
+			return copyOf(cached.getZoneInfo());
+		}
+		memoryCacheMisses.incrementAndGet();
 
+		// only one thread resolves a domain, the others wait for its result
+		FutureTask<DomainZoneApexInfo> resolution = new FutureTask<>(new Callable<DomainZoneApexInfo>() {
+			@Override
+			public DomainZoneApexInfo call() throws Exception {
+				DomainZoneApexInfo zoneInfo = resolveUncached(domainName);
+				cacheZoneInfo(domainName, zoneInfo);
+				return zoneInfo;
+			}
+		});
+		FutureTask<DomainZoneApexInfo> existingResolution = pendingResolutions.putIfAbsent(domainName, resolution);
+		if (existingResolution != null) {
+			resolution = existingResolution;
+		} else {
+			try {
+				resolution.run();
+			} finally {
+				pendingResolutions.remove(domainName);
+			}
+		}
+		try {
+			return copyOf(resolution.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted resolving " + domainName, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Unable to resolve " + domainName, e.getCause());
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private DomainZoneApexInfo resolveUncached(String domainName) {
 		DnsDomainZone storedZoneInfo = dnsDomainZoneService.findCurrentByDomain(domainName);
 		if (storedZoneInfo != null) {
 			return mapFrom(storedZoneInfo);
@@ -92,13 +178,39 @@ public class DomainZoneResolutionServiceImpl implements DomainZoneResolutionServ
 		return null;
 	}
 
-	// -------------------------------------------------------------------------
-	// PROTECTED METHODS
-	// -------------------------------------------------------------------------
+	private void cacheZoneInfo(String domainName, DomainZoneApexInfo zoneInfo) {
+		if (memoryCache.size() >= maxMemoryCacheSize) {
+			purgeMemoryCache();
+		}
+		int validitySeconds = zoneInfo != null ? memoryCacheValiditySeconds : negativeCacheValiditySeconds;
+		memoryCache.put(domainName,
+				new CachedZoneInfo(zoneInfo, System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(validitySeconds)));
+	}
 
-	// -------------------------------------------------------------------------
-	// PRIVATE METHODS
-	// -------------------------------------------------------------------------
+	private void purgeMemoryCache() {
+		Iterator<CachedZoneInfo> it = memoryCache.values().iterator();
+		while (it.hasNext()) {
+			if (it.next().isExpired()) {
+				it.remove();
+			}
+		}
+		if (memoryCache.size() >= maxMemoryCacheSize) {
+			// no expired entries to make room, so start afresh
+			memoryCache.clear();
+		}
+	}
+
+	private DomainZoneApexInfo copyOf(DomainZoneApexInfo zoneInfo) {
+		if (zoneInfo == null) {
+			return null;
+		}
+		DomainZoneApexInfo zi = new DomainZoneApexInfo();
+		zi.setDomainName(zoneInfo.getDomainName());
+		zi.setZoneApex(zoneInfo.getZoneApex());
+		zi.setZacFingerprint(zoneInfo.getZacFingerprint());
+		zi.setScsUrl(zoneInfo.getScsUrl());
+		return zi;
+	}
 
 	private void extendValidity(DnsDomainZone dnsInfo) {
 		if (dnsInfo.getValidFromTime() == null) {
@@ -121,10 +233,45 @@ public class DomainZoneResolutionServiceImpl implements DomainZoneResolutionServ
 
 		return zi;
 	}
+
+	/**
+	 * A helper value type holding the resolved zone information of a domain, or null if unresolvable, and when it
+	 * expires.
+	 */
+	private static class CachedZoneInfo {
+		private final DomainZoneApexInfo zoneInfo;
+		private final long expiryTime;
+
+		private CachedZoneInfo(DomainZoneApexInfo zoneInfo, long expiryTime) {
+			this.zoneInfo = zoneInfo;
+			this.expiryTime = expiryTime;
+		}
+
+		private DomainZoneApexInfo getZoneInfo() {
+			return zoneInfo;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expiryTime;
+		}
+	}
+
 	// -------------------------------------------------------------------------
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
 
+	public long getMemoryCacheHits() {
+		return memoryCacheHits.get();
+	}
+
+	public long getMemoryCacheMisses() {
+		return memoryCacheMisses.get();
+	}
+
+	public int getMemoryCacheSize() {
+		return memoryCache.size();
+	}
+
 	public DnsDomainZoneService getDnsDomainZoneService() {
 		return dnsDomainZoneService;
 	}
@@ -149,4 +296,28 @@ public class DomainZoneResolutionServiceImpl implements DomainZoneResolutionServ
 		this.dnsCacheValiditySeconds = dnsCacheValiditySeconds;
 	}
 
+	public int getMemoryCacheValiditySeconds() {
+		return memoryCacheValiditySeconds;
+	}
+
+	public void setMemoryCacheValiditySeconds(int memoryCacheValiditySeconds) {
+		this.memoryCacheValiditySeconds = memoryCacheValiditySeconds;
+	}
+
+	public int getNegativeCacheValiditySeconds() {
+		return negativeCacheValiditySeconds;
+	}
+
+	public void setNegativeCacheValiditySeconds(int negativeCacheValiditySeconds) {
+		this.negativeCacheValiditySeconds = negativeCacheValiditySeconds;
+	}
+
+	public int getMaxMemoryCacheSize() {
+		return maxMemoryCacheSize;
+	}
+
+	public void setMaxMemoryCacheSize(int maxMemoryCacheSize) {
+		this.maxMemoryCacheSize = maxMemoryCacheSize;
+	}
+
 }
@@ -0,0 +1,33 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.runtime;
+
+/**
+ * The way an {@link ExecutorStrategy} runs the tasks submitted to it.
+ * 
+ * @author Peter
+ * 
+ */
+public enum ExecutionMode {
+
+	POOL, // core to max pooled threads, tasks beyond max threads are rejected.
+	BOUNDED, // at most max threads run tasks concurrently, further tasks wait in FIFO order.
+	THREAD_PER_TASK; // every task runs immediately on an idle or new thread, without a bound.
+
+}
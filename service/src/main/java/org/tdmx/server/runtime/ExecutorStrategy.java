@@ -0,0 +1,215 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.runtime;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.tdmx.lib.control.job.NamedThreadFactory;
+
+import com.googlecode.protobuf.pro.duplex.execute.RpcServerCallExecutor;
+import com.googlecode.protobuf.pro.duplex.execute.ThreadPoolCallExecutor;
+
+/**
+ * The ExecutorStrategy creates the executors which run blocking work (relay jobs, RPC server calls) according to a
+ * configurable {@link ExecutionMode}, so that the services of a segment can share one concurrency policy.
+ * 
+ * In {@link ExecutionMode#POOL} mode the executors behave like the classic bounded pools, tasks beyond maxThreads are
+ * rejected. In {@link ExecutionMode#BOUNDED} mode at most maxThreads tasks run at once and the rest wait their turn, so
+ * concurrency is limited by what the database or remote side can handle rather than by rejecting work. In
+ * {@link ExecutionMode#THREAD_PER_TASK} mode every task gets a thread immediately, idle threads are reused and expire
+ * after keepAliveSec.
+ * 
+ * @author Peter
+ * 
+ */
+public class ExecutorStrategy {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+
+	private ExecutionMode executionMode = ExecutionMode.POOL;
+
+	/**
+	 * The threads kept alive in POOL mode.
+	 */
+	private int coreThreads = 2;
+
+	/**
+	 * The maximum concurrently running tasks in POOL and BOUNDED mode.
+	 */
+	private int maxThreads = 10;
+
+	/**
+	 * The time an idle thread waits for new tasks before terminating.
+	 */
+	private int keepAliveSec = 60;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	public ExecutorStrategy() {
+	}
+
+	public ExecutorStrategy(ExecutionMode executionMode, int coreThreads, int maxThreads) {
+		this.executionMode = executionMode;
+		this.coreThreads = coreThreads;
+		this.maxThreads = maxThreads;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Create an executor service for general tasks.
+	 * 
+	 * @param threadNamePrefix
+	 *            the name prefix of the threads created.
+	 * @return a new executor service.
+	 */
+	public ExecutorService createExecutorService(String threadNamePrefix) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(getCorePoolSize(), getMaximumPoolSize(), keepAliveSec,
+				TimeUnit.SECONDS, createWorkQueue(), new NamedThreadFactory(threadNamePrefix));
+		configure(executor);
+		return executor;
+	}
+
+	/**
+	 * Create an executor for the RPC calls of a protobuf-rpc server.
+	 * 
+	 * @param threadNamePrefix
+	 *            the name prefix of the threads created.
+	 * @return a new RPC call executor.
+	 */
+	public RpcServerCallExecutor createRpcCallExecutor(String threadNamePrefix) {
+		ThreadPoolCallExecutor executor = new ThreadPoolCallExecutor(getCorePoolSize(), getMaximumPoolSize(),
+				keepAliveSec, TimeUnit.SECONDS, createWorkQueue(), new NamedThreadFactory(threadNamePrefix));
+		configure(executor);
+		return executor;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		builder.append("ExecutorStrategy [executionMode=");
+		builder.append(executionMode);
+		builder.append(", coreThreads=");
+		builder.append(coreThreads);
+		builder.append(", maxThreads=");
+		builder.append(maxThreads);
+		builder.append(", keepAliveSec=");
+		builder.append(keepAliveSec);
+		builder.append("]");
+		return builder.toString();
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private int getCorePoolSize() {
+		switch (executionMode) {
+		case BOUNDED:
+			// a ThreadPoolExecutor only grows beyond core size when its queue is full, which an unbounded queue never is.
+			return maxThreads;
+		case THREAD_PER_TASK:
+			return 0;
+		default:
+			return coreThreads;
+		}
+	}
+
+	private int getMaximumPoolSize() {
+		switch (executionMode) {
+		case THREAD_PER_TASK:
+			return Integer.MAX_VALUE;
+		default:
+			return maxThreads;
+		}
+	}
+
+	private BlockingQueue<Runnable> createWorkQueue() {
+		switch (executionMode) {
+		case BOUNDED:
+			return new LinkedBlockingQueue<Runnable>();
+		default:
+			// handoff directly to a thread, rejecting when none can be started.
+			return new SynchronousQueue<Runnable>();
+		}
+	}
+
+	private void configure(ThreadPoolExecutor executor) {
+		if (executionMode == ExecutionMode.BOUNDED) {
+			// don't keep maxThreads idle threads around forever.
+			executor.allowCoreThreadTimeOut(true);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+
+	public void setExecutionMode(ExecutionMode executionMode) {
+		this.executionMode = executionMode;
+	}
+
+	public int getCoreThreads() {
+		return coreThreads;
+	}
+
+	public void setCoreThreads(int coreThreads) {
+		this.coreThreads = coreThreads;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+
+	public int getKeepAliveSec() {
+		return keepAliveSec;
+	}
+
+	public void setKeepAliveSec(int keepAliveSec) {
+		this.keepAliveSec = keepAliveSec;
+	}
+
+}
@@ -55,9 +55,9 @@ import org.eclipse.jetty.servlet.ServletHolder;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.tdmx.client.crypto.certificate.CertificateIOUtils;
 import org.tdmx.client.crypto.certificate.CryptoCertificateException;
 import org.tdmx.client.crypto.certificate.PKIXCertificate;
+import org.tdmx.client.crypto.certificate.PKIXCertificateCache;
 import org.tdmx.core.system.lang.StringUtils;
 import org.tdmx.lib.control.domain.Segment;
 import org.tdmx.server.runtime.Manageable;
@@ -98,6 +98,7 @@ public class SCSWebServiceServerContainer implements ServerContainer {
 	private String keyStorePassword;
 	private String keyStoreAlias;
 	private X509TrustManager trustManager;
+	private PKIXCertificateCache certificateCache = new PKIXCertificateCache();
 
 	private Filter agentAuthorizationFilter;
 
@@ -291,7 +292,7 @@ public class SCSWebServiceServerContainer implements ServerContainer {
 								// and authorization is checked later in the servlet filter
 								if (chain.length == 1) {
 									// self signed cert or TDMX
-									PKIXCertificate[] certs = CertificateIOUtils.convert(chain);
+									PKIXCertificate[] certs = certificateCache.convert(chain);
 									PKIXCertificate cert = certs[0];
 									if (cert.isTdmxUserCertificate()) {
 										log.debug("Auto authenticated TDMX user certificate " + cert.getTdmxUserName()
@@ -433,6 +434,14 @@ public class SCSWebServiceServerContainer implements ServerContainer {
 		this.keyStoreAlias = keyStoreAlias;
 	}
 
+	public PKIXCertificateCache getCertificateCache() {
+		return certificateCache;
+	}
+
+	public void setCertificateCache(PKIXCertificateCache certificateCache) {
+		this.certificateCache = certificateCache;
+	}
+
 	public X509TrustManager getTrustManager() {
 		return trustManager;
 	}
@@ -37,6 +37,7 @@ import org.tdmx.lib.zone.service.ChannelService;
 import org.tdmx.lib.zone.service.DomainService;
 import org.tdmx.lib.zone.service.ServiceService;
 import org.tdmx.lib.zone.service.ZoneService;
+import org.tdmx.server.cache.ZoneEntityCache;
 
 /**
  * Handles data for SessionControlService.
@@ -64,6 +65,11 @@ public class SessionDataServiceImpl implements SessionDataService {
 	private ServiceService serviceService;
 	private AgentCredentialService credentialService;
 
+	/**
+	 * Optional cache of the AccountZone, Zone, Domain and Service, which otherwise are read for every session request.
+	 */
+	private ZoneEntityCache zoneEntityCache;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
@@ -74,6 +80,9 @@ public class SessionDataServiceImpl implements SessionDataService {
 
 	@Override
 	public AccountZone getAccountZone(String zoneApex) {
+		if (zoneEntityCache != null) {
+			return zoneEntityCache.getAccountZone(zoneApex);
+		}
 		return accountZoneService.findByZoneApex(zoneApex);
 	}
 
@@ -93,6 +102,9 @@ public class SessionDataServiceImpl implements SessionDataService {
 		// check the credential used exists and is active.
 		associateZoneDB(az.getZonePartitionId());
 		try {
+			if (zoneEntityCache != null) {
+				return zoneEntityCache.getService(az, domain, serviceName);
+			}
 			return serviceService.findByName(domain, serviceName);
 		} finally {
 			disassociateZoneDB();
@@ -103,6 +115,9 @@ public class SessionDataServiceImpl implements SessionDataService {
 	public Zone getZone(AccountZone az) {
 		associateZoneDB(az.getZonePartitionId());
 		try {
+			if (zoneEntityCache != null) {
+				return zoneEntityCache.getZone(az);
+			}
 			return zoneService.findByZoneApex(az.getZoneApex());
 		} finally {
 			disassociateZoneDB();
@@ -113,6 +128,9 @@ public class SessionDataServiceImpl implements SessionDataService {
 	public Domain getDomain(AccountZone az, Zone zone, String domainName) {
 		partitionIdProvider.setPartitionId(az.getZonePartitionId());
 		try {
+			if (zoneEntityCache != null) {
+				return zoneEntityCache.getDomain(az, zone, domainName);
+			}
 			Domain domain = domainService.findByName(zone, domainName);
 			return domain;
 		} finally {
@@ -234,4 +252,12 @@ public class SessionDataServiceImpl implements SessionDataService {
 		this.credentialService = credentialService;
 	}
 
+	public ZoneEntityCache getZoneEntityCache() {
+		return zoneEntityCache;
+	}
+
+	public void setZoneEntityCache(ZoneEntityCache zoneEntityCache) {
+		this.zoneEntityCache = zoneEntityCache;
+	}
+
 }
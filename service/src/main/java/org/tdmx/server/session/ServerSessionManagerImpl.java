@@ -47,6 +47,7 @@ import org.tdmx.lib.control.domain.PartitionControlServer;
 import org.tdmx.lib.control.domain.Segment;
 import org.tdmx.lib.control.job.NamedThreadFactory;
 import org.tdmx.lib.control.service.PartitionControlServerService;
+import org.tdmx.lib.zone.service.AgentCredentialCache;
 import org.tdmx.server.pcs.ServiceHandle;
 import org.tdmx.server.pcs.protobuf.Common.AttributeValue.AttributeId;
 import org.tdmx.server.pcs.protobuf.Common.ObjectType;
@@ -136,6 +137,11 @@ public class ServerSessionManagerImpl implements Manageable, Runnable, SessionCe
 	 */
 	private int sessionIdleTimeoutMinutes = 30;
 
+	/**
+	 * The cache of validated credentials which must forget revoked certificates.
+	 */
+	private AgentCredentialCache credentialCache;
+
 	// - internal
 	private List<WebServiceApiName> apiList;
 	private Map<WebServiceApiName, WebServiceSessionManagerHolder> apiManagerMap = null;
@@ -214,6 +220,10 @@ public class ServerSessionManagerImpl implements Manageable, Runnable, SessionCe
 	@Override
 	public org.tdmx.server.pcs.protobuf.WSClient.ServerServiceStatistics removeCertificate(RpcController controller,
 			RemoveCertificateRequest request) throws ServiceException {
+		if (credentialCache != null) {
+			credentialCache.removeCertificate(
+					CertificateIOUtils.safeDecodeX509(request.getClientCert().toByteArray()));
+		}
 		for (Entry<WebServiceApiName, WebServiceSessionManagerHolder> apis : apiManagerMap.entrySet()) {
 			WebServiceSessionManagerHolder h = apis.getValue();
 			PKIXCertificate cert = CertificateIOUtils.safeDecodeX509(request.getClientCert().toByteArray());
@@ -474,6 +484,9 @@ public class ServerSessionManagerImpl implements Manageable, Runnable, SessionCe
 		// invalidate the certificate at all PCS instances.
 		// this will have the ServerSessionController.invalidateCertificate at the PCS which calls WS server which knows
 		// the certificate
+		if (credentialCache != null) {
+			credentialCache.removeCertificate(cert);
+		}
 		for (Entry<PartitionControlServer, LocalControlServiceListenerClient> pcsServer : serverProxyMap.entrySet()) {
 			LocalControlServiceListenerClient client = pcsServer.getValue();
 
@@ -720,4 +733,12 @@ public class ServerSessionManagerImpl implements Manageable, Runnable, SessionCe
 		this.tosPort = tosPort;
 	}
 
+	public AgentCredentialCache getCredentialCache() {
+		return credentialCache;
+	}
+
+	public void setCredentialCache(AgentCredentialCache credentialCache) {
+		this.credentialCache = credentialCache;
+	}
+
 }
@@ -35,6 +35,7 @@ import org.tdmx.server.pcs.protobuf.Common.AttributeValue.AttributeId;
 import org.tdmx.server.pcs.protobuf.TOSServer.TransferObjectServiceProxy;
 import org.tdmx.server.pcs.protobuf.TOSServer.TransferRequest;
 import org.tdmx.server.pcs.protobuf.TOSServer.TransferResponse;
+import org.tdmx.server.runtime.ExecutorStrategy;
 import org.tdmx.server.runtime.Manageable;
 import org.tdmx.server.ws.session.WebServiceApiName;
 
@@ -86,6 +87,12 @@ public class TransferObjectServiceConnector implements Manageable, TransferObjec
 	private int acceptorThreads = 2;
 	private int ioThreads = 16;
 	private int ioBufferSize = 1048576;
+
+	/**
+	 * The strategy which creates the RPC call executor. If not set, a pool of coreRpcExecutorThreads to
+	 * maxRpcExecutorThreads is used.
+	 */
+	private ExecutorStrategy rpcExecutorStrategy;
 	private boolean tcpNoDelay = true;
 
 	/**
@@ -121,7 +128,13 @@ public class TransferObjectServiceConnector implements Manageable, TransferObjec
 
 		PeerInfo serverInfo = new PeerInfo(serverHostname, localPort);
 
-		RpcServerCallExecutor executor = new ThreadPoolCallExecutor(coreRpcExecutorThreads, maxRpcExecutorThreads);
+		RpcServerCallExecutor executor = null;
+		if (rpcExecutorStrategy != null) {
+			log.info("RPC calls run with " + rpcExecutorStrategy);
+			executor = rpcExecutorStrategy.createRpcCallExecutor("TOS-rpc");
+		} else {
+			executor = new ThreadPoolCallExecutor(coreRpcExecutorThreads, maxRpcExecutorThreads);
+		}
 
 		serverFactory = new DuplexTcpServerPipelineFactory(serverInfo);
 		serverFactory.setRpcServerCallExecutor(executor);
@@ -308,6 +321,14 @@ public class TransferObjectServiceConnector implements Manageable, TransferObjec
 		this.ioBufferSize = ioBufferSize;
 	}
 
+	public ExecutorStrategy getRpcExecutorStrategy() {
+		return rpcExecutorStrategy;
+	}
+
+	public void setRpcExecutorStrategy(ExecutorStrategy rpcExecutorStrategy) {
+		this.rpcExecutorStrategy = rpcExecutorStrategy;
+	}
+
 	public boolean isTcpNoDelay() {
 		return tcpNoDelay;
 	}
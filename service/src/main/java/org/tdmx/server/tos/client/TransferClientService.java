@@ -42,8 +42,10 @@ public interface TransferClientService {
 	 *            the channel destination
 	 * @param stateId
 	 *            the message's state identifier
+	 * @param destinationSerialNr
+	 *            the serialNr of the destination user's certificate which receives the message
 	 * @return the relay status
 	 */
 	public TransferStatus transferMDS(String tosTcpAddress, String sessionId, AccountZone az, ChannelDestination dest,
-			Long stateId);
+			Long stateId, int destinationSerialNr);
 }
@@ -113,7 +113,7 @@ public class TransferClientServiceImpl implements TransferClientService, Managea
 
 	@Override
 	public TransferStatus transferMDS(String tosTcpAddress, String sessionId, AccountZone az,
-			ChannelDestination destination, Long stateId) {
+			ChannelDestination destination, Long stateId, int destinationSerialNr) {
 		String sessionKey = SessionKeyUtil.createMDSSessionKey(az.getZoneApex(), destination);
 
 		if (tosTcpAddress == null || sessionId == null) {
@@ -137,7 +137,8 @@ public class TransferClientServiceImpl implements TransferClientService, Managea
 		if (tosClient == null) {
 			return TransferStatus.failure(ErrorCode.TOS_CONNECTION_REFUSED);
 		}
-		return tosClient.transferMDS(segment.getSegmentName(), tosTcpAddress, sessionId, stateId);
+		return tosClient.transferMDS(segment.getSegmentName(), tosTcpAddress, sessionId, stateId,
+				destinationSerialNr);
 	}
 
 	@Override
@@ -66,7 +66,8 @@ public class TransferObjectServiceClient {
 	// PUBLIC METHODS
 	// -------------------------------------------------------------------------
 
-	public TransferStatus transferMDS(String segment, String tosTcpAddress, String sessionId, Long stateId) {
+	public TransferStatus transferMDS(String segment, String tosTcpAddress, String sessionId, Long stateId,
+			int destinationSerialNr) {
 
 		if (!rpcClient.isClosed()) {
 			TransferRequest.Builder reqBuilder = TransferRequest.newBuilder();
@@ -80,6 +81,12 @@ public class TransferObjectServiceClient {
 			attr.setValue(stateId);
 			reqBuilder.addAttribute(attr);
 
+			// the receiver of the message within the MDS session
+			AttributeValue.Builder serialNrAttr = AttributeValue.newBuilder();
+			serialNrAttr.setName(AttributeId.DestinationSerialNr);
+			serialNrAttr.setValue(destinationSerialNr);
+			reqBuilder.addAttribute(serialNrAttr);
+
 			return transfer(reqBuilder.build(), tosTcpAddress);
 		}
 		return TransferStatus.failure(ErrorCode.TOS_RPC_CHANNEL_CLOSED);
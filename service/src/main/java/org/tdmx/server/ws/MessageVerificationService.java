@@ -0,0 +1,64 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws;
+
+import java.util.List;
+
+import org.tdmx.core.api.v01.msg.Msg;
+
+/**
+ * The MessageVerificationService verifies the msgId, the sender's signature and the chunk MAC of messages, which are
+ * independent of one another and CPU bound, in parallel on a dedicated compute pool.
+ * 
+ * The caller must have checked that the message's header, payload and user signature are present.
+ * 
+ * @author Peter
+ * 
+ */
+public interface MessageVerificationService {
+
+	/**
+	 * The result of verifying a message.
+	 */
+	public static class VerificationResultHolder {
+		public boolean msgIdValid;
+		public boolean signatureValid;
+		/**
+		 * null if the message has no chunk whose MAC can be verified.
+		 */
+		public Boolean chunkMacValid;
+	}
+
+	/**
+	 * Verify the msgId, signature and chunk MAC (if a chunk is included) of a message.
+	 * 
+	 * @param msg
+	 * @return the result of the verification.
+	 */
+	public VerificationResultHolder verify(Msg msg);
+
+	/**
+	 * Verify the msgId, signature and chunk MAC (if a chunk is included) of all messages in parallel.
+	 * 
+	 * @param msgs
+	 * @return the results of the verifications, in the order of the msgs.
+	 */
+	public List<VerificationResultHolder> verify(List<Msg> msgs);
+
+}
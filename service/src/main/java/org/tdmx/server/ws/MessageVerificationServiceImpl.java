@@ -0,0 +1,284 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.client.crypto.scheme.IntegratedCryptoScheme;
+import org.tdmx.core.api.SignatureUtils;
+import org.tdmx.core.api.v01.msg.Chunk;
+import org.tdmx.core.api.v01.msg.Header;
+import org.tdmx.core.api.v01.msg.Msg;
+import org.tdmx.core.api.v01.msg.Payload;
+import org.tdmx.core.system.lang.StringUtils;
+
+/**
+ * Implementation of the MessageVerificationService using a ForkJoinPool sized to the number of cores.
+ * 
+ * Each check of each message is a separate task, so the checks of a message and the messages of a batch run in
+ * parallel, while the number of threads doing crypto is bounded by the pool and not by the number of request threads.
+ * If the pool is not initialized the checks are performed on the calling thread.
+ * 
+ * @author Peter
+ * 
+ */
+public class MessageVerificationServiceImpl implements MessageVerificationService {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final Logger log = LoggerFactory.getLogger(MessageVerificationServiceImpl.class);
+
+	/**
+	 * The number of threads of the compute pool, by default the number of cores.
+	 */
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The time to wait for running verifications on shutdown.
+	 */
+	private int shutdownTimeoutSec = 10;
+
+	private ForkJoinPool verificationPool;
+
+	private final AtomicLong verifications = new AtomicLong();
+	private final AtomicLong totalLatencyNanos = new AtomicLong();
+	private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	public void init() {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism must be positive");
+		}
+		final AtomicInteger threadCount = new AtomicInteger();
+		verificationPool = new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			@Override
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				ForkJoinWorkerThread t = new ForkJoinWorkerThread(pool) {
+				};
+				t.setName("MsgVerify-" + threadCount.incrementAndGet());
+				return t;
+			}
+		}, null, false);
+		log.info("Message verification pool started with parallelism " + parallelism);
+	}
+
+	public void shutdown() {
+		if (verificationPool != null) {
+			verificationPool.shutdown();
+			try {
+				verificationPool.awaitTermination(shutdownTimeoutSec, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			verificationPool = null;
+		}
+	}
+
+	@Override
+	public VerificationResultHolder verify(Msg msg) {
+		return verify(Collections.singletonList(msg)).get(0);
+	}
+
+	@Override
+	public List<VerificationResultHolder> verify(List<Msg> msgs) {
+		long start = System.nanoTime();
+		ForkJoinPool pool = verificationPool;
+
+		List<VerificationTasks> tasks = new ArrayList<>(msgs.size());
+		for (Msg msg : msgs) {
+			tasks.add(new VerificationTasks(msg, pool));
+		}
+		List<VerificationResultHolder> results = new ArrayList<>(msgs.size());
+		for (VerificationTasks t : tasks) {
+			results.add(t.join());
+		}
+
+		long latency = System.nanoTime() - start;
+		verifications.addAndGet(msgs.size());
+		totalLatencyNanos.addAndGet(latency);
+		long max = maxLatencyNanos.get();
+		while (latency > max && !maxLatencyNanos.compareAndSet(max, latency)) {
+			max = maxLatencyNanos.get();
+		}
+		return results;
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private static boolean isChunkMacVerifiable(Chunk chunk, IntegratedCryptoScheme scheme) {
+		return chunk != null && chunk.getData() != null && StringUtils.hasText(chunk.getMac()) && scheme != null;
+	}
+
+	/**
+	 * A helper value type holding the pending checks of a message.
+	 */
+	private static class VerificationTasks {
+		private final Callable<Boolean> msgIdCheck;
+		private final Callable<Boolean> signatureCheck;
+		private final Callable<Boolean> chunkMacCheck;
+
+		private final ForkJoinTask<Boolean> msgIdTask;
+		private final ForkJoinTask<Boolean> signatureTask;
+		private final ForkJoinTask<Boolean> chunkMacTask;
+
+		private VerificationTasks(Msg msg, ForkJoinPool pool) {
+			final Header header = msg.getHeader();
+			final Payload payload = msg.getPayload();
+			final Chunk chunk = msg.getChunk();
+			final IntegratedCryptoScheme scheme = IntegratedCryptoScheme.fromName(header.getScheme());
+
+			msgIdCheck = new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return SignatureUtils.checkMsgId(header, payload,
+							header.getUsersignature().getSignaturevalue().getTimestamp());
+				}
+			};
+			signatureCheck = new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					return SignatureUtils.checkMessageSignature(header, payload);
+				}
+			};
+			if (isChunkMacVerifiable(chunk, scheme)) {
+				chunkMacCheck = new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						return SignatureUtils.checkChunkMac(chunk, scheme);
+					}
+				};
+			} else {
+				chunkMacCheck = null;
+			}
+
+			msgIdTask = submit(pool, msgIdCheck);
+			signatureTask = submit(pool, signatureCheck);
+			chunkMacTask = submit(pool, chunkMacCheck);
+		}
+
+		private VerificationResultHolder join() {
+			VerificationResultHolder result = new VerificationResultHolder();
+			result.msgIdValid = get(msgIdTask, msgIdCheck);
+			result.signatureValid = get(signatureTask, signatureCheck);
+			if (chunkMacCheck != null) {
+				result.chunkMacValid = get(chunkMacTask, chunkMacCheck);
+			}
+			return result;
+		}
+
+		private static ForkJoinTask<Boolean> submit(ForkJoinPool pool, Callable<Boolean> check) {
+			if (pool == null || check == null) {
+				return null;
+			}
+			return pool.submit(check);
+		}
+
+		private static boolean get(ForkJoinTask<Boolean> task, Callable<Boolean> check) {
+			if (task != null) {
+				return task.join();
+			}
+			try {
+				return check.call();
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public long getVerifications() {
+		return verifications.get();
+	}
+
+	/**
+	 * @return the average verification latency per message in milliseconds.
+	 */
+	public double getAverageLatencyMillis() {
+		long calls = verifications.get();
+		return calls == 0 ? 0.0 : totalLatencyNanos.get() / (calls * 1000000.0);
+	}
+
+	public double getMaxLatencyMillis() {
+		return maxLatencyNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * @return the number of checks waiting to be executed by the compute pool.
+	 */
+	public long getQueueDepth() {
+		ForkJoinPool pool = verificationPool;
+		return pool != null ? pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount() : 0;
+	}
+
+	public int getActiveThreads() {
+		ForkJoinPool pool = verificationPool;
+		return pool != null ? pool.getActiveThreadCount() : 0;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public int getShutdownTimeoutSec() {
+		return shutdownTimeoutSec;
+	}
+
+	public void setShutdownTimeoutSec(int shutdownTimeoutSec) {
+		this.shutdownTimeoutSec = shutdownTimeoutSec;
+	}
+
+}
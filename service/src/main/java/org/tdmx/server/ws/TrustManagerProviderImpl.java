@@ -24,9 +24,9 @@ import java.util.List;
 
 import javax.net.ssl.X509TrustManager;
 
-import org.tdmx.client.crypto.certificate.CertificateIOUtils;
 import org.tdmx.client.crypto.certificate.CryptoCertificateException;
 import org.tdmx.client.crypto.certificate.PKIXCertificate;
+import org.tdmx.client.crypto.certificate.PKIXCertificateCache;
 import org.tdmx.server.ws.session.WebServiceSessionTrustManager;
 
 public class TrustManagerProviderImpl implements TrustManagerProvider {
@@ -40,6 +40,7 @@ public class TrustManagerProviderImpl implements TrustManagerProvider {
 	// -------------------------------------------------------------------------
 
 	private List<WebServiceSessionTrustManager> serverSessionTrustManagers;
+	private PKIXCertificateCache certificateCache = new PKIXCertificateCache();
 
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
@@ -57,7 +58,7 @@ public class TrustManagerProviderImpl implements TrustManagerProvider {
 			@Override
 			public void checkClientTrusted(X509Certificate[] chain, String authType) throws CertificateException {
 				try {
-					PKIXCertificate[] certs = CertificateIOUtils.convert(chain);
+					PKIXCertificate[] certs = certificateCache.convert(chain);
 					boolean anyTrusted = false;
 					for (WebServiceSessionTrustManager tm : serverSessionTrustManagers) {
 						if (tm.isTrusted(certs[0])) {
@@ -96,6 +97,14 @@ public class TrustManagerProviderImpl implements TrustManagerProvider {
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
 
+	public PKIXCertificateCache getCertificateCache() {
+		return certificateCache;
+	}
+
+	public void setCertificateCache(PKIXCertificateCache certificateCache) {
+		this.certificateCache = certificateCache;
+	}
+
 	public List<WebServiceSessionTrustManager> getServerSessionTrustManagers() {
 		return serverSessionTrustManagers;
 	}
@@ -28,6 +28,7 @@ import java.util.List;
 import javax.net.ssl.TrustManager;
 import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
+import javax.servlet.Servlet;
 
 import org.apache.cxf.transport.servlet.CXFServlet;
 import org.eclipse.jetty.server.AsyncNCSARequestLog;
@@ -82,6 +83,12 @@ public class WebServiceServerContainer implements ServerContainer {
 
 	private Filter agentAuthorizationFilter;
 
+	/**
+	 * The binary relay transport of the MRS, mapped to the binaryRelayPath if both are defined.
+	 */
+	private Servlet binaryRelayServlet;
+	private String binaryRelayPath;
+
 	private TrustManagerProvider trustProvider;
 	private List<Manageable> manageables;
 
@@ -172,23 +179,35 @@ public class WebServiceServerContainer implements ServerContainer {
 		wsContext.setInitParameter("locatorFactorySelector", "classpath*:beanRefContext.xml");
 		wsContext.setInitParameter("contextConfigLocation", "classpath:/ws-context.xml");
 
-		// Add filters
+		// Add filters - all async supported so that a long polling MDS receive can suspend without holding a thread.
 		FilterHolder sf = new FilterHolder();
 		sf.setFilter(new SessionProhibitionFilter());
+		sf.setAsyncSupported(true);
 		wsContext.addFilter(sf, "/*", EnumSet.allOf(DispatcherType.class));
 
 		FilterHolder cf = new FilterHolder();
 		cf.setFilter(new RequireClientCertificateFilter());
+		cf.setAsyncSupported(true);
 		wsContext.addFilter(cf, "/*", EnumSet.allOf(DispatcherType.class));
 
 		FilterHolder fh = new FilterHolder();
 		fh.setFilter(getAgentAuthorizationFilter());
-		wsContext.addFilter(fh, "/*", EnumSet.of(DispatcherType.REQUEST));
+		fh.setAsyncSupported(true);
+		// the resumed dispatch of a suspended request needs the authenticated client too
+		wsContext.addFilter(fh, "/*", EnumSet.of(DispatcherType.REQUEST, DispatcherType.ASYNC));
 
 		ServletHolder wsSh = new ServletHolder(CXFServlet.class);
 		wsSh.setInitOrder(1);
+		wsSh.setAsyncSupported(true);
 		wsContext.addServlet(wsSh, "/*");
 
+		if (binaryRelayServlet != null && binaryRelayPath != null) {
+			// the exact path mapping takes precedence over the CXF servlet's
+			ServletHolder brSh = new ServletHolder(binaryRelayServlet);
+			brSh.setInitOrder(2);
+			wsContext.addServlet(brSh, binaryRelayPath);
+		}
+
 		contexts.addHandler(wsContext);
 		// Start the server
 		jetty.start();
@@ -301,6 +320,22 @@ public class WebServiceServerContainer implements ServerContainer {
 		this.agentAuthorizationFilter = agentAuthorizationFilter;
 	}
 
+	public Servlet getBinaryRelayServlet() {
+		return binaryRelayServlet;
+	}
+
+	public void setBinaryRelayServlet(Servlet binaryRelayServlet) {
+		this.binaryRelayServlet = binaryRelayServlet;
+	}
+
+	public String getBinaryRelayPath() {
+		return binaryRelayPath;
+	}
+
+	public void setBinaryRelayPath(String binaryRelayPath) {
+		this.binaryRelayPath = binaryRelayPath;
+	}
+
 	public TrustManagerProvider getTrustProvider() {
 		return trustProvider;
 	}
@@ -19,11 +19,16 @@
 package org.tdmx.server.ws.mds;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.cxf.continuations.Continuation;
+import org.apache.cxf.continuations.ContinuationProvider;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.PhaseInterceptorChain;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tdmx.client.crypto.certificate.CertificateIOUtils;
@@ -64,6 +69,7 @@ import org.tdmx.lib.chunk.service.ChunkService;
 import org.tdmx.lib.common.domain.PageSpecifier;
 import org.tdmx.lib.common.domain.ProcessingState;
 import org.tdmx.lib.common.domain.ProcessingStatus;
+import org.tdmx.lib.control.datasource.ThreadLocalPartitionIdProvider;
 import org.tdmx.lib.zone.domain.Address;
 import org.tdmx.lib.zone.domain.Channel;
 import org.tdmx.lib.zone.domain.ChannelAuthorizationSearchCriteria;
@@ -131,6 +137,27 @@ public class MDSImpl implements MDS {
 	private int batchSize = 100;
 	private int maxWaitTimeoutSec = 600;
 
+	/**
+	 * The number of chunks fetched ahead of the requested chunk in the same round trip to the chunk DB, to be served
+	 * on subsequent downloads.
+	 */
+	private int downloadPrefetchChunks = 1;
+
+	/**
+	 * The number of pending messages per receiver whose 1st chunk is read ahead of their receive, limited by
+	 * readAheadMaxBytes of chunk data per receiver and by the session factory's ReadAheadBudget over all receivers.
+	 */
+	private int readAheadMessages = 2;
+	private long readAheadMaxBytes = 32L * 1024L * 1024L; // 32MB
+
+	/**
+	 * The zone partition of the session is set for reading ahead outside of the request.
+	 */
+	private ThreadLocalPartitionIdProvider zonePartitionIdProvider;
+
+	private ExecutorService readAheadExecutor = Executors.newFixedThreadPool(4,
+			new RenamingThreadFactoryProxy("ReceiveReadAhead", Executors.defaultThreadFactory()));
+
 	private int maxTransactionTimeoutSec = 3600 * 8; // 8hrs
 	private int minTransactionTimeoutSec = 60; // 60s
 
@@ -249,6 +276,23 @@ public class MDSImpl implements MDS {
 		PKIXCertificate authorizedUser = authenticatedClientService.getAuthenticatedClient();
 		ReceiverContext rcv = session.getReceiverContext(authorizedUser.getSerialNumber());
 
+		Continuation continuation = getContinuation();
+		if (continuation != null && !continuation.isNew() && continuation.getObject() instanceof ParkedReceive) {
+			// the parked receive is re-invoked after a message became pending or the wait timed out
+			ParkedReceive parked = (ParkedReceive) continuation.getObject();
+			Long stateId = parked.takePendingStateId(rcv);
+			if (stateId == null && parked.repark(rcv)) {
+				// another receive took the message which woke us, wait for the rest of the wait time.
+				return null;
+			}
+			if (stateId == null) {
+				// no message available even after waiting.
+				response.setSuccess(true);
+				return response;
+			}
+			return receiveMessage(session, rcv, parked.getTx(), stateId, response);
+		}
+
 		// validate waitTimeout(sec) postive < some maximum
 		if (recvRequest.getWaitTimeoutSec() < 0 || recvRequest.getWaitTimeoutSec() > maxWaitTimeoutSec) {
 			ErrorCode.setError(ErrorCode.InvalidTimeout, response, maxWaitTimeoutSec);
@@ -334,57 +378,23 @@ public class MDSImpl implements MDS {
 		}
 
 		// get any ready message, waiting if none available.
-		Long stateId = rcv.getNextPendingStateId(recvRequest.getWaitTimeoutSec() * 1000);
+		Long stateId = rcv.pollPendingStateId();
+		if (stateId == null && recvRequest.getWaitTimeoutSec() > 0) {
+			if (continuation != null) {
+				// park the receiver without holding the request thread, the receive is re-invoked when resumed
+				ParkedReceive parked = new ParkedReceive(continuation, tx,
+						System.currentTimeMillis() + recvRequest.getWaitTimeoutSec() * 1000L);
+				parked.park(rcv);
+				return null;
+			}
+			stateId = rcv.getNextPendingStateId(recvRequest.getWaitTimeoutSec() * 1000);
+		}
 		if (stateId == null) {
 			// no message available even after waiting.
 			response.setSuccess(true);
 			return response;
 		}
-
-		// fetch the message data for reply
-		ReceiveMessageResultHolder recvMsg = channelService.receiveMessage(stateId, tx.getTxtimeout());
-		if (recvMsg == null) {
-			// not valid after fetching.
-			response.setSuccess(true);
-			return response;
-		}
-
-		if (recvMsg.flowControlOpened) {
-			// relay opened FC back to origin
-			relayFCWithRetry(session, rcv, recvMsg.msg.getChannel(), recvMsg.flowQuota);
-		}
-		if (MessageStatus.RECEIVING != recvMsg.msg.getState().getStatus()) {
-			// message redelivered too many times
-			response.setSuccess(true);
-			return response;
-		}
-		if (rcv.getUnackedMessage(recvMsg.msg.getMsgId()) != null) {
-			// strange error / race condition - don't bother the receiver - consumed the stateId
-			log.info("Found pending message doesn't fit receive criteria. " + recvMsg.msg);
-			response.setSuccess(true);
-			return response;
-		}
-		ChannelMessage msg = recvMsg.msg;
-
-		MessageContext msgCtx = startTx(rcv, tx, msg);
-		Msg m = d2a.mapChannelMessage(msg);
-
-		// get 1st chunk and map it into msg
-		Chunk chunk = chunkService.fetchChunk(msg, 0);
-		if (chunk == null) {
-			ErrorCode.setError(ErrorCode.ChunkDataLost, response, msg.getMsgId(), 0);
-			return response;
-		}
-		m.setChunk(d2a.mapChunk(chunk));
-
-		response.setMsg(m);
-		response.setRetryCount(msg.getState().getDeliveryCount() - 1);
-		response.setSuccess(true);
-		if (msg.getNumberOfChunks() > 1) {
-			// set the continuationId for the next chunk.
-			response.setContinuation(msgCtx.getContinuationId(chunk.getPos() + 1));
-		}
-		return response;
+		return receiveMessage(session, rcv, tx, stateId, response);
 	}
 
 	@Override
@@ -419,7 +429,7 @@ public class MDSImpl implements MDS {
 		}
 
 		// get next chunk and map it into msg
-		Chunk chunk = chunkService.fetchChunk(msg.getMsg(), cr.getPos());
+		Chunk chunk = fetchChunk(msg, cr.getPos());
 		if (chunk == null) {
 			ErrorCode.setError(ErrorCode.ChunkDataLost, response, msg.getMsgId(),
 					downloadRequest.getChunkref().getPos());
@@ -690,6 +700,148 @@ public class MDSImpl implements MDS {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	/**
+	 * Read ahead the 1st chunk of the next pending messages of the receiver in the background.
+	 * 
+	 * @param session
+	 * @param rcv
+	 */
+	private void scheduleReadAhead(MDSServerSession session, final ReceiverContext rcv) {
+		if (readAheadMessages <= 0 || zonePartitionIdProvider == null) {
+			return;
+		}
+		final List<Long> stateIds = rcv.startReadAhead(readAheadMessages);
+		if (stateIds.isEmpty()) {
+			return;
+		}
+		final String zonePartitionId = session.getAccountZone().getZonePartitionId();
+		readAheadExecutor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				zonePartitionIdProvider.setPartitionId(zonePartitionId);
+				try {
+					for (Long stateId : stateIds) {
+						readAhead(rcv, stateId);
+					}
+				} finally {
+					zonePartitionIdProvider.clearPartitionId();
+				}
+			}
+		});
+	}
+
+	private void readAhead(ReceiverContext rcv, Long stateId) {
+		Chunk chunk = null;
+		try {
+			ChannelMessage msg = channelService.findByStateId(stateId, false);
+			if (msg != null) {
+				chunk = chunkService.fetchChunk(msg, 0);
+			}
+		} catch (RuntimeException e) {
+			log.warn("Unable to read ahead message " + stateId, e);
+		}
+		if (chunk == null) {
+			rcv.cancelReadAhead(stateId);
+		} else {
+			rcv.completeReadAhead(stateId, chunk, readAheadMaxBytes);
+		}
+	}
+
+	/**
+	 * Get the continuation of the current CXF request, which is available when the webservice is invoked via a servlet
+	 * supporting asynchronous processing.
+	 * 
+	 * @return the continuation or null if the request cannot be suspended.
+	 */
+	private Continuation getContinuation() {
+		Message message = PhaseInterceptorChain.getCurrentMessage();
+		if (message == null) {
+			return null;
+		}
+		ContinuationProvider provider = (ContinuationProvider) message.get(ContinuationProvider.class.getName());
+		if (provider == null) {
+			return null;
+		}
+		return provider.getContinuation();
+	}
+
+	private ReceiveResponse receiveMessage(MDSServerSession session, ReceiverContext rcv, Transaction tx, Long stateId,
+			ReceiveResponse response) {
+		// the 1st chunk could have been read ahead while the message was pending
+		Chunk readAheadChunk = rcv.takeReadAhead(stateId);
+		// start reading ahead the following messages while we deliver this one
+		scheduleReadAhead(session, rcv);
+
+		// fetch the message data for reply
+		ReceiveMessageResultHolder recvMsg = channelService.receiveMessage(stateId, tx.getTxtimeout());
+		if (recvMsg == null) {
+			// not valid after fetching.
+			response.setSuccess(true);
+			return response;
+		}
+
+		if (recvMsg.flowControlOpened) {
+			// relay opened FC back to origin
+			relayFCWithRetry(session, rcv, recvMsg.msg.getChannel(), recvMsg.flowQuota);
+		}
+		if (MessageStatus.RECEIVING != recvMsg.msg.getState().getStatus()) {
+			// message redelivered too many times
+			response.setSuccess(true);
+			return response;
+		}
+		if (rcv.getUnackedMessage(recvMsg.msg.getMsgId()) != null) {
+			// strange error / race condition - don't bother the receiver - consumed the stateId
+			log.info("Found pending message doesn't fit receive criteria. " + recvMsg.msg);
+			response.setSuccess(true);
+			return response;
+		}
+		ChannelMessage msg = recvMsg.msg;
+
+		MessageContext msgCtx = startTx(rcv, tx, msg);
+		Msg m = d2a.mapChannelMessage(msg);
+
+		// get 1st chunk and map it into msg
+		Chunk chunk = readAheadChunk;
+		if (chunk == null || !msg.getMsgId().equals(chunk.getMsgId())) {
+			chunk = fetchChunk(msgCtx, 0);
+		}
+		if (chunk == null) {
+			ErrorCode.setError(ErrorCode.ChunkDataLost, response, msg.getMsgId(), 0);
+			return response;
+		}
+		m.setChunk(d2a.mapChunk(chunk));
+
+		response.setMsg(m);
+		response.setRetryCount(msg.getState().getDeliveryCount() - 1);
+		response.setSuccess(true);
+		if (msg.getNumberOfChunks() > 1) {
+			// set the continuationId for the next chunk.
+			response.setContinuation(msgCtx.getContinuationId(chunk.getPos() + 1));
+		}
+		return response;
+	}
+
+
+	private Chunk fetchChunk(MessageContext msgCtx, int pos) {
+		Chunk chunk = msgCtx.takePrefetchedChunk(pos);
+		if (chunk != null) {
+			return chunk;
+		}
+		ChannelMessage msg = msgCtx.getMsg();
+		int toPos = Math.min(pos + downloadPrefetchChunks, msg.getNumberOfChunks() - 1);
+		if (toPos <= pos) {
+			return chunkService.fetchChunk(msg, pos);
+		}
+		// fetch the requested chunk and read ahead the following chunks in one round trip
+		List<Chunk> chunks = chunkService.fetchChunks(msg, pos, toPos);
+		if (chunks == null || chunks.isEmpty() || chunks.get(0).getPos() != pos) {
+			return null;
+		}
+		msgCtx.addPrefetchedChunks(chunks.subList(1, chunks.size()));
+		return chunks.get(0);
+	}
+
 	private void deleteChunks(ChannelMessage msg) {
 		if (msg == null) {
 			log.warn("No message to delete chunks for.");
@@ -777,7 +929,7 @@ public class MDSImpl implements MDS {
 
 	private MessageContext startTx(ReceiverContext rcv, Transaction tx, ChannelMessage msg) {
 		TransactionContext txCtx = new TransactionContext(tx);
-		MessageContext msgCtx = new MessageContext(msg);
+		MessageContext msgCtx = rcv.createMessageContext(msg);
 		txCtx.setCurrentMessage(msgCtx);
 		rcv.addTransaction(txCtx);
 		scheduleTransactionTimeout(txCtx, rcv);
@@ -922,4 +1074,36 @@ public class MDSImpl implements MDS {
 		this.chunkService = chunkService;
 	}
 
+	public int getDownloadPrefetchChunks() {
+		return downloadPrefetchChunks;
+	}
+
+	public void setDownloadPrefetchChunks(int downloadPrefetchChunks) {
+		this.downloadPrefetchChunks = downloadPrefetchChunks;
+	}
+
+	public int getReadAheadMessages() {
+		return readAheadMessages;
+	}
+
+	public void setReadAheadMessages(int readAheadMessages) {
+		this.readAheadMessages = readAheadMessages;
+	}
+
+	public long getReadAheadMaxBytes() {
+		return readAheadMaxBytes;
+	}
+
+	public void setReadAheadMaxBytes(long readAheadMaxBytes) {
+		this.readAheadMaxBytes = readAheadMaxBytes;
+	}
+
+	public ThreadLocalPartitionIdProvider getZonePartitionIdProvider() {
+		return zonePartitionIdProvider;
+	}
+
+	public void setZonePartitionIdProvider(ThreadLocalPartitionIdProvider zonePartitionIdProvider) {
+		this.zonePartitionIdProvider = zonePartitionIdProvider;
+	}
+
 }
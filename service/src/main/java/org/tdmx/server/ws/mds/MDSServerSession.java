@@ -18,7 +18,9 @@
  */
 package org.tdmx.server.ws.mds;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.tdmx.lib.control.domain.AccountZone;
@@ -42,13 +44,15 @@ public class MDSServerSession extends WebServiceSession {
 	// -------------------------------------------------------------------------
 	// internal
 	private final Map<Integer, ReceiverContext> receiverContextMap = new HashMap<>();
+	private final ReadAheadBudget readAheadBudget;
 
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
 	public MDSServerSession(String sessionId, AccountZone az, Zone zone, Domain domain, Address address,
-			Service service) {
+			Service service, ReadAheadBudget readAheadBudget) {
 		super(sessionId);
+		this.readAheadBudget = readAheadBudget;
 		setAccountZone(az);
 		setZone(zone);
 		setDomain(domain);
@@ -63,7 +67,7 @@ public class MDSServerSession extends WebServiceSession {
 	public synchronized ReceiverContext getReceiverContext(Integer serialNr) {
 		ReceiverContext r = receiverContextMap.get(serialNr);
 		if (r == null) {
-			r = new ReceiverContext(serialNr);
+			r = new ReceiverContext(serialNr, readAheadBudget);
 			receiverContextMap.put(serialNr, r);
 		}
 		return r;
@@ -71,13 +75,32 @@ public class MDSServerSession extends WebServiceSession {
 
 	@Override
 	public boolean transferObject(ObjectType type, Map<AttributeId, Long> attributes) {
-		// MDS receives MSG from MRS
-		for (ReceiverContext recv : receiverContextMap.values()) {
+		// MDS receives MSG from MOS or MRS
+		Long stateId = attributes.get(AttributeId.MessageId);
+		Long serialNr = attributes.get(AttributeId.DestinationSerialNr);
+		if (ObjectType.Message == type && stateId != null && serialNr != null) {
+			// push the message straight to its receiver, if there is none yet it fetches the message from the DB
+			ReceiverContext recv = findReceiverContext(serialNr.intValue());
+			if (recv != null) {
+				recv.addTransferredMessage(stateId);
+			}
+			return true;
+		}
+		// a transfer from a sender which doesn't know the receiver - the receivers need to fetch from the DB
+		for (ReceiverContext recv : getReceiverContexts()) {
 			recv.setDirty();
 		}
 		return true;
 	}
 
+	@Override
+	public void close() {
+		// release the chunks read ahead by all receivers from the shared read ahead budget
+		for (ReceiverContext recv : getReceiverContexts()) {
+			recv.clearReadAhead();
+		}
+	}
+
 	public AccountZone getAccountZone() {
 		return getAttribute(ACCOUNT_ZONE);
 	}
@@ -134,6 +157,14 @@ public class MDSServerSession extends WebServiceSession {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	private synchronized ReceiverContext findReceiverContext(Integer serialNr) {
+		return receiverContextMap.get(serialNr);
+	}
+
+	private synchronized List<ReceiverContext> getReceiverContexts() {
+		return new ArrayList<>(receiverContextMap.values());
+	}
+
 	// -------------------------------------------------------------------------
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
@@ -37,6 +37,7 @@ public class MDSServerSessionFactoryImpl extends AbstractServerSessionFactory<MD
 	// -------------------------------------------------------------------------
 	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
 	// -------------------------------------------------------------------------
+	private ReadAheadBudget readAheadBudget;
 
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
@@ -51,12 +52,12 @@ public class MDSServerSessionFactoryImpl extends AbstractServerSessionFactory<MD
 
 		associateZoneDB(az.getZonePartitionId());
 		try {
-			Zone z = fetchZone(seedAttributes.get(AttributeId.ZoneId));
-			Domain d = fetchDomain(seedAttributes.get(AttributeId.DomainId));
-			Service s = fetchService(seedAttributes.get(AttributeId.ServiceId));
+			Zone z = fetchZone(az, seedAttributes.get(AttributeId.ZoneId));
+			Domain d = fetchDomain(az, z, seedAttributes.get(AttributeId.DomainId));
+			Service s = fetchService(az, seedAttributes.get(AttributeId.ServiceId));
 			Address a = fetchAddress(seedAttributes.get(AttributeId.AddressId));
 
-			MDSServerSession mss = new MDSServerSession(sessionId, az, z, d, a, s);
+			MDSServerSession mss = new MDSServerSession(sessionId, az, z, d, a, s, readAheadBudget);
 			return mss;
 		} finally {
 			disassociateZoneDB();
@@ -74,4 +75,12 @@ public class MDSServerSessionFactoryImpl extends AbstractServerSessionFactory<MD
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
 
+	public ReadAheadBudget getReadAheadBudget() {
+		return readAheadBudget;
+	}
+
+	public void setReadAheadBudget(ReadAheadBudget readAheadBudget) {
+		this.readAheadBudget = readAheadBudget;
+	}
+
 }
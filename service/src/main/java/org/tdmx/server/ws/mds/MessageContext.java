@@ -18,8 +18,12 @@
  */
 package org.tdmx.server.ws.mds;
 
+import java.util.LinkedList;
+import java.util.List;
+
 import org.tdmx.client.crypto.entropy.EntropySource;
 import org.tdmx.core.api.SignatureUtils;
+import org.tdmx.lib.chunk.domain.Chunk;
 import org.tdmx.lib.zone.domain.ChannelMessage;
 
 public class MessageContext {
@@ -37,12 +41,30 @@ public class MessageContext {
 
 	private final byte[] entropy;
 
+	/**
+	 * Chunks fetched ahead of the client's download requests, guarded by this context since the client's download
+	 * requests can be processed concurrently.
+	 */
+	private final List<Chunk> prefetchedChunks = new LinkedList<>();
+
+	/**
+	 * The limit of chunk data read ahead over all receivers, which the prefetchedChunks are reserved against, null if
+	 * unlimited.
+	 */
+	private final ReadAheadBudget readAheadBudget;
+
+	/**
+	 * No more chunks are prefetched once the transaction finished or the session is removed.
+	 */
+	private boolean prefetchClosed = false;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
-	public MessageContext(ChannelMessage msg) {
+	public MessageContext(ChannelMessage msg, ReadAheadBudget readAheadBudget) {
 		this.msg = msg;
 		this.entropy = EntropySource.getRandomBytes(LEN_ENTROPY);
+		this.readAheadBudget = readAheadBudget;
 	}
 
 	// -------------------------------------------------------------------------
@@ -88,6 +110,58 @@ public class MessageContext {
 		return SignatureUtils.createContinuationId(chunkPos, entropy, msg.getMsgId(), LEN_CONTINUATION_ID);
 	}
 
+	/**
+	 * Keep chunks which were fetched ahead of being downloaded by the client, as far as they fit into the read ahead
+	 * budget.
+	 * 
+	 * @param chunks
+	 * @return the number of chunks kept.
+	 */
+	public synchronized int addPrefetchedChunks(List<Chunk> chunks) {
+		int kept = 0;
+		if (prefetchClosed) {
+			return kept;
+		}
+		for (Chunk c : chunks) {
+			if (readAheadBudget != null && !readAheadBudget.reserve(c.getData().length)) {
+				// the following chunks are fetched again when the client downloads them.
+				break;
+			}
+			prefetchedChunks.add(c);
+			kept++;
+		}
+		return kept;
+	}
+
+	/**
+	 * Take the prefetched chunk at the position, discarding any prefetched chunks before it.
+	 * 
+	 * @param pos
+	 * @return the prefetched chunk at pos or null if not prefetched.
+	 */
+	public synchronized Chunk takePrefetchedChunk(int pos) {
+		while (!prefetchedChunks.isEmpty()) {
+			Chunk c = prefetchedChunks.remove(0);
+			release(c);
+			if (c.getPos() == pos) {
+				return c;
+			} else if (c.getPos() > pos) {
+				// client is going backwards - we don't keep anything.
+				discardPrefetchedChunks();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Discard all prefetched chunks, releasing them from the read ahead budget, and keep no more chunks prefetched
+	 * afterwards, ie. when the transaction finishes or the session is removed.
+	 */
+	public synchronized void clearPrefetchedChunks() {
+		prefetchClosed = true;
+		discardPrefetchedChunks();
+	}
+
 	// -------------------------------------------------------------------------
 	// PROTECTED METHODS
 	// -------------------------------------------------------------------------
@@ -96,6 +170,19 @@ public class MessageContext {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	private void discardPrefetchedChunks() {
+		for (Chunk c : prefetchedChunks) {
+			release(c);
+		}
+		prefetchedChunks.clear();
+	}
+
+	private void release(Chunk c) {
+		if (readAheadBudget != null) {
+			readAheadBudget.release(c.getData().length);
+		}
+	}
+
 	// -------------------------------------------------------------------------
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
@@ -0,0 +1,144 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws.mds;
+
+import org.apache.cxf.continuations.Continuation;
+import org.tdmx.core.api.v01.tx.Transaction;
+
+/**
+ * A receive which is parked on the ReceiverContext, without holding the request thread, until a message is pending or
+ * the wait times out.
+ * 
+ * When the parked receive is resumed another receive of the same receiver may have taken the pending message already,
+ * in which case the receive is parked again for the rest of its wait time.
+ * 
+ * @author Peter
+ * 
+ */
+public class ParkedReceive implements Runnable {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+
+	private final Continuation continuation;
+	private final Transaction tx;
+	private final long waitUntilTimestamp;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * 
+	 * @param continuation
+	 *            the continuation of the receive request.
+	 * @param tx
+	 *            the transaction of the receive.
+	 * @param waitUntilTimestamp
+	 *            the time until which the receive waits for a message.
+	 */
+	public ParkedReceive(Continuation continuation, Transaction tx, long waitUntilTimestamp) {
+		this.continuation = continuation;
+		this.tx = tx;
+		this.waitUntilTimestamp = waitUntilTimestamp;
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Suspend the receive request for the rest of its wait time and wait for a message pending on the receiver.
+	 * 
+	 * @param rcv
+	 */
+	public void park(ReceiverContext rcv) {
+		long waitForMs = Math.max(waitUntilTimestamp - System.currentTimeMillis(), 1L);
+		synchronized (continuation) {
+			continuation.setObject(this);
+			continuation.suspend(waitForMs);
+		}
+		rcv.addWaitingReceiver(this);
+	}
+
+	/**
+	 * Take the pending message of the receiver once the parked receive is resumed.
+	 * 
+	 * @param rcv
+	 * @return the stateId or null if there is no pending message.
+	 */
+	public Long takePendingStateId(ReceiverContext rcv) {
+		rcv.removeWaitingReceiver(this);
+		return rcv.pollPendingStateId();
+	}
+
+	/**
+	 * Park the receive again if its wait time is not over, ie. when another receive has taken the message which
+	 * resumed this receive.
+	 * 
+	 * @param rcv
+	 * @return true if parked again, false if the wait time is over.
+	 */
+	public boolean repark(ReceiverContext rcv) {
+		if (isWaitOver()) {
+			return false;
+		}
+		park(rcv);
+		return true;
+	}
+
+	/**
+	 * 
+	 * @return true if the wait time of the receive is over.
+	 */
+	public boolean isWaitOver() {
+		return System.currentTimeMillis() >= waitUntilTimestamp;
+	}
+
+	@Override
+	public void run() {
+		synchronized (continuation) {
+			if (continuation.isPending()) {
+				continuation.resume();
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public Transaction getTx() {
+		return tx;
+	}
+
+}
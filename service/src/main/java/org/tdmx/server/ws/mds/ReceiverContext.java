@@ -18,17 +18,23 @@
  */
 package org.tdmx.server.ws.mds;
 
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.tdmx.lib.chunk.domain.Chunk;
 import org.tdmx.lib.zone.domain.Channel;
+import org.tdmx.lib.zone.domain.ChannelMessage;
 
 public class ReceiverContext {
 
@@ -41,20 +47,21 @@ public class ReceiverContext {
 	// -------------------------------------------------------------------------
 	private static final Logger log = LoggerFactory.getLogger(ReceiverContext.class);
 
-	// if we don't get any messages transferred in "fast" then we still poll the DB every 5min.
+	// messages are pushed to us via TOS, if one gets lost then we still poll the DB every 5min.
 	private static final long safetyPollIntervalMs = 300000;
 
 	// map of channelId->rosTcpAddress last known good configuration for each channel
-	private Map<Long, String> rosTcpAddressChannelMap = new HashMap<>();
+	private Map<Long, String> rosTcpAddressChannelMap = new ConcurrentHashMap<>();
 
-	// map of msgId->MessageContext of messages which have been delivered but not yet acknowledged
-	private Map<String, MessageContext> unackedMessageMap = new HashMap<>();
+	// map of msgId->MessageContext of messages which have been delivered but not yet acknowledged, concurrent since
+	// TOS transfers check it.
+	private Map<String, MessageContext> unackedMessageMap = new ConcurrentHashMap<>();
 
 	// map of txId->TransactionContext of current transactions.
-	private Map<String, TransactionContext> transactionMap = new HashMap<>();
+	private Map<String, TransactionContext> transactionMap = new ConcurrentHashMap<>();
 
-	// indicates that messages related to this destination have been relayed in since the last fetch.
-	private boolean dirty = true;
+	// indicates that there are messages for this destination in the DB which have not been fetched.
+	private volatile boolean dirty = true;
 
 	// the last time that we fetched pending messages from the DB. We use this to stop looking too often
 	// for pending messages on the DB if no new messages has been received.
@@ -63,6 +70,21 @@ public class ReceiverContext {
 	// internal, message stateId ready to deliver.
 	private final Queue<Long> fetchedMessages = new ConcurrentLinkedDeque<>();
 
+	// callbacks of receivers which are parked without a thread waiting for a pending message.
+	private final Queue<Runnable> waitingReceivers = new ConcurrentLinkedQueue<>();
+
+	// marks a pending message whose 1st chunk is being read ahead.
+	private static final Chunk READ_AHEAD_PENDING = new Chunk();
+
+	// map of stateId->1st Chunk of pending messages read ahead of their receive.
+	private final Map<Long, Chunk> readAheadMap = new ConcurrentHashMap<>();
+
+	// the size of the chunk data held in the readAheadMap.
+	private final AtomicLong readAheadBytes = new AtomicLong();
+
+	// the limit of chunk data read ahead over all receivers, null if unlimited.
+	private final ReadAheadBudget readAheadBudget;
+
 	// the destination user's certificate seqNr. We only fetch messages which are exactly determined for this user,
 	// where there could be more than one user (version) receiving at the same time on the session.
 	private final Integer seqNr;
@@ -74,8 +96,9 @@ public class ReceiverContext {
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
-	public ReceiverContext(int seqNr) {
+	public ReceiverContext(int seqNr, ReadAheadBudget readAheadBudget) {
 		this.seqNr = seqNr;
+		this.readAheadBudget = readAheadBudget;
 	}
 
 	// -------------------------------------------------------------------------
@@ -122,7 +145,7 @@ public class ReceiverContext {
 	 * @return if messages should be fetched from the DB.
 	 */
 	public synchronized boolean isFetchRequired() {
-		if (fetchedMessages.poll() == null // no pending messages
+		if (fetchedMessages.isEmpty() // no pending messages
 				&& (dirty == true || lastFetchTimestamp + safetyPollIntervalMs < System.currentTimeMillis())) {
 			lastFetchTimestamp = System.currentTimeMillis();
 			dirty = false;
@@ -159,6 +182,137 @@ public class ReceiverContext {
 		return stateId;
 	}
 
+	/**
+	 * Take the next pending message without waiting.
+	 * 
+	 * @return the stateId or null if there is no pending message.
+	 */
+	public Long pollPendingStateId() {
+		return fetchedMessages.poll();
+	}
+
+	/**
+	 * Park a receiver which is waiting for a pending message. The callback is invoked once, when a message becomes
+	 * pending, from the thread which adds the message. The receiver then takes the message with
+	 * {@link #pollPendingStateId()}.
+	 * 
+	 * @param callback
+	 */
+	public void addWaitingReceiver(Runnable callback) {
+		waitingReceivers.add(callback);
+		// a message could have been added before the receiver was parked
+		if (!fetchedMessages.isEmpty()) {
+			wakeWaitingReceivers(1);
+		}
+	}
+
+	/**
+	 * Remove a parked receiver, ie. when its wait times out.
+	 * 
+	 * @param callback
+	 * @return true if the receiver was still parked.
+	 */
+	public boolean removeWaitingReceiver(Runnable callback) {
+		return waitingReceivers.remove(callback);
+	}
+
+	/**
+	 * Start reading ahead the next pending messages which are not already read ahead.
+	 * 
+	 * @param maxMessages
+	 *            the maximum number of pending messages read ahead.
+	 * @return the stateIds of the messages to read ahead, which must be completed or cancelled.
+	 */
+	public synchronized List<Long> startReadAhead(int maxMessages) {
+		List<Long> result = new ArrayList<>();
+		Iterator<Long> it = fetchedMessages.iterator();
+		for (int i = 0; i < maxMessages && it.hasNext(); i++) {
+			Long stateId = it.next();
+			if (readAheadMap.putIfAbsent(stateId, READ_AHEAD_PENDING) == null) {
+				result.add(stateId);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Keep the 1st chunk of a pending message which has been read ahead, if it fits into the read ahead buffer of the
+	 * receiver and the read ahead budget of all receivers, and the message has not been taken in the meantime.
+	 * 
+	 * @param stateId
+	 * @param chunk
+	 * @param maxBytes
+	 *            the maximum size of the chunk data read ahead for this receiver.
+	 * @return true if the chunk is kept.
+	 */
+	public boolean completeReadAhead(Long stateId, Chunk chunk, long maxBytes) {
+		int size = chunk.getData().length;
+		if (readAheadBytes.addAndGet(size) > maxBytes) {
+			readAheadBytes.addAndGet(-size);
+			cancelReadAhead(stateId);
+			return false;
+		}
+		if (readAheadBudget != null && !readAheadBudget.reserve(size)) {
+			readAheadBytes.addAndGet(-size);
+			cancelReadAhead(stateId);
+			return false;
+		}
+		if (!readAheadMap.replace(stateId, READ_AHEAD_PENDING, chunk)) {
+			// taken already
+			releaseReadAhead(size);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Give up reading ahead a pending message.
+	 * 
+	 * @param stateId
+	 */
+	public void cancelReadAhead(Long stateId) {
+		readAheadMap.remove(stateId, READ_AHEAD_PENDING);
+	}
+
+	/**
+	 * Take the 1st chunk of a message which has been read ahead.
+	 * 
+	 * @param stateId
+	 * @return the chunk or null if the message has not been read ahead (yet).
+	 */
+	public Chunk takeReadAhead(Long stateId) {
+		Chunk chunk = readAheadMap.remove(stateId);
+		if (chunk == null || chunk == READ_AHEAD_PENDING) {
+			return null;
+		}
+		releaseReadAhead(chunk.getData().length);
+		return chunk;
+	}
+
+	/**
+	 * Discard all chunks read ahead, including those prefetched for the messages of current transactions, releasing
+	 * them from the read ahead budget, ie. when the session is removed.
+	 */
+	public void clearReadAhead() {
+		for (Long stateId : new ArrayList<>(readAheadMap.keySet())) {
+			takeReadAhead(stateId);
+		}
+		for (TransactionContext txCtx : transactionMap.values()) {
+			txCtx.getCurrentMessage().clearPrefetchedChunks();
+		}
+	}
+
+	/**
+	 * Create the context of a message delivered to this receiver, whose prefetched chunks are limited by the read ahead
+	 * budget.
+	 * 
+	 * @param msg
+	 * @return the context of a message delivered to this receiver.
+	 */
+	public MessageContext createMessageContext(ChannelMessage msg) {
+		return new MessageContext(msg, readAheadBudget);
+	}
+
 	/**
 	 * Start the transaction, adding the message to the unackedMessageMap.
 	 * 
@@ -190,6 +344,7 @@ public class ReceiverContext {
 		if (tx != null) {
 			MessageContext msg = tx.getCurrentMessage();
 			unackedMessageMap.remove(msg.getMsgId());
+			msg.clearPrefetchedChunks();
 			return msg;
 		}
 		return null;
@@ -209,12 +364,14 @@ public class ReceiverContext {
 	public void addPendingMessages(List<Long> stateIds, boolean moreMsgs) {
 		if (!stateIds.isEmpty()) {
 			Set<Long> unackedIds = getUnackedStateIds();
+			int added = 0;
 			for (Long stateId : stateIds) {
 				if (unackedIds.contains(stateId)) {
 					log.debug("Ignoring unacked message " + stateId);
 					continue;
 				}
 				fetchedMessages.add(stateId);
+				added++;
 			}
 			// we can fetch more as soon as possible
 			if (moreMsgs) {
@@ -224,9 +381,28 @@ public class ReceiverContext {
 			synchronized (fetchedMessages) {
 				fetchedMessages.notifyAll();
 			}
+			wakeWaitingReceivers(added);
 		}
 	}
 
+	/**
+	 * Adds a message which has been transferred to us directly, without needing to fetch it from the DB, and wakes up
+	 * a waiting receiver to take it.
+	 * 
+	 * @param stateId
+	 */
+	public void addTransferredMessage(Long stateId) {
+		if (getUnackedStateIds().contains(stateId) || fetchedMessages.contains(stateId)) {
+			log.debug("Ignoring known message " + stateId);
+			return;
+		}
+		fetchedMessages.add(stateId);
+		synchronized (fetchedMessages) {
+			fetchedMessages.notifyAll();
+		}
+		wakeWaitingReceivers(1);
+	}
+
 	/**
 	 * Indicate that there are more messages to fetch from the DB.
 	 */
@@ -242,6 +418,28 @@ public class ReceiverContext {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	/**
+	 * Resume up to a number of parked receivers.
+	 * 
+	 * @param num
+	 */
+	private void wakeWaitingReceivers(int num) {
+		for (int i = 0; i < num; i++) {
+			Runnable callback = waitingReceivers.poll();
+			if (callback == null) {
+				return;
+			}
+			callback.run();
+		}
+	}
+
+	private void releaseReadAhead(int size) {
+		readAheadBytes.addAndGet(-size);
+		if (readAheadBudget != null) {
+			readAheadBudget.release(size);
+		}
+	}
+
 	private Set<Long> getUnackedStateIds() {
 		Set<Long> result = new HashSet<>();
 		for (Map.Entry<String, MessageContext> unackedMsg : unackedMessageMap.entrySet()) {
@@ -258,4 +456,8 @@ public class ReceiverContext {
 		return lastFetchTimestamp;
 	}
 
+	public long getReadAheadBytes() {
+		return readAheadBytes.get();
+	}
+
 }
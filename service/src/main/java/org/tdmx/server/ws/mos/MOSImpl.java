@@ -28,7 +28,6 @@ import java.util.concurrent.TimeUnit;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.tdmx.client.crypto.certificate.PKIXCertificate;
-import org.tdmx.core.api.SignatureUtils;
 import org.tdmx.core.api.v01.mos.GetAddress;
 import org.tdmx.core.api.v01.mos.GetAddressResponse;
 import org.tdmx.core.api.v01.mos.GetChannel;
@@ -43,7 +42,6 @@ import org.tdmx.core.api.v01.mos.ws.MOS;
 import org.tdmx.core.api.v01.msg.ChannelEndpoint;
 import org.tdmx.core.api.v01.msg.Header;
 import org.tdmx.core.api.v01.msg.Msg;
-import org.tdmx.core.api.v01.msg.Payload;
 import org.tdmx.core.api.v01.tx.Commit;
 import org.tdmx.core.api.v01.tx.CommitResponse;
 import org.tdmx.core.api.v01.tx.Forget;
@@ -90,6 +88,8 @@ import org.tdmx.server.ws.ApiToDomainMapper;
 import org.tdmx.server.ws.ApiValidator;
 import org.tdmx.server.ws.DomainToApiMapper;
 import org.tdmx.server.ws.ErrorCode;
+import org.tdmx.server.ws.MessageVerificationService;
+import org.tdmx.server.ws.MessageVerificationService.VerificationResultHolder;
 import org.tdmx.server.ws.mos.MOSServerSession.ChannelContextHolder;
 import org.tdmx.server.ws.mos.MOSServerSession.DestinationContextHolder;
 import org.tdmx.server.ws.mos.SenderTransactionContext.MessageContextHolder;
@@ -144,6 +144,7 @@ public class MOSImpl implements MOS {
 	private DestinationService destinationService;
 
 	private AgentCredentialFactory credentialFactory;
+	private MessageVerificationService verificationService;
 	private AgentCredentialService credentialService;
 	private AgentCredentialValidator credentialValidator;
 
@@ -354,12 +355,13 @@ public class MOSImpl implements MOS {
 
 		Msg msg = parameters.getMsg();
 		Header header = msg.getHeader();
-		Payload payload = msg.getPayload();
-		if (!SignatureUtils.checkMsgId(header, payload, header.getUsersignature().getSignaturevalue().getTimestamp())) {
+		// the msgId, signature and chunk MAC are verified in parallel
+		VerificationResultHolder verification = verificationService.verify(msg);
+		if (!verification.msgIdValid) {
 			ErrorCode.setError(ErrorCode.InvalidMsgId, response);
 			return response;
 		}
-		if (!SignatureUtils.checkMessageSignature(header, payload)) {
+		if (!verification.signatureValid) {
 			ErrorCode.setError(ErrorCode.InvalidSignatureMessage, response);
 			return response;
 		}
@@ -373,7 +375,12 @@ public class MOSImpl implements MOS {
 		Chunk c = a2d.mapChunk(m, msg.getChunk());
 
 		// check chunk's mac
-		if (validator.checkChunkMac(msg.getChunk(), m.getScheme(), response) == null) {
+		if (verification.chunkMacValid == null) {
+			if (validator.checkChunkMac(msg.getChunk(), m.getScheme(), response) == null) {
+				return response;
+			}
+		} else if (!verification.chunkMacValid) {
+			ErrorCode.setError(ErrorCode.InvalidChunkMac, response);
 			return response;
 		}
 
@@ -735,7 +742,8 @@ public class MOSImpl implements MOS {
 		// we don't retry since the receiver finds the messages from the DB if we don't fast transfer with this TOS
 		// mechanism.
 		final TransferStatus ts = transferClientService.transferMDS(ddh.getTosTcpAddress(), ddh.getSessionId(),
-				session.getAccountZone(), ddh.getDestination(), state.getId());
+				session.getAccountZone(), ddh.getDestination(), state.getId(),
+				state.getDestinationSerialNr());
 		if (!ts.isSuccess()) {
 			// we clear the not working TOS address of the MDS and it's session
 			if (ts.getErrorCode() != org.tdmx.server.tos.client.TransferStatus.ErrorCode.PCS_SESSION_NOT_FOUND) {
@@ -884,6 +892,14 @@ public class MOSImpl implements MOS {
 		this.credentialFactory = credentialFactory;
 	}
 
+	public MessageVerificationService getVerificationService() {
+		return verificationService;
+	}
+
+	public void setVerificationService(MessageVerificationService verificationService) {
+		this.verificationService = verificationService;
+	}
+
 	public AgentCredentialService getCredentialService() {
 		return credentialService;
 	}
@@ -50,8 +50,8 @@ public class MOSServerSessionFactoryImpl extends AbstractServerSessionFactory<MO
 
 		associateZoneDB(az.getZonePartitionId());
 		try {
-			Zone z = fetchZone(seedAttributes.get(AttributeId.ZoneId));
-			Domain d = fetchDomain(seedAttributes.get(AttributeId.DomainId));
+			Zone z = fetchZone(az, seedAttributes.get(AttributeId.ZoneId));
+			Domain d = fetchDomain(az, z, seedAttributes.get(AttributeId.DomainId));
 			Address a = fetchAddress(seedAttributes.get(AttributeId.AddressId));
 
 			MOSServerSession mss = new MOSServerSession(sessionId, az, z, d, a);
@@ -0,0 +1,336 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws.mrs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.namespace.QName;
+
+import org.tdmx.core.api.v01.common.Error;
+import org.tdmx.core.api.v01.mrs.Relay;
+import org.tdmx.core.api.v01.mrs.RelayResponse;
+import org.tdmx.core.api.v01.msg.Chunk;
+import org.tdmx.core.api.v01.msg.Flowcontrolstatus;
+import org.tdmx.core.api.v01.msg.Msg;
+import org.tdmx.core.system.lang.JaxbMarshaller;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Encodes and decodes the Msg and Chunk relays of the MRS in protobuf wire format, carrying the chunk data as raw bytes
+ * instead of base64 within a SOAP envelope.
+ * 
+ * The encoding is equivalent to the following protobuf messages. The Msg without its embedded Chunk is carried as it's
+ * XML representation, since the header and payload signatures are defined over the XML schema types.
+ * 
+ * <pre>
+ * message BinaryRelay {
+ *   optional string sessionId = 1;
+ *   optional string continuation = 2;
+ *   optional bytes msg = 3;
+ *   optional BinaryChunk chunk = 4;
+ * }
+ * message BinaryChunk {
+ *   optional string msgId = 1;
+ *   optional uint32 pos = 2;
+ *   optional string mac = 3;
+ *   optional bytes data = 4;
+ * }
+ * message BinaryRelayResponse {
+ *   optional bool success = 1;
+ *   optional int32 errorCode = 2;
+ *   optional string errorDescription = 3;
+ *   optional string continuation = 4;
+ *   repeated string windowContinuation = 5;
+ *   optional string relayStatus = 6;
+ * }
+ * </pre>
+ * 
+ * @author Peter
+ * 
+ */
+public class MRSBinaryCodec {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+	public static final String CONTENT_TYPE = "application/x-protobuf";
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final String MSG_NAMESPACE = "urn:tdmx:api:v1.0:sp:msg";
+
+	// a chunk is max 16MB, with the message header on top
+	private static final int MAX_RELAY_SIZE = 32 * 1024 * 1024;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private static final int RELAY_SESSION_ID = 1;
+	private static final int RELAY_CONTINUATION = 2;
+	private static final int RELAY_MSG = 3;
+	private static final int RELAY_CHUNK = 4;
+
+	private static final int CHUNK_MSG_ID = 1;
+	private static final int CHUNK_POS = 2;
+	private static final int CHUNK_MAC = 3;
+	private static final int CHUNK_DATA = 4;
+
+	private static final int RESPONSE_SUCCESS = 1;
+	private static final int RESPONSE_ERROR_CODE = 2;
+	private static final int RESPONSE_ERROR_DESCRIPTION = 3;
+	private static final int RESPONSE_CONTINUATION = 4;
+	private static final int RESPONSE_WINDOW_CONTINUATION = 5;
+	private static final int RESPONSE_RELAY_STATUS = 6;
+
+	private final JaxbMarshaller<Msg> msgMarshaller;
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	public MRSBinaryCodec() {
+		msgMarshaller = new JaxbMarshaller<>(Msg.class, new QName(MSG_NAMESPACE, "msg"));
+		msgMarshaller.setPrettyPrint(false);
+		msgMarshaller.setSuppressXMLDeclaration(true);
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	/**
+	 * Whether the relay carries a Msg or Chunk, which are the only relays which the binary transport carries. All other
+	 * relays are small and remain on SOAP.
+	 * 
+	 * @param relay
+	 * @return true if the relay can be carried by the binary transport.
+	 */
+	public static boolean isBinaryRelay(Relay relay) {
+		return relay.getMsg() != null || relay.getChunk() != null;
+	}
+
+	public void writeRelay(Relay relay, OutputStream out) throws IOException {
+		CodedOutputStream cos = CodedOutputStream.newInstance(out, BUFFER_SIZE);
+		writeString(cos, RELAY_SESSION_ID, relay.getSessionId());
+		writeString(cos, RELAY_CONTINUATION, relay.getContinuation());
+		Chunk chunk = relay.getChunk();
+		if (relay.getMsg() != null) {
+			Msg msg = relay.getMsg();
+			// the embedded chunk is carried separately with raw data
+			chunk = msg.getChunk();
+			msg.setChunk(null);
+			try {
+				writeBytes(cos, RELAY_MSG, msgMarshaller.marshal(msg));
+			} catch (JAXBException e) {
+				throw new IOException("Unable to marshal msg.", e);
+			} finally {
+				msg.setChunk(chunk);
+			}
+		}
+		if (chunk != null) {
+			cos.writeTag(RELAY_CHUNK, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			cos.writeRawVarint32(computeChunkSize(chunk));
+			writeString(cos, CHUNK_MSG_ID, chunk.getMsgId());
+			cos.writeUInt32(CHUNK_POS, chunk.getPos());
+			writeString(cos, CHUNK_MAC, chunk.getMac());
+			writeBytes(cos, CHUNK_DATA, chunk.getData());
+		}
+		cos.flush();
+	}
+
+	public Relay readRelay(InputStream in) throws IOException {
+		CodedInputStream cis = CodedInputStream.newInstance(in);
+		cis.setSizeLimit(MAX_RELAY_SIZE);
+		Relay relay = new Relay();
+		Msg msg = null;
+		Chunk chunk = null;
+		int tag = 0;
+		while ((tag = cis.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case RELAY_SESSION_ID:
+				relay.setSessionId(cis.readString());
+				break;
+			case RELAY_CONTINUATION:
+				relay.setContinuation(cis.readString());
+				break;
+			case RELAY_MSG:
+				try {
+					msg = msgMarshaller.unmarshal(readBytes(cis));
+				} catch (JAXBException e) {
+					throw new IOException("Unable to unmarshal msg.", e);
+				}
+				break;
+			case RELAY_CHUNK:
+				int oldLimit = cis.pushLimit(cis.readRawVarint32());
+				chunk = readChunk(cis);
+				cis.popLimit(oldLimit);
+				break;
+			default:
+				cis.skipField(tag);
+			}
+		}
+		if (msg != null) {
+			msg.setChunk(chunk);
+			relay.setMsg(msg);
+		} else {
+			relay.setChunk(chunk);
+		}
+		return relay;
+	}
+
+	public void writeRelayResponse(RelayResponse response, OutputStream out) throws IOException {
+		CodedOutputStream cos = CodedOutputStream.newInstance(out, BUFFER_SIZE);
+		cos.writeBool(RESPONSE_SUCCESS, response.isSuccess());
+		if (response.getError() != null) {
+			cos.writeInt32(RESPONSE_ERROR_CODE, response.getError().getCode());
+			writeString(cos, RESPONSE_ERROR_DESCRIPTION, response.getError().getDescription());
+		}
+		writeString(cos, RESPONSE_CONTINUATION, response.getContinuation());
+		for (String windowContinuation : response.getWindowContinuation()) {
+			writeString(cos, RESPONSE_WINDOW_CONTINUATION, windowContinuation);
+		}
+		if (response.getRelayStatus() != null) {
+			writeString(cos, RESPONSE_RELAY_STATUS, response.getRelayStatus().value());
+		}
+		cos.flush();
+	}
+
+	public RelayResponse readRelayResponse(InputStream in) throws IOException {
+		CodedInputStream cis = CodedInputStream.newInstance(in);
+		RelayResponse response = new RelayResponse();
+		Error error = null;
+		int tag = 0;
+		while ((tag = cis.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case RESPONSE_SUCCESS:
+				response.setSuccess(cis.readBool());
+				break;
+			case RESPONSE_ERROR_CODE:
+				error = getError(error, response);
+				error.setCode(cis.readInt32());
+				break;
+			case RESPONSE_ERROR_DESCRIPTION:
+				error = getError(error, response);
+				error.setDescription(cis.readString());
+				break;
+			case RESPONSE_CONTINUATION:
+				response.setContinuation(cis.readString());
+				break;
+			case RESPONSE_WINDOW_CONTINUATION:
+				response.getWindowContinuation().add(cis.readString());
+				break;
+			case RESPONSE_RELAY_STATUS:
+				response.setRelayStatus(Flowcontrolstatus.fromValue(cis.readString()));
+				break;
+			default:
+				cis.skipField(tag);
+			}
+		}
+		return response;
+	}
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	private Chunk readChunk(CodedInputStream cis) throws IOException {
+		Chunk chunk = new Chunk();
+		int tag = 0;
+		while ((tag = cis.readTag()) != 0) {
+			switch (WireFormat.getTagFieldNumber(tag)) {
+			case CHUNK_MSG_ID:
+				chunk.setMsgId(cis.readString());
+				break;
+			case CHUNK_POS:
+				chunk.setPos(cis.readUInt32());
+				break;
+			case CHUNK_MAC:
+				chunk.setMac(cis.readString());
+				break;
+			case CHUNK_DATA:
+				chunk.setData(readBytes(cis));
+				break;
+			default:
+				cis.skipField(tag);
+			}
+		}
+		return chunk;
+	}
+
+	private Error getError(Error error, RelayResponse response) {
+		if (error == null) {
+			error = new Error();
+			response.setError(error);
+		}
+		return error;
+	}
+
+	private int computeChunkSize(Chunk chunk) {
+		int size = computeStringSize(CHUNK_MSG_ID, chunk.getMsgId());
+		size += CodedOutputStream.computeUInt32Size(CHUNK_POS, chunk.getPos());
+		size += computeStringSize(CHUNK_MAC, chunk.getMac());
+		size += computeBytesSize(CHUNK_DATA, chunk.getData());
+		return size;
+	}
+
+	private int computeStringSize(int field, String value) {
+		return value != null ? CodedOutputStream.computeStringSize(field, value) : 0;
+	}
+
+	private int computeBytesSize(int field, byte[] value) {
+		if (value == null) {
+			return 0;
+		}
+		return CodedOutputStream.computeTagSize(field) + CodedOutputStream.computeRawVarint32Size(value.length)
+				+ value.length;
+	}
+
+	private void writeString(CodedOutputStream cos, int field, String value) throws IOException {
+		if (value != null) {
+			cos.writeString(field, value);
+		}
+	}
+
+	private void writeBytes(CodedOutputStream cos, int field, byte[] value) throws IOException {
+		if (value != null) {
+			// written raw so that the data is not copied into a ByteString
+			cos.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			cos.writeRawVarint32(value.length);
+			cos.writeRawBytes(value);
+		}
+	}
+
+	private byte[] readBytes(CodedInputStream cis) throws IOException {
+		return cis.readRawBytes(cis.readRawVarint32());
+	}
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+}
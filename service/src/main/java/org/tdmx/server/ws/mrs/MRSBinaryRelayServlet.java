@@ -0,0 +1,120 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws.mrs;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.core.api.v01.mrs.Relay;
+import org.tdmx.core.api.v01.mrs.RelayResponse;
+import org.tdmx.core.api.v01.mrs.ws.MRS;
+
+/**
+ * The binary transport of the MRS for relaying Msgs and Chunks between segments, negotiated through the SCS's
+ * getMRSSession.
+ * 
+ * The servlet is mapped to the MRS endpoint path with the {@link #PATH_SUFFIX}, behind the same client authentication
+ * filters as the SOAP MRS endpoint, and delegates to the same secured MRS.
+ * 
+ * @author Peter
+ * 
+ */
+public class MRSBinaryRelayServlet extends HttpServlet {
+
+	// -------------------------------------------------------------------------
+	// PUBLIC CONSTANTS
+	// -------------------------------------------------------------------------
+	public static final String PATH_SUFFIX = "/binary";
+
+	// -------------------------------------------------------------------------
+	// PROTECTED AND PRIVATE VARIABLES AND CONSTANTS
+	// -------------------------------------------------------------------------
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger log = LoggerFactory.getLogger(MRSBinaryRelayServlet.class);
+
+	private transient MRS mrs;
+	private transient MRSBinaryCodec codec = new MRSBinaryCodec();
+
+	// -------------------------------------------------------------------------
+	// CONSTRUCTORS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PROTECTED METHODS
+	// -------------------------------------------------------------------------
+
+	@Override
+	protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		String contentType = req.getContentType();
+		if (contentType == null || !contentType.startsWith(MRSBinaryCodec.CONTENT_TYPE)) {
+			resp.sendError(HttpServletResponse.SC_UNSUPPORTED_MEDIA_TYPE);
+			return;
+		}
+
+		Relay relay = null;
+		try (InputStream in = req.getInputStream()) {
+			relay = codec.readRelay(in);
+		} catch (IOException e) {
+			log.info("Unable to decode binary relay. " + e.getMessage());
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+		if (!MRSBinaryCodec.isBinaryRelay(relay)) {
+			resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+			return;
+		}
+
+		RelayResponse response = mrs.relay(relay);
+
+		resp.setContentType(MRSBinaryCodec.CONTENT_TYPE);
+		try (OutputStream out = resp.getOutputStream()) {
+			codec.writeRelayResponse(response, out);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// PRIVATE METHODS
+	// -------------------------------------------------------------------------
+
+	// -------------------------------------------------------------------------
+	// PUBLIC ACCESSORS (GETTERS / SETTERS)
+	// -------------------------------------------------------------------------
+
+	public MRS getMrs() {
+		return mrs;
+	}
+
+	public void setMrs(MRS mrs) {
+		this.mrs = mrs;
+	}
+
+}
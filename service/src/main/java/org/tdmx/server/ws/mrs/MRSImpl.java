@@ -33,7 +33,6 @@ import org.tdmx.core.api.v01.msg.Destinationsession;
 import org.tdmx.core.api.v01.msg.Flowcontrolstatus;
 import org.tdmx.core.api.v01.msg.Header;
 import org.tdmx.core.api.v01.msg.Msg;
-import org.tdmx.core.api.v01.msg.Payload;
 import org.tdmx.core.api.v01.msg.Permission;
 import org.tdmx.core.system.lang.StringUtils;
 import org.tdmx.lib.chunk.domain.Chunk;
@@ -70,6 +69,8 @@ import org.tdmx.server.ws.ApiToDomainMapper;
 import org.tdmx.server.ws.ApiValidator;
 import org.tdmx.server.ws.DomainToApiMapper;
 import org.tdmx.server.ws.ErrorCode;
+import org.tdmx.server.ws.MessageVerificationService;
+import org.tdmx.server.ws.MessageVerificationService.VerificationResultHolder;
 import org.tdmx.server.ws.mrs.MRSServerSession.DestinationContextHolder;
 import org.tdmx.server.ws.security.service.AuthorizedSessionLookupService;
 
@@ -103,6 +104,7 @@ public class MRSImpl implements MRS {
 	private DestinationService destinationService;
 
 	private AgentCredentialFactory credentialFactory;
+	private MessageVerificationService verificationService;
 	private AgentCredentialService credentialService;
 	private AgentCredentialValidator credentialValidator;
 
@@ -120,6 +122,12 @@ public class MRSImpl implements MRS {
 
 	private int messageIdleTimeoutSec = 300;
 
+	/**
+	 * The number of chunks following the last chunk received in order which the relaying side may relay concurrently.
+	 * The continuationIds of the chunks within the window are provided in each response.
+	 */
+	private int relayWindowSize = 1;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
@@ -284,12 +292,13 @@ public class MRSImpl implements MRS {
 			return;
 		}
 		Header header = msg.getHeader();
-		Payload payload = msg.getPayload();
-		if (!SignatureUtils.checkMsgId(header, payload, header.getUsersignature().getSignaturevalue().getTimestamp())) {
+		// the msgId, signature and chunk MAC are verified in parallel
+		VerificationResultHolder verification = verificationService.verify(msg);
+		if (!verification.msgIdValid) {
 			ErrorCode.setError(ErrorCode.InvalidMsgId, response);
 			return;
 		}
-		if (!SignatureUtils.checkMessageSignature(header, payload)) {
+		if (!verification.signatureValid) {
 			ErrorCode.setError(ErrorCode.InvalidSignatureMessage, response);
 			return;
 		}
@@ -359,7 +368,7 @@ public class MRSImpl implements MRS {
 			// propper relaying embeds the chunk in the msg transferred and then sends chunks individually, in order
 			// afterwards, repeating at most the last chunk
 			String fakedContinuationId = mrc.getContinuationId(0);
-			processChunk(fakedContinuationId, msg.getChunk(), response);
+			processChunk(fakedContinuationId, msg.getChunk(), verification.chunkMacValid, response);
 		}
 
 		response.setSuccess(true);
@@ -368,6 +377,12 @@ public class MRSImpl implements MRS {
 	// handle a subsequent message chunk
 	private void processChunk(String continuationId, org.tdmx.core.api.v01.msg.Chunk relayedChunk,
 			RelayResponse response) {
+		processChunk(continuationId, relayedChunk, null, response);
+	}
+
+	// handle a message chunk whose MAC may have been verified already with the message
+	private void processChunk(String continuationId, org.tdmx.core.api.v01.msg.Chunk relayedChunk,
+			Boolean chunkMacValid, RelayResponse response) {
 		MRSServerSession session = authorizedSessionService.getAuthorizedSession();
 
 		if (!StringUtils.hasText(continuationId)) {
@@ -395,14 +410,18 @@ public class MRSImpl implements MRS {
 			ErrorCode.setError(ErrorCode.InvalidChunkContinuationId, response);
 			return;
 		}
-		if (relayedChunk.getPos() < mrc.getLastChunkReceived()
-				|| relayedChunk.getPos() > mrc.getLastChunkReceived() + 1) {
+		if (!mrc.isChunkInWindow(relayedChunk.getPos(), relayWindowSize)) {
 			ErrorCode.setError(ErrorCode.InvalidChunkOrder, response);
 			return;
 		}
 
 		// validate chunk MAC - error chunk MAC
-		if (validator.checkChunkMac(relayedChunk, mrc.getMsg().getScheme(), response) == null) {
+		if (chunkMacValid == null) {
+			if (validator.checkChunkMac(relayedChunk, mrc.getMsg().getScheme(), response) == null) {
+				return;
+			}
+		} else if (!chunkMacValid) {
+			ErrorCode.setError(ErrorCode.InvalidChunkMac, response);
 			return;
 		}
 
@@ -411,20 +430,28 @@ public class MRSImpl implements MRS {
 		// persist Chunk via ChunkService
 		chunkService.storeChunk(mrc.getMsg(), c);
 
-		// calculate the next continuationId
+		// calculate the next continuationId and those of the following chunks within the relay window
 		String nextContinuationId = mrc.getContinuationId(c.getPos() + 1);
-		if (nextContinuationId == null) {
-			log.debug("Received all chunks for message " + mrc.getMsgId());
-			// received all chunks - finish the message
-			finishMessage(session, mrc, response);
+		for (int i = 2; i <= relayWindowSize; i++) {
+			String windowContinuationId = mrc.getContinuationId(c.getPos() + i);
+			if (windowContinuationId == null) {
+				break;
+			}
+			response.getWindowContinuation().add(windowContinuationId);
+		}
+		// chunks of the window can be relayed concurrently
+		synchronized (mrc) {
+			if (mrc.setChunkReceived(c.getPos())) {
+				log.debug("Received all chunks for message " + mrc.getMsgId());
+				// received all chunks - finish the message
+				finishMessage(session, mrc, response);
 
-		} else {
-			log.debug("Expecting further chunks for message " + mrc.getMsgId());
-			rescheduleMessageTimeout(session, mrc);
+			} else {
+				log.debug("Expecting further chunks for message " + mrc.getMsgId());
+				rescheduleMessageTimeout(session, mrc);
 
+			}
 		}
-		// record the last successful uploaded so we allow only it again or the next.
-		mrc.setLastChunkReceived(c.getPos());
 		response.setContinuation(nextContinuationId);
 		response.setSuccess(true);
 	}
@@ -527,7 +554,8 @@ public class MRSImpl implements MRS {
 		// we don't retry since the receiver finds the messages from the DB if we don't fast transfer with this TOS
 		// mechanism.
 		final TransferStatus ts = transferService.transferMDS(ddh.getTosTcpAddress(), ddh.getSessionId(),
-				session.getAccountZone(), ddh.getDestination(), state.getId());
+				session.getAccountZone(), ddh.getDestination(), state.getId(),
+				state.getDestinationSerialNr());
 		if (!ts.isSuccess()) {
 			// we clear the not working TOS address of the MDS and it's session
 			if (ts.getErrorCode() != org.tdmx.server.tos.client.TransferStatus.ErrorCode.PCS_SESSION_NOT_FOUND) {
@@ -618,6 +646,14 @@ public class MRSImpl implements MRS {
 		this.credentialFactory = credentialFactory;
 	}
 
+	public MessageVerificationService getVerificationService() {
+		return verificationService;
+	}
+
+	public void setVerificationService(MessageVerificationService verificationService) {
+		this.verificationService = verificationService;
+	}
+
 	public AgentCredentialService getCredentialService() {
 		return credentialService;
 	}
@@ -666,4 +702,12 @@ public class MRSImpl implements MRS {
 		this.messageIdleTimeoutSec = messageIdleTimeoutSec;
 	}
 
+	public int getRelayWindowSize() {
+		return relayWindowSize;
+	}
+
+	public void setRelayWindowSize(int relayWindowSize) {
+		this.relayWindowSize = relayWindowSize;
+	}
+
 }
@@ -49,8 +49,8 @@ public class MRSServerSessionFactoryImpl extends AbstractServerSessionFactory<MR
 
 		associateZoneDB(az.getZonePartitionId());
 		try {
-			Zone z = fetchZone(seedAttributes.get(AttributeId.ZoneId));
-			Domain d = fetchDomain(seedAttributes.get(AttributeId.DomainId));
+			Zone z = fetchZone(az, seedAttributes.get(AttributeId.ZoneId));
+			Domain d = fetchDomain(az, z, seedAttributes.get(AttributeId.DomainId));
 			MRSServerSession mss = new MRSServerSession(sessionId, az, z, d);
 			if (seedAttributes.containsKey(AttributeId.ChannelId)) {
 				mss.setChannel(fetchChannel(seedAttributes.get(AttributeId.ChannelId)));
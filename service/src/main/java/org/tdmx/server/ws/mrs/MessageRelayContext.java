@@ -18,6 +18,7 @@
  */
 package org.tdmx.server.ws.mrs;
 
+import java.util.BitSet;
 import java.util.concurrent.ScheduledFuture;
 
 import org.slf4j.Logger;
@@ -44,7 +45,11 @@ public class MessageRelayContext {
 	private final ChannelMessage msg;
 	private final byte[] entropy;
 
-	private int lastChunkReceived = -1;
+	// the chunks received so far, which may arrive out of order within the relay window.
+	private final BitSet chunksReceived = new BitSet();
+	// the lowest chunk pos not yet received.
+	private int nextChunkExpected = 0;
+	private boolean complete = false;
 
 	private volatile ScheduledFuture<?> timeoutFuture; // discards Msg after idle timeout.
 
@@ -79,6 +84,35 @@ public class MessageRelayContext {
 		}
 		return SignatureUtils.createContinuationId(chunkPos, entropy, msg.getMsgId(), LEN_CONTINUATION_ID);
 	}
+
+	/**
+	 * Whether the chunk may be relayed now. Chunks received already may be repeated and at most window chunks
+	 * following the last chunk received in order may be relayed concurrently.
+	 * 
+	 * @param chunkPos
+	 * @param window
+	 * @return true if the chunk is within the relay window.
+	 */
+	public synchronized boolean isChunkInWindow(int chunkPos, int window) {
+		return chunkPos >= 0 && chunkPos < nextChunkExpected + Math.max(window, 1);
+	}
+
+	/**
+	 * Record the receipt of a chunk.
+	 * 
+	 * @param chunkPos
+	 * @return true if all chunks of the message have now been received, only once.
+	 */
+	public synchronized boolean setChunkReceived(int chunkPos) {
+		chunksReceived.set(chunkPos);
+		nextChunkExpected = chunksReceived.nextClearBit(nextChunkExpected);
+		if (!complete && getContinuationId(nextChunkExpected) == null) {
+			complete = true;
+			return true;
+		}
+		return false;
+	}
+
 	// -------------------------------------------------------------------------
 	// PROTECTED METHODS
 	// -------------------------------------------------------------------------
@@ -95,12 +129,8 @@ public class MessageRelayContext {
 		return msg;
 	}
 
-	public int getLastChunkReceived() {
-		return lastChunkReceived;
-	}
-
-	public void setLastChunkReceived(int lastChunkReceived) {
-		this.lastChunkReceived = lastChunkReceived;
+	public synchronized int getNextChunkExpected() {
+		return nextChunkExpected;
 	}
 
 	public ScheduledFuture<?> getTimeoutFuture() {
@@ -33,6 +33,7 @@ import org.tdmx.core.api.v01.scs.GetMRSSession;
 import org.tdmx.core.api.v01.scs.GetMRSSessionResponse;
 import org.tdmx.core.api.v01.scs.GetZASSession;
 import org.tdmx.core.api.v01.scs.GetZASSessionResponse;
+import org.tdmx.core.api.v01.scs.RelayTransport;
 import org.tdmx.core.api.v01.scs.Session;
 import org.tdmx.core.api.v01.scs.ws.SCS;
 import org.tdmx.core.system.lang.StringUtils;
@@ -56,6 +57,7 @@ import org.tdmx.server.session.WebServiceSessionEndpoint;
 import org.tdmx.server.ws.ApiToDomainMapper;
 import org.tdmx.server.ws.ApiValidator;
 import org.tdmx.server.ws.ErrorCode;
+import org.tdmx.server.ws.mrs.MRSBinaryRelayServlet;
 import org.tdmx.server.ws.security.service.AuthenticatedClientLookupService;
 import org.tdmx.server.ws.session.WebServiceApiName;
 
@@ -81,6 +83,11 @@ public class SCSImpl implements SCS, Manageable {
 
 	private SessionDataService sessionDataService;
 
+	/**
+	 * Whether the MRS servers of the segment provide the binary relay transport.
+	 */
+	private boolean binaryRelayEnabled = false;
+
 	private final ApiValidator validator = new ApiValidator();
 	private final ApiToDomainMapper a2d = new ApiToDomainMapper();
 
@@ -222,6 +229,11 @@ public class SCSImpl implements SCS, Manageable {
 		endpoint.setUrl(ep.getHttpsUrl());
 		response.setEndpoint(endpoint);
 
+		if (binaryRelayEnabled && parameters.getRelayTransport().contains(RelayTransport.BINARY)) {
+			response.setRelayTransport(RelayTransport.BINARY);
+			response.setBinaryUrl(ep.getHttpsUrl() + MRSBinaryRelayServlet.PATH_SUFFIX);
+		}
+
 		response.setSuccess(true);
 		return response;
 	}
@@ -511,6 +523,14 @@ public class SCSImpl implements SCS, Manageable {
 		this.sessionDataService = sessionDataService;
 	}
 
+	public boolean isBinaryRelayEnabled() {
+		return binaryRelayEnabled;
+	}
+
+	public void setBinaryRelayEnabled(boolean binaryRelayEnabled) {
+		this.binaryRelayEnabled = binaryRelayEnabled;
+	}
+
 	public DomainZoneResolutionService getDomainZoneResolutionService() {
 		return domainZoneResolutionService;
 	}
@@ -32,9 +32,9 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.tdmx.client.crypto.certificate.CertificateIOUtils;
 import org.tdmx.client.crypto.certificate.CryptoCertificateException;
 import org.tdmx.client.crypto.certificate.PKIXCertificate;
+import org.tdmx.client.crypto.certificate.PKIXCertificateCache;
 import org.tdmx.server.ws.security.service.AuthenticatedClientService;
 
 public class ClientAuthenticationFilter implements Filter {
@@ -51,6 +51,7 @@ public class ClientAuthenticationFilter implements Filter {
 	private static String CLIENT_CERTIFICATE = "javax.servlet.request.X509Certificate";
 
 	private AuthenticatedClientService authenticatedClientService;
+	private PKIXCertificateCache certificateCache = new PKIXCertificateCache();
 
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
@@ -80,7 +81,7 @@ public class ClientAuthenticationFilter implements Filter {
 
 		PKIXCertificate[] pkixCerts = null;
 		try {
-			pkixCerts = CertificateIOUtils.convert(certs);
+			pkixCerts = certificateCache.convert(certs);
 
 		} catch (CryptoCertificateException e) {
 			log.warn("Unable to convert X509 certificate.", e);
@@ -123,6 +124,14 @@ public class ClientAuthenticationFilter implements Filter {
 	// PUBLIC ACCESSORS (GETTERS / SETTERS)
 	// -------------------------------------------------------------------------
 
+	public PKIXCertificateCache getCertificateCache() {
+		return certificateCache;
+	}
+
+	public void setCertificateCache(PKIXCertificateCache certificateCache) {
+		this.certificateCache = certificateCache;
+	}
+
 	public AuthenticatedClientService getAuthenticatedClientService() {
 		return authenticatedClientService;
 	}
@@ -32,6 +32,7 @@ import org.tdmx.lib.zone.service.ChannelService;
 import org.tdmx.lib.zone.service.DomainService;
 import org.tdmx.lib.zone.service.ServiceService;
 import org.tdmx.lib.zone.service.ZoneService;
+import org.tdmx.server.cache.ZoneEntityCache;
 
 public abstract class AbstractServerSessionFactory<E extends WebServiceSession> implements WebServiceSessionFactory<E> {
 
@@ -51,6 +52,11 @@ public abstract class AbstractServerSessionFactory<E extends WebServiceSession>
 	private ServiceService serviceService;
 	private ChannelService channelService;
 
+	/**
+	 * Optional cache of the AccountZone, Zone, Domain and Service, which otherwise are read for every session created.
+	 */
+	private ZoneEntityCache zoneEntityCache;
+
 	// -------------------------------------------------------------------------
 	// CONSTRUCTORS
 	// -------------------------------------------------------------------------
@@ -71,14 +77,23 @@ public abstract class AbstractServerSessionFactory<E extends WebServiceSession>
 	}
 
 	protected AccountZone fetchAccountZone(Long accountZoneId) {
+		if (zoneEntityCache != null) {
+			return zoneEntityCache.getAccountZone(accountZoneId);
+		}
 		return accountZoneId != null ? accountZoneService.findById(accountZoneId) : null;
 	}
 
-	protected Zone fetchZone(Long zoneId) {
+	protected Zone fetchZone(AccountZone az, Long zoneId) {
+		if (zoneEntityCache != null) {
+			return zoneEntityCache.getZone(az, zoneId);
+		}
 		return zoneId != null ? zoneService.findById(zoneId) : null;
 	}
 
-	protected Domain fetchDomain(Long domainId) {
+	protected Domain fetchDomain(AccountZone az, Zone zone, Long domainId) {
+		if (zoneEntityCache != null) {
+			return zoneEntityCache.getDomain(az, zone, domainId);
+		}
 		return domainId != null ? domainService.findById(domainId) : null;
 	}
 
@@ -86,7 +101,10 @@ public abstract class AbstractServerSessionFactory<E extends WebServiceSession>
 		return addressId != null ? addressService.findById(addressId) : null;
 	}
 
-	protected Service fetchService(Long serviceId) {
+	protected Service fetchService(AccountZone az, Long serviceId) {
+		if (zoneEntityCache != null) {
+			return zoneEntityCache.getService(az, serviceId);
+		}
 		return serviceId != null ? serviceService.findById(serviceId) : null;
 	}
 
@@ -169,4 +187,12 @@ public abstract class AbstractServerSessionFactory<E extends WebServiceSession>
 		this.channelService = channelService;
 	}
 
+	public ZoneEntityCache getZoneEntityCache() {
+		return zoneEntityCache;
+	}
+
+	public void setZoneEntityCache(ZoneEntityCache zoneEntityCache) {
+		this.zoneEntityCache = zoneEntityCache;
+	}
+
 }
@@ -122,6 +122,12 @@ public abstract class WebServiceSession {
 	 */
 	public abstract boolean transferObject(ObjectType type, Map<AttributeId, Long> attributes);
 
+	/**
+	 * The session is removed from the server, release any resources held by the session.
+	 */
+	public void close() {
+	}
+
 	// -------------------------------------------------------------------------
 	// PROTECTED METHODS
 	// -------------------------------------------------------------------------
@@ -198,6 +198,7 @@ public class WebServiceSessionManagerImpl<E extends WebServiceSession>
 			for (PKIXCertificate authCert : ss.getAuthorizedCertificates()) {
 				disassociate(sessionId, authCert);
 			}
+			ss.close();
 		}
 	}
 
@@ -86,9 +86,14 @@ import org.tdmx.core.api.v01.zas.SetChannelAuthorization;
 import org.tdmx.core.api.v01.zas.SetChannelAuthorizationResponse;
 import org.tdmx.core.api.v01.zas.ws.ZAS;
 import org.tdmx.core.system.lang.StringUtils;
+import org.tdmx.lib.chunk.domain.ChunkReference;
+import org.tdmx.lib.chunk.service.ChunkGarbageCollector;
 import org.tdmx.lib.common.domain.PageSpecifier;
 import org.tdmx.lib.common.domain.ProcessingState;
 import org.tdmx.lib.common.domain.ProcessingStatus;
+import org.tdmx.lib.control.domain.AccountZone;
+import org.tdmx.lib.control.domain.Segment;
+import org.tdmx.lib.control.service.SegmentService;
 import org.tdmx.lib.zone.domain.AddressSearchCriteria;
 import org.tdmx.lib.zone.domain.AgentCredential;
 import org.tdmx.lib.zone.domain.AgentCredentialDescriptor;
@@ -98,8 +103,6 @@ import org.tdmx.lib.zone.domain.AgentCredentialType;
 import org.tdmx.lib.zone.domain.ChannelAuthorization;
 import org.tdmx.lib.zone.domain.ChannelAuthorizationSearchCriteria;
 import org.tdmx.lib.zone.domain.ChannelDestination;
-import org.tdmx.lib.zone.domain.ChannelMessage;
-import org.tdmx.lib.zone.domain.ChannelMessageSearchCriteria;
 import org.tdmx.lib.zone.domain.Destination;
 import org.tdmx.lib.zone.domain.DestinationSearchCriteria;
 import org.tdmx.lib.zone.domain.Domain;
@@ -116,6 +119,10 @@ import org.tdmx.lib.zone.service.ChannelService.SetAuthorizationResultHolder;
 import org.tdmx.lib.zone.service.DestinationService;
 import org.tdmx.lib.zone.service.DomainService;
 import org.tdmx.lib.zone.service.ServiceService;
+import org.tdmx.server.cache.CacheInvalidationInstruction;
+import org.tdmx.server.cache.CacheInvalidationNotifier;
+import org.tdmx.server.cache.ZoneEntityCache;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
 import org.tdmx.server.ros.client.RelayClientService;
 import org.tdmx.server.ros.client.RelayStatus;
 import org.tdmx.server.session.SessionCertificateInvalidationService;
@@ -147,7 +154,11 @@ public class ZASImpl implements ZAS {
 	private AddressService addressService;
 	private ServiceService serviceService;
 	private ChannelService channelService;
+	private ChunkGarbageCollector chunkGarbageCollector;
 	private DestinationService destinationService;
+	private ZoneEntityCache zoneEntityCache;
+	private CacheInvalidationNotifier cacheInvalidater;
+	private SegmentService segmentService;
 
 	private AgentCredentialFactory credentialFactory;
 	private AgentCredentialService credentialService;
@@ -256,6 +267,7 @@ public class ZASImpl implements ZAS {
 		}
 
 		getDomainService().delete(domain);
+		invalidateZoneEntities(session.getAccountZone());
 		response.setSuccess(true);
 		return response;
 	}
@@ -542,20 +554,16 @@ public class ZASImpl implements ZAS {
 			return response;
 		}
 
-		// deleting all the channel's messages before deleting the channel itself.
-		boolean moreMessages = true;
-		while (moreMessages) {
-			final ChannelMessageSearchCriteria sc = new ChannelMessageSearchCriteria(
-					new PageSpecifier(0, getBatchSize()));
-			sc.setDomain(existingDomain);
+		// deleting all the channel's messages before deleting the channel itself, a batch per transaction.
+		long deletedMessages = 0;
+		List<ChunkReference> deletedChunks = channelService.deleteMessages(zone, existingCA.getChannel(),
+				getBatchSize());
+		while (!deletedChunks.isEmpty()) {
+			chunkGarbageCollector.schedule(deletedChunks);
+			deletedMessages += deletedChunks.size();
+			log.info("Deleted " + deletedMessages + " messages of " + existingCA.getChannel());
 
-			final List<ChannelMessage> messages = channelService.search(zone, sc);
-			for (ChannelMessage m : messages) {
-				channelService.delete(m);
-			}
-			if (messages.isEmpty()) {
-				moreMessages = false;
-			}
+			deletedChunks = channelService.deleteMessages(zone, existingCA.getChannel(), getBatchSize());
 		}
 
 		channelService.delete(existingCA.getChannel());
@@ -784,6 +792,7 @@ public class ZASImpl implements ZAS {
 
 		// delete the existing service
 		serviceService.delete(existingService);
+		invalidateZoneEntities(session.getAccountZone());
 
 		response.setSuccess(true);
 		return response;
@@ -1397,6 +1406,33 @@ public class ZASImpl implements ZAS {
 	// PRIVATE METHODS
 	// -------------------------------------------------------------------------
 
+	/**
+	 * Invalidates the cached entities of the zone on all servers of the zone's segment, called once the deletion of a
+	 * cached Domain or Service is committed.
+	 * 
+	 * @param az
+	 */
+	private void invalidateZoneEntities(AccountZone az) {
+		if (zoneEntityCache != null) {
+			// this server doesn't wait for the segment's PCS to notify it
+			zoneEntityCache.invalidateZone(az.getZoneApex());
+		}
+		if (cacheInvalidater == null) {
+			return;
+		}
+		Segment s = segmentService.findBySegment(az.getSegment());
+		if (s == null) {
+			log.warn("Unable to invalidate zone " + az.getZoneApex() + ", segment " + az.getSegment() + " not found.");
+			return;
+		}
+		CacheInvalidationInstruction inst = CacheInvalidationInstruction
+				.newInstruction(CacheInvalidationInstruction.newID(), CacheName.ZoneEntity, az.getZoneApex());
+		ProcessingState ps = cacheInvalidater.invalidateCache(s, inst);
+		if (ps != null && ps.getStatus() == ProcessingStatus.FAILURE) {
+			log.warn("Unable to invalidate " + inst + " in segment " + s.getSegmentName() + " " + ps);
+		}
+	}
+
 	/**
 	 * Checks the AuthenticatedAgent is authorized to perform administration on the domain, and return the agent's
 	 * zoneApex. If the agent is not authorized then the acknowledge's Error info will be set and null returned.
@@ -1577,6 +1613,14 @@ public class ZASImpl implements ZAS {
 		this.channelService = channelService;
 	}
 
+	public ChunkGarbageCollector getChunkGarbageCollector() {
+		return chunkGarbageCollector;
+	}
+
+	public void setChunkGarbageCollector(ChunkGarbageCollector chunkGarbageCollector) {
+		this.chunkGarbageCollector = chunkGarbageCollector;
+	}
+
 	public DestinationService getDestinationService() {
 		return destinationService;
 	}
@@ -1585,6 +1629,30 @@ public class ZASImpl implements ZAS {
 		this.destinationService = destinationService;
 	}
 
+	public ZoneEntityCache getZoneEntityCache() {
+		return zoneEntityCache;
+	}
+
+	public void setZoneEntityCache(ZoneEntityCache zoneEntityCache) {
+		this.zoneEntityCache = zoneEntityCache;
+	}
+
+	public CacheInvalidationNotifier getCacheInvalidater() {
+		return cacheInvalidater;
+	}
+
+	public void setCacheInvalidater(CacheInvalidationNotifier cacheInvalidater) {
+		this.cacheInvalidater = cacheInvalidater;
+	}
+
+	public SegmentService getSegmentService() {
+		return segmentService;
+	}
+
+	public void setSegmentService(SegmentService segmentService) {
+		this.segmentService = segmentService;
+	}
+
 	public int getBatchSize() {
 		return batchSize;
 	}
@@ -49,9 +49,9 @@ public class ZASServerSessionFactoryImpl extends AbstractServerSessionFactory<ZA
 
 		associateZoneDB(az.getZonePartitionId());
 		try {
-			Zone z = fetchZone(seedAttributes.get(AttributeId.ZoneId));
+			Zone z = fetchZone(az, seedAttributes.get(AttributeId.ZoneId));
 			// note domain is null for ZACs
-			Domain d = fetchDomain(seedAttributes.get(AttributeId.DomainId));
+			Domain d = fetchDomain(az, z, seedAttributes.get(AttributeId.DomainId));
 
 			ZASServerSession zass = new ZASServerSession(sessionId, az, z, d);
 			return zass;
@@ -0,0 +1,180 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.chunk.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.client.crypto.entropy.EntropySource;
+import org.tdmx.lib.chunk.domain.Chunk;
+
+public class ChunkSegmentStoreTest {
+
+	private File dir;
+	private ChunkSegmentStore store;
+
+	@Before
+	public void doSetup() throws Exception {
+		dir = Files.createTempDirectory("chunkstore").toFile();
+		store = new ChunkSegmentStore(dir, 1024, false);
+		store.open();
+	}
+
+	@After
+	public void doTeardown() {
+		store.close();
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				f.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	private Chunk createChunk(String msgId, int pos, int len, long ttl) {
+		Chunk c = new Chunk();
+		c.setMsgId(msgId);
+		c.setPos(pos);
+		c.setMac("mac" + pos);
+		c.setTtlTimestamp(new Date(ttl));
+		c.setData(EntropySource.getRandomBytes(len));
+		return c;
+	}
+
+	@Test
+	public void testStoreLoad() throws Exception {
+		long ttl = System.currentTimeMillis() + 60000;
+		Chunk c = createChunk("abcd1", 0, 100, ttl);
+		assertFalse(store.store(c));
+
+		Chunk l = store.load("abcd1", 0);
+		assertNotNull(l);
+		assertEquals(c.getMsgId(), l.getMsgId());
+		assertEquals(c.getPos(), l.getPos());
+		assertEquals(c.getMac(), l.getMac());
+		assertEquals(c.getTtlTimestamp(), l.getTtlTimestamp());
+		assertArrayEquals(c.getData(), l.getData());
+
+		assertNull(store.load("abcd1", 1));
+		assertNull(store.load("abcd2", 0));
+	}
+
+	@Test
+	public void testOverwrite() throws Exception {
+		long ttl = System.currentTimeMillis() + 60000;
+		Chunk c = createChunk("abcd1", 0, 100, ttl);
+		assertFalse(store.store(c));
+		Chunk c2 = createChunk("abcd1", 0, 200, ttl);
+		assertTrue(store.store(c2));
+
+		assertArrayEquals(c2.getData(), store.load("abcd1", 0).getData());
+	}
+
+	@Test
+	public void testLoadRange_Delete() throws Exception {
+		long ttl = System.currentTimeMillis() + 60000;
+		for (int i = 0; i < 10; i++) {
+			store.store(createChunk("abcd1", i, 300, ttl));
+		}
+		List<Chunk> chunks = store.load("abcd1", 2, 4);
+		assertEquals(3, chunks.size());
+		assertEquals(2, chunks.get(0).getPos());
+		assertEquals(4, chunks.get(2).getPos());
+
+		store.delete("abcd1");
+		assertTrue(store.load("abcd1", 0, 9).isEmpty());
+	}
+
+	@Test
+	public void testReopen() throws Exception {
+		long ttl = System.currentTimeMillis() + 60000;
+		Chunk c1 = createChunk("abcd1", 0, 700, ttl);
+		Chunk c2 = createChunk("abcd2", 0, 700, ttl);
+		Chunk c3 = createChunk("abcd3", 0, 700, ttl);
+		store.store(c1);
+		store.store(c2);
+		store.store(c3);
+		store.delete("abcd2");
+		store.close();
+
+		store = new ChunkSegmentStore(dir, 1024, false);
+		store.open();
+		assertArrayEquals(c1.getData(), store.load("abcd1", 0).getData());
+		assertNull(store.load("abcd2", 0));
+		assertArrayEquals(c3.getData(), store.load("abcd3", 0).getData());
+	}
+
+	@Test
+	public void testPurgeExpired() throws Exception {
+		long expired = System.currentTimeMillis() - 1;
+		store.store(createChunk("abcd1", 0, 700, expired));
+		// rolls the segment of the expired chunk, purging it
+		store.store(createChunk("abcd2", 0, 700, System.currentTimeMillis() + 60000));
+
+		assertNull(store.load("abcd1", 0));
+		assertNotNull(store.load("abcd2", 0));
+	}
+
+	@Test
+	public void testPurgeExpired_ActiveSegment() throws Exception {
+		store.store(createChunk("abcd1", 0, 100, System.currentTimeMillis() - 1));
+		assertNotNull(store.load("abcd1", 0));
+
+		// the active segment is never filled, so it is rolled by the purge
+		assertEquals(1, store.purgeExpired());
+		assertNull(store.load("abcd1", 0));
+	}
+
+	@Test
+	public void testReopen_ExpiredNewestRecordWins() throws Exception {
+		store.store(createChunk("abcd1", 0, 300, System.currentTimeMillis() + 60000));
+		// keeps the first segment alive after the overwrite
+		store.store(createChunk("abcd2", 0, 300, System.currentTimeMillis() + 60000));
+		// the overwrite is in a later segment and expires before the store is reopened
+		store.store(createChunk("abcd1", 0, 700, System.currentTimeMillis() + 200));
+		store.close();
+		Thread.sleep(300);
+
+		store = new ChunkSegmentStore(dir, 1024, false);
+		store.open();
+		assertNull(store.load("abcd1", 0));
+		assertNotNull(store.load("abcd2", 0));
+	}
+
+	@Test(expected = IOException.class)
+	public void testOpen_DirectoryLocked() throws Exception {
+		ChunkSegmentStore other = new ChunkSegmentStore(dir, 1024, false);
+		other.open();
+	}
+
+}
@@ -24,6 +24,9 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.Before;
@@ -132,6 +135,119 @@ public class ChunkServiceRepositoryUnitTest {
 		assertNull(service.fetchChunk(m, 0));
 	}
 
+	@Test
+	public void testFetchChunks() throws Exception {
+		ChannelMessage m = new ChannelMessage();
+		m.setScheme(IntegratedCryptoScheme.ECDH384_AES256plusRSA_SLASH_AES256__16MB_SHA1);
+		m.setMsgId(ByteArray.asHex(DigestAlgorithm.SHA_256.kdf(EntropySource.getRandomBytes(8))));
+		AgentSignature sig = new AgentSignature();
+		sig.setSignatureDate(new Date()); // needed to determine which db
+		m.setSignature(sig);
+		m.setTtlTimestamp(new Date());
+
+		for (int i = 0; i < 5; i++) {
+			Chunk c = new Chunk(m, i);
+			c.setMac(ByteArray.asHex(DigestAlgorithm.SHA_1.kdf(EntropySource.getRandomBytes(4))));
+			c.setData(new byte[] { (byte) i, 1, 2, 3 });
+			assertTrue(service.storeChunk(m, c));
+		}
+
+		List<Chunk> chunks = service.fetchChunks(m, 1, 3);
+		assertNotNull(chunks);
+		assertEquals(3, chunks.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			Chunk c = chunks.get(i);
+			assertEquals(m.getMsgId(), c.getMsgId());
+			assertEquals(i + 1, c.getPos());
+			assertEquals(i + 1, c.getData()[0]);
+		}
+
+		// range beyond the last chunk only returns existing chunks
+		chunks = service.fetchChunks(m, 3, 10);
+		assertNotNull(chunks);
+		assertEquals(2, chunks.size());
+
+		assertTrue(service.deleteChunks(m));
+		chunks = service.fetchChunks(m, 0, 4);
+		assertNotNull(chunks);
+		assertTrue(chunks.isEmpty());
+	}
+
+	@Test
+	public void testResendOverwrites() throws Exception {
+		ChannelMessage m = new ChannelMessage();
+		m.setScheme(IntegratedCryptoScheme.ECDH384_AES256plusRSA_SLASH_AES256__16MB_SHA1);
+		m.setMsgId(ByteArray.asHex(DigestAlgorithm.SHA_256.kdf(EntropySource.getRandomBytes(8))));
+		AgentSignature sig = new AgentSignature();
+		sig.setSignatureDate(new Date()); // needed to determine which db
+		m.setSignature(sig);
+		m.setTtlTimestamp(new Date());
+
+		Chunk c = new Chunk(m, 0);
+		c.setMac("1234");
+		c.setData(new byte[] { 1, 2, 3 });
+		assertTrue(service.storeChunk(m, c));
+
+		Chunk resent = new Chunk(m, 0);
+		resent.setMac("5678");
+		resent.setData(new byte[] { 4, 5, 6, 7 });
+		assertTrue(service.storeChunk(m, resent));
+
+		// the resend replaces the chunk rather than adding a second one
+		List<Chunk> chunks = service.fetchChunks(m, 0, 0);
+		assertNotNull(chunks);
+		assertEquals(1, chunks.size());
+		assertEquals("5678", chunks.get(0).getMac());
+		assertEquals(4, chunks.get(0).getData().length);
+
+		assertTrue(service.deleteChunks(m));
+	}
+
+	@Test
+	public void testConcurrentFirstStore() throws Exception {
+		for (int round = 0; round < 10; round++) {
+			final ChannelMessage m = new ChannelMessage();
+			m.setScheme(IntegratedCryptoScheme.ECDH384_AES256plusRSA_SLASH_AES256__16MB_SHA1);
+			m.setMsgId(ByteArray.asHex(DigestAlgorithm.SHA_256.kdf(EntropySource.getRandomBytes(8))));
+			AgentSignature sig = new AgentSignature();
+			sig.setSignatureDate(new Date()); // needed to determine which db
+			m.setSignature(sig);
+			m.setTtlTimestamp(new Date());
+
+			final CountDownLatch start = new CountDownLatch(1);
+			final AtomicInteger stored = new AtomicInteger();
+			Thread[] threads = new Thread[2];
+			for (int t = 0; t < threads.length; t++) {
+				final Chunk c = new Chunk(m, 0);
+				c.setMac("mac" + t);
+				c.setData(new byte[] { (byte) t, 1, 2, 3 });
+				threads[t] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							start.await();
+						} catch (InterruptedException e) {
+							return;
+						}
+						if (service.storeChunk(m, c)) {
+							stored.incrementAndGet();
+						}
+					}
+				});
+				threads[t].start();
+			}
+			start.countDown();
+			for (Thread t : threads) {
+				t.join();
+			}
+
+			// both first stores succeed, leaving a single chunk
+			assertEquals(2, stored.get());
+			assertEquals(1, service.fetchChunks(m, 0, 0).size());
+			assertTrue(service.deleteChunks(m));
+		}
+	}
+
 	@Test
 	public void testLookup_NotFoundPos() throws Exception {
 		Chunk c = service.fetchChunk(msg, (short) -1);
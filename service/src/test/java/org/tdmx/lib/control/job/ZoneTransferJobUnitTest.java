@@ -22,19 +22,28 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.inject.Named;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.tdmx.lib.common.domain.ProcessingState;
 import org.tdmx.lib.control.datasource.ThreadLocalPartitionIdProvider;
 import org.tdmx.lib.control.domain.Account;
 import org.tdmx.lib.control.domain.AccountZone;
 import org.tdmx.lib.control.domain.ControlJob;
+import org.tdmx.lib.control.domain.Segment;
 import org.tdmx.lib.control.domain.TestDataGeneratorInput;
 import org.tdmx.lib.control.domain.TestDataGeneratorOutput;
 import org.tdmx.lib.control.service.AccountZoneService;
@@ -42,6 +51,9 @@ import org.tdmx.lib.control.service.ControlJobService;
 import org.tdmx.lib.control.service.MockDatabasePartitionInstaller;
 import org.tdmx.lib.zone.domain.Zone;
 import org.tdmx.lib.zone.service.ZoneService;
+import org.tdmx.server.cache.CacheInvalidationInstruction;
+import org.tdmx.server.cache.CacheInvalidationNotifier;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = "classpath:/org/tdmx/test-context.xml")
@@ -61,6 +73,9 @@ public class ZoneTransferJobUnitTest {
 	private ThreadLocalPartitionIdProvider zonePartitionIdProvider;
 	@Autowired
 	private ZoneService zoneService;
+	@Autowired
+	@Named("tdmx.server.cache.cacheInvalidationNotifier")
+	private CacheInvalidationNotifier cacheInvalidationNotifier;
 
 	private String segmentName = "default";
 	private TestDataGeneratorInput input;
@@ -91,6 +106,7 @@ public class ZoneTransferJobUnitTest {
 
 	@After
 	public void doTeardown() {
+		Mockito.reset(cacheInvalidationNotifier);
 		dataGenerator.tearDown(input, data);
 		// delete any job created during the test.
 		if (j != null && j.getId() != null) {
@@ -130,6 +146,49 @@ public class ZoneTransferJobUnitTest {
 
 	}
 
+	@Test
+	public void test_Success_InvalidatesZoneEntities() throws Exception {
+		final String oldPartitionId = data.getAccountZone().getZonePartitionId();
+		final String zoneApex = data.getAccountZone().getZoneApex();
+		String newPartitionId = MockDatabasePartitionInstaller.ZP1_S2;
+
+		// record whether the zone is still in the old partition when the invalidation is sent.
+		final List<Zone> oldZones = new ArrayList<>();
+		Mockito.reset(cacheInvalidationNotifier);
+		Mockito.when(cacheInvalidationNotifier.invalidateCache(Mockito.any(Segment.class),
+				Mockito.any(CacheInvalidationInstruction.class))).thenAnswer(new Answer<ProcessingState>() {
+					@Override
+					public ProcessingState answer(InvocationOnMock invocation) throws Throwable {
+						zonePartitionIdProvider.setPartitionId(oldPartitionId);
+						try {
+							oldZones.add(zoneService.findByZoneApex(zoneApex));
+						} finally {
+							zonePartitionIdProvider.clearPartitionId();
+						}
+						return ProcessingState.none();
+					}
+				});
+
+		j = ControlJob.createZoneTransferJob(segmentName, accountZoneId, newPartitionId);
+
+		jobService.createOrUpdate(j);
+		assertNotNull(j.getId());
+
+		jobExecutor.execute(j);
+
+		ArgumentCaptor<Segment> segment = ArgumentCaptor.forClass(Segment.class);
+		ArgumentCaptor<CacheInvalidationInstruction> inst = ArgumentCaptor
+				.forClass(CacheInvalidationInstruction.class);
+		Mockito.verify(cacheInvalidationNotifier).invalidateCache(segment.capture(), inst.capture());
+
+		assertEquals(data.getAccountZone().getSegment(), segment.getValue().getSegmentName());
+		assertEquals(CacheName.ZoneEntity, inst.getValue().getName());
+		assertEquals(zoneApex, inst.getValue().getKey());
+		// invalidated before the old partition's data is deleted.
+		assertEquals(1, oldZones.size());
+		assertNotNull(oldZones.get(0));
+	}
+
 	@Test
 	public void test_Failure_SameZone() throws Exception {
 		String oldPartitionId = data.getAccountZone().getZonePartitionId();
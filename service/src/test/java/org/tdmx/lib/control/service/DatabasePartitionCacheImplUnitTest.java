@@ -0,0 +1,119 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.control.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.lib.control.domain.DatabasePartition;
+import org.tdmx.lib.control.domain.DatabaseType;
+
+public class DatabasePartitionCacheImplUnitTest {
+
+	private static final long HOUR = 3600000L;
+
+	private long now;
+	private List<DatabasePartition> partitions;
+	private DatabasePartitionCacheImpl cache;
+
+	@Before
+	public void doSetup() throws Exception {
+		now = System.currentTimeMillis();
+
+		partitions = new ArrayList<>();
+		partitions.add(createPartition("chunk-1", now - 10 * HOUR));
+		partitions.add(createPartition("chunk-2", now - 10 * HOUR));
+		partitions.add(createPartition("chunk-3", now - 2 * HOUR));
+
+		DatabasePartitionService service = mock(DatabasePartitionService.class);
+		when(service.findAll()).thenReturn(partitions);
+
+		cache = new DatabasePartitionCacheImpl();
+		cache.setDatabasePartitionService(service);
+		cache.setHashRingCutoverTimestamp(now - 5 * HOUR);
+	}
+
+	private DatabasePartition createPartition(String partitionId, long activationTs) {
+		DatabasePartition p = new DatabasePartition();
+		p.setPartitionId(partitionId);
+		p.setDbType(DatabaseType.CHUNK);
+		p.setActivationTimestamp(new Date(activationTs));
+		return p;
+	}
+
+	private String getPartitionId(Date ts, String key) {
+		return cache.getActivePartitionAtTimestamp(DatabaseType.CHUNK, ts, key).getPartitionId();
+	}
+
+	@Test
+	public void testLegacyMapping_BeforeCutover() {
+		Date ts = new Date(now - 8 * HOUR);
+		assertEquals("chunk-1", getPartitionId(ts, "0002abcd"));
+		assertEquals("chunk-2", getPartitionId(ts, "0003abcd"));
+		assertEquals("chunk-2", getPartitionId(ts, "ffffabcd"));
+	}
+
+	@Test
+	public void testLegacyMapping_LoadOrder() {
+		// loaded in id order, which differs from the partitionId order
+		partitions.clear();
+		partitions.add(createPartition("chunk-b", now - 10 * HOUR));
+		partitions.add(createPartition("chunk-a", now - 10 * HOUR));
+		partitions.add(createPartition("chunk-c", now - 10 * HOUR));
+
+		Date ts = new Date(now - 8 * HOUR);
+		List<DatabasePartition> active = cache.getActiveAtTimestamp(DatabaseType.CHUNK, ts);
+		assertEquals("chunk-b", active.get(0).getPartitionId());
+		assertEquals("chunk-a", active.get(1).getPartitionId());
+		assertEquals("chunk-c", active.get(2).getPartitionId());
+
+		// the baseline mapping indexes the loaded partitions
+		for (String key : new String[] { "0000abcd", "0001abcd", "0002abcd", "ffffabcd", "1234abcd" }) {
+			int hex16 = Integer.valueOf(key.substring(0, 4), 16);
+			assertEquals(partitions.get(hex16 % partitions.size()).getPartitionId(), getPartitionId(ts, key));
+		}
+		assertEquals("chunk-b", getPartitionId(ts, "0000abcd"));
+		assertEquals("chunk-a", getPartitionId(ts, "0001abcd"));
+		assertEquals("chunk-c", getPartitionId(ts, "0002abcd"));
+	}
+
+	@Test
+	public void testHashRing_AfterCutover() {
+		Date ts = new Date(now - HOUR);
+		List<DatabasePartition> active = cache.getActiveAtTimestamp(DatabaseType.CHUNK, ts);
+		assertEquals(3, active.size());
+		DatabasePartitionHashRing ring = new DatabasePartitionHashRing(active,
+				DatabasePartitionHashRing.DEFAULT_VIRTUAL_NODES);
+
+		for (String key : new String[] { "0002abcd", "0003abcd", "ffffabcd", "1234abcd" }) {
+			DatabasePartition p = cache.getActivePartitionAtTimestamp(DatabaseType.CHUNK, ts, key);
+			assertNotNull(p);
+			assertEquals(ring.getPartition(key).getPartitionId(), p.getPartitionId());
+		}
+	}
+
+}
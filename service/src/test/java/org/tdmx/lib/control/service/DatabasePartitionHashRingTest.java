@@ -0,0 +1,110 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.control.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.tdmx.client.crypto.algorithm.DigestAlgorithm;
+import org.tdmx.client.crypto.converters.ByteArray;
+import org.tdmx.client.crypto.entropy.EntropySource;
+import org.tdmx.lib.control.domain.DatabasePartition;
+
+public class DatabasePartitionHashRingTest {
+
+	private static final int NUM_KEYS = 10000;
+
+	private List<DatabasePartition> createPartitions(int num) {
+		List<DatabasePartition> partitions = new ArrayList<>();
+		for (int i = 0; i < num; i++) {
+			DatabasePartition p = new DatabasePartition();
+			p.setPartitionId("chunk-" + i);
+			partitions.add(p);
+		}
+		return partitions;
+	}
+
+	private List<String> createKeys() {
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < NUM_KEYS; i++) {
+			keys.add(ByteArray.asHex(DigestAlgorithm.SHA_256.kdf(EntropySource.getRandomBytes(8))));
+		}
+		return keys;
+	}
+
+	@Test
+	public void testEmpty() {
+		DatabasePartitionHashRing ring = new DatabasePartitionHashRing(Collections.<DatabasePartition> emptyList(),
+				DatabasePartitionHashRing.DEFAULT_VIRTUAL_NODES);
+		assertTrue(ring.isEmpty());
+		assertNull(ring.getPartition("abc"));
+	}
+
+	@Test
+	public void testDistribution() {
+		List<DatabasePartition> partitions = createPartitions(4);
+		DatabasePartitionHashRing ring = new DatabasePartitionHashRing(partitions,
+				DatabasePartitionHashRing.DEFAULT_VIRTUAL_NODES);
+
+		Map<String, Integer> counts = new HashMap<>();
+		for (String key : createKeys()) {
+			DatabasePartition p = ring.getPartition(key);
+			assertNotNull(p);
+			Integer c = counts.get(p.getPartitionId());
+			counts.put(p.getPartitionId(), c == null ? 1 : c + 1);
+		}
+		assertEquals(4, counts.size());
+		for (Integer c : counts.values()) {
+			// each partition gets a fair share of 2500 +- 30%
+			assertTrue(c > 1750 && c < 3250);
+		}
+	}
+
+	@Test
+	public void testStableOnAdd() {
+		List<DatabasePartition> partitions = createPartitions(5);
+		DatabasePartitionHashRing ring4 = new DatabasePartitionHashRing(partitions.subList(0, 4),
+				DatabasePartitionHashRing.DEFAULT_VIRTUAL_NODES);
+		DatabasePartitionHashRing ring5 = new DatabasePartitionHashRing(partitions,
+				DatabasePartitionHashRing.DEFAULT_VIRTUAL_NODES);
+
+		int moved = 0;
+		for (String key : createKeys()) {
+			DatabasePartition before = ring4.getPartition(key);
+			DatabasePartition after = ring5.getPartition(key);
+			if (before != after) {
+				// keys only move to the new partition
+				assertEquals("chunk-4", after.getPartitionId());
+				moved++;
+			}
+		}
+		// about 1/5 of the keys move
+		assertTrue(moved > NUM_KEYS / 10 && moved < NUM_KEYS * 3 / 10);
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.client.crypto.certificate.PKIXCertificate;
+import org.tdmx.client.crypto.certificate.PKIXCredential;
+import org.tdmx.lib.control.domain.CredentialFacade;
+import org.tdmx.lib.zone.domain.AgentCredentialDescriptor;
+import org.tdmx.lib.zone.domain.AgentCredentialType;
+
+public class CachingAgentCredentialFactoryImplUnitTest {
+
+	private CachingAgentCredentialFactoryImpl factory;
+
+	private PKIXCredential zac;
+	private PKIXCredential dac;
+	private PKIXCredential uc;
+
+	@Before
+	public void doSetup() throws Exception {
+		factory = new CachingAgentCredentialFactoryImpl();
+		factory.setDelegate(new AgentCredentialFactoryImpl());
+
+		zac = CredentialFacade.createZAC("zone.apex." + System.currentTimeMillis());
+		dac = CredentialFacade.createDAC(zac);
+		uc = CredentialFacade.createUC(dac);
+	}
+
+	@Test
+	public void testCacheHit() {
+		AgentCredentialDescriptor first = factory.createAgentCredential(uc.getCertificateChain());
+		assertNotNull(first);
+		assertEquals(AgentCredentialType.UC, first.getCredentialType());
+		assertEquals(0, factory.getHits());
+		assertEquals(1, factory.getMisses());
+
+		AgentCredentialDescriptor second = factory.createAgentCredential(uc.getCertificateChain());
+		assertSame(first, second);
+		assertEquals(1, factory.getHits());
+		assertEquals(1, factory.getSize());
+	}
+
+	@Test
+	public void testCacheHit_Encoded() {
+		AgentCredentialDescriptor first = factory.createAgentCredential(uc.getCertificateChain());
+		assertNotNull(first);
+
+		AgentCredentialDescriptor second = factory.createAgentCredential(encode(uc.getCertificateChain()));
+		assertSame(first, second);
+		assertEquals(1, factory.getHits());
+	}
+
+	@Test
+	public void testInvalidNotCached() {
+		// a UC chain without the ZAC is invalid
+		PKIXCertificate[] chain = new PKIXCertificate[] { uc.getPublicCert(), dac.getPublicCert() };
+		assertNull(factory.createAgentCredential(chain));
+		assertNull(factory.createAgentCredential(chain));
+		assertEquals(0, factory.getHits());
+		assertEquals(0, factory.getSize());
+	}
+
+	@Test
+	public void testRemoveCertificate() {
+		assertNotNull(factory.createAgentCredential(uc.getCertificateChain()));
+		assertNotNull(factory.createAgentCredential(dac.getCertificateChain()));
+		assertNotNull(factory.createAgentCredential(zac.getCertificateChain()));
+		assertEquals(3, factory.getSize());
+
+		// revoking the DAC removes the DAC and the UC issued by it
+		factory.removeCertificate(dac.getPublicCert());
+		assertEquals(1, factory.getSize());
+		assertEquals(2, factory.getRevocations());
+
+		assertNotNull(factory.createAgentCredential(uc.getCertificateChain()));
+		assertEquals(0, factory.getHits());
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		factory.setMaxSize(10);
+		for (int i = 0; i < 11; i++) {
+			PKIXCredential user = CredentialFacade.createUC(dac);
+			assertNotNull(factory.createAgentCredential(user.getCertificateChain()));
+		}
+		assertTrue(factory.getSize() <= 10);
+		assertTrue(factory.getEvictions() > 0);
+	}
+
+	private byte[][] encode(PKIXCertificate[] chain) {
+		byte[][] result = new byte[chain.length][];
+		for (int i = 0; i < chain.length; i++) {
+			result[i] = chain[i].getX509Encoded();
+		}
+		return result;
+	}
+}
@@ -19,8 +19,10 @@
 package org.tdmx.lib.zone.service;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 import java.util.Random;
@@ -34,6 +36,7 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.tdmx.lib.chunk.domain.ChunkReference;
 import org.tdmx.lib.common.domain.PageSpecifier;
 import org.tdmx.lib.common.domain.ProcessingState;
 import org.tdmx.lib.common.domain.ProcessingStatus;
@@ -283,6 +286,112 @@ public class ChannelServiceRepositoryUnitTest {
 		assertEquals(error.getTimestamp(), storedCm.getState().getProcessingState().getTimestamp());
 	}
 
+	@Test
+	public void testDeleteMessages_Batched() throws Exception {
+		ChannelAuthorization ca = data.getDomains().get(0).getAuths().get(0);
+
+		ChannelAuthorization storedCA = channelService.findByChannel(zone, ca.getChannel().getDomain(),
+				ca.getChannel().getOrigin(), ca.getChannel().getDestination());
+		assertNotNull(storedCA);
+
+		Channel c = storedCA.getChannel();
+		assertNotNull(c);
+
+		Long[] stateIds = new Long[5];
+		for (int i = 0; i < stateIds.length; i++) {
+			ChannelMessage cm = ZoneFacade.createChannelMessage("msg" + i + "-" + System.currentTimeMillis(), zone,
+					c, ProcessingState.none());
+			channelService.create(cm);
+			stateIds[i] = cm.getState().getId();
+		}
+
+		List<ChunkReference> deleted = channelService.deleteMessages(zone, c, 2);
+		assertEquals(2, deleted.size());
+		assertNotNull(deleted.get(0).getMsgId());
+		assertNotNull(deleted.get(0).getSignatureDate());
+
+		assertEquals(2, channelService.deleteMessages(zone, c, 2).size());
+		assertEquals(1, channelService.deleteMessages(zone, null, 2).size());
+		assertEquals(0, channelService.deleteMessages(zone, c, 2).size());
+
+		for (Long stateId : stateIds) {
+			assertNull(channelService.findByStateId(stateId, false));
+		}
+	}
+
+	@Test
+	public void testCreateMessage_SharedCertificateChains() throws Exception {
+		ChannelAuthorization ca = data.getDomains().get(0).getAuths().get(0);
+
+		ChannelAuthorization storedCA = channelService.findByChannel(zone, ca.getChannel().getDomain(),
+				ca.getChannel().getOrigin(), ca.getChannel().getDestination());
+		assertNotNull(storedCA);
+
+		Channel c = storedCA.getChannel();
+		assertNotNull(c);
+
+		ChannelMessage cm1 = ZoneFacade.createChannelMessage("msgA-" + System.currentTimeMillis(), zone, c,
+				ProcessingState.none());
+		channelService.create(cm1);
+		ChannelMessage cm2 = ZoneFacade.createChannelMessage("msgB-" + System.currentTimeMillis(), zone, c,
+				ProcessingState.none());
+		channelService.create(cm2);
+
+		ChannelMessage stored1 = channelService.findByStateId(cm1.getState().getId(), false);
+		ChannelMessage stored2 = channelService.findByStateId(cm2.getState().getId(), false);
+		assertNotNull(stored1);
+		assertNotNull(stored2);
+
+		assertEquals(stored1.getSenderCertificateChain().getId(), stored2.getSenderCertificateChain().getId());
+		assertEquals(stored1.getReceiverCertificateChain().getId(), stored2.getReceiverCertificateChain().getId());
+		assertEquals("SENDER CERT", stored2.getSignature().getCertificateChainPem());
+		assertEquals("RECEIVER CERT", stored2.getReceiverPem());
+		assertEquals(cm2.getSignature().getValue(), stored2.getSignature().getValue());
+		assertEquals(cm2.getSignature().getAlgorithm(), stored2.getSignature().getAlgorithm());
+	}
+
+	@Test
+	public void testMigrateCertificateChains() throws Exception {
+		ChannelAuthorization ca = data.getDomains().get(0).getAuths().get(0);
+
+		ChannelAuthorization storedCA = channelService.findByChannel(zone, ca.getChannel().getDomain(),
+				ca.getChannel().getOrigin(), ca.getChannel().getDestination());
+		assertNotNull(storedCA);
+
+		Channel c = storedCA.getChannel();
+		assertNotNull(c);
+
+		// a message stored before the certificate chains were shared
+		ChannelMessage legacy = ZoneFacade.createChannelMessage("msgL-" + System.currentTimeMillis(), zone, c,
+				ProcessingState.none());
+		legacy.setLegacySenderPem(legacy.getSenderPem());
+		legacy.setLegacyReceiverPem(legacy.getReceiverPem());
+		channelService.create(legacy);
+
+		ChannelMessage stored = channelService.findByStateId(legacy.getState().getId(), false);
+		assertNotNull(stored);
+		assertTrue(stored.hasLegacyCertificateChains());
+		assertNull(stored.getSenderCertificateChain());
+		assertNull(stored.getReceiverCertificateChain());
+		assertEquals("SENDER CERT", stored.getSignature().getCertificateChainPem());
+		assertEquals("RECEIVER CERT", stored.getReceiverPem());
+
+		int migrated = 0;
+		int batch;
+		while ((batch = channelService.migrateCertificateChains(1)) > 0) {
+			migrated += batch;
+		}
+		assertTrue(migrated >= 1);
+
+		ChannelMessage migratedMsg = channelService.findByStateId(legacy.getState().getId(), false);
+		assertNotNull(migratedMsg);
+		assertFalse(migratedMsg.hasLegacyCertificateChains());
+		assertNotNull(migratedMsg.getSenderCertificateChain());
+		assertNotNull(migratedMsg.getReceiverCertificateChain());
+		assertEquals("SENDER CERT", migratedMsg.getSignature().getCertificateChainPem());
+		assertEquals("RECEIVER CERT", migratedMsg.getReceiverPem());
+	}
+
 	@Test
 	public void testUpdateCA_ChannelAuthorizationProcessingState() throws Exception {
 		ChannelAuthorization ca = data.getDomains().get(0).getAuths().get(0);
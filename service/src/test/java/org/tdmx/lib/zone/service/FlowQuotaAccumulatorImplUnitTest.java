@@ -0,0 +1,267 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.lib.zone.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.tdmx.lib.control.datasource.ThreadLocalPartitionIdProviderImpl;
+import org.tdmx.lib.zone.domain.FlowControlStatus;
+import org.tdmx.lib.zone.domain.FlowLimit;
+import org.tdmx.lib.zone.domain.FlowQuota;
+
+public class FlowQuotaAccumulatorImplUnitTest {
+
+	private static final Long QUOTA_ID = 1L;
+
+	private ChannelService channelService;
+	private ThreadLocalPartitionIdProviderImpl partitionIdProvider;
+	private FlowQuotaAccumulatorImpl accumulator;
+	private FlowQuota quota;
+
+	@Before
+	public void doSetup() throws Exception {
+		channelService = Mockito.mock(ChannelService.class);
+		partitionIdProvider = new ThreadLocalPartitionIdProviderImpl();
+		partitionIdProvider.setPartitionId("z1");
+
+		accumulator = new FlowQuotaAccumulatorImpl();
+		accumulator.setPartitionIdProvider(partitionIdProvider);
+		accumulator.setAccumulatorId("node1");
+
+		quota = new FlowQuota(null);
+		quota.setId(QUOTA_ID);
+		quota.setLimit(new FlowLimit(BigInteger.valueOf(1000), BigInteger.valueOf(100)));
+		quota.setUsedBytes(BigInteger.valueOf(500));
+
+		TransactionSynchronizationManager.initSynchronization();
+	}
+
+	@After
+	public void doTeardown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		partitionIdProvider.clearPartitionId();
+	}
+
+	@Test
+	public void testAccumulate_UnknownQuota() {
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null));
+	}
+
+	@Test
+	public void testAccumulate_WithinLimits() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		assertEquals("node1", quota.getAccumulatorId());
+		assertNotNull(quota.getAccumulatorLeaseUntil());
+
+		assertNotNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 400, null));
+		assertNotNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.RELAY_OUT, 50, null));
+		// reserved increases are pending before commit
+		assertEquals(400, accumulator.getPendingBytes(QUOTA_ID));
+		commit();
+		assertEquals(350, accumulator.getPendingBytes(QUOTA_ID));
+
+		// exceeding the high mark needs the lock
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 200, null));
+		// changing the relay status needs the lock
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.RELAY_OUT, 10, FlowControlStatus.CLOSED));
+		assertNotNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.RELAY_OUT, 10, FlowControlStatus.OPEN));
+	}
+
+	@Test
+	public void testAccumulate_ReservedUntilCompleted() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+
+		assertNotNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.RELAY_IN, 300, null));
+		// the uncommitted reservation counts towards the high mark
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.RELAY_IN, 300, null));
+		rollback();
+		assertEquals(0, accumulator.getPendingBytes(QUOTA_ID));
+
+		// released on rollback
+		assertNotNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.RELAY_IN, 300, null));
+		commit();
+		assertEquals(300, accumulator.getPendingBytes(QUOTA_ID));
+	}
+
+	@Test
+	public void testAccumulate_OpenBelowLowMark() {
+		quota.setFlowStatus(FlowControlStatus.CLOSED);
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+
+		assertNotNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.RECEIVE, 300, null));
+		// opening the flow control needs the lock, also counting the reserved reduction
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.RECEIVE, 101, null));
+	}
+
+	@Test
+	public void testAccumulate_LeasedByOther() {
+		quota.setAccumulatorId("node2");
+		quota.setAccumulatorLeaseUntil(new Date(System.currentTimeMillis() + 60000));
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+
+		assertEquals("node2", quota.getAccumulatorId());
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null));
+	}
+
+	@Test
+	public void testApplyTo() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null);
+		commit();
+
+		accumulator.applyTo(QUOTA_ID, quota);
+		assertEquals(BigInteger.valueOf(600), quota.getUsedBytes());
+		assertEquals(0, accumulator.getPendingBytes(QUOTA_ID));
+		rollback();
+		// restored on rollback
+		assertEquals(100, accumulator.getPendingBytes(QUOTA_ID));
+	}
+
+	@Test
+	public void testApplyTo_ClosesAboveHighMark() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 400, null);
+		commit();
+
+		// changed by another node without the lease in the meantime
+		quota.setUsedBytes(BigInteger.valueOf(700));
+		accumulator.applyTo(QUOTA_ID, quota);
+		assertEquals(BigInteger.valueOf(1100), quota.getUsedBytes());
+		assertEquals(FlowControlStatus.CLOSED, quota.getFlowStatus());
+	}
+
+	@Test
+	public void testApplyTo_LeaseTakenOver() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null);
+		commit();
+
+		quota.setAccumulatorId("node2");
+		quota.setAccumulatorLeaseUntil(new Date(System.currentTimeMillis() + 60000));
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		// discarded, reconciled by the node holding the lease
+		assertEquals(BigInteger.valueOf(500), quota.getUsedBytes());
+		assertEquals(0, accumulator.getPendingBytes(QUOTA_ID));
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null));
+	}
+
+	@Test
+	public void testFlush() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null);
+		commit();
+
+		accumulator.flush(channelService);
+		Mockito.verify(channelService).flushFlowQuota(QUOTA_ID);
+		Mockito.verify(channelService, Mockito.never()).reconcileFlowQuota(QUOTA_ID);
+	}
+
+	@Test
+	public void testFlush_ForgetsIdle() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+
+		accumulator.flush(channelService);
+		Mockito.verify(channelService, Mockito.never()).flushFlowQuota(QUOTA_ID);
+		// forgotten, so the next change needs the lock
+		partitionIdProvider.setPartitionId("z1");
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null));
+	}
+
+	@Test
+	public void testFlush_ReconcilesExpiredLease() {
+		quota.setAccumulatorId("node2");
+		quota.setAccumulatorLeaseUntil(new Date(System.currentTimeMillis() - 1000));
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		assertEquals("node1", quota.getAccumulatorId());
+
+		// the changes of the failed node may be lost
+		accumulator.flush(channelService);
+		Mockito.verify(channelService).reconcileFlowQuota(QUOTA_ID);
+	}
+
+	@Test
+	public void testReconcileTo() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null);
+		commit();
+
+		assertTrue(accumulator.reconcileTo(QUOTA_ID, quota));
+		// discarded since counted in the messages
+		assertEquals(BigInteger.valueOf(500), quota.getUsedBytes());
+		assertNull(accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null));
+		rollback();
+		assertEquals(100, accumulator.getPendingBytes(QUOTA_ID));
+	}
+
+	@Test
+	public void testReconcileTo_Reserved() {
+		accumulator.applyTo(QUOTA_ID, quota);
+		commit();
+		accumulator.accumulate(QUOTA_ID, FlowQuotaChange.SEND, 100, null);
+
+		// the reserved change is not yet in the messages
+		assertFalse(accumulator.reconcileTo(QUOTA_ID, quota));
+	}
+
+	private void commit() {
+		complete(TransactionSynchronization.STATUS_COMMITTED);
+	}
+
+	private void rollback() {
+		complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+	}
+
+	private void complete(int status) {
+		for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+			if (status == TransactionSynchronization.STATUS_COMMITTED) {
+				sync.afterCommit();
+			}
+			sync.afterCompletion(status);
+		}
+		TransactionSynchronizationManager.clearSynchronization();
+		TransactionSynchronizationManager.initSynchronization();
+	}
+}
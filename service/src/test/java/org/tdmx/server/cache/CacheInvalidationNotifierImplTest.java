@@ -0,0 +1,123 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectFactory;
+import org.tdmx.lib.common.domain.ProcessingState;
+import org.tdmx.lib.common.domain.ProcessingStatus;
+import org.tdmx.lib.control.domain.Segment;
+import org.tdmx.server.pcs.client.LocalControlServiceImpl;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
+
+public class CacheInvalidationNotifierImplTest {
+
+	private LocalControlServiceImpl mockClient;
+	private CacheInvalidationNotifierImpl sut;
+	private Segment segment;
+
+	@SuppressWarnings("unchecked")
+	@Before
+	public void doSetup() throws Exception {
+		mockClient = Mockito.mock(LocalControlServiceImpl.class);
+		Mockito.when(mockClient.invalidateCache(Matchers.any(Segment.class), Matchers.anyListOf(
+				CacheInvalidationInstruction.class))).thenReturn(ProcessingState.none());
+
+		ObjectFactory<LocalControlServiceImpl> factory = Mockito.mock(ObjectFactory.class);
+		Mockito.when(factory.getObject()).thenReturn(mockClient);
+
+		sut = new CacheInvalidationNotifierImpl();
+		sut.setPcsClientFactory(factory);
+		sut.init();
+
+		segment = new Segment();
+		segment.setSegmentName("segment");
+	}
+
+	@After
+	public void doTeardown() throws Exception {
+		sut.shutdown();
+	}
+
+	private CacheInvalidationInstruction createInstruction(CacheName cacheName, String key) {
+		return CacheInvalidationInstruction.newInstruction(CacheInvalidationInstruction.newID(), cacheName, key);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void testCoalesce() throws Exception {
+		List<CacheInvalidationInstruction> instructions = new ArrayList<>();
+		instructions.add(createInstruction(CacheName.DnsResolverGroup, "a.com"));
+		instructions.add(createInstruction(CacheName.DnsResolverGroup, "a.com"));
+		instructions.add(createInstruction(CacheName.DnsResolverGroup, "b.com"));
+		instructions.add(createInstruction(CacheName.TrustStore, null));
+
+		ProcessingState ps = sut.invalidateCache(segment, instructions);
+		assertEquals(ProcessingStatus.NONE, ps.getStatus());
+
+		ArgumentCaptor<List> sent = ArgumentCaptor.forClass(List.class);
+		Mockito.verify(mockClient, Mockito.times(2)).invalidateCache(Matchers.eq(segment), sent.capture());
+		List<CacheInvalidationInstruction> dnsBatch = sent.getAllValues().get(0);
+		List<CacheInvalidationInstruction> trustBatch = sent.getAllValues().get(1);
+		if (dnsBatch.get(0).getName() != CacheName.DnsResolverGroup) {
+			dnsBatch = sent.getAllValues().get(1);
+			trustBatch = sent.getAllValues().get(0);
+		}
+		assertEquals(2, dnsBatch.size());
+		assertEquals("a.com", dnsBatch.get(0).getKey());
+		assertEquals("b.com", dnsBatch.get(1).getKey());
+		assertEquals(1, trustBatch.size());
+		assertNull(trustBatch.get(0).getKey());
+	}
+
+	@Test
+	public void testClientReused() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			ProcessingState ps = sut.invalidateCache(segment, createInstruction(CacheName.TrustStore, null));
+			assertEquals(ProcessingStatus.NONE, ps.getStatus());
+		}
+		Mockito.verify(mockClient, Mockito.times(1)).start(Matchers.eq(segment), Matchers.anyList());
+		Mockito.verify(mockClient, Mockito.never()).stop();
+	}
+
+	@Test
+	public void testClientStoppedOnFailure() throws Exception {
+		Mockito.when(mockClient.invalidateCache(Matchers.any(Segment.class),
+				Matchers.anyListOf(CacheInvalidationInstruction.class))).thenReturn(ProcessingState.error(1, "failed"));
+
+		for (int i = 0; i < 2; i++) {
+			ProcessingState ps = sut.invalidateCache(segment, createInstruction(CacheName.TrustStore, null));
+			assertEquals(ProcessingStatus.FAILURE, ps.getStatus());
+		}
+		Mockito.verify(mockClient, Mockito.times(2)).start(Matchers.eq(segment), Matchers.anyList());
+		Mockito.verify(mockClient, Mockito.times(2)).stop();
+	}
+
+}
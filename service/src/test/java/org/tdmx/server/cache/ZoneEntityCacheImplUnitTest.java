@@ -0,0 +1,197 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.tdmx.lib.control.domain.AccountZone;
+import org.tdmx.lib.control.service.AccountZoneService;
+import org.tdmx.lib.zone.domain.Domain;
+import org.tdmx.lib.zone.domain.Service;
+import org.tdmx.lib.zone.domain.Zone;
+import org.tdmx.lib.zone.service.DomainService;
+import org.tdmx.lib.zone.service.ServiceService;
+import org.tdmx.lib.zone.service.ZoneService;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
+
+public class ZoneEntityCacheImplUnitTest {
+
+	private AccountZoneService accountZoneService;
+	private ZoneService zoneService;
+	private DomainService domainService;
+	private ServiceService serviceService;
+	private ZoneEntityCacheImpl cache;
+
+	private AccountZone az;
+	private Zone zone;
+	private Domain domain;
+	private Service service;
+
+	@Before
+	public void doSetup() throws Exception {
+		accountZoneService = mock(AccountZoneService.class);
+		zoneService = mock(ZoneService.class);
+		domainService = mock(DomainService.class);
+		serviceService = mock(ServiceService.class);
+
+		cache = new ZoneEntityCacheImpl();
+		cache.setAccountZoneService(accountZoneService);
+		cache.setZoneService(zoneService);
+		cache.setDomainService(domainService);
+		cache.setServiceService(serviceService);
+
+		az = createAccountZone(1L, "zone.apex", "z1");
+		zone = new Zone(1L, "zone.apex");
+		zone.setId(10L);
+		domain = new Domain(zone, "sub.zone.apex");
+		domain.setId(100L);
+		service = new Service(domain, "service");
+		service.setId(1000L);
+
+		when(accountZoneService.findById(1L)).thenReturn(az);
+		when(accountZoneService.findByZoneApex("zone.apex")).thenReturn(az);
+		when(zoneService.findById(10L)).thenReturn(zone);
+		when(zoneService.findByZoneApex("zone.apex")).thenReturn(zone);
+		when(domainService.findById(100L)).thenReturn(domain);
+		when(domainService.findByName(zone, "sub.zone.apex")).thenReturn(domain);
+		when(serviceService.findById(1000L)).thenReturn(service);
+		when(serviceService.findByName(domain, "service")).thenReturn(service);
+	}
+
+	private AccountZone createAccountZone(Long id, String zoneApex, String partitionId) {
+		AccountZone a = new AccountZone();
+		a.setId(id);
+		a.setZoneApex(zoneApex);
+		a.setZonePartitionId(partitionId);
+		return a;
+	}
+
+	@Test
+	public void testReadThrough() {
+		for (int i = 0; i < 3; i++) {
+			assertSame(az, cache.getAccountZone(1L));
+			assertSame(az, cache.getAccountZone("zone.apex"));
+			assertSame(zone, cache.getZone(az, 10L));
+			assertSame(zone, cache.getZone(az));
+			assertSame(domain, cache.getDomain(az, zone, 100L));
+			assertSame(domain, cache.getDomain(az, zone, "sub.zone.apex"));
+			assertSame(service, cache.getService(az, 1000L));
+			assertSame(service, cache.getService(az, domain, "service"));
+		}
+		verify(accountZoneService, times(1)).findById(1L);
+		verify(accountZoneService, times(1)).findByZoneApex("zone.apex");
+		verify(zoneService, times(1)).findById(10L);
+		verify(zoneService, times(1)).findByZoneApex("zone.apex");
+		verify(domainService, times(1)).findById(100L);
+		verify(domainService, times(1)).findByName(zone, "sub.zone.apex");
+		verify(serviceService, times(1)).findById(1000L);
+		verify(serviceService, times(1)).findByName(domain, "service");
+
+		assertEquals(8, cache.getSize());
+		assertEquals(8, cache.getMisses());
+		assertEquals(16, cache.getHits());
+		assertEquals(2.0 / 3.0, cache.getHitRatio(), 0.0001);
+	}
+
+	@Test
+	public void testNotFound_NotCached() {
+		assertNull(cache.getAccountZone(2L));
+		assertNull(cache.getAccountZone(2L));
+		verify(accountZoneService, times(2)).findById(2L);
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testKeyedByPartition() {
+		cache.getZone(az, 10L);
+		AccountZone transferred = createAccountZone(1L, "zone.apex", "z2");
+		cache.getZone(transferred, 10L);
+		verify(zoneService, times(2)).findById(10L);
+	}
+
+	@Test
+	public void testInvalidateZone() {
+		AccountZone other = createAccountZone(2L, "other.apex", "z1");
+		when(accountZoneService.findById(2L)).thenReturn(other);
+
+		cache.getAccountZone(1L);
+		cache.getAccountZone(2L);
+		cache.getZone(az, 10L);
+		cache.getDomain(az, zone, 100L);
+		assertEquals(4, cache.getSize());
+
+		cache.invalidateCache(CacheInvalidationInstruction.newInstruction("1", CacheName.ZoneEntity, "zone.apex"));
+		assertEquals(1, cache.getSize());
+		assertEquals(1, cache.getInvalidations());
+
+		cache.getAccountZone(1L);
+		cache.getAccountZone(2L);
+		verify(accountZoneService, times(2)).findById(1L);
+		verify(accountZoneService, times(1)).findById(2L);
+	}
+
+	@Test
+	public void testInvalidateAll() {
+		cache.getAccountZone(1L);
+		cache.getZone(az, 10L);
+
+		// other caches are ignored
+		cache.invalidateCache(CacheInvalidationInstruction.newInstruction("1", CacheName.TrustStore, null));
+		assertEquals(2, cache.getSize());
+
+		cache.invalidateCache(CacheInvalidationInstruction.newInstruction("2", CacheName.ZoneEntity, null));
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testInvalidationDuringLoad_NotCached() {
+		when(accountZoneService.findById(1L)).thenAnswer(new Answer<AccountZone>() {
+			@Override
+			public AccountZone answer(InvocationOnMock invocation) throws Throwable {
+				// the zone is changed and invalidated whilst we are loading the old state
+				cache.invalidateZone("zone.apex");
+				return az;
+			}
+		});
+		assertSame(az, cache.getAccountZone(1L));
+		assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		cache.setEntryValiditySeconds(0);
+		cache.getAccountZone(1L);
+		Thread.sleep(10);
+		assertTrue(cache.getMaxStalenessMillis() >= 10);
+		cache.getAccountZone(1L);
+		verify(accountZoneService, times(2)).findById(1L);
+	}
+
+}
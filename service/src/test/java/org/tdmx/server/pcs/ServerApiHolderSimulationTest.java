@@ -0,0 +1,122 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.pcs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.tdmx.client.crypto.certificate.PKIXCertificate;
+import org.tdmx.server.pcs.SessionControlServiceImpl.ServerApiHolder;
+import org.tdmx.server.pcs.SessionControlServiceImpl.ServerHolder;
+import org.tdmx.server.ws.session.WebServiceApiName;
+
+/**
+ * Simulates session allocation across many servers which report their load only after each burst of allocations, and
+ * shows the distribution quality of the load balancing.
+ */
+public class ServerApiHolderSimulationTest {
+
+	private static final Logger log = LoggerFactory.getLogger(ServerApiHolderSimulationTest.class);
+
+	private static final int NUM_SERVERS = 128;
+	private static final int NUM_BURSTS = 100;
+	private static final int BURST_SIZE = 128;
+
+	private ServerApiHolder createHolder(int choices) {
+		ServerApiHolder holder = new ServerApiHolder(choices);
+		PKIXCertificate cert = mock(PKIXCertificate.class);
+		ServerSessionController ssm = mock(ServerSessionController.class);
+		for (int i = 0; i < NUM_SERVERS; i++) {
+			ServiceHandle handle = new ServiceHandle("segment", WebServiceApiName.MOS, "url-" + i, cert);
+			holder.addServer(new ServerHolder(handle, ssm, "localhost:" + i));
+		}
+		return holder;
+	}
+
+	/**
+	 * @return the difference between the most and the least loaded server's sessions.
+	 */
+	private int simulate(String name, int choices, boolean countInFlight) {
+		ServerApiHolder holder = createHolder(choices);
+		Map<ServerHolder, Integer> sessions = new HashMap<>();
+
+		for (int burst = 0; burst < NUM_BURSTS; burst++) {
+			List<ServerHolder> allocated = new ArrayList<>();
+			for (int i = 0; i < BURST_SIZE; i++) {
+				ServerHolder server = holder.getLoadBalancedServer();
+				if (!countInFlight) {
+					server.completeAllocation();
+				}
+				Integer count = sessions.get(server);
+				sessions.put(server, count == null ? 1 : count + 1);
+				allocated.add(server);
+			}
+			// the servers report their load after the burst
+			for (ServerHolder server : allocated) {
+				if (countInFlight) {
+					server.completeAllocation();
+				}
+				holder.adjustLoad(server.getHandle().getHttpsUrl(), sessions.get(server));
+			}
+		}
+
+		int max = 0;
+		int min = Integer.MAX_VALUE;
+		for (ServerHolder server : holder.getServerMap().values()) {
+			assertEquals(0, server.getEffectiveLoad() - server.getLoadValue());
+			Integer count = sessions.get(server);
+			int load = count == null ? 0 : count;
+			max = Math.max(max, load);
+			min = Math.min(min, load);
+		}
+		int average = NUM_BURSTS * BURST_SIZE / NUM_SERVERS;
+		log.info(name + ": servers=" + NUM_SERVERS + " sessions=" + NUM_BURSTS * BURST_SIZE + " average=" + average
+				+ " min=" + min + " max=" + max);
+		return max - min;
+	}
+
+	@Test
+	public void testDistribution() {
+		int random = simulate("random", 1, true);
+		int twoChoicesInFlight = simulate("two choices, in flight counted", 2, true);
+		int twoChoices = simulate("two choices, in flight ignored", 2, false);
+		int leastLoadedInFlight = simulate("least loaded, in flight counted", NUM_SERVERS, true);
+		int leastLoaded = simulate("least loaded, in flight ignored", NUM_SERVERS, false);
+
+		log.info("spread random=" + random + " twoChoicesInFlight=" + twoChoicesInFlight + " twoChoices="
+				+ twoChoices + " leastLoadedInFlight=" + leastLoadedInFlight + " leastLoaded=" + leastLoaded);
+
+		// two choices keeps close to the average, even with stale load reports
+		assertTrue(twoChoicesInFlight <= 10);
+		assertTrue(twoChoicesInFlight < random);
+		// counting in flight allocations stops the least loaded server taking a whole burst
+		assertEquals(0, leastLoadedInFlight);
+		assertTrue(leastLoaded >= BURST_SIZE);
+	}
+
+}
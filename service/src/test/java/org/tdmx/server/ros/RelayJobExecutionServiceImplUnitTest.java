@@ -0,0 +1,211 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ros;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.tdmx.client.crypto.scheme.IntegratedCryptoScheme;
+import org.tdmx.core.api.v01.common.Error;
+import org.tdmx.core.api.v01.mrs.Relay;
+import org.tdmx.core.api.v01.mrs.RelayResponse;
+import org.tdmx.core.api.v01.mrs.ws.MRS;
+import org.tdmx.lib.chunk.domain.Chunk;
+import org.tdmx.lib.chunk.service.ChunkService;
+import org.tdmx.lib.common.domain.ProcessingState;
+import org.tdmx.lib.zone.domain.ChannelMessage;
+
+public class RelayJobExecutionServiceImplUnitTest {
+
+	private static final int NUM_CHUNKS = 6;
+
+	private RelayJobExecutionServiceImpl service;
+	private ChunkService chunkService;
+	private MRS mrs;
+	private MRSSessionHolder sh;
+	private ChannelMessage msg;
+
+	// the continuationIds the MRS grants in each response.
+	private int mrsWindow;
+	// the chunk pos which the MRS fails to receive.
+	private int failPos;
+	private final List<Integer> relayedPositions = Collections.synchronizedList(new ArrayList<Integer>());
+
+	@Before
+	public void doSetup() {
+		msg = new ChannelMessage();
+		msg.setMsgId("msgId");
+		msg.setScheme(IntegratedCryptoScheme.ECDH384_AES256plusRSA_SLASH_AES256__16MB_SHA1);
+		msg.setPayloadLength((long) msg.getScheme().getChunkSize() * (NUM_CHUNKS - 1) + 10);
+		assertEquals(NUM_CHUNKS, msg.getNumberOfChunks());
+
+		chunkService = mock(ChunkService.class);
+		when(chunkService.fetchChunks(eq(msg), anyInt(), anyInt())).thenAnswer(new Answer<List<Chunk>>() {
+			@Override
+			public List<Chunk> answer(InvocationOnMock invocation) throws Throwable {
+				int fromPos = (Integer) invocation.getArguments()[1];
+				int toPos = (Integer) invocation.getArguments()[2];
+				List<Chunk> chunks = new ArrayList<>();
+				for (int pos = fromPos; pos <= toPos; pos++) {
+					chunks.add(new Chunk(msg, pos));
+				}
+				return chunks;
+			}
+		});
+
+		mrsWindow = 1;
+		failPos = -1;
+		mrs = mock(MRS.class);
+		when(mrs.relay(any(Relay.class))).thenAnswer(new Answer<RelayResponse>() {
+			@Override
+			public RelayResponse answer(InvocationOnMock invocation) throws Throwable {
+				Relay relay = (Relay) invocation.getArguments()[0];
+				int pos = relay.getChunk().getPos();
+				RelayResponse rr = new RelayResponse();
+				if (!getContinuationId(pos).equals(relay.getContinuation())) {
+					rr.setError(new Error());
+					rr.getError().setCode(1);
+					rr.getError().setDescription("invalid continuation " + relay.getContinuation());
+					return rr;
+				}
+				if (pos == failPos) {
+					rr.setError(new Error());
+					rr.getError().setCode(2);
+					rr.getError().setDescription("failed " + pos);
+					return rr;
+				}
+				relayedPositions.add(pos);
+				rr.setSuccess(true);
+				grantWindow(rr, pos + 1);
+				return rr;
+			}
+		});
+		sh = MRSSessionHolder.success(mrs, "sessionId", false);
+
+		service = new RelayJobExecutionServiceImpl();
+		service.setChunkService(chunkService);
+		service.setChunkFetchBatchSize(2);
+		service.setMaxChunkRelayThreads(3);
+	}
+
+	@After
+	public void doTeardown() {
+		service.shutdown();
+	}
+
+	private String getContinuationId(int pos) {
+		return "c" + pos;
+	}
+
+	private void grantWindow(RelayResponse rr, int nextPos) {
+		if (nextPos >= NUM_CHUNKS) {
+			return;
+		}
+		rr.setContinuation(getContinuationId(nextPos));
+		for (int pos = nextPos + 1; pos < nextPos + mrsWindow && pos < NUM_CHUNKS; pos++) {
+			rr.getWindowContinuation().add(getContinuationId(pos));
+		}
+	}
+
+	private RelayResponse createMsgResponse() {
+		RelayResponse rr = new RelayResponse();
+		rr.setSuccess(true);
+		grantWindow(rr, 1);
+		return rr;
+	}
+
+	@Test
+	public void testRelayChunks_Inline() {
+		service.setRelayWindowSize(1);
+		service.init();
+
+		assertNull(service.relayChunks(sh, msg, createMsgResponse()));
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5), relayedPositions);
+	}
+
+	@Test
+	public void testRelayChunks_Window() {
+		mrsWindow = 3;
+		service.setRelayWindowSize(3);
+		service.init();
+
+		assertNull(service.relayChunks(sh, msg, createMsgResponse()));
+		List<Integer> relayed = new ArrayList<>(relayedPositions);
+		Collections.sort(relayed);
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5), relayed);
+	}
+
+	@Test
+	public void testRelayChunks_MrsWindowSmaller() {
+		// the MRS only grants the next continuationId, so the chunks are relayed one after the other.
+		mrsWindow = 1;
+		service.setRelayWindowSize(4);
+		service.init();
+
+		assertNull(service.relayChunks(sh, msg, createMsgResponse()));
+		assertEquals(Arrays.asList(1, 2, 3, 4, 5), relayedPositions);
+	}
+
+	@Test
+	public void testRelayChunks_RelayFails() {
+		mrsWindow = 2;
+		failPos = 3;
+		service.setRelayWindowSize(2);
+		service.init();
+
+		ProcessingState error = service.relayChunks(sh, msg, createMsgResponse());
+		assertNotNull(error);
+		assertEquals(Integer.valueOf(2), error.getErrorCode());
+		// chunks beyond the window of the failed chunk are not relayed.
+		assertTrue(relayedPositions.contains(1));
+		assertTrue(relayedPositions.contains(2));
+		assertFalse(relayedPositions.contains(5));
+	}
+
+	@Test
+	public void testRelayChunks_ChunkDataLost() {
+		when(chunkService.fetchChunks(eq(msg), anyInt(), anyInt())).thenReturn(Collections.<Chunk> emptyList());
+		service.setRelayWindowSize(2);
+		service.init();
+
+		ProcessingState error = service.relayChunks(sh, msg, createMsgResponse());
+		assertNotNull(error);
+		assertTrue(error.getErrorMessage().contains("msgId"));
+		assertTrue(relayedPositions.isEmpty());
+	}
+
+}
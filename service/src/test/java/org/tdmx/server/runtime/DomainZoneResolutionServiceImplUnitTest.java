@@ -0,0 +1,117 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Calendar;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.lib.control.domain.DnsDomainZone;
+import org.tdmx.lib.control.domain.DomainZoneApexInfo;
+import org.tdmx.lib.control.service.DnsDomainZoneService;
+import org.tdmx.server.cache.CacheInvalidationInstruction;
+import org.tdmx.server.pcs.protobuf.Cache.CacheName;
+
+public class DomainZoneResolutionServiceImplUnitTest {
+
+	private DnsZoneResolutionService dnsZoneResolutionService;
+	private DnsDomainZoneService dnsDomainZoneService;
+	private DomainZoneResolutionServiceImpl service;
+
+	@Before
+	public void doSetup() throws Exception {
+		dnsZoneResolutionService = mock(DnsZoneResolutionService.class);
+		dnsDomainZoneService = mock(DnsDomainZoneService.class);
+
+		service = new DomainZoneResolutionServiceImpl();
+		service.setDnsZoneResolutionService(dnsZoneResolutionService);
+		service.setDnsDomainZoneService(dnsDomainZoneService);
+	}
+
+	private DnsDomainZone createZone(String domainName) {
+		DnsDomainZone zone = new DnsDomainZone();
+		zone.setDomainName(domainName);
+		zone.setZoneApex(domainName);
+		zone.setZacFingerprint("fingerprint");
+		zone.setValidFromTime(Calendar.getInstance().getTime());
+		return zone;
+	}
+
+	@Test
+	public void testResolve_CachedInMemory() {
+		when(dnsDomainZoneService.findCurrentByDomain("a.com")).thenReturn(createZone("a.com"));
+
+		DomainZoneApexInfo zi1 = service.resolveDomain("a.com");
+		assertNotNull(zi1);
+		assertEquals("a.com", zi1.getZoneApex());
+		DomainZoneApexInfo zi2 = service.resolveDomain("a.com");
+		assertNotNull(zi2);
+
+		verify(dnsDomainZoneService, times(1)).findCurrentByDomain("a.com");
+		assertEquals(1, service.getMemoryCacheHits());
+		assertEquals(1, service.getMemoryCacheMisses());
+	}
+
+	@Test
+	public void testResolve_NegativeCached() {
+		assertNull(service.resolveDomain("unknown.com"));
+		assertNull(service.resolveDomain("unknown.com"));
+
+		verify(dnsZoneResolutionService, times(1)).resolveDomain("unknown.com");
+	}
+
+	@Test
+	public void testResolve_NegativeCacheExpired() {
+		service.setNegativeCacheValiditySeconds(-1);
+
+		assertNull(service.resolveDomain("unknown.com"));
+		assertNull(service.resolveDomain("unknown.com"));
+
+		verify(dnsZoneResolutionService, times(2)).resolveDomain("unknown.com");
+	}
+
+	@Test
+	public void testInvalidate_Domain() {
+		when(dnsDomainZoneService.findCurrentByDomain("a.com")).thenReturn(createZone("a.com"));
+		when(dnsDomainZoneService.findCurrentByDomain("b.com")).thenReturn(createZone("b.com"));
+		service.resolveDomain("a.com");
+		service.resolveDomain("b.com");
+
+		service.invalidateCache(CacheInvalidationInstruction.newInstruction(CacheInvalidationInstruction.newID(),
+				CacheName.DnsResolverGroup, "a.com"));
+		assertEquals(1, service.getMemoryCacheSize());
+
+		service.invalidateCache(
+				CacheInvalidationInstruction.newInstruction(CacheInvalidationInstruction.newID(), CacheName.TrustStore, null));
+		assertEquals(1, service.getMemoryCacheSize());
+
+		service.invalidateCache(CacheInvalidationInstruction.newInstruction(CacheInvalidationInstruction.newID(),
+				CacheName.DnsResolverGroup, null));
+		assertEquals(0, service.getMemoryCacheSize());
+	}
+
+}
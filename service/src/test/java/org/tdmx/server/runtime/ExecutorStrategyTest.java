@@ -0,0 +1,145 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ExecutorStrategyTest {
+
+	private static final int TASKS = 20;
+
+	private ExecutorService executor;
+
+	@After
+	public void doTeardown() throws Exception {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testPool_RejectsBeyondMax() throws Exception {
+		ExecutorStrategy strategy = new ExecutorStrategy(ExecutionMode.POOL, 1, 2);
+		executor = strategy.createExecutorService("pool");
+
+		CountDownLatch release = new CountDownLatch(1);
+		executor.execute(new BlockingTask(release, null, null));
+		executor.execute(new BlockingTask(release, null, null));
+		try {
+			executor.execute(new BlockingTask(release, null, null));
+			fail();
+		} catch (RejectedExecutionException e) {
+			// expected
+		}
+		release.countDown();
+	}
+
+	@Test
+	public void testBounded_QueuesBeyondMax() throws Exception {
+		ExecutorStrategy strategy = new ExecutorStrategy(ExecutionMode.BOUNDED, 1, 3);
+		executor = strategy.createExecutorService("bounded");
+
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(TASKS);
+		for (int i = 0; i < TASKS; i++) {
+			executor.execute(new BlockingTask(release, running, maxRunning, done));
+		}
+		Thread.sleep(100);
+		assertEquals(3, running.get());
+
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(3, maxRunning.get());
+	}
+
+	@Test
+	public void testThreadPerTask_RunsAllConcurrently() throws Exception {
+		ExecutorStrategy strategy = new ExecutorStrategy(ExecutionMode.THREAD_PER_TASK, 1, 3);
+		executor = strategy.createExecutorService("task");
+
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(TASKS);
+		for (int i = 0; i < TASKS; i++) {
+			executor.execute(new BlockingTask(release, running, maxRunning, done));
+		}
+		Thread.sleep(100);
+		assertEquals(TASKS, running.get());
+
+		release.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(TASKS, maxRunning.get());
+	}
+
+	private static class BlockingTask implements Runnable {
+		private final CountDownLatch release;
+		private final AtomicInteger running;
+		private final AtomicInteger maxRunning;
+		private final CountDownLatch done;
+
+		public BlockingTask(CountDownLatch release, AtomicInteger running, AtomicInteger maxRunning) {
+			this(release, running, maxRunning, null);
+		}
+
+		public BlockingTask(CountDownLatch release, AtomicInteger running, AtomicInteger maxRunning,
+				CountDownLatch done) {
+			this.release = release;
+			this.running = running;
+			this.maxRunning = maxRunning;
+			this.done = done;
+		}
+
+		@Override
+		public void run() {
+			if (running != null) {
+				int current = running.incrementAndGet();
+				int max = maxRunning.get();
+				while (current > max && !maxRunning.compareAndSet(max, current)) {
+					max = maxRunning.get();
+				}
+			}
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				if (running != null) {
+					running.decrementAndGet();
+				}
+				if (done != null) {
+					done.countDown();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.client.crypto.certificate.PKIXCredential;
+import org.tdmx.client.crypto.entropy.EntropySource;
+import org.tdmx.client.crypto.scheme.IntegratedCryptoScheme;
+import org.tdmx.core.api.v01.msg.Msg;
+import org.tdmx.lib.chunk.domain.MessageFacade;
+import org.tdmx.lib.control.domain.CredentialFacade;
+import org.tdmx.server.ws.MessageVerificationService.VerificationResultHolder;
+
+public class MessageVerificationServiceImplUnitTest {
+
+	private MessageVerificationServiceImpl service;
+
+	private PKIXCredential uc;
+
+	@Before
+	public void doSetup() throws Exception {
+		service = new MessageVerificationServiceImpl();
+		service.setParallelism(2);
+		service.init();
+
+		PKIXCredential zac = CredentialFacade.createZAC("zone.apex." + System.currentTimeMillis());
+		PKIXCredential dac = CredentialFacade.createDAC(zac);
+		uc = CredentialFacade.createUC(dac);
+	}
+
+	@After
+	public void doTeardown() {
+		service.shutdown();
+	}
+
+	@Test
+	public void testVerify() throws Exception {
+		VerificationResultHolder result = service.verify(createMsg());
+		assertTrue(result.msgIdValid);
+		assertTrue(result.signatureValid);
+		assertTrue(result.chunkMacValid);
+		assertEquals(1, service.getVerifications());
+	}
+
+	@Test
+	public void testVerify_Batch() throws Exception {
+		List<Msg> msgs = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			msgs.add(createMsg());
+		}
+		// tamper with the signed encryption context of the 2nd and the chunk of the 4th message
+		msgs.get(1).getPayload().setEncryptionContext(new byte[] { 1, 2, 3 });
+		msgs.get(3).getChunk().setData(EntropySource.getRandomBytes(16));
+
+		List<VerificationResultHolder> results = service.verify(msgs);
+		assertEquals(msgs.size(), results.size());
+		for (int i = 0; i < results.size(); i++) {
+			VerificationResultHolder result = results.get(i);
+			assertTrue(result.msgIdValid);
+			assertEquals(i != 1, result.signatureValid);
+			assertEquals(i != 3, result.chunkMacValid);
+		}
+		assertEquals(msgs.size(), service.getVerifications());
+		assertEquals(0, service.getQueueDepth());
+	}
+
+	@Test
+	public void testVerify_InvalidMsgId() throws Exception {
+		Msg msg = createMsg();
+		msg.getHeader().setMsgId("1234");
+
+		VerificationResultHolder result = service.verify(msg);
+		assertFalse(result.msgIdValid);
+	}
+
+	@Test
+	public void testVerify_NoChunk() throws Exception {
+		Msg msg = createMsg();
+		msg.setChunk(null);
+
+		VerificationResultHolder result = service.verify(msg);
+		assertTrue(result.msgIdValid);
+		assertTrue(result.signatureValid);
+		assertNull(result.chunkMacValid);
+	}
+
+	@Test
+	public void testVerify_NotInitialized() throws Exception {
+		service.shutdown();
+
+		VerificationResultHolder result = service.verify(createMsg());
+		assertTrue(result.msgIdValid);
+		assertTrue(result.signatureValid);
+		assertTrue(result.chunkMacValid);
+	}
+
+	private Msg createMsg() throws Exception {
+		List<byte[]> chunks = new ArrayList<>();
+		chunks.add(EntropySource.getRandomBytes(1024));
+		return MessageFacade.createMsg(uc, uc, "service",
+				IntegratedCryptoScheme.ECDH384_AES256plusRSA_SLASH_AES256__16MB_SHA1, chunks);
+	}
+}
@@ -0,0 +1,107 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws.mds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.lib.chunk.domain.Chunk;
+import org.tdmx.lib.zone.domain.ChannelMessage;
+
+public class MessageContextUnitTest {
+
+	private ReadAheadBudget budget;
+	private MessageContext msgCtx;
+
+	@Before
+	public void doSetup() {
+		budget = new ReadAheadBudget();
+		budget.setMaxBytes(150);
+		ChannelMessage msg = new ChannelMessage();
+		msg.setMsgId("msg1");
+		msgCtx = new MessageContext(msg, budget);
+	}
+
+	private Chunk createChunk(int pos, int size) {
+		Chunk c = new Chunk();
+		c.setMsgId("msg1");
+		c.setPos(pos);
+		c.setData(new byte[size]);
+		return c;
+	}
+
+	@Test
+	public void testAddTake() {
+		Chunk c1 = createChunk(1, 50);
+		Chunk c2 = createChunk(2, 60);
+		assertEquals(2, msgCtx.addPrefetchedChunks(Arrays.asList(c1, c2)));
+		assertEquals(110, budget.getUsedBytes());
+
+		assertSame(c1, msgCtx.takePrefetchedChunk(1));
+		assertEquals(60, budget.getUsedBytes());
+		assertSame(c2, msgCtx.takePrefetchedChunk(2));
+		assertEquals(0, budget.getUsedBytes());
+		assertNull(msgCtx.takePrefetchedChunk(3));
+	}
+
+	@Test
+	public void testTake_SkipsEarlierChunks() {
+		msgCtx.addPrefetchedChunks(Arrays.asList(createChunk(1, 50), createChunk(2, 60)));
+
+		assertEquals(2, msgCtx.takePrefetchedChunk(2).getPos());
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	@Test
+	public void testTake_Backwards() {
+		msgCtx.addPrefetchedChunks(Arrays.asList(createChunk(2, 50), createChunk(3, 60)));
+
+		assertNull(msgCtx.takePrefetchedChunk(1));
+		assertEquals(0, budget.getUsedBytes());
+		assertNull(msgCtx.takePrefetchedChunk(3));
+	}
+
+	@Test
+	public void testAdd_Budget() {
+		// only the chunks which fit into the budget are kept
+		assertEquals(1, msgCtx.addPrefetchedChunks(Arrays.asList(createChunk(1, 100), createChunk(2, 100))));
+		assertEquals(100, budget.getUsedBytes());
+		assertNull(msgCtx.takePrefetchedChunk(2));
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	@Test
+	public void testClear() {
+		msgCtx.addPrefetchedChunks(Arrays.asList(createChunk(1, 50), createChunk(2, 60)));
+
+		msgCtx.clearPrefetchedChunks();
+		assertEquals(0, budget.getUsedBytes());
+		assertNull(msgCtx.takePrefetchedChunk(1));
+
+		// nothing more is kept once cleared
+		assertEquals(0, msgCtx.addPrefetchedChunks(Arrays.asList(createChunk(3, 50))));
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+}
@@ -0,0 +1,133 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws.mds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.apache.cxf.continuations.Continuation;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.tdmx.core.api.v01.tx.Transaction;
+
+public class ParkedReceiveUnitTest {
+
+	private Continuation continuation;
+	private Transaction tx;
+	private ReceiverContext rcv;
+
+	@Before
+	public void doSetup() {
+		continuation = mock(Continuation.class);
+		when(continuation.isPending()).thenReturn(true);
+		tx = new Transaction();
+		rcv = new ReceiverContext(1, null);
+	}
+
+	@Test
+	public void testSuspend() {
+		ParkedReceive parked = new ParkedReceive(continuation, tx, System.currentTimeMillis() + 10000);
+		parked.park(rcv);
+
+		verify(continuation).setObject(parked);
+		ArgumentCaptor<Long> waitMs = ArgumentCaptor.forClass(Long.class);
+		verify(continuation).suspend(waitMs.capture());
+		assertTrue(waitMs.getValue() > 0 && waitMs.getValue() <= 10000);
+		// nothing pending, so not resumed
+		verify(continuation, never()).resume();
+		assertSame(tx, parked.getTx());
+	}
+
+	@Test
+	public void testWake() {
+		ParkedReceive parked = new ParkedReceive(continuation, tx, System.currentTimeMillis() + 10000);
+		parked.park(rcv);
+
+		rcv.addTransferredMessage(5L);
+		verify(continuation).resume();
+
+		assertEquals(Long.valueOf(5L), parked.takePendingStateId(rcv));
+		assertNull(rcv.pollPendingStateId());
+	}
+
+	@Test
+	public void testWake_PendingBeforePark() {
+		rcv.addTransferredMessage(5L);
+
+		ParkedReceive parked = new ParkedReceive(continuation, tx, System.currentTimeMillis() + 10000);
+		parked.park(rcv);
+		verify(continuation).resume();
+		assertEquals(Long.valueOf(5L), parked.takePendingStateId(rcv));
+	}
+
+	@Test
+	public void testRepark_MessageTakenByOtherReceive() {
+		ParkedReceive parked = new ParkedReceive(continuation, tx, System.currentTimeMillis() + 10000);
+		parked.park(rcv);
+
+		rcv.addTransferredMessage(5L);
+		verify(continuation).resume();
+		// another receive takes the message before the resumed receive is re-invoked
+		assertEquals(Long.valueOf(5L), rcv.pollPendingStateId());
+
+		assertNull(parked.takePendingStateId(rcv));
+		assertTrue(parked.repark(rcv));
+		verify(continuation, times(2)).suspend(anyLong());
+
+		// the re-parked receive is woken by the next message
+		rcv.addTransferredMessage(6L);
+		verify(continuation, times(2)).resume();
+		assertEquals(Long.valueOf(6L), parked.takePendingStateId(rcv));
+	}
+
+	@Test
+	public void testTimeout() {
+		ParkedReceive parked = new ParkedReceive(continuation, tx, System.currentTimeMillis() - 1);
+		assertTrue(parked.isWaitOver());
+
+		assertNull(parked.takePendingStateId(rcv));
+		assertFalse(parked.repark(rcv));
+		verify(continuation, never()).suspend(anyLong());
+	}
+
+	@Test
+	public void testTimeout_RemovesWaitingReceiver() {
+		ParkedReceive parked = new ParkedReceive(continuation, tx, System.currentTimeMillis() + 10000);
+		parked.park(rcv);
+
+		// the wait times out and the receive is re-invoked without a message
+		assertNull(parked.takePendingStateId(rcv));
+		assertFalse(rcv.removeWaitingReceiver(parked));
+
+		// a later message does not resume the timed out receive
+		rcv.addTransferredMessage(5L);
+		verify(continuation, never()).resume();
+	}
+
+}
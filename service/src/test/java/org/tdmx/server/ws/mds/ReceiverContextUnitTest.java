@@ -0,0 +1,171 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws.mds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.core.api.v01.tx.Transaction;
+import org.tdmx.lib.chunk.domain.Chunk;
+import org.tdmx.lib.zone.domain.ChannelMessage;
+
+public class ReceiverContextUnitTest {
+
+	private static final long MAX_BYTES = 1000;
+
+	private ReadAheadBudget budget;
+	private ReceiverContext rcv;
+
+	@Before
+	public void doSetup() {
+		budget = new ReadAheadBudget();
+		budget.setMaxBytes(150);
+		rcv = new ReceiverContext(1, budget);
+		rcv.addPendingMessages(Arrays.asList(1L, 2L, 3L), false);
+	}
+
+	private Chunk createChunk(int size) {
+		Chunk c = new Chunk();
+		c.setMsgId("msg" + size);
+		c.setData(new byte[size]);
+		return c;
+	}
+
+	@Test
+	public void testStartReadAhead() {
+		assertEquals(Arrays.asList(1L, 2L), rcv.startReadAhead(2));
+		// pending read aheads are not started again
+		assertEquals(Collections.emptyList(), rcv.startReadAhead(2));
+		assertEquals(Arrays.asList(3L), rcv.startReadAhead(3));
+	}
+
+	@Test
+	public void testCompleteTake() {
+		rcv.startReadAhead(1);
+		Chunk c = createChunk(100);
+		assertTrue(rcv.completeReadAhead(1L, c, MAX_BYTES));
+		assertEquals(100, rcv.getReadAheadBytes());
+		assertEquals(100, budget.getUsedBytes());
+
+		assertSame(c, rcv.takeReadAhead(1L));
+		assertEquals(0, rcv.getReadAheadBytes());
+		assertEquals(0, budget.getUsedBytes());
+		assertNull(rcv.takeReadAhead(1L));
+	}
+
+	@Test
+	public void testTakeWhilePending() {
+		rcv.startReadAhead(1);
+		assertNull(rcv.takeReadAhead(1L));
+
+		// the message was taken before the read ahead completed
+		assertFalse(rcv.completeReadAhead(1L, createChunk(100), MAX_BYTES));
+		assertEquals(0, rcv.getReadAheadBytes());
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	@Test
+	public void testCancel() {
+		rcv.startReadAhead(1);
+		rcv.cancelReadAhead(1L);
+		assertNull(rcv.takeReadAhead(1L));
+		// a cancelled read ahead can be started again
+		assertEquals(Arrays.asList(1L), rcv.startReadAhead(1));
+	}
+
+	@Test
+	public void testComplete_ReceiverLimit() {
+		rcv.startReadAhead(1);
+		assertFalse(rcv.completeReadAhead(1L, createChunk(100), 50));
+		assertEquals(0, rcv.getReadAheadBytes());
+		assertEquals(0, budget.getUsedBytes());
+		assertNull(rcv.takeReadAhead(1L));
+	}
+
+	@Test
+	public void testComplete_GlobalBudget() {
+		ReceiverContext other = new ReceiverContext(2, budget);
+		other.addPendingMessages(Arrays.asList(4L), false);
+
+		rcv.startReadAhead(1);
+		other.startReadAhead(1);
+		assertTrue(rcv.completeReadAhead(1L, createChunk(100), MAX_BYTES));
+		// the other receiver is within its own limit but exceeds the budget over all receivers
+		assertFalse(other.completeReadAhead(4L, createChunk(100), MAX_BYTES));
+		assertEquals(0, other.getReadAheadBytes());
+		assertEquals(100, budget.getUsedBytes());
+
+		rcv.takeReadAhead(1L);
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	@Test
+	public void testClearReadAhead() {
+		rcv.startReadAhead(3);
+		assertTrue(rcv.completeReadAhead(1L, createChunk(50), MAX_BYTES));
+		assertTrue(rcv.completeReadAhead(2L, createChunk(60), MAX_BYTES));
+		assertEquals(110, budget.getUsedBytes());
+
+		rcv.clearReadAhead();
+		assertEquals(0, rcv.getReadAheadBytes());
+		assertEquals(0, budget.getUsedBytes());
+		assertNull(rcv.takeReadAhead(1L));
+	}
+
+	@Test
+	public void testClearReadAhead_PrefetchedChunks() {
+		MessageContext msgCtx = startTransaction("tx1", "msg1");
+		assertEquals(2, msgCtx.addPrefetchedChunks(Arrays.asList(createChunk(50), createChunk(60))));
+		assertEquals(110, budget.getUsedBytes());
+
+		rcv.clearReadAhead();
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	@Test
+	public void testRemoveTransaction_PrefetchedChunks() {
+		MessageContext msgCtx = startTransaction("tx1", "msg1");
+		assertEquals(2, msgCtx.addPrefetchedChunks(Arrays.asList(createChunk(50), createChunk(60))));
+		assertEquals(110, budget.getUsedBytes());
+
+		assertSame(msgCtx, rcv.removeTransaction("tx1"));
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	private MessageContext startTransaction(String txId, String msgId) {
+		Transaction tx = new Transaction();
+		tx.setXid(txId);
+		TransactionContext txCtx = new TransactionContext(tx);
+		ChannelMessage msg = new ChannelMessage();
+		msg.setMsgId(msgId);
+		MessageContext msgCtx = rcv.createMessageContext(msg);
+		txCtx.setCurrentMessage(msgCtx);
+		rcv.addTransaction(txCtx);
+		return msgCtx;
+	}
+
+}
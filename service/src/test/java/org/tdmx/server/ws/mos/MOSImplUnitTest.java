@@ -383,7 +383,7 @@ public class MOSImplUnitTest {
 
 		Mockito.when(mockTransferObjectService.transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class))).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
+				Mockito.any(Long.class), Mockito.anyInt())).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
 
 		SubmitResponse response = mos.submit(req);
 		assertSuccess(response, false);
@@ -392,7 +392,7 @@ public class MOSImplUnitTest {
 		Mockito.verifyZeroInteractions(mockRelayClientService);
 		Mockito.verify(mockTransferObjectService).transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class));
+				Mockito.any(Long.class), Mockito.anyInt());
 
 	}
 
@@ -427,7 +427,7 @@ public class MOSImplUnitTest {
 
 		Mockito.when(mockTransferObjectService.transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class))).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
+				Mockito.any(Long.class), Mockito.anyInt())).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
 
 		Upload upl = new Upload();
 		upl.setSessionId(UC_SESSION_ID);
@@ -442,7 +442,7 @@ public class MOSImplUnitTest {
 		Mockito.verifyZeroInteractions(mockRelayClientService);
 		Mockito.verify(mockTransferObjectService).transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class));
+				Mockito.any(Long.class), Mockito.anyInt());
 
 	}
 
@@ -543,7 +543,7 @@ public class MOSImplUnitTest {
 
 		Mockito.when(mockTransferObjectService.transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class))).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
+				Mockito.any(Long.class), Mockito.anyInt())).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
 
 		CommitResponse commitRes = mos.commit(commitReq);
 		assertSuccess(commitRes);
@@ -551,7 +551,7 @@ public class MOSImplUnitTest {
 		Mockito.verifyZeroInteractions(mockRelayClientService);
 		Mockito.verify(mockTransferObjectService).transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class));
+				Mockito.any(Long.class), Mockito.anyInt());
 	}
 
 	@Test
@@ -620,7 +620,7 @@ public class MOSImplUnitTest {
 
 		Mockito.when(mockTransferObjectService.transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class))).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
+				Mockito.any(Long.class), Mockito.anyInt())).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
 
 		CommitResponse commitRes = mos.commit(commitReq);
 		assertSuccess(commitRes);
@@ -628,7 +628,7 @@ public class MOSImplUnitTest {
 		Mockito.verifyZeroInteractions(mockRelayClientService);
 		Mockito.verify(mockTransferObjectService).transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class));
+				Mockito.any(Long.class), Mockito.anyInt());
 
 		// recover doesn't find anything
 		recoverReq = new Recover();
@@ -0,0 +1,151 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws.mrs;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+import org.tdmx.client.crypto.entropy.EntropySource;
+import org.tdmx.core.api.v01.common.Error;
+import org.tdmx.core.api.v01.mrs.Relay;
+import org.tdmx.core.api.v01.mrs.RelayResponse;
+import org.tdmx.core.api.v01.msg.Chunk;
+import org.tdmx.core.api.v01.msg.Flowcontrolstatus;
+import org.tdmx.core.api.v01.msg.Header;
+import org.tdmx.core.api.v01.msg.Msg;
+
+public class MRSBinaryCodecUnitTest {
+
+	private final MRSBinaryCodec codec = new MRSBinaryCodec();
+
+	private Chunk createChunk(int pos, int len) {
+		Chunk c = new Chunk();
+		c.setMsgId("msgId");
+		c.setPos(pos);
+		c.setMac("mac" + pos);
+		c.setData(EntropySource.getRandomBytes(len));
+		return c;
+	}
+
+	private Relay roundtrip(Relay relay) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.writeRelay(relay, out);
+		return codec.readRelay(new ByteArrayInputStream(out.toByteArray()));
+	}
+
+	@Test
+	public void testChunk() throws Exception {
+		Relay relay = new Relay();
+		relay.setSessionId("session");
+		relay.setContinuation("continuation");
+		relay.setChunk(createChunk(1, 100000));
+		assertTrue(MRSBinaryCodec.isBinaryRelay(relay));
+
+		Relay r = roundtrip(relay);
+		assertEquals("session", r.getSessionId());
+		assertEquals("continuation", r.getContinuation());
+		assertNull(r.getMsg());
+		assertNotNull(r.getChunk());
+		assertEquals("msgId", r.getChunk().getMsgId());
+		assertEquals(1, r.getChunk().getPos());
+		assertEquals("mac1", r.getChunk().getMac());
+		assertArrayEquals(relay.getChunk().getData(), r.getChunk().getData());
+	}
+
+	@Test
+	public void testMsg_EmbeddedChunk() throws Exception {
+		Header header = new Header();
+		header.setMsgId("msgId");
+		Msg msg = new Msg();
+		msg.setHeader(header);
+		msg.setChunk(createChunk(0, 1000));
+
+		Relay relay = new Relay();
+		relay.setSessionId("session");
+		relay.setMsg(msg);
+
+		Relay r = roundtrip(relay);
+		// the original msg keeps its chunk
+		assertNotNull(msg.getChunk());
+		assertNull(r.getContinuation());
+		assertNull(r.getChunk());
+		assertNotNull(r.getMsg());
+		assertEquals("msgId", r.getMsg().getHeader().getMsgId());
+		assertNotNull(r.getMsg().getChunk());
+		assertEquals(0, r.getMsg().getChunk().getPos());
+		assertArrayEquals(msg.getChunk().getData(), r.getMsg().getChunk().getData());
+	}
+
+	@Test
+	public void testNoBinaryRelay() throws Exception {
+		Relay relay = new Relay();
+		relay.setSessionId("session");
+		relay.setRelayStatus(Flowcontrolstatus.OPEN);
+		assertFalse(MRSBinaryCodec.isBinaryRelay(relay));
+	}
+
+	@Test
+	public void testRelayResponse() throws Exception {
+		RelayResponse response = new RelayResponse();
+		response.setSuccess(true);
+		response.setContinuation("c1");
+		response.getWindowContinuation().add("c2");
+		response.getWindowContinuation().add("c3");
+		response.setRelayStatus(Flowcontrolstatus.CLOSED);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.writeRelayResponse(response, out);
+		RelayResponse r = codec.readRelayResponse(new ByteArrayInputStream(out.toByteArray()));
+
+		assertTrue(r.isSuccess());
+		assertNull(r.getError());
+		assertEquals("c1", r.getContinuation());
+		assertEquals(2, r.getWindowContinuation().size());
+		assertEquals("c3", r.getWindowContinuation().get(1));
+		assertEquals(Flowcontrolstatus.CLOSED, r.getRelayStatus());
+	}
+
+	@Test
+	public void testRelayResponse_Error() throws Exception {
+		Error error = new Error();
+		error.setCode(500);
+		error.setDescription("failed");
+		RelayResponse response = new RelayResponse();
+		response.setSuccess(false);
+		response.setError(error);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.writeRelayResponse(response, out);
+		RelayResponse r = codec.readRelayResponse(new ByteArrayInputStream(out.toByteArray()));
+
+		assertFalse(r.isSuccess());
+		assertEquals(500, r.getError().getCode());
+		assertEquals("failed", r.getError().getDescription());
+		assertNull(r.getRelayStatus());
+	}
+
+}
@@ -464,7 +464,7 @@ public class MRSDestinationImplUnitTest {
 
 		Mockito.when(mockTransferObjectService.transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class))).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
+				Mockito.any(Long.class), Mockito.anyInt())).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
 
 		Relay chunkReq = new Relay();
 		chunkReq.setSessionId(ZAC_SESSION_ID);
@@ -479,7 +479,7 @@ public class MRSDestinationImplUnitTest {
 		// because the receipt of message completion transfers it to the MDS.
 		Mockito.verify(mockTransferObjectService).transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				stateIdCaptor.capture());
+				stateIdCaptor.capture(), Mockito.anyInt());
 
 		// check that the message received
 		zonePartitionIdProvider.setPartitionId(accountZone.getZonePartitionId());
@@ -515,7 +515,7 @@ public class MRSDestinationImplUnitTest {
 
 		Mockito.when(mockTransferObjectService.transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				Mockito.any(Long.class))).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
+				Mockito.any(Long.class), Mockito.anyInt())).thenReturn(TransferStatus.success("sid", "tosTcpAddress"));
 
 		Relay req = new Relay();
 		req.setSessionId(ZAC_SESSION_ID);
@@ -532,7 +532,7 @@ public class MRSDestinationImplUnitTest {
 		// because the receipt of message completion transfers it to the MDS.
 		Mockito.verify(mockTransferObjectService).transferMDS(Mockito.anyString(), Mockito.anyString(),
 				Mockito.any(AccountZone.class), Mockito.any(org.tdmx.lib.zone.domain.ChannelDestination.class),
-				stateIdCaptor.capture());
+				stateIdCaptor.capture(), Mockito.anyInt());
 
 		// check that the message received
 		zonePartitionIdProvider.setPartitionId(accountZone.getZonePartitionId());
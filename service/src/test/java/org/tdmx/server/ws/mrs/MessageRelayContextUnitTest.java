@@ -0,0 +1,112 @@
+/*
+ * TDMX - Trusted Domain Messaging eXchange
+ * 
+ * Enterprise B2B messaging between separate corporations via interoperable cloud service providers.
+ * 
+ * Copyright (C) 2014 Peter Klauser (http://tdmx.org)
+ * 
+ * This program is free software: you can redistribute it and/or modify it under the terms of the GNU Affero General
+ * Public License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any
+ * later version.
+ * 
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public License for more
+ * details.
+ * 
+ * You should have received a copy of the GNU Affero General Public License along with this program. If not, see
+ * http://www.gnu.org/licenses/.
+ */
+package org.tdmx.server.ws.mrs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.tdmx.client.crypto.scheme.IntegratedCryptoScheme;
+import org.tdmx.lib.zone.domain.ChannelMessage;
+
+public class MessageRelayContextUnitTest {
+
+	private static final int NUM_CHUNKS = 4;
+
+	private MessageRelayContext mrc;
+
+	@Before
+	public void doSetup() {
+		ChannelMessage msg = new ChannelMessage();
+		msg.setMsgId("msgId");
+		msg.setScheme(IntegratedCryptoScheme.ECDH384_AES256plusRSA_SLASH_AES256__16MB_SHA1);
+		msg.setPayloadLength((long) msg.getScheme().getChunkSize() * (NUM_CHUNKS - 1) + 10);
+		mrc = new MessageRelayContext(msg);
+	}
+
+	@Test
+	public void testGetContinuationId() {
+		for (int pos = 0; pos < NUM_CHUNKS; pos++) {
+			assertNotNull(mrc.getContinuationId(pos));
+		}
+		assertNull(mrc.getContinuationId(NUM_CHUNKS));
+	}
+
+	@Test
+	public void testIsChunkInWindow() {
+		assertFalse(mrc.isChunkInWindow(-1, 1));
+		assertTrue(mrc.isChunkInWindow(0, 1));
+		assertFalse(mrc.isChunkInWindow(1, 1));
+		// a window of less than one chunk still allows the next chunk
+		assertTrue(mrc.isChunkInWindow(0, 0));
+		assertFalse(mrc.isChunkInWindow(1, 0));
+
+		assertTrue(mrc.isChunkInWindow(2, 3));
+		assertFalse(mrc.isChunkInWindow(3, 3));
+	}
+
+	@Test
+	public void testSetChunkReceived_InOrder() {
+		for (int pos = 0; pos < NUM_CHUNKS - 1; pos++) {
+			assertFalse(mrc.setChunkReceived(pos));
+			assertEquals(pos + 1, mrc.getNextChunkExpected());
+		}
+		assertTrue(mrc.setChunkReceived(NUM_CHUNKS - 1));
+		assertEquals(NUM_CHUNKS, mrc.getNextChunkExpected());
+	}
+
+	@Test
+	public void testSetChunkReceived_OutOfOrder() {
+		// a chunk ahead of the next expected does not move the window
+		assertFalse(mrc.setChunkReceived(2));
+		assertEquals(0, mrc.getNextChunkExpected());
+		assertTrue(mrc.isChunkInWindow(2, 3));
+		assertFalse(mrc.isChunkInWindow(3, 3));
+
+		assertFalse(mrc.setChunkReceived(1));
+		assertEquals(0, mrc.getNextChunkExpected());
+
+		// the gap is filled, the window moves past all chunks received
+		assertFalse(mrc.setChunkReceived(0));
+		assertEquals(3, mrc.getNextChunkExpected());
+		assertTrue(mrc.isChunkInWindow(3, 1));
+
+		assertTrue(mrc.setChunkReceived(3));
+	}
+
+	@Test
+	public void testSetChunkReceived_Repeated() {
+		assertFalse(mrc.setChunkReceived(0));
+		// chunks received already may be repeated
+		assertTrue(mrc.isChunkInWindow(0, 1));
+		assertFalse(mrc.setChunkReceived(0));
+		assertEquals(1, mrc.getNextChunkExpected());
+
+		mrc.setChunkReceived(1);
+		mrc.setChunkReceived(2);
+		assertTrue(mrc.setChunkReceived(3));
+		// completion is only signalled once
+		assertFalse(mrc.setChunkReceived(3));
+	}
+
+}
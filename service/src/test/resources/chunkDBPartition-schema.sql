@@ -20,7 +20,8 @@ create table Chunk_0 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_1 (
@@ -28,7 +29,8 @@ create table Chunk_1 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_2 (
@@ -36,7 +38,8 @@ create table Chunk_2 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_3 (
@@ -44,7 +47,8 @@ create table Chunk_3 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_4 (
@@ -52,7 +56,8 @@ create table Chunk_4 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_5 (
@@ -60,7 +65,8 @@ create table Chunk_5 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_6 (
@@ -68,7 +74,8 @@ create table Chunk_6 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_7 (
@@ -76,7 +83,8 @@ create table Chunk_7 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_8 (
@@ -84,7 +92,8 @@ create table Chunk_8 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_9 (
@@ -92,7 +101,8 @@ create table Chunk_9 (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_a (
@@ -100,7 +110,8 @@ create table Chunk_a (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_b (
@@ -108,7 +119,8 @@ create table Chunk_b (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_c (
@@ -116,7 +128,8 @@ create table Chunk_c (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_d (
@@ -124,7 +137,8 @@ create table Chunk_d (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_e (
@@ -132,7 +146,8 @@ create table Chunk_e (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
 create table Chunk_f (
@@ -140,6 +155,7 @@ create table Chunk_f (
     pos integer not null,
     mac varchar(40) not null,
     ttl timestamp not null,
-    data longvarbinary not null
+    data longvarbinary not null,
+    unique (msgId, pos)
 );
 
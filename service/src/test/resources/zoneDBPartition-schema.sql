@@ -8,6 +8,8 @@
 
     drop table AgentCredential if exists;
 
+    drop table CertificateChain if exists;
+
     drop table Channel if exists;
 
     drop table ChannelAuthorization if exists;
@@ -178,6 +180,13 @@
         primary key (id)
     );
 
+    create table CertificateChain (
+        id bigint generated by default as identity (start with 1),
+        fingerprint varchar(64) not null,
+        pem varchar(12000) not null,
+        primary key (id)
+    );
+
     create table ChannelMessage (
         id bigint generated by default as identity (start with 1),
         encryptionContext longvarbinary not null,
@@ -187,14 +196,16 @@
         msgId varchar(64) not null,
         payloadLength bigint not null,
         plaintextLength bigint not null,
-        receiverPem varchar(12000) not null,
+        receiverPem varchar(12000),
         scheme varchar(256) not null,
         senderSignatureAlgorithm varchar(16) not null,
-        senderPem varchar(12000) not null,
+        senderPem varchar(12000),
         senderSignatureDate timestamp not null,
         senderSignature varchar(1024) not null,
         ttlTimestamp timestamp not null,
         channel_id bigint not null,
+        receiverCertificateChain_id bigint,
+        senderCertificateChain_id bigint,
         state_id bigint not null,
         primary key (id),
         unique (state_id)
@@ -286,6 +297,8 @@
 
     create table FlowQuota (
         id bigint generated by default as identity (start with 1),
+        accumulatorId varchar(64),
+        accumulatorLeaseUntil timestamp,
         authorizationStatus varchar(8) not null,
         flowStatus varchar(8) not null,
         limitHighBytes numeric,
@@ -441,6 +454,18 @@
         foreign key (channel_id) 
         references Channel;
 
+    alter table ChannelMessage 
+        add constraint FKCC8BCDA4A1D2E6F1 
+        foreign key (receiverCertificateChain_id) 
+        references CertificateChain;
+
+    alter table ChannelMessage 
+        add constraint FKCC8BCDA45B3C9E22 
+        foreign key (senderCertificateChain_id) 
+        references CertificateChain;
+
+    create index IDX_CERTCHAIN_FINGERPRINT on CertificateChain (fingerprint);
+
     alter table Destination 
         add constraint FKE2FEBEEEB7BD1E0 
         foreign key (service_id) 